@@ -80,6 +80,7 @@ import com.intellij.pom.java.LanguageLevel;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.util.Chunk;
 import com.intellij.util.Function;
+import com.intellij.util.PathUtil;
 import com.intellij.util.StringBuilderSpinAllocator;
 import com.intellij.util.ThrowableRunnable;
 import com.intellij.util.concurrency.Semaphore;
@@ -555,11 +556,14 @@ public class CompileDriver {
           case FILES_GENERATED:
             final List<CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.GeneratedFile> generated = event.getGeneratedFilesList();
             final CompilationStatusListener publisher = messageBus.syncPublisher(CompilerTopics.COMPILATION_STATUS);
+            final Set<String> generatedDirs = new HashSet<String>();
             for (CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.GeneratedFile generatedFile : generated) {
               final String root = FileUtil.toSystemIndependentName(generatedFile.getOutputRoot());
               final String relativePath = FileUtil.toSystemIndependentName(generatedFile.getRelativePath());
               publisher.fileGenerated(root, relativePath);
+              generatedDirs.add(PathUtil.getParentPath(root + "/" + relativePath));
             }
+            CompilerUtil.refreshCachedDirectories(generatedDirs);
             break;
           case BUILD_COMPLETED:
             ExitStatus status = ExitStatus.SUCCESS;
@@ -36,6 +36,7 @@ import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.*;
+import com.intellij.openapi.vfs.newvfs.NewVirtualFile;
 import com.intellij.openapi.vfs.newvfs.RefreshQueue;
 import com.intellij.pom.java.LanguageLevel;
 import com.intellij.util.ThrowableRunnable;
@@ -128,6 +129,25 @@ public class CompilerUtil {
     }
   }
 
+  /**
+   * Asynchronously refreshes the directories which are already loaded to VFS. Directories which were never accessed in the IDE aren't
+   * loaded, so it's cheap to call this method for each portion of files generated by the build process.
+   */
+  public static void refreshCachedDirectories(@NotNull final Collection<String> paths) {
+    final LocalFileSystem lfs = LocalFileSystem.getInstance();
+    final List<VirtualFile> filesToRefresh = new ArrayList<VirtualFile>();
+    for (String path : paths) {
+      final VirtualFile dir = lfs.findFileByPathIfCached(path);
+      if (dir instanceof NewVirtualFile) {
+        ((NewVirtualFile)dir).markDirty();
+        filesToRefresh.add(dir);
+      }
+    }
+    if (!filesToRefresh.isEmpty()) {
+      RefreshQueue.getInstance().refresh(true, false, null, filesToRefresh);
+    }
+  }
+
   public static void refreshIOFile(final File file) {
     final VirtualFile vFile = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(file);
     if (vFile != null) {
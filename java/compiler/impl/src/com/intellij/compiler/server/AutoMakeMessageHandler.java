@@ -17,6 +17,7 @@ package com.intellij.compiler.server;
 
 import com.intellij.compiler.CompilerMessageImpl;
 import com.intellij.compiler.ProblemsView;
+import com.intellij.compiler.impl.CompilerUtil;
 import com.intellij.notification.Notification;
 import com.intellij.openapi.compiler.CompilationStatusListener;
 import com.intellij.openapi.compiler.CompilerManager;
@@ -30,9 +31,12 @@ import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.problems.Problem;
 import com.intellij.problems.WolfTheProblemSolver;
+import com.intellij.util.PathUtil;
 import org.jetbrains.jps.api.CmdlineRemoteProto;
 
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -70,11 +74,14 @@ class AutoMakeMessageHandler extends DefaultMessageHandler {
 
       case FILES_GENERATED:
         final CompilationStatusListener publisher = myProject.getMessageBus().syncPublisher(CompilerTopics.COMPILATION_STATUS);
+        final Set<String> generatedDirs = new HashSet<String>();
         for (CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.GeneratedFile generatedFile : event.getGeneratedFilesList()) {
           final String root = FileUtil.toSystemIndependentName(generatedFile.getOutputRoot());
           final String relativePath = FileUtil.toSystemIndependentName(generatedFile.getRelativePath());
           publisher.fileGenerated(root, relativePath);
+          generatedDirs.add(PathUtil.getParentPath(root + "/" + relativePath));
         }
+        CompilerUtil.refreshCachedDirectories(generatedDirs);
         return;
 
       default:
@@ -756,6 +756,10 @@ public class BuildManager implements ApplicationComponent{
       cmdLine.addParameter("-D"+ GlobalOptions.GENERATE_CLASSPATH_INDEX_OPTION +"=" + shouldGenerateIndex);
     }
     cmdLine.addParameter("-D"+ GlobalOptions.COMPILE_PARALLEL_OPTION +"=" + Boolean.toString(config.PARALLEL_COMPILATION));
+    final String useContentHashes = System.getProperty(GlobalOptions.USE_CONTENT_HASHES_OPTION);
+    if (useContentHashes != null) {
+      cmdLine.addParameter("-D"+ GlobalOptions.USE_CONTENT_HASHES_OPTION +"=" + useContentHashes);
+    }
 
     final String additionalOptions = config.COMPILER_PROCESS_ADDITIONAL_VM_OPTIONS;
     if (!StringUtil.isEmpty(additionalOptions)) {
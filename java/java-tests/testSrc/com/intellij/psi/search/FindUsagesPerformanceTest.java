@@ -0,0 +1,73 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.search;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.impl.source.PsiFileImpl;
+import com.intellij.psi.search.searches.MethodReferencesSearch;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.JavaCodeInsightFixtureTestCase;
+import com.intellij.util.ThrowableRunnable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures find usages of a method in a project where most candidate files found by the word index don't reference it.
+ */
+public class FindUsagesPerformanceTest extends JavaCodeInsightFixtureTestCase {
+  private static final int FILES_COUNT = 1000;
+  // has the same hash code as "foo", so the word index reports the files with it as candidates for "foo"
+  private static final String COLLIDING_NAME = "fpP";
+
+  public void testMethodUsagesInManyFiles() throws IOException {
+    assertEquals("foo".hashCode(), COLLIDING_NAME.hashCode());
+    final PsiClass target = myFixture.addClass("package p; public class Target { public void foo() {} }");
+    int usagesCount = 0;
+    final List<VirtualFile> otherFiles = new ArrayList<VirtualFile>();
+    for (int i = 0; i < FILES_COUNT; i++) {
+      if (i % 10 == 0) {
+        myFixture.addClass("package p; class User" + i + " { void bar(Target t) { t.foo(); } }");
+        usagesCount++;
+      }
+      else {
+        final String text = "package p; class Other" + i + " { void " + COLLIDING_NAME + "() {} void bar() { " + COLLIDING_NAME + "(); } }";
+        // created without PSI, so their syntax trees can be built only by the search
+        otherFiles.add(myFixture.getTempDirFixture().createFile("p/Other" + i + ".java", text));
+      }
+    }
+
+    final PsiMethod method = target.getMethods()[0];
+    final int expected = usagesCount;
+    PlatformTestUtil.startPerformanceTest("Find usages is slow", 3000, new ThrowableRunnable() {
+      @Override
+      public void run() throws Throwable {
+        assertEquals(expected, MethodReferencesSearch.search(method, GlobalSearchScope.projectScope(getProject()), false).findAll().size());
+      }
+    }).attempts(2).cpuBound().usesAllCPUCores().assertTiming();
+
+    // the files are candidates because of the hash collision, but they are rejected by their text before their PSI is processed
+    for (VirtualFile file : otherFiles) {
+      final PsiFile psiFile = getPsiManager().findFile(file);
+      assertNotNull(psiFile);
+      assertNull(file.getPath(), ((PsiFileImpl)psiFile).getTreeElement());
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package org.jetbrains.jps.cmdline;
+
+import com.intellij.openapi.util.Pair;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.Channels;
+import org.jetbrains.jps.api.CmdlineProtoUtil;
+import org.jetbrains.jps.api.CmdlineRemoteProto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Sends messages of a build session to the IDE. Paths of generated files are accumulated and sent in batches, progress messages which
+ * only update the done fraction are sent not more often than {@link #PROGRESS_UPDATE_INTERVAL} ms, and the sending thread waits while
+ * the channel isn't writable, so a build which generates a lot of files can't flood the connection.
+ */
+final class BuildMessageSender {
+  private static final int GENERATED_FILES_BATCH_SIZE = 4096;
+  private static final long PROGRESS_UPDATE_INTERVAL = 100;
+  private final UUID mySessionId;
+  private final Channel myChannel;
+  private final List<Pair<String, String>> myGeneratedFiles = new ArrayList<Pair<String, String>>();
+  private String myLastProgressText;
+  private long myLastProgressTime;
+
+  BuildMessageSender(UUID sessionId, Channel channel) {
+    mySessionId = sessionId;
+    myChannel = channel;
+  }
+
+  public synchronized void sendGeneratedFiles(Collection<Pair<String, String>> paths) {
+    myGeneratedFiles.addAll(paths);
+    if (myGeneratedFiles.size() >= GENERATED_FILES_BATCH_SIZE) {
+      flushGeneratedFiles();
+    }
+  }
+
+  public synchronized void sendProgress(String text, float done) {
+    final long time = System.currentTimeMillis();
+    if (text.equals(myLastProgressText) && time - myLastProgressTime < PROGRESS_UPDATE_INTERVAL) {
+      return;
+    }
+    myLastProgressText = text;
+    myLastProgressTime = time;
+    doSend(CmdlineProtoUtil.createCompileProgressMessageResponse(text, done));
+  }
+
+  public synchronized void send(CmdlineRemoteProto.Message.BuilderMessage message) {
+    flushGeneratedFiles();
+    doSend(message);
+  }
+
+  public synchronized void flush() {
+    flushGeneratedFiles();
+  }
+
+  private void flushGeneratedFiles() {
+    if (!myGeneratedFiles.isEmpty()) {
+      doSend(CmdlineProtoUtil.createFileGeneratedEvent(myGeneratedFiles));
+      myGeneratedFiles.clear();
+    }
+  }
+
+  private void doSend(CmdlineRemoteProto.Message.BuilderMessage message) {
+    final ChannelFuture future = Channels.write(myChannel, CmdlineProtoUtil.toMessage(mySessionId, message));
+    if (!myChannel.isWritable()) {
+      // the IDE doesn't keep up with the messages, wait until they are written
+      future.awaitUninterruptibly();
+    }
+  }
+}
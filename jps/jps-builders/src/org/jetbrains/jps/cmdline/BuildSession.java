@@ -4,6 +4,7 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.util.io.BufferExposingByteArrayOutputStream;
+import com.intellij.openapi.util.io.FileSystemUtil;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.util.concurrency.SequentialTaskExecutor;
 import com.intellij.util.io.DataOutputStream;
@@ -89,13 +90,14 @@ final class BuildSession implements Runnable, CanceledStatus {
     Throwable error = null;
     final Ref<Boolean> hasErrors = new Ref<Boolean>(false);
     final Ref<Boolean> doneSomething = new Ref<Boolean>(false);
+    final BuildMessageSender sender = new BuildMessageSender(mySessionId, myChannel);
     try {
       runBuild(new MessageHandler() {
         public void processMessage(BuildMessage buildMessage) {
           final CmdlineRemoteProto.Message.BuilderMessage response;
           if (buildMessage instanceof FileGeneratedEvent) {
-            final Collection<Pair<String, String>> paths = ((FileGeneratedEvent)buildMessage).getPaths();
-            response = !paths.isEmpty() ? CmdlineProtoUtil.createFileGeneratedEvent(paths) : null;
+            sender.sendGeneratedFiles(((FileGeneratedEvent)buildMessage).getPaths());
+            response = null;
           }
           else if (buildMessage instanceof DoneSomethingNotification) {
             doneSomething.set(true);
@@ -124,10 +126,11 @@ final class BuildSession implements Runnable, CanceledStatus {
             if (buildMessage instanceof ProgressMessage) {
               done = ((ProgressMessage)buildMessage).getDone();
             }
-            response = CmdlineProtoUtil.createCompileProgressMessageResponse(buildMessage.getMessageText(), done);
+            sender.sendProgress(buildMessage.getMessageText(), done);
+            response = null;
           }
           if (response != null) {
-            Channels.write(myChannel, CmdlineProtoUtil.toMessage(mySessionId, response));
+            sender.send(response);
           }
         }
       }, this);
@@ -137,6 +140,7 @@ final class BuildSession implements Runnable, CanceledStatus {
       error = e;
     }
     finally {
+      sender.flush();
       finishBuild(error, hasErrors.get(), doneSomething.get());
     }
   }
@@ -287,6 +291,12 @@ final class BuildSession implements Runnable, CanceledStatus {
         }
         for (BuildRootDescriptor descriptor : descriptors) {
           if (!descriptor.isGenerated()) { // ignore generates sources as they are processed at the time of generation
+            if (timestamps.isContentUnchanged(file, descriptor.getTarget(), FileSystemUtil.lastModified(file))) {
+              if (Utils.IS_TEST_MODE) {
+                LOG.info("Skipping dirty path with unchanged content: " + file.getPath());
+              }
+              continue;
+            }
             pd.fsState.markDirty(null, file, descriptor, timestamps, saveEventStamp);
           }
         }
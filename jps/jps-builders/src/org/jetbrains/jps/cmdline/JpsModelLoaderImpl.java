@@ -2,10 +2,12 @@ package org.jetbrains.jps.cmdline;
 
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.util.ParameterizedRunnable;
+import org.jetbrains.jps.incremental.Utils;
 import org.jetbrains.jps.model.JpsElementFactory;
 import org.jetbrains.jps.model.JpsModel;
 import org.jetbrains.jps.model.serialization.JpsGlobalLoader;
 import org.jetbrains.jps.model.serialization.JpsProjectLoader;
+import org.jetbrains.jps.model.serialization.JpsXmlFileCache;
 
 import java.io.File;
 import java.io.IOException;
@@ -16,6 +18,7 @@ import java.util.Map;
  */
 public class JpsModelLoaderImpl implements JpsModelLoader {
   private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.cmdline.JpsModelLoaderImpl");
+  private static final String PROJECT_FILES_CACHE = "project_files.dat";
   private final String myProjectPath;
   private final String myGlobalOptionsPath;
   private final Map<String, String> myPathVars;
@@ -38,7 +41,12 @@ public class JpsModelLoaderImpl implements JpsModelLoader {
         if (myGlobalOptionsPath != null) {
           JpsGlobalLoader.loadGlobalSettings(model.getGlobal(), myPathVars, myGlobalOptionsPath);
         }
-        JpsProjectLoader.loadProject(model.getProject(), myPathVars, myProjectPath);
+        final File dataStorageRoot = Utils.getDataStorageRoot(myProjectPath);
+        final JpsXmlFileCache cache = dataStorageRoot != null ? new JpsXmlFileCache(new File(dataStorageRoot, PROJECT_FILES_CACHE)) : null;
+        JpsProjectLoader.loadProject(model.getProject(), myPathVars, myProjectPath, cache);
+        if (cache != null) {
+          cache.save();
+        }
         if (myModelInitializer != null) {
           myModelInitializer.run(model);
         }
@@ -162,7 +162,7 @@ public class FSOperations {
     else { // is file
       boolean markDirty = forceDirty;
       if (!markDirty) {
-        markDirty = tsStorage.getStamp(file, rd.getTarget()) != FileSystemUtil.lastModified(file);
+        markDirty = !tsStorage.isUpToDate(file, rd.getTarget(), FileSystemUtil.lastModified(file));
       }
       if (markDirty) {
         // if it is full project rebuild, all storages are already completely cleared;
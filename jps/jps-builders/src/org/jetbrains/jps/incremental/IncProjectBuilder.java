@@ -254,6 +254,12 @@ public class IncProjectBuilder {
       context.processMessage(new ProgressMessage("Checking sources"));
       buildChunks(context);
 
+      final int unchangedCount = myProjectDescriptor.timestamps.getStorage().getAndResetUnchangedContentCount();
+      if (unchangedCount > 0) {
+        LOG.info(unchangedCount + " files with changed timestamp and unchanged content were not recompiled");
+        context.processMessage(new CompilerMessage(BUILD_NAME, BuildMessage.Kind.INFO, "Skipped " + unchangedCount + " files whose content wasn't changed"));
+      }
+
       context.processMessage(new ProgressMessage("Running 'after' tasks"));
       runTasks(context, myBuilderRegistry.getAfterTasks());
 
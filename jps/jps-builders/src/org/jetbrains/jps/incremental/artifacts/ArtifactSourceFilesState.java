@@ -105,7 +105,7 @@ public class ArtifactSourceFilesState extends CompositeStorageOwner {
       if (currentPaths != null) {
         currentPaths.add(file);
       }
-      if (forceMarkDirty || myProjectDescriptor.timestamps.getStorage().getStamp(file, myTarget) != FileSystemUtil.lastModified(file)) {
+      if (forceMarkDirty || !myProjectDescriptor.timestamps.getStorage().isUpToDate(file, myTarget, FileSystemUtil.lastModified(file))) {
         myProjectDescriptor.fsState.markDirty(null, file, descriptor, myProjectDescriptor.timestamps.getStorage(), false);
       }
     }
@@ -1,9 +1,11 @@
 package org.jetbrains.jps.incremental.artifacts;
 
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.containers.MultiMap;
+import gnu.trove.THashMap;
 import gnu.trove.THashSet;
 import gnu.trove.TIntObjectHashMap;
 import org.jetbrains.annotations.NotNull;
@@ -34,6 +36,7 @@ import java.util.*;
  * @author nik
  */
 public class IncArtifactBuilder extends TargetBuilder<ArtifactRootDescriptor, ArtifactBuildTarget> {
+  private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.incremental.artifacts.IncArtifactBuilder");
   public static final String BUILDER_NAME = "Artifacts builder";
 
   public IncArtifactBuilder() {
@@ -122,35 +125,23 @@ public class IncArtifactBuilder extends TargetBuilder<ArtifactRootDescriptor, Ar
         outSrcMapping.remove(outputPath);
       }
 
-      deleteOutdatedFiles(filesToDelete, context, srcOutMapping, outSrcMapping);
-      context.checkCanceled();
-
-      final Set<JarInfo> changedJars = new THashSet<JarInfo>();
+      final Set<String> jarPaths = new THashSet<String>(FileUtil.PATH_HASHING_STRATEGY);
       for (ArtifactRootDescriptor descriptor : pd.getBuildRootIndex().getTargetRoots(target, context)) {
+        if (descriptor.getDestinationInfo() instanceof JarDestinationInfo) {
+          jarPaths.add(descriptor.getDestinationInfo().getOutputFilePath());
+        }
+      }
+      final Map<String, File> previousJars = new THashMap<String, File>(FileUtil.PATH_HASHING_STRATEGY);
+      try {
+        deleteOutdatedFiles(filesToDelete, context, srcOutMapping, outSrcMapping, jarPaths, previousJars);
         context.checkCanceled();
-        final Set<String> sourcePaths = filesToProcess.get(descriptor.getRootIndex());
-        if (sourcePaths == null) continue;
-
-        for (String sourcePath : sourcePaths) {
-          DestinationInfo destination = descriptor.getDestinationInfo();
-          if (destination instanceof ExplodedDestinationInfo) {
-            descriptor.copyFromRoot(sourcePath, descriptor.getRootIndex(), destination.getOutputPath(), context,
-                                    outputConsumer, outSrcMapping);
-          }
-          else {
-            List<ArtifactOutputToSourceMapping.SourcePathAndRootIndex> sources = outSrcMapping.getState(destination.getOutputFilePath());
-            if (sources == null || sources.size() > 0 && sources.get(0).getRootIndex() == descriptor.getRootIndex()) {
-              outSrcMapping.update(destination.getOutputFilePath(),
-                                   Collections.<ArtifactOutputToSourceMapping.SourcePathAndRootIndex>emptyList());
-              changedJars.add(((JarDestinationInfo)destination).getJarInfo());
-            }
-          }
+        buildChangedFiles(target, context, outputConsumer, pd, outSrcMapping, filesToProcess, previousJars);
+      }
+      finally {
+        for (File file : previousJars.values()) {
+          FileUtil.delete(file);
         }
       }
-      context.checkCanceled();
-
-      JarsBuilder builder = new JarsBuilder(changedJars, context, outputConsumer, outSrcMapping);
-      builder.buildJars();
       runArtifactTasks(context, artifact, ArtifactBuildTaskProvider.ArtifactBuildPhase.POST_PROCESSING);
     }
     catch (IOException e) {
@@ -158,6 +149,42 @@ public class IncArtifactBuilder extends TargetBuilder<ArtifactRootDescriptor, Ar
     }
   }
 
+  private static void buildChangedFiles(ArtifactBuildTarget target,
+                                        CompileContext context,
+                                        BuildOutputConsumer outputConsumer,
+                                        ProjectDescriptor pd,
+                                        ArtifactOutputToSourceMapping outSrcMapping,
+                                        TIntObjectHashMap<Set<String>> filesToProcess,
+                                        Map<String, File> previousJars) throws IOException, ProjectBuildException {
+
+    final Set<JarInfo> changedJars = new THashSet<JarInfo>();
+    for (ArtifactRootDescriptor descriptor : pd.getBuildRootIndex().getTargetRoots(target, context)) {
+      context.checkCanceled();
+      final Set<String> sourcePaths = filesToProcess.get(descriptor.getRootIndex());
+      if (sourcePaths == null) continue;
+
+      for (String sourcePath : sourcePaths) {
+        DestinationInfo destination = descriptor.getDestinationInfo();
+        if (destination instanceof ExplodedDestinationInfo) {
+          descriptor.copyFromRoot(sourcePath, descriptor.getRootIndex(), destination.getOutputPath(), context,
+                                  outputConsumer, outSrcMapping);
+        }
+        else {
+          List<ArtifactOutputToSourceMapping.SourcePathAndRootIndex> sources = outSrcMapping.getState(destination.getOutputFilePath());
+          if (sources == null || sources.size() > 0 && sources.get(0).getRootIndex() == descriptor.getRootIndex()) {
+            outSrcMapping.update(destination.getOutputFilePath(),
+                                 Collections.<ArtifactOutputToSourceMapping.SourcePathAndRootIndex>emptyList());
+            changedJars.add(((JarDestinationInfo)destination).getJarInfo());
+          }
+        }
+      }
+    }
+    context.checkCanceled();
+
+    JarsBuilder builder = new JarsBuilder(changedJars, context, outputConsumer, outSrcMapping, previousJars);
+    builder.buildJars();
+  }
+
   private static void runArtifactTasks(CompileContext context, JpsArtifact artifact, ArtifactBuildTaskProvider.ArtifactBuildPhase phase)
     throws ProjectBuildException {
     for (ArtifactBuildTaskProvider provider : JpsServiceManager.getInstance().getExtensions(ArtifactBuildTaskProvider.class)) {
@@ -183,9 +210,13 @@ public class IncArtifactBuilder extends TargetBuilder<ArtifactRootDescriptor, Ar
     paths.add(path);
   }
 
+  /**
+   * @param jarPaths outdated jars from this set aren't deleted but moved to {@code previousJars}, so their unchanged entries may be reused
+   */
   private static void deleteOutdatedFiles(MultiMap<String, String> filesToDelete, CompileContext context,
                                           SourceToOutputMapping srcOutMapping,
-                                          ArtifactOutputToSourceMapping outSrcMapping) throws IOException {
+                                          ArtifactOutputToSourceMapping outSrcMapping,
+                                          Set<String> jarPaths, Map<String, File> previousJars) throws IOException {
     if (filesToDelete.isEmpty()) return;
 
     context.processMessage(new ProgressMessage("Deleting outdated files..."));
@@ -200,7 +231,8 @@ public class IncArtifactBuilder extends TargetBuilder<ArtifactRootDescriptor, Ar
 
       boolean deleted = deletedPaths.contains(filePath);
       if (!deleted) {
-        deleted = FileUtil.delete(new File(FileUtil.toSystemDependentName(filePath)));
+        final File file = new File(FileUtil.toSystemDependentName(filePath));
+        deleted = jarPaths.contains(filePath) ? moveToPreviousJars(file, filePath, previousJars) : FileUtil.delete(file);
       }
 
       if (deleted) {
@@ -225,6 +257,22 @@ public class IncArtifactBuilder extends TargetBuilder<ArtifactRootDescriptor, Ar
     }
   }
 
+  private static boolean moveToPreviousJars(File jarFile, String jarPath, Map<String, File> previousJars) {
+    if (!jarFile.isFile()) {
+      return FileUtil.delete(jarFile);
+    }
+    try {
+      final File previousJar = FileUtil.createTempFile("previousJar", "tmp");
+      FileUtil.rename(jarFile, previousJar);
+      previousJars.put(jarPath, previousJar);
+      return true;
+    }
+    catch (IOException e) {
+      LOG.info("Cannot keep previous version of " + jarPath + ": " + e.getMessage());
+      return FileUtil.delete(jarFile);
+    }
+  }
+
   @Override
   public void buildStarted(final CompileContext context) {
     //todo[nik] move to common place
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.incremental.artifacts.impl;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.BufferExposingByteArrayOutputStream;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.io.zip.JBZipEntry;
+import com.intellij.util.io.zip.JBZipFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes entries of a jar file. If the previous version of the jar is available, compressed data of entries whose content wasn't changed
+ * is copied from it as is, so only changed entries are deflated.
+ */
+class IncrementalJarWriter {
+  private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.incremental.artifacts.impl.IncrementalJarWriter");
+  private final JBZipFile myJar;
+  @Nullable private final JBZipFile myPreviousJar;
+  private final CRC32 myCrc = new CRC32();
+  private final byte[] myBuffer = new byte[8192];
+  private int myCopiedEntriesCount;
+
+  IncrementalJarWriter(@NotNull File jarFile, @Nullable File previousJarFile) throws IOException {
+    myJar = new JBZipFile(jarFile);
+    myPreviousJar = previousJarFile != null && previousJarFile.isFile() ? openPreviousJar(previousJarFile) : null;
+  }
+
+  @Nullable
+  private static JBZipFile openPreviousJar(File file) {
+    try {
+      return new JBZipFile(file);
+    }
+    catch (IOException e) {
+      LOG.info("Cannot read previous version of jar " + file.getAbsolutePath() + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  public void writeManifest(@NotNull Manifest manifest) throws IOException {
+    BufferExposingByteArrayOutputStream output = new BufferExposingByteArrayOutputStream();
+    manifest.write(output);
+    JBZipEntry entry = myJar.getOrCreateEntry(JarFile.MANIFEST_NAME);
+    entry.setMethod(ZipEntry.DEFLATED);
+    entry.setData(output.toByteArray(), System.currentTimeMillis());
+  }
+
+  public void writeDirectory(@NotNull String relativePath) throws IOException {
+    JBZipEntry entry = myJar.getOrCreateEntry(relativePath);
+    entry.setMethod(ZipEntry.STORED);
+    entry.setData(ArrayUtil.EMPTY_BYTE_ARRAY, System.currentTimeMillis());
+  }
+
+  public void writeFile(@NotNull String relativePath, @NotNull File file) throws IOException {
+    final long timestamp = file.lastModified();
+    JBZipEntry previous = myPreviousJar != null ? myPreviousJar.getEntry(relativePath) : null;
+    if (previous != null && previous.getSize() == file.length() && previous.getCrc() == computeCrc(file)) {
+      copyEntry(previous, timestamp);
+      return;
+    }
+    InputStream input = new BufferedInputStream(new FileInputStream(file));
+    try {
+      writeEntry(relativePath, input, timestamp, file.length() == 0);
+    }
+    finally {
+      input.close();
+    }
+  }
+
+  /**
+   * Entries extracted from other jars are written as is: their content can't be compared with the previous version of the jar
+   * without loading it in memory.
+   */
+  public void writeEntry(@NotNull String relativePath, @NotNull InputStream content, long timestamp) throws IOException {
+    writeEntry(relativePath, content, timestamp, false);
+  }
+
+  private void writeEntry(String relativePath, InputStream content, long timestamp, boolean empty) throws IOException {
+    JBZipEntry entry = myJar.getOrCreateEntry(relativePath);
+    entry.setMethod(empty ? ZipEntry.STORED : ZipEntry.DEFLATED);
+    entry.setDataFromStream(content, timestamp);
+  }
+
+  private void copyEntry(JBZipEntry previous, long timestamp) throws IOException {
+    myJar.getOrCreateEntry(previous.getName()).setRawDataFrom(previous, timestamp);
+    myCopiedEntriesCount++;
+  }
+
+  private long computeCrc(File file) throws IOException {
+    myCrc.reset();
+    InputStream input = new FileInputStream(file);
+    try {
+      int count;
+      while ((count = input.read(myBuffer)) > 0) {
+        myCrc.update(myBuffer, 0, count);
+      }
+    }
+    finally {
+      input.close();
+    }
+    return myCrc.getValue();
+  }
+
+  public int getCopiedEntriesCount() {
+    return myCopiedEntriesCount;
+  }
+
+  public void close() throws IOException {
+    try {
+      myJar.close();
+    }
+    finally {
+      if (myPreviousJar != null) {
+        myPreviousJar.close();
+      }
+    }
+  }
+}
@@ -23,10 +23,10 @@ import com.intellij.openapi.util.io.FileSystemUtil;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.ArrayUtil;
+import com.intellij.util.concurrency.BoundedTaskExecutor;
 import com.intellij.util.graph.CachingSemiGraph;
 import com.intellij.util.graph.DFSTBuilder;
 import com.intellij.util.graph.GraphGenerator;
-import com.intellij.util.io.ZipUtil;
 import gnu.trove.THashSet;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
@@ -41,14 +41,13 @@ import org.jetbrains.jps.incremental.artifacts.instructions.*;
 import org.jetbrains.jps.incremental.messages.BuildMessage;
 import org.jetbrains.jps.incremental.messages.CompilerMessage;
 import org.jetbrains.jps.incremental.messages.ProgressMessage;
+import org.jetbrains.jps.service.SharedThreadPool;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
 import java.util.jar.JarFile;
-import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 /**
  * @author nik
@@ -60,11 +59,24 @@ public class JarsBuilder {
   private Map<JarInfo, File> myBuiltJars;
   private final BuildOutputConsumer myOutputConsumer;
   private final ArtifactOutputToSourceMapping myOutSrcMapping;
+  private final Map<String, File> myPreviousJars;
+  private final BoundedTaskExecutor myJarsExecutor = new BoundedTaskExecutor(SharedThreadPool.getInstance(), Math.max(1, Runtime.getRuntime().availableProcessors()));
 
   public JarsBuilder(Set<JarInfo> jarsToBuild, CompileContext context, BuildOutputConsumer outputConsumer,
                      ArtifactOutputToSourceMapping outSrcMapping) {
+    this(jarsToBuild, context, outputConsumer, outSrcMapping, Collections.<String, File>emptyMap());
+  }
+
+  /**
+   * @param previousJars output path to previous version of the jar for jars which were moved away before the build; for other jars the
+   *                     existing output file is used as the previous version. Unchanged entries are copied from previous versions without
+   *                     recompressing.
+   */
+  public JarsBuilder(Set<JarInfo> jarsToBuild, CompileContext context, BuildOutputConsumer outputConsumer,
+                     ArtifactOutputToSourceMapping outSrcMapping, Map<String, File> previousJars) {
     myOutputConsumer = outputConsumer;
     myOutSrcMapping = outSrcMapping;
+    myPreviousJars = previousJars;
     DependentJarsEvaluator evaluator = new DependentJarsEvaluator();
     for (JarInfo jarInfo : jarsToBuild) {
       evaluator.addJarWithDependencies(jarInfo);
@@ -81,11 +93,11 @@ public class JarsBuilder {
       return false;
     }
 
-    myBuiltJars = new HashMap<JarInfo, File>();
+    myBuiltJars = Collections.synchronizedMap(new HashMap<JarInfo, File>());
     try {
-      for (JarInfo jar : sortedJars) {
+      for (List<JarInfo> jars : groupIndependentJars(sortedJars)) {
         myContext.checkCanceled();
-        buildJar(jar);
+        buildJars(jars);
       }
 
       myContext.processMessage(new ProgressMessage("Copying archives..."));
@@ -99,6 +111,79 @@ public class JarsBuilder {
     return true;
   }
 
+  /**
+   * Splits sorted jars into groups which can be built in parallel: all jars nested into a jar belong to preceding groups.
+   */
+  private static List<List<JarInfo>> groupIndependentJars(JarInfo[] sortedJars) {
+    final Map<JarInfo, Integer> levels = new HashMap<JarInfo, Integer>();
+    final List<List<JarInfo>> groups = new ArrayList<List<JarInfo>>();
+    for (JarInfo jar : sortedJars) {
+      int level = 0;
+      for (Pair<String, Object> pair : jar.getContent()) {
+        if (pair.getSecond() instanceof JarInfo) {
+          final Integer nestedLevel = levels.get((JarInfo)pair.getSecond());
+          if (nestedLevel != null) {
+            level = Math.max(level, nestedLevel + 1);
+          }
+        }
+      }
+      levels.put(jar, level);
+      while (groups.size() <= level) {
+        groups.add(new ArrayList<JarInfo>());
+      }
+      groups.get(level).add(jar);
+    }
+    return groups;
+  }
+
+  private void buildJars(List<JarInfo> jars) throws IOException, ProjectBuildException {
+    if (jars.size() == 1) {
+      buildJar(jars.get(0));
+      return;
+    }
+
+    final CountDownLatch latch = new CountDownLatch(jars.size());
+    final Ref<Throwable> exRef = new Ref<Throwable>(null);
+    for (final JarInfo jar : jars) {
+      myJarsExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            buildJar(jar);
+          }
+          catch (Throwable e) {
+            synchronized (exRef) {
+              if (exRef.isNull()) {
+                exRef.set(e);
+              }
+            }
+          }
+          finally {
+            latch.countDown();
+          }
+        }
+      });
+    }
+
+    try {
+      latch.await();
+    }
+    catch (InterruptedException e) {
+      throw new ProjectBuildException(e);
+    }
+
+    final Throwable exception = exRef.get();
+    if (exception instanceof IOException) {
+      throw (IOException)exception;
+    }
+    if (exception instanceof RuntimeException) {
+      throw (RuntimeException)exception;
+    }
+    if (exception != null) {
+      throw new ProjectBuildException(exception);
+    }
+  }
+
   private void deleteTemporaryJars() {
     for (File file : myBuiltJars.values()) {
       FileUtil.delete(file);
@@ -149,11 +234,12 @@ public class JarsBuilder {
     final String targetJarPath = jar.getDestination().getOutputFilePath();
     List<String> packedFilePaths = new ArrayList<String>();
     Manifest manifest = loadManifest(jar, packedFilePaths);
-    final JarOutputStream jarOutputStream = createJarOutputStream(jarFile, manifest);
+    final IncrementalJarWriter jarWriter = new IncrementalJarWriter(jarFile, getPreviousJarFile(jar));
 
     try {
       final THashSet<String> writtenPaths = new THashSet<String>();
       if (manifest != null) {
+        jarWriter.writeManifest(manifest);
         writtenPaths.add(JarFile.MANIFEST_NAME);
       }
 
@@ -163,7 +249,7 @@ public class JarsBuilder {
           final ArtifactRootDescriptor descriptor = (ArtifactRootDescriptor)pair.getSecond();
           final int rootIndex = descriptor.getRootIndex();
           if (descriptor instanceof FileBasedArtifactRootDescriptor) {
-            addFileToJar(jarOutputStream, jarFile, descriptor.getRootFile(), descriptor.getFilter(), relativePath, targetJarPath, writtenPaths,
+            addFileToJar(jarWriter, jarFile, descriptor.getRootFile(), descriptor.getFilter(), relativePath, targetJarPath, writtenPaths,
                          packedFilePaths, rootIndex);
           }
           else {
@@ -171,14 +257,14 @@ public class JarsBuilder {
             packedFilePaths.add(filePath);
             myOutSrcMapping.appendData(targetJarPath, Collections
               .singletonList(new ArtifactOutputToSourceMapping.SourcePathAndRootIndex(filePath, rootIndex)));
-            extractFileAndAddToJar(jarOutputStream, (JarBasedArtifactRootDescriptor)descriptor, relativePath, writtenPaths);
+            extractFileAndAddToJar(jarWriter, (JarBasedArtifactRootDescriptor)descriptor, relativePath, writtenPaths);
           }
         }
         else {
           JarInfo nestedJar = (JarInfo)pair.getSecond();
           File nestedJarFile = myBuiltJars.get(nestedJar);
           if (nestedJarFile != null) {
-            addFileToJar(jarOutputStream, jarFile, nestedJarFile, SourceFileFilter.ALL, relativePath, targetJarPath, writtenPaths,
+            addFileToJar(jarWriter, jarFile, nestedJarFile, SourceFileFilter.ALL, relativePath, targetJarPath, writtenPaths,
                          packedFilePaths, -1);
           }
           else {
@@ -187,25 +273,33 @@ public class JarsBuilder {
         }
       }
 
-      final ProjectBuilderLogger logger = myContext.getLoggingManager().getProjectBuilderLogger();
-      if (logger.isEnabled()) {
-
-        logger.logCompiledPaths(packedFilePaths, IncArtifactBuilder.BUILDER_NAME, "Packing files:");
+      registerPackedFiles(targetJarPath, packedFilePaths);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(jarWriter.getCopiedEntriesCount() + " unchanged entries copied to " + jar.getPresentableDestination());
       }
-      myOutputConsumer.registerOutputFile(targetJarPath, packedFilePaths);
-
     }
     finally {
-      jarOutputStream.close();
+      jarWriter.close();
     }
   }
 
-  private static JarOutputStream createJarOutputStream(File jarFile, @Nullable Manifest manifest) throws IOException {
-    final BufferedOutputStream outputStream = new BufferedOutputStream(new FileOutputStream(jarFile));
-    if (manifest != null) {
-      return new JarOutputStream(outputStream, manifest);
+  private synchronized void registerPackedFiles(String targetJarPath, List<String> packedFilePaths) throws IOException {
+    final ProjectBuilderLogger logger = myContext.getLoggingManager().getProjectBuilderLogger();
+    if (logger.isEnabled()) {
+      logger.logCompiledPaths(packedFilePaths, IncArtifactBuilder.BUILDER_NAME, "Packing files:");
     }
-    return new JarOutputStream(outputStream);
+    myOutputConsumer.registerOutputFile(targetJarPath, packedFilePaths);
+  }
+
+  @Nullable
+  private File getPreviousJarFile(JarInfo jar) {
+    final DestinationInfo destination = jar.getDestination();
+    if (!(destination instanceof ExplodedDestinationInfo)) {
+      return null;
+    }
+    final String outputPath = destination.getOutputPath();
+    final File previousJar = myPreviousJars.get(outputPath);
+    return previousJar != null ? previousJar : new File(FileUtil.toSystemDependentName(outputPath));
   }
 
   @Nullable
@@ -264,43 +358,39 @@ public class JarsBuilder {
     }
   }
 
-  private static void extractFileAndAddToJar(final JarOutputStream jarOutputStream, final JarBasedArtifactRootDescriptor root,
+  private static void extractFileAndAddToJar(final IncrementalJarWriter jarWriter, final JarBasedArtifactRootDescriptor root,
                                              final String relativeOutputPath, final Set<String> writtenPaths)
     throws IOException {
     final long timestamp = FileSystemUtil.lastModified(root.getRootFile());
     root.processEntries(new JarBasedArtifactRootDescriptor.EntryProcessor() {
       @Override
       public void process(@Nullable InputStream inputStream, @NotNull String relativePath) throws IOException {
-        String pathInJar = addParentDirectories(jarOutputStream, writtenPaths, JpsArtifactPathUtil
+        String pathInJar = addParentDirectories(jarWriter, writtenPaths, JpsArtifactPathUtil
           .appendToPath(relativeOutputPath, relativePath));
 
         if (inputStream == null) {
-          addDirectoryEntry(jarOutputStream, pathInJar + "/", writtenPaths);
+          addDirectoryEntry(jarWriter, pathInJar + "/", writtenPaths);
         }
         else if (writtenPaths.add(pathInJar)) {
-          ZipEntry entry = new ZipEntry(pathInJar);
-          entry.setTime(timestamp);
-          jarOutputStream.putNextEntry(entry);
-          FileUtil.copy(inputStream, jarOutputStream);
-          jarOutputStream.closeEntry();
+          jarWriter.writeEntry(pathInJar, inputStream, timestamp);
         }
       }
     });
 
   }
 
-  private void addFileToJar(final @NotNull JarOutputStream jarOutputStream, final @NotNull File jarFile, @NotNull File file,
+  private void addFileToJar(final @NotNull IncrementalJarWriter jarWriter, final @NotNull File jarFile, @NotNull File file,
                             SourceFileFilter filter, @NotNull String relativePath, String targetJarPath,
                             final @NotNull Set<String> writtenPaths, List<String> packedFilePaths, final int rootIndex) throws IOException {
     if (!file.exists() || FileUtil.isAncestor(file, jarFile, false)) {
       return;
     }
 
-    relativePath = addParentDirectories(jarOutputStream, writtenPaths, relativePath);
-    addFileOrDirRecursively(jarOutputStream, file, filter, relativePath, targetJarPath, writtenPaths, packedFilePaths, rootIndex);
+    relativePath = addParentDirectories(jarWriter, writtenPaths, relativePath);
+    addFileOrDirRecursively(jarWriter, file, filter, relativePath, targetJarPath, writtenPaths, packedFilePaths, rootIndex);
   }
 
-  private void addFileOrDirRecursively(@NotNull ZipOutputStream jarOutputStream,
+  private void addFileOrDirRecursively(@NotNull IncrementalJarWriter jarWriter,
                                        @NotNull File file,
                                        SourceFileFilter filter,
                                        @NotNull String relativePath,
@@ -316,19 +406,22 @@ public class JarsBuilder {
     if (file.isDirectory()) {
       final String directoryPath = relativePath.length() == 0 ? "" : relativePath + "/";
       if (!directoryPath.isEmpty()) {
-        addDirectoryEntry(jarOutputStream, directoryPath, writtenItemRelativePaths);
+        addDirectoryEntry(jarWriter, directoryPath, writtenItemRelativePaths);
       }
       final File[] children = file.listFiles();
       if (children != null) {
         for (File child : children) {
-          addFileOrDirRecursively(jarOutputStream, child, filter, directoryPath + child.getName(), targetJarPath, writtenItemRelativePaths,
+          addFileOrDirRecursively(jarWriter, child, filter, directoryPath + child.getName(), targetJarPath, writtenItemRelativePaths,
                                   packedFilePaths, rootIndex);
         }
       }
       return;
     }
 
-    final boolean added = ZipUtil.addFileToZip(jarOutputStream, file, relativePath, writtenItemRelativePaths, null);
+    final boolean added = writtenItemRelativePaths.add(relativePath);
+    if (added) {
+      jarWriter.writeFile(relativePath, file);
+    }
     if (rootIndex != -1) {
       myOutSrcMapping.appendData(targetJarPath, Collections.singletonList(new ArtifactOutputToSourceMapping.SourcePathAndRootIndex(filePath, rootIndex)));
       if (added) {
@@ -338,7 +431,7 @@ public class JarsBuilder {
   }
 
 
-  private static String addParentDirectories(JarOutputStream jarOutputStream, Set<String> writtenPaths, String relativePath) throws IOException {
+  private static String addParentDirectories(IncrementalJarWriter jarWriter, Set<String> writtenPaths, String relativePath) throws IOException {
     while (StringUtil.startsWithChar(relativePath, '/')) {
       relativePath = relativePath.substring(1);
     }
@@ -346,22 +439,17 @@ public class JarsBuilder {
     while (i != -1) {
       String prefix = relativePath.substring(0, i+1);
       if (prefix.length() > 1) {
-        addDirectoryEntry(jarOutputStream, prefix, writtenPaths);
+        addDirectoryEntry(jarWriter, prefix, writtenPaths);
       }
       i = relativePath.indexOf('/', i + 1);
     }
     return relativePath;
   }
 
-  private static void addDirectoryEntry(final ZipOutputStream output, @NonNls final String relativePath, Set<String> writtenPaths) throws IOException {
+  private static void addDirectoryEntry(final IncrementalJarWriter output, @NonNls final String relativePath, Set<String> writtenPaths) throws IOException {
     if (!writtenPaths.add(relativePath)) return;
 
-    ZipEntry e = new ZipEntry(relativePath);
-    e.setMethod(ZipEntry.STORED);
-    e.setSize(0);
-    e.setCrc(0);
-    output.putNextEntry(e);
-    output.closeEntry();
+    output.writeDirectory(relativePath);
   }
 
   private class JarsGraph implements GraphGenerator.SemiGraph<JarInfo> {
@@ -1,21 +1,28 @@
 package org.jetbrains.jps.incremental.storage;
 
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.util.ArrayUtil;
 import com.intellij.util.io.DataExternalizer;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.api.GlobalOptions;
 import org.jetbrains.jps.builders.BuildTarget;
 
-import java.io.DataInput;
-import java.io.DataOutput;
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
 
 /**
  * @author Eugene Zhuravlev
  *         Date: 10/7/11
  */
 public class TimestampStorage extends AbstractStateStorage<File, TimestampStorage.TimestampPerTarget[]> implements Timestamps {
+  private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.incremental.storage.TimestampStorage");
+  private static final long NO_HASH = 0L;
   private final BuildTargetsState myTargetsState;
+  private final boolean myUseContentHashes = Boolean.parseBoolean(System.getProperty(GlobalOptions.USE_CONTENT_HASHES_OPTION, "false"));
+  private final AtomicInteger myUnchangedContentCount = new AtomicInteger();
 
   public TimestampStorage(File storePath, BuildTargetsState targetsState) throws IOException {
     super(storePath, new FileKeyDescriptor(), new StateExternalizer());
@@ -34,27 +41,89 @@ public class TimestampStorage extends AbstractStateStorage<File, TimestampStorag
 
   @Override
   public long getStamp(File file, BuildTarget<?> target) throws IOException {
+    final TimestampPerTarget stamp = findStamp(file, target);
+    return stamp != null ? stamp.timestamp : -1L;
+  }
+
+  @Override
+  public boolean isUpToDate(File file, BuildTarget<?> target, long currentStamp) throws IOException {
+    final TimestampPerTarget stamp = findStamp(file, target);
+    return stamp != null && (stamp.timestamp == currentStamp || checkContent(file, target, stamp, currentStamp));
+  }
+
+  @Override
+  public boolean isContentUnchanged(File file, BuildTarget<?> target, long currentStamp) throws IOException {
+    final TimestampPerTarget stamp = findStamp(file, target);
+    return stamp != null && checkContent(file, target, stamp, currentStamp);
+  }
+
+  private boolean checkContent(File file, BuildTarget<?> target, TimestampPerTarget stamp, long currentStamp) throws IOException {
+    if (!myUseContentHashes || stamp.hash == NO_HASH || stamp.hash != computeHash(file)) {
+      return false;
+    }
+    // remember the new timestamp so the next check of this file doesn't need to read it
+    final int targetId = myTargetsState.getBuildTargetId(target);
+    update(file, updateTimestamp(getState(file), new TimestampPerTarget(targetId, currentStamp, stamp.hash)));
+    myUnchangedContentCount.incrementAndGet();
+    return true;
+  }
+
+  @Nullable
+  private TimestampPerTarget findStamp(File file, BuildTarget<?> target) throws IOException {
     final TimestampPerTarget[] state = getState(file);
     if (state != null) {
       int targetId = myTargetsState.getBuildTargetId(target);
       for (TimestampPerTarget timestampPerTarget : state) {
         if (timestampPerTarget.targetId == targetId) {
-          return timestampPerTarget.timestamp;
+          return timestampPerTarget;
         }
       }
     }
-    return -1L;
+    return null;
+  }
+
+  /**
+   * @return number of files whose timestamp was changed while their content was not, since the last call of this method
+   */
+  public int getAndResetUnchangedContentCount() {
+    return myUnchangedContentCount.getAndSet(0);
   }
 
   @Override
   public void saveStamp(File file, BuildTarget<?> buildTarget, long timestamp) throws IOException {
     int targetId = myTargetsState.getBuildTargetId(buildTarget);
-    update(file, updateTimestamp(getState(file), targetId, timestamp));
+    final long hash = myUseContentHashes ? computeHash(file) : NO_HASH;
+    update(file, updateTimestamp(getState(file), new TimestampPerTarget(targetId, timestamp, hash)));
+  }
+
+  private static long computeHash(File file) {
+    final CRC32 crc = new CRC32();
+    final Adler32 adler = new Adler32();
+    try {
+      final InputStream input = new FileInputStream(file);
+      try {
+        final byte[] buffer = new byte[8192];
+        int count;
+        while ((count = input.read(buffer)) > 0) {
+          crc.update(buffer, 0, count);
+          adler.update(buffer, 0, count);
+        }
+      }
+      finally {
+        input.close();
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Cannot compute content hash of " + file.getPath() + ": " + e.getMessage());
+      return NO_HASH;
+    }
+    final long hash = (crc.getValue() << 32) | adler.getValue();
+    return hash != NO_HASH ? hash : 1L;
   }
 
   @NotNull
-  private static TimestampPerTarget[] updateTimestamp(TimestampPerTarget[] oldState, final int targetId, long timestamp) {
-    final TimestampPerTarget newItem = new TimestampPerTarget(targetId, timestamp);
+  private static TimestampPerTarget[] updateTimestamp(TimestampPerTarget[] oldState, final TimestampPerTarget newItem) {
+    final int targetId = newItem.targetId;
     if (oldState == null) {
       return new TimestampPerTarget[]{newItem};
     }
@@ -90,10 +159,16 @@ public class TimestampStorage extends AbstractStateStorage<File, TimestampStorag
   public static class TimestampPerTarget {
     public final int targetId;
     public final long timestamp;
+    public final long hash;
 
     public TimestampPerTarget(int targetId, long timestamp) {
+      this(targetId, timestamp, NO_HASH);
+    }
+
+    public TimestampPerTarget(int targetId, long timestamp, long hash) {
       this.targetId = targetId;
       this.timestamp = timestamp;
+      this.hash = hash;
     }
   }
 
@@ -103,6 +178,7 @@ public class TimestampStorage extends AbstractStateStorage<File, TimestampStorag
       for (TimestampPerTarget target : value) {
         out.writeInt(target.targetId);
         out.writeLong(target.timestamp);
+        out.writeLong(target.hash);
       }
     }
 
@@ -112,7 +188,8 @@ public class TimestampStorage extends AbstractStateStorage<File, TimestampStorag
       for (int i = 0; i < size; i++) {
         int id = in.readInt();
         long timestamp = in.readLong();
-        targets[i] = new TimestampPerTarget(id, timestamp);
+        long hash = in.readLong();
+        targets[i] = new TimestampPerTarget(id, timestamp, hash);
       }
       return targets;
     }
@@ -19,4 +19,16 @@ public interface Timestamps {
   void clean() throws IOException;
 
   long getStamp(File file, BuildTarget<?> target) throws IOException;
+
+  /**
+   * @return true if the saved stamp of the file is equal to {@code currentStamp} or, if content hashes are enabled, the file content
+   * wasn't changed since the stamp was saved
+   */
+  boolean isUpToDate(File file, BuildTarget<?> target, long currentStamp) throws IOException;
+
+  /**
+   * @return true if content hashes are enabled and the file content wasn't changed since the stamp was saved; in that case the saved stamp
+   * is replaced by {@code currentStamp}
+   */
+  boolean isContentUnchanged(File file, BuildTarget<?> target, long currentStamp) throws IOException;
 }
@@ -0,0 +1,150 @@
+package org.jetbrains.jps.javac;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.incremental.Utils;
+
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.tools.JavaFileObject;
+import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * A class file listed by {@link JavacFileManager} on the classpath: either an entry of a cached archive or a file in a directory.
+ * Archive entries have opaque 'jar:' URIs, which {@link javax.tools.SimpleJavaFileObject} doesn't accept.
+ */
+final class ClasspathFileObject implements JavaFileObject {
+  @NotNull private final URI myUri;
+  @NotNull private final String myBinaryName;
+  @NotNull private final File myFile;
+  @Nullable private final LibraryCache myCache;
+  @Nullable private final LibraryCache.Archive myArchive;
+  @Nullable private final String myEntryName;
+
+  ClasspathFileObject(@NotNull LibraryCache cache, @NotNull LibraryCache.Archive archive, @NotNull String entryName) {
+    myUri = createEntryUri(archive.getFile(), entryName);
+    myBinaryName = toBinaryName(entryName);
+    myFile = archive.getFile();
+    myCache = cache;
+    myArchive = archive;
+    myEntryName = entryName;
+  }
+
+  ClasspathFileObject(@NotNull File file, @NotNull String packageName) {
+    myUri = Utils.toURI(file.getPath());
+    final String className = toBinaryName(file.getName());
+    myBinaryName = packageName.isEmpty() ? className : packageName + "." + className;
+    myFile = file;
+    myCache = null;
+    myArchive = null;
+    myEntryName = null;
+  }
+
+  @NotNull
+  String getBinaryName() {
+    return myBinaryName;
+  }
+
+  @Override
+  public URI toUri() {
+    return myUri;
+  }
+
+  @Override
+  public Kind getKind() {
+    return Kind.CLASS;
+  }
+
+  @Override
+  public String getName() {
+    return myEntryName != null ? myFile.getPath() + "(" + myEntryName + ")" : myFile.getPath();
+  }
+
+  @Override
+  public boolean isNameCompatible(String simpleName, Kind kind) {
+    if (kind != getKind()) return false;
+    final int dot = myBinaryName.lastIndexOf('.');
+    return myBinaryName.substring(dot + 1).equals(simpleName);
+  }
+
+  @Override
+  public InputStream openInputStream() throws IOException {
+    if (myCache != null && myArchive != null && myEntryName != null) {
+      return new ByteArrayInputStream(myCache.getContent(myArchive, myEntryName));
+    }
+    return new FileInputStream(myFile);
+  }
+
+  @Override
+  public long getLastModified() {
+    return myArchive != null ? myArchive.getTimestamp() : myFile.lastModified();
+  }
+
+  @Override
+  public OutputStream openOutputStream() throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Reader openReader(boolean ignoreEncodingErrors) throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public CharSequence getCharContent(boolean ignoreEncodingErrors) throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Writer openWriter() throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean delete() {
+    return false;
+  }
+
+  @Override
+  public NestingKind getNestingKind() {
+    return null;
+  }
+
+  @Override
+  public Modifier getAccessLevel() {
+    return null;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof ClasspathFileObject)) return false;
+    final ClasspathFileObject that = (ClasspathFileObject)o;
+    return myFile.equals(that.myFile) && (myEntryName == null ? that.myEntryName == null : myEntryName.equals(that.myEntryName));
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * myFile.hashCode() + (myEntryName != null ? myEntryName.hashCode() : 0);
+  }
+
+  @Override
+  public String toString() {
+    return getName();
+  }
+
+  private static String toBinaryName(String path) {
+    return path.substring(0, path.length() - Kind.CLASS.extension.length()).replace('/', '.');
+  }
+
+  private static URI createEntryUri(File archive, String entryName) {
+    try {
+      return new URI("jar", "file:" + archive.toURI().getPath() + "!/" + entryName, null);
+    }
+    catch (URISyntaxException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+}
@@ -1,230 +1,314 @@
-package org.jetbrains.jps.javac;
-
-import com.intellij.openapi.util.io.FileUtilRt;
-import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
-import org.jetbrains.jps.incremental.Utils;
-
-import javax.tools.*;
-import java.io.File;
-import java.io.IOException;
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Set;
-
-/**
- * @author Eugene Zhuravlev
- *         Date: 9/24/11
- */
-class JavacFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> implements StandardJavaFileManager{
-
-  private final Context myContext;
-  private Map<File, Set<File>> myOutputsMap = Collections.emptyMap();
-
-  interface Context {
-    boolean isCanceled();
-
-    StandardJavaFileManager getStandardFileManager();
-
-    void consumeOutputFile(@NotNull OutputFileObject obj);
-
-    void reportMessage(final Diagnostic.Kind kind, String message);
-  }
-
-  public JavacFileManager(Context context) {
-    super(context.getStandardFileManager());
-    myContext = context;
-  }
-
-  public void setOutputDirectories(final Map<File, Set<File>> outputDirToSrcRoots) throws IOException{
-    for (File outputDir : outputDirToSrcRoots.keySet()) {
-      // this will validate output dirs
-      setLocation(StandardLocation.CLASS_OUTPUT, Collections.singleton(outputDir));
-    }
-    myOutputsMap = outputDirToSrcRoots;
-  }
-
-  public void setLocation(Location location, Iterable<? extends File> path) throws IOException{
-    getStdManager().setLocation(location, path);
-  }
-
-  public Iterable<? extends JavaFileObject> getJavaFileObjectsFromFiles(Iterable<? extends File> files) {
-    return getStdManager().getJavaFileObjectsFromFiles(files);
-  }
-
-  public Iterable<? extends JavaFileObject> getJavaFileObjects(File... files) {
-    return getStdManager().getJavaFileObjects(files);
-  }
-
-  public Iterable<? extends JavaFileObject> getJavaFileObjectsFromStrings(Iterable<String> names) {
-    return getStdManager().getJavaFileObjectsFromStrings(names);
-  }
-
-  public Iterable<? extends JavaFileObject> getJavaFileObjects(String... names) {
-    return getStdManager().getJavaFileObjects(names);
-  }
-
-  public Iterable<? extends File> getLocation(Location location) {
-    return getStdManager().getLocation(location);
-  }
-
-  public boolean isSameFile(FileObject a, FileObject b) {
-    if (a instanceof OutputFileObject && b instanceof OutputFileObject) {
-      return a.equals(b);
-    }
-    return super.isSameFile(a, b);
-  }
-
-  @Override
-  public FileObject getFileForInput(Location location, String packageName, String relativeName) throws IOException {
-    checkCanceled();
-    return super.getFileForInput(location, packageName, relativeName);
-  }
-
-  @Override
-  public JavaFileObject getJavaFileForInput(Location location, String className, JavaFileObject.Kind kind) throws IOException {
-    checkCanceled();
-    return super.getJavaFileForInput(location, className, kind);
-  }
-
-  public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) throws IOException {
-    if (kind != JavaFileObject.Kind.SOURCE && kind != JavaFileObject.Kind.CLASS) {
-      throw new IllegalArgumentException("Invalid kind " + kind);
-    }
-    return getFileForOutput(location, kind, externalizeFileName(className, kind), className, sibling);
-  }
-
-  public FileObject getFileForOutput(Location location, String packageName, String relativeName, FileObject sibling) throws IOException {
-    final StringBuilder name = new StringBuilder();
-    if (packageName.isEmpty()) {
-      name.append(relativeName);
-    }
-    else {
-      name.append(externalizeFileName(packageName)).append(File.separatorChar).append(relativeName);
-    }
-    final String fileName = name.toString();
-    return getFileForOutput(location, getKind(fileName), fileName, null, sibling);
-  }
-
-  private OutputFileObject getFileForOutput(Location location, JavaFileObject.Kind kind, String fileName, @Nullable String className, FileObject sibling) throws IOException {
-    checkCanceled();
-
-    JavaFileObject src = null;
-    if (sibling instanceof JavaFileObject) {
-      final JavaFileObject javaFileObject = (JavaFileObject)sibling;
-      if (javaFileObject.getKind() == JavaFileObject.Kind.SOURCE) {
-        src = javaFileObject;
-      }
-    }
-
-    File dir = getSingleOutputDirectory(location, src);
-
-    if (location == StandardLocation.CLASS_OUTPUT) {
-      if (dir == null) {
-        throw new IOException("Output directory is not specified");
-      }
-    }
-    else if (location == StandardLocation.SOURCE_OUTPUT) {
-      if (dir == null) {
-        dir = getSingleOutputDirectory(StandardLocation.CLASS_OUTPUT, src);
-        if (dir == null) {
-          throw new IOException("Neither class output directory nor source output are specified");
-        }
-      }
-    }
-    final File file = (dir == null? new File(fileName).getAbsoluteFile() : new File(dir, fileName));
-    return new OutputFileObject(myContext, dir, fileName, file, kind, className, src != null? src.toUri() : null);
-  }
-
-  private File getSingleOutputDirectory(final Location loc, final JavaFileObject sourceFile) {
-    if (loc == StandardLocation.CLASS_OUTPUT) {
-      if (myOutputsMap.size() > 1 && sourceFile != null) {
-        // multiple outputs case
-        final File outputDir = findOutputDir(Utils.convertToFile(sourceFile.toUri()));
-        if (outputDir != null) {
-          return outputDir;
-        }
-      }
-    }
-
-    final Iterable<? extends File> location = getStdManager().getLocation(loc);
-    if (location != null) {
-      final Iterator<? extends File> it = location.iterator();
-      if (it.hasNext()) {
-        return it.next();
-      }
-    }
-    return null;
-  }
-
-  private File findOutputDir(File src) {
-    File file = FileUtilRt.getParentFile(src);
-    while (file != null) {
-      for (Map.Entry<File, Set<File>> entry : myOutputsMap.entrySet()) {
-        if (entry.getValue().contains(file)) {
-          return entry.getKey();
-        }
-      }
-      file = FileUtilRt.getParentFile(file);
-    }
-    return null;
-  }
-
-  @NotNull
-  private StandardJavaFileManager getStdManager() {
-    return fileManager;
-  }
-
-  public Iterable<? extends JavaFileObject> toJavaFileObjects(Iterable<? extends File> files) {
-    return getStdManager().getJavaFileObjectsFromFiles(files);
-  }
-
-  @Override
-  public void close() {
-    try {
-      super.close();
-    }
-    catch (IOException e) {
-      throw new RuntimeException(e);
-    }
-    finally {
-      myOutputsMap = Collections.emptyMap();
-    }
-  }
-
-  private static JavaFileObject.Kind getKind(String name) {
-    if (name.endsWith(JavaFileObject.Kind.CLASS.extension)){
-      return JavaFileObject.Kind.CLASS;
-    }
-    if (name.endsWith(JavaFileObject.Kind.SOURCE.extension)) {
-      return JavaFileObject.Kind.SOURCE;
-    }
-    if (name.endsWith(JavaFileObject.Kind.HTML.extension)) {
-      return JavaFileObject.Kind.HTML;
-    }
-    return JavaFileObject.Kind.OTHER;
-  }
-
-  private static String externalizeFileName(CharSequence cs, JavaFileObject.Kind kind) {
-    return externalizeFileName(cs) + kind.extension;
-  }
-
-  private static String externalizeFileName(CharSequence name) {
-    return name.toString().replace('.', File.separatorChar);
-  }
-
-  private int myChecksCounter = 0;
-
-  private void checkCanceled() {
-    final int counter = (myChecksCounter + 1) % 10;
-    myChecksCounter = counter;
-    if (counter == 0 && myContext.isCanceled()) {
-      throw new CompilationCanceledException();
-    }
-  }
-
-  public Context getContext() {
-    return myContext;
-  }
-}
+package org.jetbrains.jps.javac;
+
+import com.intellij.openapi.util.io.FileUtilRt;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.incremental.Utils;
+
+import javax.tools.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * @author Eugene Zhuravlev
+ *         Date: 9/24/11
+ */
+class JavacFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> implements StandardJavaFileManager{
+
+  private static final Set<JavaFileObject.Kind> CLASS_KIND = EnumSet.of(JavaFileObject.Kind.CLASS);
+  private final Context myContext;
+  @Nullable private final LibraryCache myLibraryCache;
+  private Map<File, Set<File>> myOutputsMap = Collections.emptyMap();
+  // the default platform classpath is read by javac through ct.sym, so only an explicitly set one is listed from the cache
+  private boolean myPlatformClasspathSet;
+  // classpath roots resolved during this compilation: acquired archives, or null for directories
+  private final Map<File, LibraryCache.Archive> myArchives = new HashMap<File, LibraryCache.Archive>();
+
+  interface Context {
+    boolean isCanceled();
+
+    StandardJavaFileManager getStandardFileManager();
+
+    void consumeOutputFile(@NotNull OutputFileObject obj);
+
+    void reportMessage(final Diagnostic.Kind kind, String message);
+  }
+
+  public JavacFileManager(Context context, @Nullable LibraryCache libraryCache) {
+    super(context.getStandardFileManager());
+    myContext = context;
+    myLibraryCache = libraryCache;
+  }
+
+  public void setOutputDirectories(final Map<File, Set<File>> outputDirToSrcRoots) throws IOException{
+    for (File outputDir : outputDirToSrcRoots.keySet()) {
+      // this will validate output dirs
+      setLocation(StandardLocation.CLASS_OUTPUT, Collections.singleton(outputDir));
+    }
+    myOutputsMap = outputDirToSrcRoots;
+  }
+
+  public void setLocation(Location location, Iterable<? extends File> path) throws IOException{
+    getStdManager().setLocation(location, path);
+    if (location == StandardLocation.PLATFORM_CLASS_PATH) {
+      myPlatformClasspathSet = path != null;
+    }
+  }
+
+  public Iterable<? extends JavaFileObject> getJavaFileObjectsFromFiles(Iterable<? extends File> files) {
+    return getStdManager().getJavaFileObjectsFromFiles(files);
+  }
+
+  public Iterable<? extends JavaFileObject> getJavaFileObjects(File... files) {
+    return getStdManager().getJavaFileObjects(files);
+  }
+
+  public Iterable<? extends JavaFileObject> getJavaFileObjectsFromStrings(Iterable<String> names) {
+    return getStdManager().getJavaFileObjectsFromStrings(names);
+  }
+
+  public Iterable<? extends JavaFileObject> getJavaFileObjects(String... names) {
+    return getStdManager().getJavaFileObjects(names);
+  }
+
+  public Iterable<? extends File> getLocation(Location location) {
+    return getStdManager().getLocation(location);
+  }
+
+  public boolean isSameFile(FileObject a, FileObject b) {
+    if (a instanceof OutputFileObject && b instanceof OutputFileObject) {
+      return a.equals(b);
+    }
+    if (a instanceof ClasspathFileObject || b instanceof ClasspathFileObject) {
+      return a.equals(b);
+    }
+    return super.isSameFile(a, b);
+  }
+
+  @Override
+  public Iterable<JavaFileObject> list(Location location, String packageName, Set<JavaFileObject.Kind> kinds, boolean recurse) throws IOException {
+    // since the source path is always set, javac looks only for class files on the classpath; the rest goes to the standard manager
+    final LibraryCache cache = myLibraryCache;
+    final boolean cachedLocation = location == StandardLocation.CLASS_PATH ||
+                                   location == StandardLocation.PLATFORM_CLASS_PATH && myPlatformClasspathSet;
+    if (cache == null || !cachedLocation || recurse || !CLASS_KIND.equals(kinds)) {
+      return super.list(location, packageName, kinds, recurse);
+    }
+    final Iterable<? extends File> roots = getStdManager().getLocation(location);
+    if (roots == null) {
+      return Collections.emptyList();
+    }
+    checkCanceled();
+
+    final String packagePath = packageName.replace('.', '/');
+    final List<JavaFileObject> result = new ArrayList<JavaFileObject>();
+    for (File root : roots) {
+      final LibraryCache.Archive archive = getArchive(cache, root);
+      if (archive != null) {
+        for (String entryName : archive.getEntries(packagePath)) {
+          if (entryName.endsWith(JavaFileObject.Kind.CLASS.extension)) {
+            result.add(new ClasspathFileObject(cache, archive, entryName));
+          }
+        }
+      }
+      else {
+        final File[] children = (packagePath.isEmpty() ? root : new File(root, packagePath)).listFiles();
+        if (children != null) {
+          for (File child : children) {
+            if (child.getName().endsWith(JavaFileObject.Kind.CLASS.extension)) {
+              result.add(new ClasspathFileObject(child, packageName));
+            }
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  @Nullable
+  private LibraryCache.Archive getArchive(LibraryCache cache, File root) {
+    if (myArchives.containsKey(root)) {
+      return myArchives.get(root);
+    }
+    LibraryCache.Archive archive = null;
+    if (root.isFile()) {
+      try {
+        archive = cache.acquire(root);
+      }
+      catch (IOException e) {
+        myContext.reportMessage(Diagnostic.Kind.ERROR, "Error reading " + root.getPath() + ": " + e.getMessage());
+      }
+    }
+    myArchives.put(root, archive);
+    return archive;
+  }
+
+  @Override
+  public String inferBinaryName(Location location, JavaFileObject file) {
+    if (file instanceof ClasspathFileObject) {
+      return ((ClasspathFileObject)file).getBinaryName();
+    }
+    return super.inferBinaryName(location, file);
+  }
+
+  @Override
+  public FileObject getFileForInput(Location location, String packageName, String relativeName) throws IOException {
+    checkCanceled();
+    return super.getFileForInput(location, packageName, relativeName);
+  }
+
+  @Override
+  public JavaFileObject getJavaFileForInput(Location location, String className, JavaFileObject.Kind kind) throws IOException {
+    checkCanceled();
+    return super.getJavaFileForInput(location, className, kind);
+  }
+
+  public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) throws IOException {
+    if (kind != JavaFileObject.Kind.SOURCE && kind != JavaFileObject.Kind.CLASS) {
+      throw new IllegalArgumentException("Invalid kind " + kind);
+    }
+    return getFileForOutput(location, kind, externalizeFileName(className, kind), className, sibling);
+  }
+
+  public FileObject getFileForOutput(Location location, String packageName, String relativeName, FileObject sibling) throws IOException {
+    final StringBuilder name = new StringBuilder();
+    if (packageName.isEmpty()) {
+      name.append(relativeName);
+    }
+    else {
+      name.append(externalizeFileName(packageName)).append(File.separatorChar).append(relativeName);
+    }
+    final String fileName = name.toString();
+    return getFileForOutput(location, getKind(fileName), fileName, null, sibling);
+  }
+
+  private OutputFileObject getFileForOutput(Location location, JavaFileObject.Kind kind, String fileName, @Nullable String className, FileObject sibling) throws IOException {
+    checkCanceled();
+
+    JavaFileObject src = null;
+    if (sibling instanceof JavaFileObject) {
+      final JavaFileObject javaFileObject = (JavaFileObject)sibling;
+      if (javaFileObject.getKind() == JavaFileObject.Kind.SOURCE) {
+        src = javaFileObject;
+      }
+    }
+
+    File dir = getSingleOutputDirectory(location, src);
+
+    if (location == StandardLocation.CLASS_OUTPUT) {
+      if (dir == null) {
+        throw new IOException("Output directory is not specified");
+      }
+    }
+    else if (location == StandardLocation.SOURCE_OUTPUT) {
+      if (dir == null) {
+        dir = getSingleOutputDirectory(StandardLocation.CLASS_OUTPUT, src);
+        if (dir == null) {
+          throw new IOException("Neither class output directory nor source output are specified");
+        }
+      }
+    }
+    final File file = (dir == null? new File(fileName).getAbsoluteFile() : new File(dir, fileName));
+    return new OutputFileObject(myContext, dir, fileName, file, kind, className, src != null? src.toUri() : null);
+  }
+
+  private File getSingleOutputDirectory(final Location loc, final JavaFileObject sourceFile) {
+    if (loc == StandardLocation.CLASS_OUTPUT) {
+      if (myOutputsMap.size() > 1 && sourceFile != null) {
+        // multiple outputs case
+        final File outputDir = findOutputDir(Utils.convertToFile(sourceFile.toUri()));
+        if (outputDir != null) {
+          return outputDir;
+        }
+      }
+    }
+
+    final Iterable<? extends File> location = getStdManager().getLocation(loc);
+    if (location != null) {
+      final Iterator<? extends File> it = location.iterator();
+      if (it.hasNext()) {
+        return it.next();
+      }
+    }
+    return null;
+  }
+
+  private File findOutputDir(File src) {
+    File file = FileUtilRt.getParentFile(src);
+    while (file != null) {
+      for (Map.Entry<File, Set<File>> entry : myOutputsMap.entrySet()) {
+        if (entry.getValue().contains(file)) {
+          return entry.getKey();
+        }
+      }
+      file = FileUtilRt.getParentFile(file);
+    }
+    return null;
+  }
+
+  @NotNull
+  private StandardJavaFileManager getStdManager() {
+    return fileManager;
+  }
+
+  public Iterable<? extends JavaFileObject> toJavaFileObjects(Iterable<? extends File> files) {
+    return getStdManager().getJavaFileObjectsFromFiles(files);
+  }
+
+  @Override
+  public void close() {
+    try {
+      super.close();
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    finally {
+      myOutputsMap = Collections.emptyMap();
+      if (myLibraryCache != null) {
+        for (LibraryCache.Archive archive : myArchives.values()) {
+          if (archive != null) {
+            myLibraryCache.release(archive);
+          }
+        }
+      }
+      myArchives.clear();
+    }
+  }
+
+  private static JavaFileObject.Kind getKind(String name) {
+    if (name.endsWith(JavaFileObject.Kind.CLASS.extension)){
+      return JavaFileObject.Kind.CLASS;
+    }
+    if (name.endsWith(JavaFileObject.Kind.SOURCE.extension)) {
+      return JavaFileObject.Kind.SOURCE;
+    }
+    if (name.endsWith(JavaFileObject.Kind.HTML.extension)) {
+      return JavaFileObject.Kind.HTML;
+    }
+    return JavaFileObject.Kind.OTHER;
+  }
+
+  private static String externalizeFileName(CharSequence cs, JavaFileObject.Kind kind) {
+    return externalizeFileName(cs) + kind.extension;
+  }
+
+  private static String externalizeFileName(CharSequence name) {
+    return name.toString().replace('.', File.separatorChar);
+  }
+
+  private int myChecksCounter = 0;
+
+  private void checkCanceled() {
+    final int counter = (myChecksCounter + 1) % 10;
+    myChecksCounter = counter;
+    if (counter == 0 && myContext.isCanceled()) {
+      throw new CompilationCanceledException();
+    }
+  }
+
+  public Context getContext() {
+    return myContext;
+  }
+}
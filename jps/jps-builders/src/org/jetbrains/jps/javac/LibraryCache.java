@@ -0,0 +1,242 @@
+package org.jetbrains.jps.javac;
+
+import com.intellij.openapi.util.io.FileUtilRt;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Contents of classpath archives shared by all compilations in the process, so that libraries aren't re-read for every chunk and every
+ * build by the long-lived build process or javac server. Archives are identified by path, timestamp and length: a changed jar gets
+ * a new entry and the stale one is dropped.
+ *
+ * An archive keeps the names of its entries grouped by package and the bytes of the class files read from it. The memory taken by
+ * archives is limited; least recently used archives are evicted first. javac symbol tables are bound to a single compilation
+ * context and can't be shared through the javax.tools API, so classes are still parsed by every compilation.
+ *
+ * Zip files are opened only while some compilation uses the archive, so jars aren't kept locked between builds.
+ */
+class LibraryCache {
+  private static final long MB = 1024 * 1024;
+  private static final int ENTRY_OVERHEAD = 64;
+  @Nullable private static final LibraryCache ourInstance;
+
+  static {
+    final long size = Long.getLong("jps.javac.library.cache.size", 64) * MB;
+    ourInstance = size > 0 ? new LibraryCache(size) : null;
+  }
+
+  private final long myMaxSize;
+  private final LinkedHashMap<File, Archive> myArchives = new LinkedHashMap<File, Archive>(16, 0.75f, true);
+  private long mySize;
+
+  LibraryCache(long maxSize) {
+    myMaxSize = maxSize;
+  }
+
+  /**
+   * @return the cache, or null if it is disabled with -Djps.javac.library.cache.size=0
+   */
+  @Nullable
+  static LibraryCache getInstance() {
+    return ourInstance;
+  }
+
+  /**
+   * Returns the up-to-date archive for the file and marks it as used until {@link #release(Archive)} is called.
+   */
+  @NotNull
+  synchronized Archive acquire(@NotNull File file) throws IOException {
+    Archive archive = myArchives.get(file);
+    if (archive != null && (archive.myTimestamp != file.lastModified() || archive.myLength != file.length())) {
+      remove(archive);
+      archive = null;
+    }
+    if (archive == null) {
+      archive = new Archive(file);
+      archive.myUsers++;
+      try {
+        archive.index();
+      }
+      catch (IOException e) {
+        archive.closeZip();
+        throw e;
+      }
+      myArchives.put(file, archive);
+      mySize += archive.mySize;
+      evict(archive);
+    }
+    else {
+      archive.myUsers++;
+    }
+    return archive;
+  }
+
+  synchronized void release(@NotNull Archive archive) {
+    if (--archive.myUsers == 0) {
+      archive.closeZip();
+    }
+  }
+
+  @NotNull
+  synchronized byte[] getContent(@NotNull Archive archive, @NotNull String entryName) throws IOException {
+    byte[] content = archive.myContents.get(entryName);
+    if (content != null) return content;
+
+    final boolean temporaryZip = archive.myZip == null && archive.myUsers == 0;
+    try {
+      content = archive.readEntry(entryName);
+    }
+    finally {
+      if (temporaryZip) archive.closeZip();
+    }
+    if (!archive.myEvicted && content.length + ENTRY_OVERHEAD <= myMaxSize) {
+      archive.myContents.put(entryName, content);
+      archive.mySize += content.length + ENTRY_OVERHEAD;
+      mySize += content.length + ENTRY_OVERHEAD;
+      evict(archive);
+    }
+    return content;
+  }
+
+  synchronized long getSize() {
+    return mySize;
+  }
+
+  synchronized boolean contains(@NotNull File file) {
+    return myArchives.containsKey(file);
+  }
+
+  private void evict(Archive lastUsed) {
+    final Iterator<Archive> iterator = myArchives.values().iterator();
+    while (mySize > myMaxSize && iterator.hasNext()) {
+      final Archive archive = iterator.next();
+      if (archive == lastUsed) continue;
+      iterator.remove();
+      forget(archive);
+    }
+    if (mySize > myMaxSize) {
+      // a single archive doesn't fit: its classes are read from the jar each time, but its entries are still listed from memory
+      mySize -= lastUsed.mySize - lastUsed.myIndexSize;
+      lastUsed.mySize = lastUsed.myIndexSize;
+      lastUsed.myContents.clear();
+      if (mySize > myMaxSize) {
+        myArchives.remove(lastUsed.myFile);
+        forget(lastUsed);
+      }
+    }
+  }
+
+  private void remove(Archive archive) {
+    myArchives.remove(archive.myFile);
+    forget(archive);
+  }
+
+  private void forget(Archive archive) {
+    mySize -= archive.mySize;
+    archive.myEvicted = true;
+    archive.myContents.clear();
+    if (archive.myUsers == 0) {
+      archive.closeZip();
+    }
+  }
+
+  static class Archive {
+    private final File myFile;
+    private final long myTimestamp;
+    private final long myLength;
+    private final Map<String, List<String>> myEntriesByPackage = new HashMap<String, List<String>>();
+    private final Map<String, byte[]> myContents = new HashMap<String, byte[]>();
+    private long myIndexSize;
+    private long mySize;
+    private int myUsers;
+    private boolean myEvicted;
+    @Nullable private ZipFile myZip;
+
+    private Archive(File file) {
+      myFile = file;
+      myTimestamp = file.lastModified();
+      myLength = file.length();
+    }
+
+    @NotNull
+    File getFile() {
+      return myFile;
+    }
+
+    long getTimestamp() {
+      return myTimestamp;
+    }
+
+    /**
+     * @param packagePath package name with '/' as a separator
+     * @return names of the archive entries which are directly in the package
+     */
+    @NotNull
+    List<String> getEntries(@NotNull String packagePath) {
+      final List<String> entries = myEntriesByPackage.get(packagePath);
+      return entries != null ? entries : Collections.<String>emptyList();
+    }
+
+    private void index() throws IOException {
+      long size = 0;
+      final Enumeration<? extends ZipEntry> entries = getZip().entries();
+      while (entries.hasMoreElements()) {
+        final ZipEntry entry = entries.nextElement();
+        if (entry.isDirectory()) continue;
+        final String name = entry.getName();
+        final int slash = name.lastIndexOf('/');
+        final String packagePath = slash < 0 ? "" : name.substring(0, slash);
+        List<String> names = myEntriesByPackage.get(packagePath);
+        if (names == null) {
+          myEntriesByPackage.put(packagePath, names = new ArrayList<String>());
+          size += packagePath.length() * 2 + ENTRY_OVERHEAD;
+        }
+        names.add(name);
+        size += name.length() * 2 + ENTRY_OVERHEAD;
+      }
+      myIndexSize = size;
+      mySize = size;
+    }
+
+    private byte[] readEntry(String entryName) throws IOException {
+      final ZipFile zip = getZip();
+      final ZipEntry entry = zip.getEntry(entryName);
+      if (entry == null) {
+        throw new IOException("Entry " + entryName + " is not found in " + myFile.getPath());
+      }
+      final InputStream stream = zip.getInputStream(entry);
+      try {
+        return entry.getSize() >= 0 ? FileUtilRt.loadBytes(stream, (int)entry.getSize()) : FileUtilRt.loadBytes(stream);
+      }
+      finally {
+        stream.close();
+      }
+    }
+
+    private ZipFile getZip() throws IOException {
+      if (myZip == null) {
+        myZip = new ZipFile(myFile);
+      }
+      return myZip;
+    }
+
+    private void closeZip() {
+      final ZipFile zip = myZip;
+      myZip = null;
+      if (zip != null) {
+        try {
+          zip.close();
+        }
+        catch (IOException ignored) {
+        }
+      }
+    }
+  }
+}
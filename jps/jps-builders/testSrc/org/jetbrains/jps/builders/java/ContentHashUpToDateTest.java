@@ -0,0 +1,49 @@
+package org.jetbrains.jps.builders.java;
+
+import com.intellij.util.PathUtil;
+import org.jetbrains.jps.api.GlobalOptions;
+import org.jetbrains.jps.builders.JpsBuildTestCase;
+import org.jetbrains.jps.incremental.java.JavaBuilder;
+
+public class ContentHashUpToDateTest extends JpsBuildTestCase {
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    System.setProperty(GlobalOptions.USE_CONTENT_HASHES_OPTION, "true");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    System.clearProperty(GlobalOptions.USE_CONTENT_HASHES_OPTION);
+    super.tearDown();
+  }
+
+  public void testDoNotRecompileTouchedFile() {
+    String a = createFile("src/A.java", "class A{}");
+    String b = createFile("src/B.java", "class B{}");
+    addModule("m", PathUtil.getParentPath(a));
+    rebuildAll();
+
+    change(a);
+    change(b, "class B{ int i; }");
+    makeAll().assertSuccessful();
+    assertCompiled(JavaBuilder.BUILDER_NAME, "src/B.java");
+
+    makeAll().assertSuccessful();
+    assertCompiled(JavaBuilder.BUILDER_NAME);
+  }
+
+  public void testRecompileFileWithRestoredContent() {
+    String a = createFile("src/A.java", "class A{}");
+    addModule("m", PathUtil.getParentPath(a));
+    rebuildAll();
+
+    change(a, "class A{ int i; }");
+    makeAll().assertSuccessful();
+    assertCompiled(JavaBuilder.BUILDER_NAME, "src/A.java");
+
+    change(a, "class A{}");
+    makeAll().assertSuccessful();
+    assertCompiled(JavaBuilder.BUILDER_NAME, "src/A.java");
+  }
+}
@@ -0,0 +1,69 @@
+package org.jetbrains.jps.builders.java;
+
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.PathUtil;
+import com.intellij.util.ThrowableRunnable;
+import gnu.trove.THashMap;
+import org.jdom.Element;
+import org.jetbrains.jps.builders.JpsBuildTestCase;
+import org.jetbrains.jps.model.JpsModuleRootModificationUtil;
+import org.jetbrains.jps.model.java.JpsJavaLibraryType;
+import org.jetbrains.jps.model.library.JpsLibrary;
+import org.jetbrains.jps.model.library.JpsOrderRootType;
+import org.jetbrains.jps.model.module.JpsModule;
+import org.objectweb.asm.ClassReader;
+
+import java.io.File;
+
+/**
+ * Measures make time after a single source file is edited. Classpath archives are read through the javac library cache, which is
+ * warmed up by the initial rebuild.
+ */
+public class IncrementalJavacPerformanceTest extends JpsBuildTestCase {
+  private static final int CLASSES_COUNT = 200;
+  private static final int MAKES_COUNT = 10;
+
+  public void testMakeAfterSingleFileChange() {
+    doTestMakeAfterSingleFileChange(false);
+  }
+
+  public void testMakeWithLibrariesAfterSingleFileChange() {
+    doTestMakeAfterSingleFileChange(true);
+  }
+
+  private void doTestMakeAfterSingleFileChange(boolean withLibraries) {
+    // the edited class refers to library classes, so they are loaded by every make
+    final String members = withLibraries ? "org.jdom.Element e; org.objectweb.asm.ClassReader r; gnu.trove.THashMap map;" : "";
+    String changed = null;
+    for (int i = 0; i < CLASSES_COUNT; i++) {
+      String path = createFile("src/p/C" + i + ".java", classText(i, i, members));
+      if (changed == null) {
+        changed = path;
+      }
+    }
+    JpsModule module = addModule("m", PathUtil.getParentPath(PathUtil.getParentPath(changed)));
+    if (withLibraries) {
+      JpsLibrary library = myProject.addLibrary("libraries", JpsJavaLibraryType.INSTANCE);
+      for (Class<?> aClass : new Class<?>[]{Element.class, ClassReader.class, THashMap.class}) {
+        library.addRoot(new File(PathUtil.getJarPathForClass(aClass)), JpsOrderRootType.COMPILED);
+      }
+      JpsModuleRootModificationUtil.addDependency(module, library);
+    }
+    rebuildAll();
+
+    final String file = changed;
+    PlatformTestUtil.startPerformanceTest("Make after single file change is slow", 20000, new ThrowableRunnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < MAKES_COUNT; i++) {
+          change(file, classText(0, CLASSES_COUNT + i, members));
+          makeAll().assertSuccessful();
+        }
+      }
+    }).attempts(2).assertTiming();
+  }
+
+  private static String classText(int index, int value, String members) {
+    return "package p; public class C" + index + " { " + members + " public int m() { return " + value + "; } }";
+  }
+}
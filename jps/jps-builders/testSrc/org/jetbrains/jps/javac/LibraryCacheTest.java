@@ -0,0 +1,108 @@
+package org.jetbrains.jps.javac;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class LibraryCacheTest extends TestCase {
+  private File myDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("libraryCache", null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    FileUtil.delete(myDir);
+    super.tearDown();
+  }
+
+  public void testEntriesAreGroupedByPackage() throws IOException {
+    File jar = createJar("a.jar", 10, "p/A.class", "p/B.class", "p/q/C.class", "D.class", "p/");
+    LibraryCache cache = new LibraryCache(1024 * 1024);
+    LibraryCache.Archive archive = cache.acquire(jar);
+    assertEquals(Arrays.asList("p/A.class", "p/B.class"), archive.getEntries("p"));
+    assertEquals(Arrays.asList("p/q/C.class"), archive.getEntries("p/q"));
+    assertEquals(Arrays.asList("D.class"), archive.getEntries(""));
+    assertTrue(archive.getEntries("r").isEmpty());
+    assertEquals(10, cache.getContent(archive, "p/A.class").length);
+    cache.release(archive);
+  }
+
+  public void testArchiveIsReusedUntilJarChanges() throws IOException {
+    File jar = createJar("a.jar", 10, "p/A.class");
+    LibraryCache cache = new LibraryCache(1024 * 1024);
+    LibraryCache.Archive archive = cache.acquire(jar);
+    byte[] content = cache.getContent(archive, "p/A.class");
+    cache.release(archive);
+
+    LibraryCache.Archive same = cache.acquire(jar);
+    assertSame(archive, same);
+    assertSame(content, cache.getContent(same, "p/A.class"));
+    cache.release(same);
+
+    createJar("a.jar", 20, "p/A.class", "p/B.class");
+    jar.setLastModified(jar.lastModified() + 2000);
+    LibraryCache.Archive changed = cache.acquire(jar);
+    assertNotSame(archive, changed);
+    assertEquals(2, changed.getEntries("p").size());
+    assertEquals(20, cache.getContent(changed, "p/A.class").length);
+    cache.release(changed);
+  }
+
+  public void testLeastRecentlyUsedArchivesAreEvicted() throws IOException {
+    File a = createJar("a.jar", 3000, "p/A.class");
+    File b = createJar("b.jar", 3000, "p/B.class");
+    LibraryCache cache = new LibraryCache(5000);
+
+    LibraryCache.Archive archiveA = cache.acquire(a);
+    cache.getContent(archiveA, "p/A.class");
+    cache.release(archiveA);
+    LibraryCache.Archive archiveB = cache.acquire(b);
+    cache.getContent(archiveB, "p/B.class");
+    cache.release(archiveB);
+
+    assertFalse(cache.contains(a));
+    assertTrue(cache.contains(b));
+    assertTrue(cache.getSize() <= 5000);
+    // an evicted archive which is still in use by a compilation can be read
+    assertEquals(3000, cache.getContent(archiveA, "p/A.class").length);
+    assertTrue(cache.getSize() <= 5000);
+  }
+
+  public void testContentOfTooBigArchiveIsNotKept() throws IOException {
+    File jar = createJar("a.jar", 3000, "p/A.class");
+    LibraryCache cache = new LibraryCache(2000);
+    LibraryCache.Archive archive = cache.acquire(jar);
+    assertEquals(3000, cache.getContent(archive, "p/A.class").length);
+    assertTrue(cache.contains(jar));
+    assertTrue(cache.getSize() <= 2000);
+    cache.release(archive);
+  }
+
+  private File createJar(String name, int entrySize, String... entries) throws IOException {
+    File jar = new File(myDir, name);
+    ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+    try {
+      for (String entry : entries) {
+        out.putNextEntry(new ZipEntry(entry));
+        if (!entry.endsWith("/")) {
+          out.write(new byte[entrySize]);
+        }
+        out.closeEntry();
+      }
+    }
+    finally {
+      out.close();
+    }
+    return jar;
+  }
+}
@@ -6,6 +6,7 @@ import com.intellij.openapi.util.SystemInfo;
 import com.intellij.openapi.util.io.FileUtil;
 import org.jdom.Element;
 import org.jdom.JDOMException;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jps.model.JpsElement;
 
 import java.io.File;
@@ -17,13 +18,24 @@ import java.io.IOException;
 public abstract class JpsLoaderBase {
   private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.model.serialization.JpsLoaderBase");
   private final JpsMacroExpander myMacroExpander;
+  @Nullable private final JpsXmlFileCache myXmlFileCache;
 
   protected JpsLoaderBase(JpsMacroExpander macroExpander) {
+    this(macroExpander, null);
+  }
+
+  protected JpsLoaderBase(JpsMacroExpander macroExpander, @Nullable JpsXmlFileCache xmlFileCache) {
     myMacroExpander = macroExpander;
+    myXmlFileCache = xmlFileCache;
   }
 
   protected Element loadRootElement(final File file) {
-    return loadRootElement(file, myMacroExpander);
+    return loadRootElement(file, myMacroExpander, myXmlFileCache);
+  }
+
+  @Nullable
+  protected JpsXmlFileCache getXmlFileCache() {
+    return myXmlFileCache;
   }
 
   protected <E extends JpsElement> void loadComponents(File dir,
@@ -44,8 +56,12 @@ public abstract class JpsLoaderBase {
   }
 
   protected static Element loadRootElement(final File file, final JpsMacroExpander macroExpander) {
+    return loadRootElement(file, macroExpander, null);
+  }
+
+  protected static Element loadRootElement(final File file, final JpsMacroExpander macroExpander, @Nullable JpsXmlFileCache cache) {
     try {
-      final Element element = JDOMUtil.loadDocument(file).getRootElement();
+      final Element element = cache != null ? cache.loadRootElement(file) : JDOMUtil.loadDocument(file).getRootElement();
       macroExpander.substitute(element, SystemInfo.isFileSystemCaseSensitive);
       return element;
     }
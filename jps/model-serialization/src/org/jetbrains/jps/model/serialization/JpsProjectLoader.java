@@ -49,8 +49,8 @@ public class JpsProjectLoader extends JpsLoaderBase {
   private final JpsProject myProject;
   private final Map<String, String> myPathVariables;
 
-  private JpsProjectLoader(JpsProject project, Map<String, String> pathVariables, File baseDir) {
-    super(createProjectMacroExpander(pathVariables, baseDir));
+  private JpsProjectLoader(JpsProject project, Map<String, String> pathVariables, File baseDir, @Nullable JpsXmlFileCache xmlFileCache) {
+    super(createProjectMacroExpander(pathVariables, baseDir), xmlFileCache);
     myProject = project;
     myPathVariables = pathVariables;
     myProject.getContainer().setChild(JpsProjectSerializationDataExtensionImpl.ROLE, new JpsProjectSerializationDataExtensionImpl(baseDir));
@@ -63,9 +63,17 @@ public class JpsProjectLoader extends JpsLoaderBase {
   }
 
   public static void loadProject(final JpsProject project, Map<String, String> pathVariables, String projectPath) throws IOException {
+    loadProject(project, pathVariables, projectPath, null);
+  }
+
+  /**
+   * @param xmlFileCache if not {@code null}, content of configuration files will be taken from this cache when possible
+   */
+  public static void loadProject(final JpsProject project, Map<String, String> pathVariables, String projectPath,
+                                 @Nullable JpsXmlFileCache xmlFileCache) throws IOException {
     File file = new File(projectPath).getCanonicalFile();
     if (file.isFile() && projectPath.endsWith(".ipr")) {
-      new JpsProjectLoader(project, pathVariables, file.getParentFile()).loadFromIpr(file);
+      new JpsProjectLoader(project, pathVariables, file.getParentFile(), xmlFileCache).loadFromIpr(file);
     }
     else {
       File directory;
@@ -78,7 +86,7 @@ public class JpsProjectLoader extends JpsLoaderBase {
           throw new IOException("Cannot find IntelliJ IDEA project files at " + projectPath);
         }
       }
-      new JpsProjectLoader(project, pathVariables, directory.getParentFile()).loadFromDirectory(directory);
+      new JpsProjectLoader(project, pathVariables, directory.getParentFile(), xmlFileCache).loadFromDirectory(directory);
     }
   }
 
@@ -196,9 +204,8 @@ public class JpsProjectLoader extends JpsLoaderBase {
     Element componentRoot = JDomSerializationUtil.findComponent(root, "ProjectModuleManager");
     if (componentRoot == null) return;
     final Element modules = componentRoot.getChild("modules");
-    List<Future<JpsModule>> futures = new ArrayList<Future<JpsModule>>();
-    final List<String> paths = new ArrayList<String>();
-    final List<String> classpathDirs = new ArrayList<String>();
+    final List<Future<Element>> moduleRootFutures = new ArrayList<Future<Element>>();
+    final List<File> moduleFiles = new ArrayList<File>();
     for (Element moduleElement : JDOMUtil.getChildren(modules, "module")) {
       final String path = moduleElement.getAttributeValue("filepath");
       final File file = new File(path);
@@ -206,29 +213,41 @@ public class JpsProjectLoader extends JpsLoaderBase {
         LOG.info("Module '" + FileUtil.getNameWithoutExtension(file) + "' is skipped: " + file.getAbsolutePath() + " doesn't exist");
         continue;
       }
-
-      final JpsMacroExpander expander = createModuleMacroExpander(myPathVariables, file);
-      final Element moduleRoot = loadRootElement(file, expander);
-      final String classpathDir = moduleRoot.getAttributeValue(CLASSPATH_DIR_ATTRIBUTE);
-      if (classpathDir != null) {
-        classpathDirs.add(classpathDir);
-      }
-      paths.add(path);
-    }
-    for (final String path : paths) {
-      futures.add(ourThreadPool.submit(new Callable<JpsModule>() {
+      moduleFiles.add(file);
+      moduleRootFutures.add(ourThreadPool.submit(new Callable<Element>() {
         @Override
-        public JpsModule call() throws Exception {
-          return loadModule(path, classpathDirs, projectSdkType);
+        public Element call() throws Exception {
+          return loadRootElement(file, createModuleMacroExpander(myPathVariables, file), getXmlFileCache());
         }
       }));
     }
+
     try {
-      for (Future<JpsModule> future : futures) {
-        JpsModule module = future.get();
-        if (module != null) {
-          myProject.addModule(module);
+      // each module file is parsed once, but classpath dirs of all modules are needed to load a module
+      final List<Element> moduleRoots = new ArrayList<Element>();
+      final List<String> classpathDirs = new ArrayList<String>();
+      for (Future<Element> future : moduleRootFutures) {
+        final Element moduleRoot = future.get();
+        final String classpathDir = moduleRoot.getAttributeValue(CLASSPATH_DIR_ATTRIBUTE);
+        if (classpathDir != null) {
+          classpathDirs.add(classpathDir);
         }
+        moduleRoots.add(moduleRoot);
+      }
+
+      List<Future<JpsModule>> futures = new ArrayList<Future<JpsModule>>();
+      for (int i = 0; i < moduleFiles.size(); i++) {
+        final File file = moduleFiles.get(i);
+        final Element moduleRoot = moduleRoots.get(i);
+        futures.add(ourThreadPool.submit(new Callable<JpsModule>() {
+          @Override
+          public JpsModule call() throws Exception {
+            return loadModule(file, moduleRoot, classpathDirs, projectSdkType);
+          }
+        }));
+      }
+      for (Future<JpsModule> future : futures) {
+        myProject.addModule(future.get());
       }
     }
     catch (Exception e) {
@@ -236,17 +255,10 @@ public class JpsProjectLoader extends JpsLoaderBase {
     }
   }
 
-  @Nullable
-  private JpsModule loadModule(@NotNull String path, List<String> paths, @Nullable JpsSdkType<?> projectSdkType) {
-    final File file = new File(path);
+  @NotNull
+  private JpsModule loadModule(@NotNull File file, @NotNull Element moduleRoot, List<String> paths, @Nullable JpsSdkType<?> projectSdkType) {
     String name = FileUtil.getNameWithoutExtension(file);
-    if (!file.exists()) {
-      LOG.info("Module '" + name + "' is skipped: " + file.getAbsolutePath() + " doesn't exist");
-      return null;
-    }
-
     final JpsMacroExpander expander = createModuleMacroExpander(myPathVariables, file);
-    final Element moduleRoot = loadRootElement(file, expander);
     final String typeId = moduleRoot.getAttributeValue("type");
     final JpsModulePropertiesSerializer<?> serializer = getModulePropertiesSerializer(typeId);
     final JpsModule module = createModule(name, moduleRoot, serializer);
@@ -0,0 +1,230 @@
+package org.jetbrains.jps.model.serialization;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.openapi.util.io.BufferExposingByteArrayOutputStream;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.containers.ConcurrentHashSet;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.IOUtil;
+import gnu.trove.TObjectIntHashMap;
+import org.jdom.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Stores content of project configuration files in a binary form, so they don't need to be parsed again when the project is loaded next
+ * time. A cached entry is used only if the length and the timestamp of the file weren't changed since it was stored.
+ */
+public class JpsXmlFileCache {
+  private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.model.serialization.JpsXmlFileCache");
+  private static final int VERSION = 1;
+  private static final byte CHILD_ELEMENT = 0;
+  private static final byte TEXT = 1;
+  private static final byte END = 2;
+  private final File myCacheFile;
+  private final ConcurrentMap<String, CachedFile> myEntries = new ConcurrentHashMap<String, CachedFile>();
+  private final Set<String> myUsedPaths = new ConcurrentHashSet<String>();
+  private volatile boolean myModified;
+
+  public JpsXmlFileCache(@NotNull File cacheFile) {
+    myCacheFile = cacheFile;
+    if (cacheFile.exists()) {
+      try {
+        load();
+      }
+      catch (IOException e) {
+        LOG.info("Cannot load " + cacheFile.getAbsolutePath() + ": " + e.getMessage());
+        myEntries.clear();
+      }
+    }
+  }
+
+  @NotNull
+  public Element loadRootElement(@NotNull File file) throws IOException, JDOMException {
+    final String path = file.getAbsolutePath();
+    final long length = file.length();
+    final long timestamp = file.lastModified();
+    myUsedPaths.add(path);
+    final CachedFile cached = myEntries.get(path);
+    if (cached != null && cached.myLength == length && cached.myTimestamp == timestamp) {
+      return readElement(new DataInputStream(new ByteArrayInputStream(cached.myData)), new ArrayList<String>(), IOUtil.allocReadWriteUTFBuffer());
+    }
+
+    final Element root = JDOMUtil.loadDocument(file).getRootElement();
+    final byte[] data = serialize(root);
+    if (data != null) {
+      myEntries.put(path, new CachedFile(length, timestamp, data));
+      myModified = true;
+    }
+    return root;
+  }
+
+  public void save() {
+    if (myEntries.keySet().retainAll(myUsedPaths)) {
+      myModified = true;
+    }
+    if (!myModified) return;
+
+    try {
+      FileUtil.createParentDirs(myCacheFile);
+      final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(myCacheFile)));
+      try {
+        final byte[] buffer = IOUtil.allocReadWriteUTFBuffer();
+        output.writeInt(VERSION);
+        DataInputOutputUtil.writeINT(output, myEntries.size());
+        for (Map.Entry<String, CachedFile> entry : myEntries.entrySet()) {
+          final CachedFile file = entry.getValue();
+          IOUtil.writeUTFFast(buffer, output, entry.getKey());
+          output.writeLong(file.myLength);
+          output.writeLong(file.myTimestamp);
+          DataInputOutputUtil.writeINT(output, file.myData.length);
+          output.write(file.myData);
+        }
+      }
+      finally {
+        output.close();
+      }
+      myModified = false;
+    }
+    catch (IOException e) {
+      LOG.info("Cannot save " + myCacheFile.getAbsolutePath() + ": " + e.getMessage());
+      FileUtil.delete(myCacheFile);
+    }
+  }
+
+  private void load() throws IOException {
+    final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(myCacheFile)));
+    try {
+      if (input.readInt() != VERSION) return;
+
+      final byte[] buffer = IOUtil.allocReadWriteUTFBuffer();
+      final int size = DataInputOutputUtil.readINT(input);
+      for (int i = 0; i < size; i++) {
+        final String path = IOUtil.readUTFFast(buffer, input);
+        final long length = input.readLong();
+        final long timestamp = input.readLong();
+        final byte[] data = new byte[DataInputOutputUtil.readINT(input)];
+        input.readFully(data);
+        myEntries.put(path, new CachedFile(length, timestamp, data));
+      }
+    }
+    finally {
+      input.close();
+    }
+  }
+
+  /**
+   * @return serialized element or {@code null} if the element cannot be stored in the cache (e.g. if it uses XML namespaces)
+   */
+  @Nullable
+  private static byte[] serialize(Element root) {
+    final BufferExposingByteArrayOutputStream bytes = new BufferExposingByteArrayOutputStream();
+    final DataOutputStream output = new DataOutputStream(bytes);
+    try {
+      if (!writeElement(output, root, new TObjectIntHashMap<String>(), IOUtil.allocReadWriteUTFBuffer())) {
+        return null;
+      }
+      output.close();
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      return null;
+    }
+    return bytes.toByteArray();
+  }
+
+  private static boolean writeElement(DataOutput output, Element element, TObjectIntHashMap<String> names, byte[] buffer) throws IOException {
+    if (element.getNamespace() != Namespace.NO_NAMESPACE || !element.getAdditionalNamespaces().isEmpty()) {
+      return false;
+    }
+    writeName(output, element.getName(), names, buffer);
+    final List<?> attributes = element.getAttributes();
+    DataInputOutputUtil.writeINT(output, attributes.size());
+    for (Object o : attributes) {
+      final Attribute attribute = (Attribute)o;
+      if (attribute.getNamespace() != Namespace.NO_NAMESPACE) {
+        return false;
+      }
+      writeName(output, attribute.getName(), names, buffer);
+      IOUtil.writeUTFFast(buffer, output, attribute.getValue());
+    }
+    for (Object o : element.getContent()) {
+      if (o instanceof Element) {
+        output.writeByte(CHILD_ELEMENT);
+        if (!writeElement(output, (Element)o, names, buffer)) {
+          return false;
+        }
+      }
+      else if (o instanceof Text) {
+        output.writeByte(TEXT);
+        IOUtil.writeUTFFast(buffer, output, ((Text)o).getText());
+      }
+    }
+    output.writeByte(END);
+    return true;
+  }
+
+  private static void writeName(DataOutput output, String name, TObjectIntHashMap<String> names, byte[] buffer) throws IOException {
+    final int index = names.get(name);
+    if (index > 0) {
+      DataInputOutputUtil.writeINT(output, index);
+    }
+    else {
+      DataInputOutputUtil.writeINT(output, 0);
+      IOUtil.writeUTFFast(buffer, output, name);
+      names.put(name, names.size() + 1);
+    }
+  }
+
+  private static Element readElement(DataInput input, List<String> names, byte[] buffer) throws IOException {
+    final Element element = new Element(readName(input, names, buffer));
+    final int attributesCount = DataInputOutputUtil.readINT(input);
+    for (int i = 0; i < attributesCount; i++) {
+      final String name = readName(input, names, buffer);
+      element.setAttribute(name, IOUtil.readUTFFast(buffer, input));
+    }
+    while (true) {
+      final byte type = input.readByte();
+      if (type == CHILD_ELEMENT) {
+        element.addContent(readElement(input, names, buffer));
+      }
+      else if (type == TEXT) {
+        element.addContent(new Text(IOUtil.readUTFFast(buffer, input)));
+      }
+      else {
+        return element;
+      }
+    }
+  }
+
+  private static String readName(DataInput input, List<String> names, byte[] buffer) throws IOException {
+    final int index = DataInputOutputUtil.readINT(input);
+    if (index > 0) {
+      return names.get(index - 1);
+    }
+    final String name = IOUtil.readUTFFast(buffer, input);
+    names.add(name);
+    return name;
+  }
+
+  private static class CachedFile {
+    private final long myLength;
+    private final long myTimestamp;
+    private final byte[] myData;
+
+    private CachedFile(long length, long timestamp, byte[] data) {
+      myLength = length;
+      myTimestamp = timestamp;
+      myData = data;
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package org.jetbrains.jps.model.serialization;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.ThrowableRunnable;
+import org.jetbrains.jps.model.JpsElementFactory;
+import org.jetbrains.jps.model.JpsProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * Measures loading of a project with many modules with a cold and a warm {@link JpsXmlFileCache}.
+ */
+public class JpsProjectLoadingPerformanceTest extends JpsSerializationTestCase {
+  private static final int MODULES_COUNT = 3000;
+  private File myProjectDir;
+  private File myCacheFile;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    myProjectDir = FileUtil.createTempDirectory("manyModules", null);
+    myCacheFile = new File(FileUtil.createTempDirectory("xmlCache", null), "cache.dat");
+    generateProject();
+  }
+
+  public void testLoadWithColdCache() {
+    PlatformTestUtil.startPerformanceTest("Loading project with cold cache is slow", 15000, new ThrowableRunnable() {
+      @Override
+      public void run() throws Exception {
+        FileUtil.delete(myCacheFile);
+        JpsXmlFileCache cache = new JpsXmlFileCache(myCacheFile);
+        assertModulesLoaded(cache);
+        cache.save();
+      }
+    }).attempts(2).ioBound().assertTiming();
+  }
+
+  public void testLoadWithWarmCache() throws Exception {
+    JpsXmlFileCache cache = new JpsXmlFileCache(myCacheFile);
+    assertModulesLoaded(cache);
+    cache.save();
+    assertTrue(myCacheFile.exists());
+
+    PlatformTestUtil.startPerformanceTest("Loading project with warm cache is slow", 5000, new ThrowableRunnable() {
+      @Override
+      public void run() throws Exception {
+        assertModulesLoaded(new JpsXmlFileCache(myCacheFile));
+      }
+    }).attempts(2).ioBound().assertTiming();
+  }
+
+  private void assertModulesLoaded(JpsXmlFileCache cache) throws IOException {
+    JpsProject project = JpsElementFactory.getInstance().createModel().getProject();
+    JpsProjectLoader.loadProject(project, Collections.<String, String>emptyMap(), myProjectDir.getAbsolutePath(), cache);
+    assertEquals(MODULES_COUNT, project.getModules().size());
+  }
+
+  private void generateProject() throws IOException {
+    StringBuilder modules = new StringBuilder();
+    for (int i = 0; i < MODULES_COUNT; i++) {
+      String path = "$PROJECT_DIR$/m" + i + "/m" + i + ".iml";
+      modules.append("      <module fileurl=\"file://").append(path).append("\" filepath=\"").append(path).append("\" />\n");
+      FileUtil.writeToFile(new File(myProjectDir, "m" + i + "/m" + i + ".iml"), moduleText(i));
+    }
+    FileUtil.writeToFile(new File(myProjectDir, ".idea/modules.xml"),
+                         "<project version=\"4\">\n" +
+                         "  <component name=\"ProjectModuleManager\">\n" +
+                         "    <modules>\n" + modules + "    </modules>\n" +
+                         "  </component>\n" +
+                         "</project>\n");
+    FileUtil.writeToFile(new File(myProjectDir, ".idea/misc.xml"),
+                         "<project version=\"4\">\n" +
+                         "  <component name=\"ProjectRootManager\" version=\"2\" project-jdk-name=\"1.6\" project-jdk-type=\"JavaSDK\">\n" +
+                         "    <output url=\"file://$PROJECT_DIR$/out\" />\n" +
+                         "  </component>\n" +
+                         "</project>\n");
+  }
+
+  private static String moduleText(int index) {
+    StringBuilder text = new StringBuilder();
+    text.append("<module type=\"JAVA_MODULE\" version=\"4\">\n");
+    text.append("  <component name=\"NewModuleRootManager\" inherit-compiler-output=\"true\">\n");
+    text.append("    <exclude-output />\n");
+    text.append("    <content url=\"file://$MODULE_DIR$\">\n");
+    text.append("      <sourceFolder url=\"file://$MODULE_DIR$/src\" isTestSource=\"false\" />\n");
+    text.append("      <sourceFolder url=\"file://$MODULE_DIR$/testSrc\" isTestSource=\"true\" />\n");
+    text.append("    </content>\n");
+    text.append("    <orderEntry type=\"inheritedJdk\" />\n");
+    text.append("    <orderEntry type=\"sourceFolder\" forTests=\"false\" />\n");
+    if (index > 0) {
+      text.append("    <orderEntry type=\"module\" module-name=\"m").append(index - 1).append("\" />\n");
+    }
+    text.append("    <orderEntry type=\"module-library\">\n");
+    text.append("      <library>\n");
+    text.append("        <CLASSES>\n");
+    text.append("          <root url=\"jar://$MODULE_DIR$/lib/m").append(index).append(".jar!/\" />\n");
+    text.append("        </CLASSES>\n");
+    text.append("        <JAVADOC />\n");
+    text.append("        <SOURCES />\n");
+    text.append("      </library>\n");
+    text.append("    </orderEntry>\n");
+    text.append("  </component>\n");
+    text.append("</module>\n");
+    return text.toString();
+  }
+}
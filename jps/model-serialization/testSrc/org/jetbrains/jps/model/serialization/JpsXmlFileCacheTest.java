@@ -0,0 +1,70 @@
+package org.jetbrains.jps.model.serialization;
+
+import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jdom.Element;
+import org.jetbrains.jps.model.JpsElementFactory;
+import org.jetbrains.jps.model.JpsProject;
+
+import java.io.File;
+import java.util.Collections;
+
+public class JpsXmlFileCacheTest extends JpsSerializationTestCase {
+  private File myCacheFile;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    myCacheFile = new File(FileUtil.createTempDirectory("xmlCache", null), "cache.dat");
+  }
+
+  public void testCachedElementsAreEqualToParsed() throws Exception {
+    File projectDir = new File(getTestDataFileAbsolutePath(JpsProjectSerializationTest.SAMPLE_PROJECT_PATH));
+    File[] files = {new File(projectDir, "main.iml"), new File(projectDir, "util/util.iml"), new File(projectDir, ".idea/modules.xml"),
+      new File(projectDir, ".idea/misc.xml")};
+
+    JpsXmlFileCache cache = new JpsXmlFileCache(myCacheFile);
+    for (File file : files) {
+      cache.loadRootElement(file);
+    }
+    cache.save();
+    assertTrue(myCacheFile.exists());
+
+    cache = new JpsXmlFileCache(myCacheFile);
+    for (File file : files) {
+      Element cached = cache.loadRootElement(file);
+      assertTrue(file.getPath(), JDOMUtil.areElementsEqual(JDOMUtil.loadDocument(file).getRootElement(), cached));
+    }
+  }
+
+  public void testChangedFileIsReloaded() throws Exception {
+    File file = new File(myCacheFile.getParentFile(), "a.xml");
+    FileUtil.writeToFile(file, "<root><a name=\"x\"/></root>");
+    JpsXmlFileCache cache = new JpsXmlFileCache(myCacheFile);
+    assertEquals("x", cache.loadRootElement(file).getChild("a").getAttributeValue("name"));
+    cache.save();
+
+    FileUtil.writeToFile(file, "<root><a name=\"yy\"/></root>");
+    file.setLastModified(file.lastModified() + 2000);
+    cache = new JpsXmlFileCache(myCacheFile);
+    assertEquals("yy", cache.loadRootElement(file).getChild("a").getAttributeValue("name"));
+  }
+
+  public void testLoadProjectUsingCache() throws Exception {
+    String projectPath = getTestDataFileAbsolutePath(JpsProjectSerializationTest.SAMPLE_PROJECT_PATH);
+    JpsXmlFileCache cache = new JpsXmlFileCache(myCacheFile);
+    JpsProjectLoader.loadProject(myProject, Collections.<String, String>emptyMap(), projectPath, cache);
+    cache.save();
+
+    JpsProject project = JpsElementFactory.getInstance().createModel().getProject();
+    JpsProjectLoader.loadProject(project, Collections.<String, String>emptyMap(), projectPath, new JpsXmlFileCache(myCacheFile));
+    assertEquals(myProject.getName(), project.getName());
+    assertEquals(myProject.getModules().size(), project.getModules().size());
+    for (int i = 0; i < project.getModules().size(); i++) {
+      assertEquals(myProject.getModules().get(i).getName(), project.getModules().get(i).getName());
+      assertEquals(myProject.getModules().get(i).getDependenciesList().getDependencies().size(),
+                   project.getModules().get(i).getDependenciesList().getDependencies().size());
+    }
+    assertEquals(myProject.getLibraryCollection().getLibraries().size(), project.getLibraryCollection().getLibraries().size());
+  }
+}
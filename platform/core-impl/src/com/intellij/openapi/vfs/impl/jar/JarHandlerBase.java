@@ -33,10 +33,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ref.Reference;
-import java.util.Enumeration;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -47,7 +44,7 @@ public class JarHandlerBase {
   private static final long DEFAULT_TIMESTAMP = -1L;
 
   private final TimedReference<JarFile> myJarFile = new TimedReference<JarFile>(null);
-  private Reference<Map<String, EntryInfo>> myRelPathsToEntries = new SoftReference<Map<String, EntryInfo>>(null);
+  private volatile Reference<JarEntries> myRelPathsToEntries = new SoftReference<JarEntries>(null);
   private final Object lock = new Object();
 
   protected final String myBasePath;
@@ -56,11 +53,41 @@ public class JarHandlerBase {
     protected final boolean isDirectory;
     protected final String shortName;
     protected final EntryInfo parent;
+    protected final long length;
+    protected final long timestamp;
 
     public EntryInfo(final String shortName, final EntryInfo parent, final boolean directory) {
+      this(shortName, parent, directory, DEFAULT_LENGTH, DEFAULT_TIMESTAMP);
+    }
+
+    public EntryInfo(final String shortName, final EntryInfo parent, final boolean directory, final long length, final long timestamp) {
       this.shortName = shortName;
       this.parent = parent;
       isDirectory = directory;
+      this.length = length;
+      this.timestamp = timestamp;
+    }
+  }
+
+  /**
+   * Entries of the jar together with the names of children of each directory. Instances aren't modified after creation,
+   * so they are read without locking.
+   */
+  private static class JarEntries {
+    private final Map<String, EntryInfo> myEntries;
+    private final Map<EntryInfo, List<String>> myChildren = new THashMap<EntryInfo, List<String>>();
+
+    private JarEntries(@NotNull Map<String, EntryInfo> entries) {
+      myEntries = entries;
+      for (EntryInfo info : entries.values()) {
+        if (info.parent != null) {
+          List<String> names = myChildren.get(info.parent);
+          if (names == null) {
+            myChildren.put(info.parent, names = new ArrayList<String>());
+          }
+          names.add(info.shortName);
+        }
+      }
     }
   }
 
@@ -77,27 +104,71 @@ public class JarHandlerBase {
 
   @NotNull
   protected Map<String, EntryInfo> initEntries() {
+    return getEntries().myEntries;
+  }
+
+  @NotNull
+  private JarEntries getEntries() {
+    Reference<JarEntries> ref = myRelPathsToEntries;
+    JarEntries entries = ref != null ? ref.get() : null;
+    if (entries != null) return entries;
+
     synchronized (lock) {
-      Map<String, EntryInfo> map = myRelPathsToEntries != null ? myRelPathsToEntries.get() : null;
-      if (map == null) {
-        final JarFile zip = getJar();
-
-        map = new THashMap<String, EntryInfo>();
-        if (zip != null) {
-          map.put("", new EntryInfo("", null, true));
-          final Enumeration<? extends JarFile.JarEntry> entries = zip.entries();
-          while (entries.hasMoreElements()) {
-            JarFile.JarEntry entry = entries.nextElement();
-            final String name = entry.getName();
-            final boolean isDirectory = StringUtil.endsWithChar(name, '/');
-            getOrCreate(isDirectory ? name.substring(0, name.length() - 1) : name, isDirectory, map);
+      ref = myRelPathsToEntries;
+      entries = ref != null ? ref.get() : null;
+      if (entries == null) {
+        Map<String, EntryInfo> map = loadEntries();
+        if (map == null) {
+          map = readEntries();
+          if (map != null) {
+            saveEntries(map);
           }
+        }
 
-          myRelPathsToEntries = new SoftReference<Map<String, EntryInfo>>(map);
+        if (map != null) {
+          entries = new JarEntries(map);
+          myRelPathsToEntries = new SoftReference<JarEntries>(entries);
+        }
+        else {
+          entries = new JarEntries(new THashMap<String, EntryInfo>());
         }
       }
-      return map;
+      return entries;
+    }
+  }
+
+  @Nullable
+  private Map<String, EntryInfo> readEntries() {
+    final JarFile zip = getJar();
+    if (zip == null) return null;
+
+    final Map<String, JarFile.JarEntry> jarEntries = new THashMap<String, JarFile.JarEntry>();
+    final Enumeration<? extends JarFile.JarEntry> entries = zip.entries();
+    while (entries.hasMoreElements()) {
+      JarFile.JarEntry entry = entries.nextElement();
+      final String name = entry.getName();
+      jarEntries.put(StringUtil.endsWithChar(name, '/') ? name.substring(0, name.length() - 1) : name, entry);
+    }
+
+    final Map<String, EntryInfo> map = new THashMap<String, EntryInfo>(jarEntries.size() + 1);
+    map.put("", new EntryInfo("", null, true));
+    for (Map.Entry<String, JarFile.JarEntry> entry : jarEntries.entrySet()) {
+      getOrCreate(entry.getKey(), StringUtil.endsWithChar(entry.getValue().getName(), '/'), map, jarEntries);
     }
+    return map;
+  }
+
+  /**
+   * Allows to reuse entries of the jar stored by {@link #saveEntries} instead of reading its central directory again.
+   *
+   * @return entries of the current version of the jar, or {@code null} if they aren't stored
+   */
+  @Nullable
+  protected Map<String, EntryInfo> loadEntries() {
+    return null;
+  }
+
+  protected void saveEntries(@NotNull Map<String, EntryInfo> entries) {
   }
 
   public File getMirrorFile(File originalFile) {
@@ -207,15 +278,18 @@ public class JarHandlerBase {
     return new File(myBasePath);
   }
 
-  private static EntryInfo getOrCreate(String entryName, boolean isDirectory, Map<String, EntryInfo> map) {
+  private static EntryInfo getOrCreate(String entryName, boolean isDirectory, Map<String, EntryInfo> map,
+                                       Map<String, JarFile.JarEntry> jarEntries) {
     EntryInfo info = map.get(entryName);
     if (info == null) {
       int idx = entryName.lastIndexOf('/');
       final String parentEntryName = idx > 0 ? entryName.substring(0, idx) : "";
       String shortName = idx > 0 ? entryName.substring(idx + 1) : entryName;
-      if (".".equals(shortName)) return getOrCreate(parentEntryName, true, map);
+      if (".".equals(shortName)) return getOrCreate(parentEntryName, true, map, jarEntries);
 
-      info = new EntryInfo(shortName, getOrCreate(parentEntryName, true, map), isDirectory);
+      final JarFile.JarEntry entry = jarEntries.get(entryName);
+      info = new EntryInfo(shortName, getOrCreate(parentEntryName, true, map, jarEntries), isDirectory,
+                           entry != null ? entry.getSize() : DEFAULT_LENGTH, entry != null ? entry.getTime() : DEFAULT_TIMESTAMP);
       map.put(entryName, info);
     }
 
@@ -224,25 +298,14 @@ public class JarHandlerBase {
 
   @NotNull
   public String[] list(@NotNull final VirtualFile file) {
-    synchronized (lock) {
-      EntryInfo parentEntry = getEntryInfo(file);
-
-      Set<String> names = new HashSet<String>();
-      for (EntryInfo info : getEntriesMap().values()) {
-        if (info.parent == parentEntry) {
-          names.add(info.shortName);
-        }
-      }
-
-      return ArrayUtil.toStringArray(names);
-    }
+    final JarEntries entries = getEntries();
+    final EntryInfo parentEntry = entries.myEntries.get(getRelativePath(file));
+    final List<String> names = parentEntry != null ? entries.myChildren.get(parentEntry) : null;
+    return names != null ? ArrayUtil.toStringArray(names) : ArrayUtil.EMPTY_STRING_ARRAY;
   }
 
   protected EntryInfo getEntryInfo(final VirtualFile file) {
-    synchronized (lock) {
-      String parentPath = getRelativePath(file);
-      return getEntryInfo(parentPath);
-    }
+    return getEntryInfo(getRelativePath(file));
   }
 
   public EntryInfo getEntryInfo(String parentPath) {
@@ -258,18 +321,9 @@ public class JarHandlerBase {
     return StringUtil.startsWithChar(path, '/') ? path.substring(1) : path;
   }
 
-  @Nullable
-  private JarFile.JarEntry convertToEntry(VirtualFile file) {
-    String path = getRelativePath(file);
-    final JarFile jar = getJar();
-    return jar == null ? null : jar.getEntry(path);
-  }
-
   public long getLength(@NotNull final VirtualFile file) {
-    final JarFile.JarEntry entry = convertToEntry(file);
-    synchronized (lock) {
-      return entry == null ? DEFAULT_LENGTH : entry.getSize();
-    }
+    final EntryInfo info = getEntryInfo(file);
+    return info == null ? DEFAULT_LENGTH : info.length;
   }
 
   @NotNull
@@ -277,43 +331,38 @@ public class JarHandlerBase {
     return new BufferExposingByteArrayInputStream(contentsToByteArray(file));
   }
 
+  /**
+   * Doesn't take the handler lock: {@link ZipFile} supports concurrent reading of entries itself.
+   */
   @NotNull
   public byte[] contentsToByteArray(@NotNull final VirtualFile file) throws IOException {
-    final JarFile.JarEntry entry = convertToEntry(file);
+    final JarFile jar = getJar();
+    final JarFile.JarEntry entry = jar == null ? null : jar.getEntry(getRelativePath(file));
     if (entry == null) {
       return ArrayUtil.EMPTY_BYTE_ARRAY;
     }
-    synchronized (lock) {
-      final JarFile jar = getJar();
-      assert jar != null : file;
 
-      final InputStream stream = jar.getInputStream(entry);
-      assert stream != null : file;
+    final InputStream stream = jar.getInputStream(entry);
+    assert stream != null : file;
 
-      try {
-        return FileUtil.loadBytes(stream, (int)entry.getSize());
-      }
-      finally {
-        stream.close();
-      }
+    try {
+      return FileUtil.loadBytes(stream, (int)entry.getSize());
+    }
+    finally {
+      stream.close();
     }
   }
 
   public long getTimeStamp(@NotNull final VirtualFile file) {
     if (file.getParent() == null) return getOriginalFile().lastModified(); // Optimization
-    final JarFile.JarEntry entry = convertToEntry(file);
-    synchronized (lock) {
-      return entry == null ? DEFAULT_TIMESTAMP : entry.getTime();
-    }
+    final EntryInfo info = getEntryInfo(file);
+    return info == null ? DEFAULT_TIMESTAMP : info.timestamp;
   }
 
   public boolean isDirectory(@NotNull final VirtualFile file) {
     if (file.getParent() == null) return true; // Optimization
-    synchronized (lock) {
-      final String path = getRelativePath(file);
-      final EntryInfo info = getEntryInfo(path);
-      return info == null || info.isDirectory;
-    }
+    final EntryInfo info = getEntryInfo(file);
+    return info == null || info.isDirectory;
   }
 
   public boolean exists(@NotNull final VirtualFile fileOrDirectory) {
@@ -327,13 +376,8 @@ public class JarHandlerBase {
 
   @Nullable
   public FileAttributes getAttributes(@NotNull final VirtualFile file) {
-    final JarFile.JarEntry entry = convertToEntry(file);
-    synchronized (lock) {
-      final EntryInfo entryInfo = getEntryInfo(getRelativePath(file));
-      if (entryInfo == null) return null;
-      final long length = entry != null ? entry.getSize() : DEFAULT_LENGTH;
-      final long timeStamp = entry != null ? entry.getTime() : DEFAULT_TIMESTAMP;
-      return new FileAttributes(entryInfo.isDirectory, false, false, false, length, timeStamp, false);
-    }
+    final EntryInfo entryInfo = getEntryInfo(file);
+    if (entryInfo == null) return null;
+    return new FileAttributes(entryInfo.isDirectory, false, false, false, entryInfo.length, entryInfo.timestamp, false);
   }
 }
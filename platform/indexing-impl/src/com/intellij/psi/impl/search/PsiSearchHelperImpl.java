@@ -37,6 +37,7 @@ import com.intellij.psi.impl.cache.impl.id.IdIndexEntry;
 import com.intellij.psi.search.*;
 import com.intellij.psi.util.PsiUtilCore;
 import com.intellij.util.CommonProcessors;
+import com.intellij.util.Function;
 import com.intellij.util.Processor;
 import com.intellij.util.codeInsight.CommentUtilCore;
 import com.intellij.util.containers.ContainerUtil;
@@ -183,7 +184,13 @@ public class PsiSearchHelperImpl implements PsiSearchHelper {
     }
 
     try {
-      return processPsiFileRoots(fileSet, new Processor<PsiElement>() {
+      final List<StringSearcher> searchers = Collections.singletonList(searcher);
+      return processPsiFileRoots(fileSet, new Function<VirtualFile, Collection<StringSearcher>>() {
+        @Override
+        public Collection<StringSearcher> fun(VirtualFile file) {
+          return searchers;
+        }
+      }, new Processor<PsiElement>() {
         @Override
         public boolean process(PsiElement psiRoot) {
           return LowLevelSearchUtil.processElementsContainingWordInElement(processor, psiRoot, searcher, true, progress);
@@ -197,7 +204,12 @@ public class PsiSearchHelperImpl implements PsiSearchHelper {
     }
   }
 
+  /**
+   * @param wordSearchers searchers for the words which are looked for in the file; a file whose text doesn't contain any of them
+   *                      isn't passed to the processor, so its PSI isn't built
+   */
   private boolean processPsiFileRoots(@NotNull List<VirtualFile> files,
+                                      @NotNull final Function<VirtualFile, Collection<StringSearcher>> wordSearchers,
                                       @NotNull final Processor<PsiElement> psiRootProcessor,
                                       final ProgressIndicator progress) {
     myManager.startBatchFilesProcessingMode();
@@ -216,8 +228,9 @@ public class PsiSearchHelperImpl implements PsiSearchHelper {
               return vfile.isValid() ? myManager.findFile(vfile) : null;
             }
           });
-          if (file != null && !(file instanceof PsiBinaryFile)) {
-            file.getViewProvider().getContents(); // load contents outside readaction
+          if (file != null && !(file instanceof PsiBinaryFile) &&
+              // load contents and look for the words outside readaction
+              containsAnyWord(file.getViewProvider().getContents(), wordSearchers.fun(vfile), progress)) {
             ApplicationManager.getApplication().runReadAction(new Runnable() {
               @Override
               public void run() {
@@ -270,6 +283,21 @@ public class PsiSearchHelperImpl implements PsiSearchHelper {
     }
   }
 
+  /**
+   * The index may report a file which doesn't contain the word as a whole word, e.g. because of a hash collision of index entries.
+   * Such files are filtered out by the text, which is cheaper than building their PSI under a read action.
+   */
+  private static boolean containsAnyWord(@NotNull CharSequence text,
+                                         @NotNull Collection<StringSearcher> searchers,
+                                         @Nullable ProgressIndicator progress) {
+    for (StringSearcher searcher : searchers) {
+      if (LowLevelSearchUtil.searchWord(text, CharArrayUtil.fromSequenceWithoutCopying(text), 0, text.length(), searcher, progress) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   @NotNull
   private List<VirtualFile> getFilesWithText(@NotNull GlobalSearchScope scope,
                                              final short searchContext,
@@ -578,7 +606,16 @@ public class PsiSearchHelperImpl implements PsiSearchHelper {
         progress.setText(PsiBundle.message("psi.search.for.word.progress", result.toString()));
       }
 
-      return processPsiFileRoots(new ArrayList<VirtualFile>(candidateFiles.keySet()), new Processor<PsiElement>() {
+      return processPsiFileRoots(new ArrayList<VirtualFile>(candidateFiles.keySet()), new Function<VirtualFile, Collection<StringSearcher>>() {
+                                   @Override
+                                   public Collection<StringSearcher> fun(VirtualFile file) {
+                                     List<StringSearcher> result = new ArrayList<StringSearcher>();
+                                     for (RequestWithProcessor singleRequest : candidateFiles.get(file)) {
+                                       result.add(searchers.get(singleRequest));
+                                     }
+                                     return result;
+                                   }
+                                 }, new Processor<PsiElement>() {
                                    @Override
                                    public boolean process(PsiElement psiRoot) {
                                      final VirtualFile vfile = psiRoot.getContainingFile().getVirtualFile();
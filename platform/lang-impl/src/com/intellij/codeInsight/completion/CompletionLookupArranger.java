@@ -64,7 +64,7 @@ public class CompletionLookupArranger extends LookupArranger {
 
     @Override
     public Iterable<LookupElement> classify(Iterable<LookupElement> source, ProcessingContext context) {
-      return sortByPresentation(source);
+      return sortByPresentationLazily(source);
     }
 
     @Override
@@ -164,17 +164,64 @@ public class CompletionLookupArranger extends LookupArranger {
     return tailText == null || tailText.isEmpty() ? " " : tailText;
   }
 
+  private static final Comparator<LookupElement> BY_PRESENTATION = new Comparator<LookupElement>() {
+    @Override
+    public int compare(LookupElement o1, LookupElement o2) {
+      String invariant = PRESENTATION_INVARIANT.get(o1);
+      assert invariant != null;
+      return invariant.compareToIgnoreCase(PRESENTATION_INVARIANT.get(o2));
+    }
+  };
+
   private static List<LookupElement> sortByPresentation(Iterable<LookupElement> source) {
     ArrayList<LookupElement> result = ContainerUtil.newArrayList(source);
-    ContainerUtil.sort(result, new Comparator<LookupElement>() {
+    ContainerUtil.sort(result, BY_PRESENTATION);
+    return result;
+  }
+
+  /**
+   * Usually only the items visible in the lookup are requested from the result, so instead of sorting all items (there may be tens
+   * of thousands of them with equal weights) they are put into a heap and taken from it one by one. Items with equal presentation
+   * keep their original order, as with {@link #sortByPresentation}.
+   */
+  private static Iterable<LookupElement> sortByPresentationLazily(Iterable<LookupElement> source) {
+    final List<LookupElement> items = ContainerUtil.newArrayList(source);
+    if (items.size() < 2) {
+      return items;
+    }
+
+    return new Iterable<LookupElement>() {
       @Override
-      public int compare(LookupElement o1, LookupElement o2) {
-        String invariant = PRESENTATION_INVARIANT.get(o1);
-        assert invariant != null;
-        return invariant.compareToIgnoreCase(PRESENTATION_INVARIANT.get(o2));
+      public Iterator<LookupElement> iterator() {
+        final PriorityQueue<Integer> queue = new PriorityQueue<Integer>(items.size(), new Comparator<Integer>() {
+          @Override
+          public int compare(Integer o1, Integer o2) {
+            int result = BY_PRESENTATION.compare(items.get(o1), items.get(o2));
+            return result != 0 ? result : o1.compareTo(o2);
+          }
+        });
+        for (int i = 0; i < items.size(); i++) {
+          queue.offer(i);
+        }
+        return new Iterator<LookupElement>() {
+          @Override
+          public boolean hasNext() {
+            return !queue.isEmpty();
+          }
+
+          @Override
+          public LookupElement next() {
+            if (queue.isEmpty()) throw new NoSuchElementException();
+            return items.get(queue.poll());
+          }
+
+          @Override
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
       }
-    });
-    return result;
+    };
   }
 
   private static boolean isAlphaSorted() {
@@ -183,6 +230,7 @@ public class CompletionLookupArranger extends LookupArranger {
 
   @Override
   public Pair<List<LookupElement>, Integer> arrangeItems(@NotNull Lookup lookup, boolean onExplicitAction) {
+    long start = System.currentTimeMillis();
     List<LookupElement> items = getMatchingItems();
     MultiMap<CompletionSorterImpl, LookupElement> itemsBySorter = groupItemsBySorter(items);
 
@@ -196,6 +244,9 @@ public class CompletionLookupArranger extends LookupArranger {
 
     addDummyItems(items.size() - listModel.size(), listModel);
 
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(items.size() + " of " + myItems.size() + " items arranged in " + (System.currentTimeMillis() - start) + " ms");
+    }
     return new Pair<List<LookupElement>, Integer>(listModel, toSelect);
   }
 
@@ -17,6 +17,7 @@
 package com.intellij.codeInsight.daemon.impl;
 
 import com.intellij.codeHighlighting.HighlightingPass;
+import com.intellij.codeHighlighting.Pass;
 import com.intellij.codeHighlighting.TextEditorHighlightingPass;
 import com.intellij.concurrency.Job;
 import com.intellij.concurrency.JobImpl;
@@ -41,6 +42,7 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.ArrayUtil;
 import com.intellij.util.ConcurrencyUtil;
 import com.intellij.util.Consumer;
 import com.intellij.util.SmartList;
@@ -52,20 +54,29 @@ import org.jetbrains.annotations.NotNull;
 import java.util.*;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * @author cdr
  */
 public abstract class PassExecutorService implements Disposable {
   private static final Logger LOG = Logger.getInstance("#com.intellij.codeInsight.daemon.impl.PassExecutorService");
+  /**
+   * These passes process the whole file (or even the whole project), so they are queued after the passes which highlight
+   * the visible part of the editor first
+   */
+  private static final int[] WHOLE_FILE_PASSES =
+    {Pass.LOCAL_INSPECTIONS, Pass.EXTERNAL_TOOLS, Pass.WOLF, Pass.LINE_MARKERS, Pass.UPDATE_OVERRIDEN_MARKERS};
 
   private final Map<ScheduledPass, Job<Void>> mySubmittedPasses = new ConcurrentHashMap<ScheduledPass, Job<Void>>();
   private final Project myProject;
   private volatile boolean isDisposed;
   private final AtomicInteger nextPassId = new AtomicInteger(100);
+  private final ConcurrentMap<String, LatencyHistogram> myLatencies = new ConcurrentHashMap<String, LatencyHistogram>();
 
   public PassExecutorService(Project project) {
     myProject = project;
@@ -271,7 +282,8 @@ public abstract class PassExecutorService implements Disposable {
 
   private void submit(final ScheduledPass pass) {
     if (!pass.myUpdateProgress.isCanceled()) {
-      Job<Void> job = JobLauncher.getInstance().submitToJobThread(pass.myJobPriority, pass, new Consumer<Future>() {
+      int priority = ArrayUtil.indexOf(WHOLE_FILE_PASSES, pass.myPass.getId()) >= 0 ? pass.myJobPriority + 1 : pass.myJobPriority;
+      Job<Void> job = JobLauncher.getInstance().submitToJobThread(priority, pass, new Consumer<Future>() {
         @Override
         public void consume(Future future) {
           try {
@@ -342,6 +354,7 @@ public abstract class PassExecutorService implements Disposable {
         }
       }
 
+      long start = System.currentTimeMillis();
       ((ProgressManagerImpl)ProgressManager.getInstance()).executeProcessUnderProgress(new Runnable(){
         @Override
         public void run() {
@@ -384,6 +397,7 @@ public abstract class PassExecutorService implements Disposable {
       log(myUpdateProgress, myPass, "Finished. ");
 
       if (!myUpdateProgress.isCanceled()) {
+        addLatency(myPass, System.currentTimeMillis() - start);
         applyInformationToEditorsLater(myFileEditors, myPass, myUpdateProgress, myThreadsToStartCountdown);
         for (ScheduledPass successor : mySuccessorsOnCompletion) {
           int predecessorsToRun = successor.myRunningPredecessorsCount.decrementAndGet();
@@ -462,6 +476,52 @@ public abstract class PassExecutorService implements Disposable {
     }
   }
 
+  private void addLatency(@NotNull TextEditorHighlightingPass pass, long time) {
+    String name = pass.getClass().getName();
+    LatencyHistogram histogram = myLatencies.get(name);
+    if (histogram == null) {
+      histogram = ConcurrencyUtil.cacheOrGet(myLatencies, name, new LatencyHistogram());
+    }
+    histogram.add(time);
+  }
+
+  /**
+   * @return pass class name -> distribution of times spent in {@link TextEditorHighlightingPass#collectInformation} by passes which
+   * weren't canceled
+   */
+  @NotNull
+  public Map<String, LatencyHistogram> getLatencyHistograms() {
+    return Collections.unmodifiableMap(myLatencies);
+  }
+
+  public static class LatencyHistogram {
+    /**
+     * Upper bounds (in milliseconds) of the histogram buckets, the last bucket contains all greater times
+     */
+    public static final long[] BUCKET_BOUNDS = {10, 50, 100, 500, 1000, 5000};
+    private final AtomicIntegerArray myCounts = new AtomicIntegerArray(BUCKET_BOUNDS.length + 1);
+
+    void add(long time) {
+      int bucket = 0;
+      while (bucket < BUCKET_BOUNDS.length && time > BUCKET_BOUNDS[bucket]) bucket++;
+      myCounts.incrementAndGet(bucket);
+    }
+
+    @NotNull
+    public int[] getCounts() {
+      int[] result = new int[myCounts.length()];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = myCounts.get(i);
+      }
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return Arrays.toString(getCounts());
+    }
+  }
+
   protected boolean isDisposed() {
     return isDisposed;
   }
@@ -16,6 +16,7 @@
 package com.intellij.codeInsight.lookup;
 
 import com.intellij.codeInsight.completion.CompletionLookupArranger;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Comparing;
 import com.intellij.openapi.util.Ref;
 import com.intellij.psi.ForceableComparable;
@@ -29,11 +30,14 @@ import java.util.Map;
 * @author peter
 */
 public class CachingComparingClassifier extends ComparingClassifier<LookupElement> {
+  private static final Logger LOG = Logger.getInstance("#com.intellij.codeInsight.lookup.CachingComparingClassifier");
   private final Map<LookupElement, Comparable> myWeights = new IdentityHashMap<LookupElement, Comparable>();
   private final LookupElementWeigher myWeigher;
   private Ref<Comparable> myFirstWeight;
   private boolean myPrimitive = true;
   private int myPrefixChanges = -1;
+  private long myWeighingTime;
+  private int myWeighedCount;
 
   public CachingComparingClassifier(Classifier<LookupElement> next, LookupElementWeigher weigher) {
     super(next, weigher.toString(), weigher.isNegated());
@@ -44,7 +48,7 @@ public class CachingComparingClassifier extends ComparingClassifier<LookupElemen
   public final Comparable getWeight(LookupElement t) {
     Comparable w = myWeights.get(t);
     if (w == null && myWeigher.isPrefixDependent()) {
-      myWeights.put(t, w = myWeigher.weigh(t));
+      myWeights.put(t, w = weigh(t));
     }
     return w;
   }
@@ -56,9 +60,24 @@ public class CachingComparingClassifier extends ComparingClassifier<LookupElemen
     }
     checkPrefixChanged(context);
 
+    if (LOG.isDebugEnabled() && myWeighedCount > 0) {
+      LOG.debug(myName + ": " + myWeighedCount + " items weighed in " + myWeighingTime / 1000000 + " ms");
+    }
     return super.classify(source, context);
   }
 
+  private Comparable weigh(LookupElement t) {
+    if (!LOG.isDebugEnabled()) {
+      return myWeigher.weigh(t);
+    }
+
+    long start = System.nanoTime();
+    Comparable weight = myWeigher.weigh(t);
+    myWeighingTime += System.nanoTime() - start;
+    myWeighedCount++;
+    return weight;
+  }
+
   private void checkPrefixChanged(ProcessingContext context) {
     int actualPrefixChanges = context.get(CompletionLookupArranger.PREFIX_CHANGES).intValue();
     if (myWeigher.isPrefixDependent() && myPrefixChanges != actualPrefixChanges) {
@@ -75,7 +94,7 @@ public class CachingComparingClassifier extends ComparingClassifier<LookupElemen
 
   @Override
   public void addElement(LookupElement t) {
-    Comparable weight = myWeigher.weigh(t);
+    Comparable weight = weigh(t);
     if (weight instanceof ForceableComparable) {
       ((ForceableComparable)weight).force();
     }
@@ -24,10 +24,12 @@ import com.intellij.openapi.actionSystem.LangDataKeys;
 import com.intellij.openapi.actionSystem.PlatformDataKeys;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ApplicationNamesInfo;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.fileEditor.FileEditor;
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
 import com.intellij.openapi.fileTypes.FileTypeManager;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
@@ -62,6 +64,7 @@ import com.intellij.util.CommonProcessors;
 import com.intellij.util.Function;
 import com.intellij.util.PatternUtil;
 import com.intellij.util.Processor;
+import com.intellij.util.concurrency.BoundedTaskExecutor;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.indexing.FileBasedIndex;
 import gnu.trove.THashSet;
@@ -74,9 +77,14 @@ import org.jetbrains.annotations.Nullable;
 import javax.swing.*;
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 public class FindInProjectUtil {
+  private static final Logger LOG = Logger.getInstance("#com.intellij.find.impl.FindInProjectUtil");
   private static final int USAGES_PER_READ_ACTION = 100;
   private static final int FILES_SIZE_LIMIT = 70 * 1024 * 1024; // megabytes.
   private static final int SINGLE_FILE_SIZE_LIMIT = 5 * 1024 * 1024; // megabytes.
@@ -219,7 +227,10 @@ public class FindInProjectUtil {
                                 boolean showWarnings) {
     final ProgressIndicator progress = ProgressManager.getInstance().getProgressIndicator();
 
-    final Collection<PsiFile> psiFiles = getFilesToSearchIn(findModel, project, psiDirectory);
+    final long start = System.currentTimeMillis();
+    final List<PsiFile> psiFiles = new ArrayList<PsiFile>(getFilesToSearchIn(findModel, project, psiDirectory));
+    final List<Future<Boolean>> prescanResults = startTextPrescan(psiFiles, findModel, project, progress);
+    long firstUsageTime = -1;
     try {
       final Set<PsiFile> largeFiles = new THashSet<PsiFile>();
 
@@ -252,10 +263,15 @@ public class FindInProjectUtil {
           progress.setText2(FindBundle.message("find.searching.for.string.in.file.occurrences.progress", count));
         }
 
+        if (prescanResults != null && !getPrescanResult(prescanResults.get(index))) continue;
+
         int countInFile = processUsagesInFile(psiFile, findModel, consumer);
 
         count += countInFile;
         if (countInFile > 0) {
+          if (firstUsageTime == -1) {
+            firstUsageTime = System.currentTimeMillis() - start;
+          }
           totalFilesSize += fileLength;
           if (totalFilesSize > FILES_SIZE_LIMIT && !warningShown[0]) {
             warningShown[0] = true;
@@ -300,12 +316,85 @@ public class FindInProjectUtil {
     catch (ProcessCanceledException e) {
       // fine
     }
+    finally {
+      if (prescanResults != null) {
+        for (Future<Boolean> result : prescanResults) {
+          result.cancel(false);
+        }
+      }
+    }
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Find in path '" + findModel.getStringToFind() + "' in " + psiFiles.size() + " files: first usage found in " +
+                firstUsageTime + "ms, search completed in " + (System.currentTimeMillis() - start) + "ms");
+    }
 
     if (progress != null && !progress.isCanceled()) {
       progress.setText(FindBundle.message("find.progress.search.completed"));
     }
   }
 
+  /**
+   * Looks for the string in the text of the files on pooled threads, so files which don't contain it can be skipped without creating
+   * a document and taking a read action. Files are scanned ahead of the main search loop, which stays sequential and reports usages
+   * of each file as soon as it's processed. The number of threads is configured by the 'find.in.path.prescan.threads' registry key.
+   */
+  @Nullable
+  private static List<Future<Boolean>> startTextPrescan(@NotNull List<PsiFile> psiFiles,
+                                                        @NotNull FindModel findModel,
+                                                        @NotNull Project project,
+                                                        @Nullable final ProgressIndicator progress) {
+    int threadsCount = Math.min(Registry.intValue("find.in.path.prescan.threads"), Runtime.getRuntime().availableProcessors());
+    if (threadsCount <= 0 || psiFiles.size() < 2) {
+      return null;
+    }
+
+    // comments-only and literals-only searches need a lexer, but their results are a subset of the plain search results
+    final FindModel plainModel = new FindModel();
+    plainModel.copyFrom(findModel);
+    plainModel.setInCommentsOnly(false);
+    plainModel.setInStringLiteralsOnly(false);
+    plainModel.setForward(true);
+    final FindManager findManager = FindManager.getInstance(project);
+    final FileDocumentManager documentManager = FileDocumentManager.getInstance();
+
+    BoundedTaskExecutor executor = new BoundedTaskExecutor(new Executor() {
+      @Override
+      public void execute(@NotNull Runnable command) {
+        ApplicationManager.getApplication().executeOnPooledThread(command);
+      }
+    }, threadsCount);
+    List<Future<Boolean>> results = new ArrayList<Future<Boolean>>(psiFiles.size());
+    for (PsiFile psiFile : psiFiles) {
+      final VirtualFile virtualFile = psiFile.getVirtualFile();
+      results.add(executor.submit(new Callable<Boolean>() {
+        @Override
+        public Boolean call() {
+          if (virtualFile == null || progress != null && progress.isCanceled() || !virtualFile.isValid() ||
+              virtualFile.getFileType().isBinary() || virtualFile.getLength() > SINGLE_FILE_SIZE_LIMIT ||
+              documentManager.getCachedDocument(virtualFile) != null) {
+            // let the main loop decide; an opened document may contain unsaved changes
+            return true;
+          }
+          return findManager.findString(LoadTextUtil.loadText(virtualFile), 0, plainModel, virtualFile).isStringFound();
+        }
+      }));
+    }
+    return results;
+  }
+
+  private static boolean getPrescanResult(@NotNull Future<Boolean> result) {
+    try {
+      return result.get();
+    }
+    catch (InterruptedException e) {
+      throw new ProcessCanceledException();
+    }
+    catch (ExecutionException e) {
+      LOG.info(e.getCause());
+      return true;
+    }
+  }
+
   @NotNull
   private static String presentableFileInfo(@NotNull VirtualFile vFile) {
     return getPresentablePath(vFile)
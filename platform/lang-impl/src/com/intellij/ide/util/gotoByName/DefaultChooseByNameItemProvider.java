@@ -40,6 +40,7 @@ import java.util.*;
 public class DefaultChooseByNameItemProvider implements ChooseByNameItemProvider {
   private static final Logger LOG = Logger.getInstance("#com.intellij.ide.util.gotoByName.ChooseByNameIdea");
   private WeakReference<PsiElement> myContext;
+  private final MatchedNamesCache myMatchedNamesCache = new MatchedNamesCache();
 
   public DefaultChooseByNameItemProvider(PsiElement context) {
     myContext = new WeakReference<PsiElement>(context);
@@ -68,10 +69,10 @@ public class DefaultChooseByNameItemProvider implements ChooseByNameItemProvider
     String[] names = base.getNames(everywhere);
     NameUtil.MatchingCaseSensitivity sensitivity =
       modifiedNamePattern == null ? NameUtil.MatchingCaseSensitivity.NONE : NameUtil.MatchingCaseSensitivity.ALL;
-    getNamesByPattern(base, names, indicator, namesList, namePattern, sensitivity);
+    getNamesByPatternIncrementally(base, names, indicator, namesList, namePattern, sensitivity);
 
     if (modifiedNamePattern != null && namesList.isEmpty() && sensitivity != NameUtil.MatchingCaseSensitivity.NONE) {
-      getNamesByPattern(base, names, indicator, namesList, namePattern, NameUtil.MatchingCaseSensitivity.NONE);
+      getNamesByPatternIncrementally(base, names, indicator, namesList, namePattern, NameUtil.MatchingCaseSensitivity.NONE);
     }
     indicator.checkCanceled();
     sortNamesList(namePattern, namesList);
@@ -238,12 +239,36 @@ public class DefaultChooseByNameItemProvider implements ChooseByNameItemProvider
     return res;
   }
 
-  private static void getNamesByPattern(@NotNull final ChooseByNameBase base,
-                                        @NotNull String[] names,
-                                        @Nullable ProgressIndicator indicator,
-                                        @NotNull final List<String> list,
-                                        @NotNull String pattern,
-                                        @NotNull NameUtil.MatchingCaseSensitivity caseSensitivity) throws ProcessCanceledException {
+  /**
+   * Same as {@link #getNamesByPattern}, but if the pattern extends the one used for the previous call, only names matched by the previous
+   * pattern are checked.
+   */
+  private void getNamesByPatternIncrementally(@NotNull ChooseByNameBase base,
+                                              @NotNull String[] names,
+                                              @NotNull ProgressIndicator indicator,
+                                              @NotNull List<String> list,
+                                              @NotNull String pattern,
+                                              @NotNull NameUtil.MatchingCaseSensitivity caseSensitivity) throws ProcessCanceledException {
+    if (base.getModel() instanceof CustomMatcherModel) {
+      getNamesByPattern(base, names, indicator, list, pattern, caseSensitivity);
+      return;
+    }
+
+    String[] candidates = myMatchedNamesCache.getCandidates(names, pattern, caseSensitivity);
+    if (getNamesByPattern(base, candidates, indicator, list, pattern, caseSensitivity)) {
+      myMatchedNamesCache.cacheMatches(names, pattern, caseSensitivity, list);
+    }
+  }
+
+  /**
+   * @return false if the processing was canceled and {@code list} may contain not all matching names
+   */
+  private static boolean getNamesByPattern(@NotNull final ChooseByNameBase base,
+                                           @NotNull String[] names,
+                                           @Nullable ProgressIndicator indicator,
+                                           @NotNull final List<String> list,
+                                           @NotNull String pattern,
+                                           @NotNull NameUtil.MatchingCaseSensitivity caseSensitivity) throws ProcessCanceledException {
     if (!base.canShowListForEmptyPattern()) {
       LOG.assertTrue(!pattern.isEmpty(), base);
     }
@@ -255,7 +280,7 @@ public class DefaultChooseByNameItemProvider implements ChooseByNameItemProvider
     final MinusculeMatcher matcher = buildPatternMatcher(pattern, caseSensitivity);
 
     final String finalPattern = pattern;
-    JobLauncher.getInstance().invokeConcurrentlyUnderProgress(Arrays.asList(names), indicator, false, new Processor<String>() {
+    return JobLauncher.getInstance().invokeConcurrentlyUnderProgress(Arrays.asList(names), indicator, false, new Processor<String>() {
       @Override
       public boolean process(String name) {
         if (matches(base, finalPattern, matcher, name)) {
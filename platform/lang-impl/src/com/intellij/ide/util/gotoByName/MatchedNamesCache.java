@@ -0,0 +1,83 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.ide.util.gotoByName;
+
+import com.intellij.psi.codeStyle.NameUtil;
+import com.intellij.util.ArrayUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remembers names matched by the last pattern for each case sensitivity. While the user is typing, each pattern usually extends the previous one, and a name
+ * matching the longer pattern always matches the shorter one, so only names matched by the previous pattern need to be checked
+ * instead of all names of the model.
+ */
+class MatchedNamesCache {
+  private final ConcurrentMap<NameUtil.MatchingCaseSensitivity, Entry> myLastEntries =
+    new ConcurrentHashMap<NameUtil.MatchingCaseSensitivity, Entry>();
+
+  /**
+   * @return names which may match the pattern: either names matched by the previous pattern or all names
+   */
+  @NotNull
+  String[] getCandidates(@NotNull String[] allNames, @NotNull String pattern, @NotNull NameUtil.MatchingCaseSensitivity sensitivity) {
+    Entry entry = myLastEntries.get(sensitivity);
+    if (entry != null && entry.myAllNames == allNames && isNarrowing(entry.myPattern, pattern)) {
+      return entry.myMatchedNames;
+    }
+    return allNames;
+  }
+
+  void cacheMatches(@NotNull String[] allNames,
+                    @NotNull String pattern,
+                    @NotNull NameUtil.MatchingCaseSensitivity sensitivity,
+                    @NotNull List<String> matchedNames) {
+    myLastEntries.put(sensitivity, new Entry(allNames, pattern, ArrayUtil.toStringArray(matchedNames)));
+  }
+
+  /**
+   * A trailing space means 'the name ends here', so it can't be extended. Other characters of the previous pattern keep their meaning
+   * when letters or digits are appended. Patterns starting with a wildcard may match anywhere in the name, so they aren't narrowed to
+   * be on the safe side.
+   */
+  static boolean isNarrowing(@NotNull String previousPattern, @NotNull String pattern) {
+    if (previousPattern.isEmpty() || previousPattern.startsWith("*") ||
+        !pattern.startsWith(previousPattern) || previousPattern.endsWith(" ")) {
+      return false;
+    }
+    for (int i = previousPattern.length(); i < pattern.length(); i++) {
+      if (!Character.isLetterOrDigit(pattern.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static class Entry {
+    private final String[] myAllNames;
+    private final String myPattern;
+    private final String[] myMatchedNames;
+
+    private Entry(String[] allNames, String pattern, String[] matchedNames) {
+      myAllNames = allNames;
+      myPattern = pattern;
+      myMatchedNames = matchedNames;
+    }
+  }
+}
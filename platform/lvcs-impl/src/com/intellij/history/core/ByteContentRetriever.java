@@ -67,6 +67,11 @@ public class ByteContentRetriever extends ChangeSetsProcessor {
     final List<ChangeSet> result = new ArrayList<ChangeSet>();
 
     myVcs.accept(new ChangeVisitor() {
+      @Override
+      public String getAffectedPath() {
+        return myPath;
+      }
+
       @Override
       public void begin(ChangeSet c) throws StopVisitingException {
         if (c.affectsPath(myPath)) result.add(c);
@@ -47,6 +47,12 @@ public class ChangeCollectingVisitor extends ChangeVisitor {
     return myPath;
   }
 
+  @Override
+  public String getAffectedPath() {
+    // the path is reverted only by changes which affect it
+    return myPath;
+  }
+
   @Override
   public void begin(ChangeSet c) throws StopVisitingException {
     myCurrentChangeSet = c;
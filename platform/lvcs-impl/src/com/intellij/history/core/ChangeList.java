@@ -24,11 +24,13 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.util.Clock;
 import com.intellij.util.Consumer;
 import gnu.trove.TIntHashSet;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 public class ChangeList {
   private final ChangeListStorage myStorage;
@@ -113,40 +115,52 @@ public class ChangeList {
   }
 
   // todo synchronization issue: changeset may me modified while being iterated
-  public synchronized Iterable<ChangeSet> iterChanges() {
+  public Iterable<ChangeSet> iterChanges() {
+    return iterChanges(null);
+  }
+
+  private Iterable<ChangeSet> iterChanges(@Nullable final ChangeVisitor visitor) {
     return new Iterable<ChangeSet>() {
       public Iterator<ChangeSet> iterator() {
         return new Iterator<ChangeSet>() {
           private final TIntHashSet recursionGuard = new TIntHashSet(1000);
 
           private ChangeSetHolder currentBlock;
-          private ChangeSet next = fetchNext();
+          private ChangeSet next;
+          // the next change set is fetched only when requested, since the path the visitor is interested in may be changed by the current one
+          private boolean isNextFetched;
 
           public boolean hasNext() {
+            if (!isNextFetched) {
+              next = fetchNext();
+              isNextFetched = true;
+            }
             return next != null;
           }
 
           public ChangeSet next() {
-            ChangeSet result = next;
-            next = fetchNext();
-            return result;
+            if (!hasNext()) throw new NoSuchElementException();
+            isNextFetched = false;
+            return next;
           }
 
           private ChangeSet fetchNext() {
+            // the storage synchronizes itself, so change sets are read without holding the lock of the change list
+            String affectedPath = visitor == null ? null : visitor.getAffectedPath();
             if (currentBlock == null) {
+              ChangeSet current;
               synchronized (ChangeList.this) {
-                if (myCurrentChangeSet != null) {
-                  currentBlock = new ChangeSetHolder(-1, myCurrentChangeSet);
-                }
-                else {
-                  currentBlock = myStorage.readPrevious(-1, recursionGuard);
-                }
+                current = myCurrentChangeSet;
+              }
+              if (current != null) {
+                currentBlock = new ChangeSetHolder(-1, current);
+              }
+              else {
+                currentBlock = myStorage.readPrevious(-1, recursionGuard, affectedPath);
               }
             }
             else {
-              synchronized (ChangeList.this) {
-                currentBlock = myStorage.readPrevious(currentBlock.id, recursionGuard);
-              }
+              currentBlock = myStorage.readPrevious(currentBlock.id, recursionGuard, affectedPath);
             }
             if (currentBlock == null) return null;
             return currentBlock.changeSet;
@@ -162,7 +176,7 @@ public class ChangeList {
 
   public void accept(ChangeVisitor v) {
     try {
-      for (ChangeSet change : iterChanges()) {
+      for (ChangeSet change : iterChanges(v)) {
         change.accept(v);
       }
     }
@@ -26,8 +26,12 @@ public interface ChangeListStorage {
 
   long nextId();
 
+  /**
+   * @param affectedPath if not null, change sets which neither affect this path (or its parents or children) nor contain labels
+   *                     may be skipped
+   */
   @Nullable
-  ChangeSetHolder readPrevious(int id, TIntHashSet recursionGuard);
+  ChangeSetHolder readPrevious(int id, TIntHashSet recursionGuard, @Nullable String affectedPath);
 
   void purge(long period, int intervalBetweenActivities, Consumer<ChangeSet> processor);
 
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.history.core;
+
+import com.intellij.history.core.changes.Change;
+import com.intellij.history.core.changes.ChangeSet;
+import com.intellij.history.core.changes.StructuralChange;
+import com.intellij.util.io.DataInputOutputUtil;
+import gnu.trove.TIntHashSet;
+import gnu.trove.TIntProcedure;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maps paths affected by stored change sets to ids of the records the change sets are stored in, so the history of a file or
+ * a directory can be collected without reading unrelated change sets.
+ * Records which contain labels are returned for every path, since labels aren't bound to paths.
+ *
+ * Paths are kept sorted, so the records of a path are collected by looking up its parents and the range of its children.
+ */
+public class ChangeSetsIndex {
+  private final TreeMap<String, TIntHashSet> myRecordsByPath = new TreeMap<String, TIntHashSet>();
+  private final TIntHashSet myRecordsWithLabels = new TIntHashSet();
+
+  private String myLastPath;
+  private TIntHashSet myLastRecords;
+
+  public synchronized void add(int recordId, @NotNull ChangeSet changeSet) {
+    for (Change each : changeSet.getChanges()) {
+      if (each instanceof StructuralChange) {
+        for (String path : ((StructuralChange)each).getAffectedPaths()) {
+          String key = normalize(path);
+          TIntHashSet records = myRecordsByPath.get(key);
+          if (records == null) {
+            myRecordsByPath.put(key, records = new TIntHashSet());
+          }
+          records.add(recordId);
+        }
+      }
+      else {
+        myRecordsWithLabels.add(recordId);
+      }
+    }
+    myLastPath = null;
+  }
+
+  public synchronized void removeAll(@NotNull TIntHashSet recordIds) {
+    final int[] ids = recordIds.toArray();
+    for (Iterator<TIntHashSet> it = myRecordsByPath.values().iterator(); it.hasNext(); ) {
+      TIntHashSet records = it.next();
+      records.removeAll(ids);
+      if (records.isEmpty()) it.remove();
+    }
+    myRecordsWithLabels.removeAll(ids);
+    myLastPath = null;
+  }
+
+  /**
+   * @return ids of records with change sets which affect the path, its parents or its children, or contain labels
+   */
+  @NotNull
+  public synchronized TIntHashSet getRecordsAffecting(@NotNull String path) {
+    String key = normalize(path);
+    if (key.equals(myLastPath)) return myLastRecords;
+
+    final TIntHashSet result = new TIntHashSet();
+    TIntProcedure addToResult = new TIntProcedure() {
+      @Override
+      public boolean execute(int value) {
+        result.add(value);
+        return true;
+      }
+    };
+    TIntHashSet records = myRecordsByPath.get(key);
+    if (records != null) records.forEach(addToResult);
+
+    String each = key;
+    while (!each.isEmpty()) {
+      String parent = Paths.getParentOf(each);
+      if (parent.equals(each)) break;
+      records = myRecordsByPath.get(parent);
+      if (records != null) records.forEach(addToResult);
+      each = parent;
+    }
+
+    String childrenPrefix = key.isEmpty() || key.charAt(key.length() - 1) == Paths.DELIM ? key : key + Paths.DELIM;
+    for (Map.Entry<String, TIntHashSet> entry : myRecordsByPath.tailMap(childrenPrefix).entrySet()) {
+      if (!entry.getKey().startsWith(childrenPrefix)) break;
+      entry.getValue().forEach(addToResult);
+    }
+    myRecordsWithLabels.forEach(addToResult);
+
+    myLastPath = key;
+    myLastRecords = result;
+    return result;
+  }
+
+  public synchronized void write(@NotNull DataOutput out) throws IOException {
+    DataInputOutputUtil.writeINT(out, myRecordsByPath.size());
+    for (Map.Entry<String, TIntHashSet> entry : myRecordsByPath.entrySet()) {
+      out.writeUTF(entry.getKey());
+      writeRecords(out, entry.getValue());
+    }
+    writeRecords(out, myRecordsWithLabels);
+  }
+
+  @NotNull
+  public static ChangeSetsIndex read(@NotNull DataInput in) throws IOException {
+    ChangeSetsIndex result = new ChangeSetsIndex();
+    int count = DataInputOutputUtil.readINT(in);
+    for (int i = 0; i < count; i++) {
+      String path = in.readUTF();
+      TIntHashSet records = new TIntHashSet();
+      readRecords(in, records);
+      result.myRecordsByPath.put(path, records);
+    }
+    readRecords(in, result.myRecordsWithLabels);
+    return result;
+  }
+
+  private static void writeRecords(DataOutput out, TIntHashSet records) throws IOException {
+    DataInputOutputUtil.writeINT(out, records.size());
+    for (int each : records.toArray()) {
+      DataInputOutputUtil.writeINT(out, each);
+    }
+  }
+
+  private static void readRecords(DataInput in, TIntHashSet result) throws IOException {
+    int count = DataInputOutputUtil.readINT(in);
+    for (int i = 0; i < count; i++) {
+      result.add(DataInputOutputUtil.readINT(in));
+    }
+  }
+
+  private static String normalize(String path) {
+    return Paths.isCaseSensitive() ? path : path.toLowerCase();
+  }
+}
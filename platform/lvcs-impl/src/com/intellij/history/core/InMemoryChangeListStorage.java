@@ -15,7 +15,9 @@
  */
 package com.intellij.history.core;
 
+import com.intellij.history.core.changes.Change;
 import com.intellij.history.core.changes.ChangeSet;
+import com.intellij.history.core.changes.StructuralChange;
 import com.intellij.util.Consumer;
 import gnu.trove.TIntHashSet;
 import org.jetbrains.annotations.Nullable;
@@ -38,10 +40,19 @@ public class InMemoryChangeListStorage implements ChangeListStorage {
 
   @Override
   @Nullable
-  public ChangeSetHolder readPrevious(int id, TIntHashSet recursionGuard) {
-    if (mySets.isEmpty()) return null;
-    if (id == -1) return new ChangeSetHolder(mySets.size() - 1, mySets.get(mySets.size() - 1));
-    return id == 0 ? null : new ChangeSetHolder(id -1, mySets.get(id - 1));
+  public ChangeSetHolder readPrevious(int id, TIntHashSet recursionGuard, @Nullable String affectedPath) {
+    int index = id == -1 ? mySets.size() - 1 : id - 1;
+    while (index >= 0 && affectedPath != null && !mayAffect(mySets.get(index), affectedPath)) {
+      index--;
+    }
+    return index < 0 ? null : new ChangeSetHolder(index, mySets.get(index));
+  }
+
+  private static boolean mayAffect(ChangeSet changeSet, String path) {
+    for (Change each : changeSet.getChanges()) {
+      if (!(each instanceof StructuralChange) || each.affectsPath(path)) return true;
+    }
+    return false;
   }
 
   @Override
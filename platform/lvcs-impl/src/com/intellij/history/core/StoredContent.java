@@ -19,19 +19,64 @@ package com.intellij.history.core;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.newvfs.persistent.PersistentFS;
 import com.intellij.util.ArrayUtil;
+import gnu.trove.TIntObjectHashMap;
 import org.jetbrains.annotations.TestOnly;
 
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.Arrays;
 
 public class StoredContent extends Content {
   private static final int UNAVAILABLE = 0;
 
+  // contents stored by acquireContent(byte[]) during this session and still referenced, by hash of the bytes and by content id;
+  // equal bytes (e.g. the same document content saved for several changes) are stored once
+  private static final TIntObjectHashMap<SharedContent> ourSharedByHash = new TIntObjectHashMap<SharedContent>();
+  private static final TIntObjectHashMap<SharedContent> ourSharedById = new TIntObjectHashMap<SharedContent>();
+
   private int myContentId;
 
   public static StoredContent acquireContent(byte[] bytes) {
-    return new StoredContent(getFS().storeUnlinkedContent(bytes));
+    int hash = Arrays.hashCode(bytes);
+    synchronized (ourSharedByHash) {
+      SharedContent shared = ourSharedByHash.get(hash);
+      if (shared != null && shared.myLength == bytes.length && Arrays.equals(bytes, loadBytes(shared.myContentId))) {
+        getFS().acquireContent(shared.myContentId);
+        shared.myRefCount++;
+        return new StoredContent(shared.myContentId);
+      }
+
+      int contentId = getFS().storeUnlinkedContent(bytes);
+      if (shared != null) {
+        ourSharedById.remove(shared.myContentId);
+      }
+      shared = new SharedContent(contentId, hash, bytes.length);
+      ourSharedByHash.put(hash, shared);
+      ourSharedById.put(contentId, shared);
+      return new StoredContent(contentId);
+    }
+  }
+
+  private static byte[] loadBytes(int contentId) {
+    try {
+      return getFS().contentsToByteArray(contentId);
+    }
+    catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static void releaseShared(int contentId) {
+    synchronized (ourSharedByHash) {
+      SharedContent shared = ourSharedById.get(contentId);
+      if (shared == null || --shared.myRefCount > 0) return;
+
+      ourSharedById.remove(contentId);
+      if (ourSharedByHash.get(shared.myHash) == shared) {
+        ourSharedByHash.remove(shared.myHash);
+      }
+    }
   }
 
   public static StoredContent acquireContent(VirtualFile f) {
@@ -96,6 +141,7 @@ public class StoredContent extends Content {
   @Override
   public void release() {
     if (myContentId == UNAVAILABLE) return;
+    releaseShared(myContentId);
     getFS().releaseContent(myContentId);
     myContentId = UNAVAILABLE;
   }
@@ -109,4 +155,17 @@ public class StoredContent extends Content {
   public int hashCode() {
     return myContentId;
   }
+
+  private static class SharedContent {
+    private final int myContentId;
+    private final int myHash;
+    private final int myLength;
+    private int myRefCount = 1;
+
+    private SharedContent(int contentId, int hash, int length) {
+      myContentId = contentId;
+      myHash = hash;
+      myLength = length;
+    }
+  }
 }
@@ -16,7 +16,18 @@
 
 package com.intellij.history.core.changes;
 
+import org.jetbrains.annotations.Nullable;
+
 public abstract class ChangeVisitor {
+  /**
+   * @return path the visitor is interested in: change sets which neither affect it nor contain labels may be not visited,
+   *         or {@code null} if all change sets should be visited
+   */
+  @Nullable
+  public String getAffectedPath() {
+    return null;
+  }
+
   public void finished() {
   }
 
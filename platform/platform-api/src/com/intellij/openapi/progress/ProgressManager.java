@@ -60,9 +60,11 @@ public abstract class ProgressManager {
 
   public abstract ProgressIndicator getProgressIndicator();
 
-  protected static boolean ourNeedToCheckCancel = false;
+  // volatile, so the JIT can't hoist the read out of a loop which calls checkCanceled() but doesn't synchronize otherwise
+  protected static volatile boolean ourNeedToCheckCancel = false;
   public static void checkCanceled() throws ProcessCanceledException {
     // smart optimization! There's a thread started in ProgressManagerImpl, that set's this flag up once in 10 milliseconds
+    // while there are processes running under progress, and an indicator sets it up immediately when it's canceled
     if (ourNeedToCheckCancel) {
       getInstance().doCheckCanceled();
       ourNeedToCheckCancel = false;
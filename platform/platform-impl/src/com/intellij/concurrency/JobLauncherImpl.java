@@ -42,14 +42,17 @@ public class JobLauncherImpl extends JobLauncher {
                                                       @NotNull final Processor<T> thingProcessor) throws ProcessCanceledException {
     final Job<String> job = new JobImpl<String>(Job.DEFAULT_PRIORITY, failFastOnAcquireReadAction);
 
-    final int chunkSize = Math.max(1, things.size() / JobSchedulerImpl.CORES_COUNT / 20);
-    for (int i = 0; i < things.size(); i += chunkSize) {
-      // this job chunk is i..i+chunkSize-1
-      final int finalI = i;
+    // each task processes its own part of the list and then helps other tasks, so a task stuck with a few huge elements doesn't hold
+    // back the rest of its part
+    final int tasksCount = Math.min(things.size(), JobSchedulerImpl.CORES_COUNT);
+    final StealingIndexRanges indices = new StealingIndexRanges(things.size(), tasksCount);
+    for (int i = 0; i < tasksCount; i++) {
+      final int worker = i;
       job.addTask(new Runnable() {
         public void run() {
           try {
-            for (int k = finalI; k < finalI + chunkSize && k < things.size(); k++) {
+            int k;
+            while (!job.isCanceled() && (k = indices.next(worker)) != -1) {
               T thing = things.get(k);
               if (!thingProcessor.process(thing)) {
                 job.cancel();
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.concurrency;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Distributes indices {@code 0..size-1} between workers. Initially each worker owns an equal range of indices and takes them one by one
+ * from its start. A worker which has exhausted its range steals the upper half of the largest remaining range of another worker, so
+ * a worker stuck with a few expensive elements doesn't hold back the rest of its range.
+ */
+class StealingIndexRanges {
+  private final AtomicLong[] myRanges;
+
+  StealingIndexRanges(int size, int workersCount) {
+    myRanges = new AtomicLong[workersCount];
+    for (int i = 0; i < workersCount; i++) {
+      myRanges[i] = new AtomicLong(range((int)((long)size * i / workersCount), (int)((long)size * (i + 1) / workersCount)));
+    }
+  }
+
+  /**
+   * @return next index to be processed by the worker or {@code -1} if all indices are already taken
+   */
+  int next(int worker) {
+    AtomicLong own = myRanges[worker];
+    while (true) {
+      long range = own.get();
+      int start = start(range);
+      if (start < end(range)) {
+        if (own.compareAndSet(range, range(start + 1, end(range)))) {
+          return start;
+        }
+      }
+      else if (!steal(worker)) {
+        return -1;
+      }
+    }
+  }
+
+  private boolean steal(int thief) {
+    while (true) {
+      int victim = -1;
+      long victimRange = 0;
+      for (int i = 0; i < myRanges.length; i++) {
+        long range = myRanges[i].get();
+        if (i != thief && size(range) > 0 && (victim == -1 || size(range) > size(victimRange))) {
+          victim = i;
+          victimRange = range;
+        }
+      }
+      if (victim == -1) return false;
+
+      int start = start(victimRange);
+      int middle = start + size(victimRange) / 2;
+      if (myRanges[victim].compareAndSet(victimRange, range(start, middle))) {
+        // nobody touches an empty range, so it's safe to replace it
+        myRanges[thief].set(range(middle, end(victimRange)));
+        return true;
+      }
+    }
+  }
+
+  private static long range(int start, int end) {
+    return (long)start << 32 | end;
+  }
+
+  private static int start(long range) {
+    return (int)(range >>> 32);
+  }
+
+  private static int end(long range) {
+    return (int)range;
+  }
+
+  private static int size(long range) {
+    return end(range) - start(range);
+  }
+}
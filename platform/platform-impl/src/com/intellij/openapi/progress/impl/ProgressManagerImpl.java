@@ -53,6 +53,9 @@ public class ProgressManagerImpl extends ProgressManager implements Disposable{
   private static final boolean DISABLED = "disabled".equals(System.getProperty(PROCESS_CANCELED_EXCEPTION));
 
   private volatile boolean enabled = true;
+  // number of threads running processes under progress indicators; there is nothing to check while it's zero
+  private final AtomicInteger myThreadsUnderProgressCount = new AtomicInteger(0);
+  private final Object myCheckerLock = new Object();
 
   public ProgressManagerImpl(Application application) {
     if (/*!application.isUnitTestMode() && */!DISABLED) {
@@ -62,6 +65,7 @@ public class ProgressManagerImpl extends ProgressManager implements Disposable{
           while (enabled) {
             try {
               sleep(10);
+              waitForProcessUnderProgress();
             }
             catch (InterruptedException ignored) {
             }
@@ -75,6 +79,22 @@ public class ProgressManagerImpl extends ProgressManager implements Disposable{
     }
   }
 
+  private void waitForProcessUnderProgress() throws InterruptedException {
+    synchronized (myCheckerLock) {
+      while (enabled && myThreadsUnderProgressCount.get() == 0) {
+        myCheckerLock.wait();
+      }
+    }
+  }
+
+  private void processUnderProgressStarted() {
+    if (myThreadsUnderProgressCount.incrementAndGet() == 1) {
+      synchronized (myCheckerLock) {
+        myCheckerLock.notifyAll();
+      }
+    }
+  }
+
   @Override
   protected void doCheckCanceled() throws ProcessCanceledException {
     final ProgressIndicator progress = getProgressIndicator();
@@ -222,7 +242,10 @@ public class ProgressManagerImpl extends ProgressManager implements Disposable{
     ProgressIndicator oldIndicator = null;
 
     boolean set = progress != null && progress != (oldIndicator = myThreadIndicator.get());
-    if (set) myThreadIndicator.set(progress);
+    if (set) {
+      myThreadIndicator.set(progress);
+      processUnderProgressStarted();
+    }
 
     boolean modal = progress != null && progress.isModal();
     if (modal) myCurrentModalProgressCount.incrementAndGet();
@@ -234,6 +257,7 @@ public class ProgressManagerImpl extends ProgressManager implements Disposable{
     finally {
       if (set) {
         myThreadIndicator.set(oldIndicator);
+        myThreadsUnderProgressCount.decrementAndGet();
       }
 
       if (modal) myCurrentModalProgressCount.decrementAndGet();
@@ -518,6 +542,9 @@ public class ProgressManagerImpl extends ProgressManager implements Disposable{
   @Override
   public void dispose() {
     enabled = false;
+    synchronized (myCheckerLock) {
+      myCheckerLock.notifyAll();
+    }
   }
 
   //for debugging
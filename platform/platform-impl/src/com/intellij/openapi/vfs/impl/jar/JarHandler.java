@@ -35,18 +35,25 @@ import com.intellij.openapi.vfs.VfsBundle;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.newvfs.FileSystemInterface;
 import com.intellij.openapi.vfs.newvfs.NewVirtualFile;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.IOUtil;
+import gnu.trove.THashMap;
+import gnu.trove.TObjectIntHashMap;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.OutputStream;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 public class JarHandler extends JarHandlerBase implements FileSystemInterface {
   private static final Logger LOG = Logger.getInstance("#com.intellij.openapi.vfs.impl.jar.JarHandler");
 
   @NonNls private static final String JARS_FOLDER = "jars";
+  @NonNls private static final String ENTRIES_FOLDER = "entries";
+  private static final int ENTRIES_VERSION = 1;
 
   private final JarFileSystemImpl myFileSystem;
 
@@ -98,6 +105,122 @@ public class JarHandler extends JarHandlerBase implements FileSystemInterface {
     return mirrorFile;
   }
 
+  /**
+   * Entries are stored in a file per jar together with the length and the timestamp of the jar, so the central directory of an unchanged
+   * jar is read only once even if the entries are collected by GC or the IDE is restarted.
+   */
+  @Nullable
+  @Override
+  protected Map<String, EntryInfo> loadEntries() {
+    final File originalFile = getOriginalFile();
+    final File entriesFile = getEntriesFile(originalFile);
+    if (!entriesFile.exists()) return null;
+
+    final FileAttributes attributes = FileSystemUtil.getAttributes(originalFile);
+    if (attributes == null) return null;
+
+    try {
+      final DataInputStream input = new DataInputStream(new ByteArrayInputStream(FileUtil.loadFileBytes(entriesFile)));
+      try {
+        final byte[] buffer = IOUtil.allocReadWriteUTFBuffer();
+        if (input.readInt() != ENTRIES_VERSION ||
+            !originalFile.getPath().equals(IOUtil.readUTFFast(buffer, input)) ||
+            input.readLong() != attributes.length ||
+            input.readLong() != attributes.lastModified) {
+          return null;
+        }
+
+        final int count = DataInputOutputUtil.readINT(input);
+        final List<EntryInfo> infos = new ArrayList<EntryInfo>(count);
+        final List<String> paths = new ArrayList<String>(count);
+        final Map<String, EntryInfo> map = new THashMap<String, EntryInfo>(count);
+        for (int i = 0; i < count; i++) {
+          final int parentIndex = DataInputOutputUtil.readINT(input);
+          final String shortName = IOUtil.readUTFFast(buffer, input);
+          final boolean isDirectory = input.readBoolean();
+          final long length = input.readLong();
+          final long timestamp = input.readLong();
+
+          final EntryInfo parent = parentIndex > 0 ? infos.get(parentIndex - 1) : null;
+          final String parentPath = parentIndex > 0 ? paths.get(parentIndex - 1) : null;
+          final String path = parentPath == null || parentPath.isEmpty() ? shortName : parentPath + "/" + shortName;
+          final EntryInfo info = new EntryInfo(shortName, parent, isDirectory, length, timestamp);
+          infos.add(info);
+          paths.add(path);
+          map.put(path, info);
+        }
+        return map;
+      }
+      finally {
+        input.close();
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Cannot load entries of " + originalFile.getPath() + ": " + e.getMessage());
+      FileUtil.delete(entriesFile);
+      return null;
+    }
+  }
+
+  @Override
+  protected void saveEntries(@NotNull Map<String, EntryInfo> entries) {
+    final File originalFile = getOriginalFile();
+    final FileAttributes attributes = FileSystemUtil.getAttributes(originalFile);
+    if (attributes == null) return;
+
+    final File entriesFile = getEntriesFile(originalFile);
+    try {
+      FileUtil.createParentDirs(entriesFile);
+      final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(entriesFile)));
+      try {
+        final byte[] buffer = IOUtil.allocReadWriteUTFBuffer();
+        output.writeInt(ENTRIES_VERSION);
+        IOUtil.writeUTFFast(buffer, output, originalFile.getPath());
+        output.writeLong(attributes.length);
+        output.writeLong(attributes.lastModified);
+        DataInputOutputUtil.writeINT(output, entries.size());
+        final TObjectIntHashMap<EntryInfo> indices = new TObjectIntHashMap<EntryInfo>(entries.size());
+        for (EntryInfo info : entries.values()) {
+          writeEntry(output, info, indices, buffer);
+        }
+      }
+      finally {
+        output.close();
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Cannot save entries of " + originalFile.getPath() + ": " + e.getMessage());
+      FileUtil.delete(entriesFile);
+    }
+  }
+
+  /**
+   * Writes the entry after its parents, so the parents are already known when the entry is read.
+   *
+   * @return 1-based index of the entry in the file
+   */
+  private static int writeEntry(DataOutput output, EntryInfo info, TObjectIntHashMap<EntryInfo> indices, byte[] buffer)
+    throws IOException {
+    int index = indices.get(info);
+    if (index > 0) return index;
+
+    final int parentIndex = info.parent != null ? writeEntry(output, info.parent, indices, buffer) : 0;
+    DataInputOutputUtil.writeINT(output, parentIndex);
+    IOUtil.writeUTFFast(buffer, output, info.shortName);
+    output.writeBoolean(info.isDirectory);
+    output.writeLong(info.length);
+    output.writeLong(info.timestamp);
+
+    index = indices.size() + 1;
+    indices.put(info, index);
+    return index;
+  }
+
+  private static File getEntriesFile(File originalFile) {
+    final String name = originalFile.getName() + "." + Integer.toHexString(originalFile.getPath().hashCode());
+    return new File(getJarsDir() + File.separatorChar + ENTRIES_FOLDER, name);
+  }
+
   private static String getJarsDir() {
     String dir = System.getProperty("jars_dir");
     return dir == null ? PathManager.getSystemPath() + File.separatorChar + JARS_FOLDER : dir;
@@ -532,6 +532,39 @@ public class VirtualDirectoryImpl extends VirtualFileSystemEntry {
     }
   }
 
+  public synchronized void addChildren(@NotNull Collection<VirtualFileSystemEntry> files) {
+    final VirtualFileSystemEntry[] a = asArray();
+    if (a != null) {
+      myChildren = ArrayUtil.mergeArrays(a, files.toArray(new VirtualFileSystemEntry[files.size()]));
+    }
+    else {
+      final Map<String, VirtualFileSystemEntry> map = ensureAsMap();
+      for (VirtualFileSystemEntry file : files) {
+        map.put(file.getName(), file);
+      }
+    }
+  }
+
+  public synchronized void removeChildren(@NotNull Collection<VirtualFile> files) {
+    final VirtualFileSystemEntry[] a = asArray();
+    if (a != null) {
+      final Set<VirtualFile> toRemove = new HashSet<VirtualFile>(files);
+      final List<VirtualFileSystemEntry> remaining = new ArrayList<VirtualFileSystemEntry>(a.length);
+      for (VirtualFileSystemEntry child : a) {
+        if (!toRemove.contains(child)) {
+          remaining.add(child);
+        }
+      }
+      myChildren = remaining.toArray(new VirtualFileSystemEntry[remaining.size()]);
+    }
+    else {
+      final Map<String, VirtualFileSystemEntry> map = ensureAsMap();
+      for (VirtualFile file : files) {
+        map.put(file.getName(), NULL_VIRTUAL_FILE);
+      }
+    }
+  }
+
   public synchronized boolean allChildrenLoaded() {
     return asArray() != null;
   }
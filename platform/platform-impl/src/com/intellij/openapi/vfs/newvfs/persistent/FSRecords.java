@@ -1214,6 +1214,15 @@ public class FSRecords implements Forceable {
     }
   }
 
+  public static void acquireContent(int contentId) {
+    try {
+      getContentStorage().acquireRecord(contentId);
+    }
+    catch (Throwable e) {
+      throw DbConnection.handleError(e);
+    }
+  }
+
   public static void releaseContent(int contentId) {
     try {
       getContentStorage().releaseRecord(contentId);
@@ -82,6 +82,8 @@ public abstract class PersistentFS extends ManagingFS {
 
   public abstract int acquireContent(@NotNull VirtualFile file);
 
+  public abstract void acquireContent(int contentId);
+
   public abstract void releaseContent(int contentId);
 
   public abstract int getCurrentContentId(@NotNull VirtualFile file);
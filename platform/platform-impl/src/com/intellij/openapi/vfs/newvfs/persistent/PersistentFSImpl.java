@@ -648,6 +648,11 @@ public class PersistentFSImpl extends PersistentFS implements ApplicationCompone
     return FSRecords.acquireFileContent(getFileId(file));
   }
 
+  @Override
+  public void acquireContent(int contentId) {
+    FSRecords.acquireContent(contentId);
+  }
+
   @Override
   public void releaseContent(int contentId) {
     FSRecords.releaseContent(contentId);
@@ -732,12 +737,59 @@ public class PersistentFSImpl extends PersistentFS implements ApplicationCompone
 
     BulkFileListener publisher = myEventsBus.syncPublisher(VirtualFileManager.VFS_CHANGES);
     publisher.before(events);
-    for (VFileEvent event : events) {
-      applyEvent(event);
-    }
+    applyEvents(events);
     publisher.after(events);
   }
 
+  /**
+   * Consecutive creations or deletions of children of the same directory are applied together, so the children list of the directory
+   * is rewritten once per group instead of once per event.
+   */
+  private void applyEvents(@NotNull List<? extends VFileEvent> events) {
+    int start = 0;
+    while (start < events.size()) {
+      final VFileEvent event = events.get(start);
+      final VirtualFile parent = getGroupingParent(event);
+      int end = start + 1;
+      if (parent != null) {
+        while (end < events.size() &&
+               events.get(end).getClass() == event.getClass() &&
+               parent.equals(getGroupingParent(events.get(end)))) {
+          end++;
+        }
+      }
+
+      if (end - start > 1) {
+        try {
+          if (event instanceof VFileCreateEvent) {
+            executeCreateChildren(parent, events.subList(start, end));
+          }
+          else {
+            executeDeleteChildren(parent, events.subList(start, end));
+          }
+        }
+        catch (Exception e) {
+          LOG.error(e);
+        }
+      }
+      else {
+        applyEvent(event);
+      }
+      start = end;
+    }
+  }
+
+  @Nullable
+  private static VirtualFile getGroupingParent(@NotNull VFileEvent event) {
+    if (event instanceof VFileCreateEvent) {
+      return ((VFileCreateEvent)event).getParent();
+    }
+    if (event instanceof VFileDeleteEvent) {
+      return ((VFileDeleteEvent)event).getFile().getParent();
+    }
+    return null;
+  }
+
   @Override
   @Nullable
   public VirtualFileSystemEntry findRoot(@NotNull String basePath, @NotNull NewVirtualFileSystem fs) {
@@ -1010,6 +1062,29 @@ public class PersistentFSImpl extends PersistentFS implements ApplicationCompone
     }
   }
 
+  private static void executeCreateChildren(@NotNull VirtualFile parent, @NotNull List<? extends VFileEvent> events) {
+    final NewVirtualFileSystem delegate = getDelegate(parent);
+    final int parentId = getFileId(parent);
+    assert parent instanceof VirtualDirectoryImpl : parent;
+    final VirtualDirectoryImpl dir = (VirtualDirectoryImpl)parent;
+
+    final TIntArrayList childrenIds = new TIntArrayList(events.size());
+    final List<VirtualFileSystemEntry> children = new ArrayList<VirtualFileSystemEntry>(events.size());
+    for (VFileEvent event : events) {
+      final String name = ((VFileCreateEvent)event).getChildName();
+      final VirtualFile fake = new FakeVirtualFile(parent, name);
+      final FileAttributes attributes = delegate.getAttributes(fake);
+      if (attributes != null) {
+        final int childId = createAndFillRecord(delegate, fake, parentId, attributes);
+        childrenIds.add(childId);
+        children.add(dir.createChild(name, childId));
+      }
+    }
+
+    FSRecords.updateList(parentId, ArrayUtil.mergeArrays(FSRecords.list(parentId), childrenIds.toNativeArray()));
+    dir.addChildren(children);
+  }
+
   private static int createAndFillRecord(@NotNull NewVirtualFileSystem delegateSystem,
                                          @NotNull VirtualFile delegateFile,
                                          int parentId,
@@ -1065,6 +1140,62 @@ public class PersistentFSImpl extends PersistentFS implements ApplicationCompone
     }
   }
 
+  private void executeDeleteChildren(@NotNull VirtualFile parent, @NotNull List<? extends VFileEvent> events) {
+    clearIdCache();
+
+    final int parentId = getFileId(parent);
+    final int[] childList = FSRecords.list(parentId);
+    final TIntHashSet childIds = new TIntHashSet(childList);
+    final TIntArrayList deletedIds = new TIntArrayList(events.size());
+    final List<VirtualFile> deleted = new ArrayList<VirtualFile>(events.size());
+    final List<VirtualFile> notExisting = new ArrayList<VirtualFile>();
+    final List<VirtualFile> notFound = new ArrayList<VirtualFile>();
+    for (VFileEvent event : events) {
+      final VirtualFile file = ((VFileDeleteEvent)event).getFile();
+      if (!file.exists()) {
+        notExisting.add(file);
+        continue;
+      }
+      final int id = getFileId(file);
+      // a record is deleted only if the children list of the parent contains it, so the list stays consistent with the records
+      if (!childIds.contains(id)) {
+        notFound.add(file);
+        continue;
+      }
+      deletedIds.add(id);
+      deleted.add(file);
+    }
+
+    if (!deleted.isEmpty()) {
+      for (int i = 0; i < deletedIds.size(); i++) {
+        FSRecords.deleteRecordRecursively(deletedIds.get(i));
+      }
+      final TIntHashSet deletedIdsSet = new TIntHashSet(deletedIds.toNativeArray());
+      final TIntArrayList remaining = new TIntArrayList(childList.length);
+      for (int id : childList) {
+        if (!deletedIdsSet.contains(id)) {
+          remaining.add(id);
+        }
+      }
+      FSRecords.updateList(parentId, remaining.toNativeArray());
+      ((VirtualDirectoryImpl)parent).removeChildren(deleted);
+
+      for (VirtualFile file : deleted) {
+        invalidateSubtree(file);
+      }
+    }
+
+    // reported when the rest of the children are deleted
+    for (VirtualFile file : notExisting) {
+      LOG.error("Deleting a file, which does not exist: " + file.getPath());
+    }
+    if (!notFound.isEmpty()) {
+      LOG.error("Cannot find deleted children " + notFound
+                + "\n\tin (" + parentId + ")" + parent
+                + "\n\tactual children:" + Arrays.toString(childList));
+    }
+  }
+
   private static void invalidateSubtree(@NotNull VirtualFile file) {
     final VirtualFileSystemEntry impl = (VirtualFileSystemEntry)file;
     impl.invalidate();
@@ -15,10 +15,12 @@
  */
 package com.intellij.openapi.vfs.newvfs.persistent;
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Comparing;
 import com.intellij.openapi.util.io.FileAttributes;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.newvfs.NewVirtualFile;
@@ -27,14 +29,18 @@ import com.intellij.openapi.vfs.newvfs.events.*;
 import com.intellij.openapi.vfs.newvfs.impl.FakeVirtualFile;
 import com.intellij.openapi.vfs.newvfs.impl.VirtualDirectoryImpl;
 import com.intellij.openapi.vfs.newvfs.impl.VirtualFileSystemEntry;
+import com.intellij.util.concurrency.BoundedTaskExecutor;
 import com.intellij.util.containers.Queue;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 import static com.intellij.openapi.diagnostic.LogUtil.debug;
 import static com.intellij.util.containers.ContainerUtil.newHashSet;
@@ -44,10 +50,18 @@ import static com.intellij.util.containers.ContainerUtil.newHashSet;
  */
 public class RefreshWorker {
   private static final Logger LOG = Logger.getInstance("#com.intellij.openapi.vfs.newvfs.persistent.RefreshWorker");
+  private static final int MIN_FILES_TO_STAT_IN_PARALLEL = 16;
+  private static final BoundedTaskExecutor ourStatExecutor = new BoundedTaskExecutor(new Executor() {
+    @Override
+    public void execute(@NotNull Runnable command) {
+      ApplicationManager.getApplication().executeOnPooledThread(command);
+    }
+  }, Runtime.getRuntime().availableProcessors());
 
   private final boolean myIsRecursive;
   private final Queue<VirtualFile> myRefreshQueue = new Queue<VirtualFile>(100);
   private final List<VFileEvent> myEvents = new ArrayList<VFileEvent>();
+  private int myStatCount;
 
   public RefreshWorker(final VirtualFile refreshRoot, final boolean isRecursive) {
     myIsRecursive = isRecursive;
@@ -74,6 +88,7 @@ public class RefreshWorker {
     }
 
     final PersistentFS persistence = PersistentFS.getInstance();
+    final long start = System.currentTimeMillis();
 
     while (!myRefreshQueue.isEmpty()) {
       final VirtualFileSystemEntry file = (VirtualFileSystemEntry)myRefreshQueue.pullFirst();
@@ -81,7 +96,7 @@ public class RefreshWorker {
       debug(LOG, "file=%s dirty=%b", file, fileDirty);
       if (!fileDirty) continue;
 
-      final FileAttributes attributes = Comparing.equal(file, root) ? rootAttributes : fs.getAttributes(file);
+      final FileAttributes attributes = Comparing.equal(file, root) ? rootAttributes : getAttributes(fs, file);
       if (attributes == null) {
         scheduleDeletion(file);
         continue;
@@ -111,36 +126,47 @@ public class RefreshWorker {
             scheduleDeletion(file.findChild(name));
           }
 
+          final List<VirtualFile> newChildren = new ArrayList<VirtualFile>(newNames.size());
           for (String name : newNames) {
-            final FileAttributes childAttributes = fs.getAttributes(new FakeVirtualFile(file, name));
-            if (childAttributes != null) {
-              scheduleCreation(file, name, childAttributes.isDirectory());
+            newChildren.add(new FakeVirtualFile(file, name));
+          }
+          final FileAttributes[] newChildrenAttributes = getAttributes(fs, newChildren);
+          for (int i = 0; i < newChildren.size(); i++) {
+            final String name = newChildren.get(i).getName();
+            if (newChildrenAttributes[i] != null) {
+              scheduleCreation(file, name, newChildrenAttributes[i].isDirectory());
             }
             else {
               LOG.warn("fs=" + fs + " dir=" + file + " name=" + name);
             }
           }
 
+          final List<VirtualFile> children = new ArrayList<VirtualFile>();
           for (VirtualFile child : file.getChildren()) {
             if (!deletedNames.contains(child.getName())) {
-              final FileAttributes childAttributes = fs.getAttributes(child);
-              if (childAttributes != null) {
-                checkAndScheduleChildRefresh(file, child, childAttributes);
-              }
-              else {
-                LOG.warn("fs=" + fs + " dir=" + file + " name=" + child.getName());
-                scheduleDeletion(child);
-              }
+              children.add(child);
+            }
+          }
+          final FileAttributes[] childrenAttributes = getAttributes(fs, children);
+          for (int i = 0; i < children.size(); i++) {
+            final VirtualFile child = children.get(i);
+            if (childrenAttributes[i] != null) {
+              checkAndScheduleChildRefresh(file, child, childrenAttributes[i]);
+            }
+            else {
+              LOG.warn("fs=" + fs + " dir=" + file + " name=" + child.getName());
+              scheduleDeletion(child);
             }
           }
         }
         else {
-          final Collection<VirtualFile> cachedChildren = file.getCachedChildren();
+          final List<VirtualFile> cachedChildren = new ArrayList<VirtualFile>(file.getCachedChildren());
           debug(LOG, "cached=%s", cachedChildren);
-          for (VirtualFile child : cachedChildren) {
-            final FileAttributes childAttributes = fs.getAttributes(child);
-            if (childAttributes != null) {
-              checkAndScheduleChildRefresh(file, child, childAttributes);
+          final FileAttributes[] cachedChildrenAttributes = getAttributes(fs, cachedChildren);
+          for (int i = 0; i < cachedChildren.size(); i++) {
+            final VirtualFile child = cachedChildren.get(i);
+            if (cachedChildrenAttributes[i] != null) {
+              checkAndScheduleChildRefresh(file, child, cachedChildrenAttributes[i]);
             }
             else {
               scheduleDeletion(child);
@@ -149,13 +175,16 @@ public class RefreshWorker {
 
           final List<String> names = dir.getSuspiciousNames();
           debug(LOG, "suspicious=%s", names);
+          final List<VirtualFile> fakes = new ArrayList<VirtualFile>(names.size());
           for (String name : names) {
-            if (name.isEmpty()) continue;
-
-            final VirtualFile fake = new FakeVirtualFile(file, name);
-            final FileAttributes childAttributes = fs.getAttributes(fake);
-            if (childAttributes != null) {
-              scheduleCreation(file, name, childAttributes.isDirectory());
+            if (!name.isEmpty()) {
+              fakes.add(new FakeVirtualFile(file, name));
+            }
+          }
+          final FileAttributes[] fakesAttributes = getAttributes(fs, fakes);
+          for (int i = 0; i < fakes.size(); i++) {
+            if (fakesAttributes[i] != null) {
+              scheduleCreation(file, fakes.get(i).getName(), fakesAttributes[i].isDirectory());
             }
           }
         }
@@ -182,6 +211,65 @@ public class RefreshWorker {
 
       file.markClean();
     }
+
+    debug(LOG, "root=%s refreshed in %d ms, %d files checked", root, System.currentTimeMillis() - start, myStatCount);
+  }
+
+  @Nullable
+  private FileAttributes getAttributes(@NotNull NewVirtualFileSystem fs, @NotNull VirtualFile file) {
+    myStatCount++;
+    return fs.getAttributes(file);
+  }
+
+  /**
+   * Reading attributes is the most expensive part of the refresh on slow (e.g. network) disks, so attributes of children of a large
+   * directory are read by several threads. The number of threads is configured by the 'vfs.refresh.stat.threads' registry key.
+   */
+  @NotNull
+  private FileAttributes[] getAttributes(@NotNull final NewVirtualFileSystem fs, @NotNull final List<VirtualFile> files) {
+    final FileAttributes[] result = new FileAttributes[files.size()];
+    myStatCount += files.size();
+    int threadsCount = Math.min(Registry.intValue("vfs.refresh.stat.threads"), Runtime.getRuntime().availableProcessors());
+    if (threadsCount <= 1 || files.size() < MIN_FILES_TO_STAT_IN_PARALLEL) {
+      readAttributes(fs, files, result, 0, files.size());
+      return result;
+    }
+
+    final int chunkSize = (files.size() + threadsCount - 1) / threadsCount;
+    final List<Future<?>> futures = new ArrayList<Future<?>>(threadsCount);
+    for (int chunkStart = chunkSize; chunkStart < files.size(); chunkStart += chunkSize) {
+      final int from = chunkStart;
+      futures.add(ourStatExecutor.submit(new Callable<Object>() {
+        @Override
+        public Object call() {
+          readAttributes(fs, files, result, from, Math.min(from + chunkSize, files.size()));
+          return null;
+        }
+      }));
+    }
+    readAttributes(fs, files, result, 0, chunkSize);
+
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      }
+      catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      catch (ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+        if (cause instanceof Error) throw (Error)cause;
+        throw new RuntimeException(cause);
+      }
+    }
+    return result;
+  }
+
+  private static void readAttributes(NewVirtualFileSystem fs, List<VirtualFile> files, FileAttributes[] result, int from, int to) {
+    for (int i = from; i < to; i++) {
+      result[i] = fs.getAttributes(files.get(i));
+    }
   }
 
   private void checkAndScheduleChildRefresh(@NotNull VirtualFileSystemEntry parent,
@@ -46,6 +46,7 @@ public class StatisticsManagerImpl extends StatisticsManager {
   private final SoftReference[] myUnits = new SoftReference[UNIT_COUNT];
   private final HashSet<StatisticsUnit> myModifiedUnits = new HashSet<StatisticsUnit>();
   private boolean myTestingStatistics;
+  private volatile boolean myPreloaded;
 
   public int getUseCount(@NotNull final StatisticsInfo info) {
     if (info == StatisticsInfo.EMPTY) return 0;
@@ -111,13 +112,38 @@ public class StatisticsManagerImpl extends StatisticsManager {
     }
   }
 
-  private StatisticsUnit getUnit(int unitNumber) {
-    SoftReference ref = myUnits[unitNumber];
-    if (ref != null){
-      StatisticsUnit unit = (StatisticsUnit)ref.get();
-      if (unit != null) return unit;
+  /**
+   * Loads all units stored on disk, so the first completion doesn't need to read them on the event dispatch thread. Units which were
+   * already loaded are left intact.
+   */
+  public void preloadUnits() {
+    if (myPreloaded) return;
+    myPreloaded = true;
+
+    for (int unitNumber = 0; unitNumber < UNIT_COUNT; unitNumber++) {
+      synchronized (LOCK) {
+        if (getLoadedUnit(unitNumber) != null) continue;
+      }
+      if (!new File(getPathToUnit(unitNumber)).isFile()) continue;
+
+      StatisticsUnit unit = loadUnit(unitNumber);
+      synchronized (LOCK) {
+        if (getLoadedUnit(unitNumber) == null) {
+          myUnits[unitNumber] = new SoftReference<StatisticsUnit>(unit);
+        }
+      }
     }
-    StatisticsUnit unit = loadUnit(unitNumber);
+  }
+
+  private StatisticsUnit getLoadedUnit(int unitNumber) {
+    SoftReference ref = myUnits[unitNumber];
+    return ref != null ? (StatisticsUnit)ref.get() : null;
+  }
+
+  private StatisticsUnit getUnit(int unitNumber) {
+    StatisticsUnit unit = getLoadedUnit(unitNumber);
+    if (unit != null) return unit;
+    unit = loadUnit(unitNumber);
     if (unit == null){
       unit = new StatisticsUnit(unitNumber);
     }
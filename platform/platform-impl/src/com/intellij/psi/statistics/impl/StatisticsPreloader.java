@@ -0,0 +1,41 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.statistics.impl;
+
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import com.intellij.psi.statistics.StatisticsManager;
+
+public class StatisticsPreloader implements StartupActivity, DumbAware {
+  @Override
+  public void runActivity(Project project) {
+    Application application = ApplicationManager.getApplication();
+    if (application.isUnitTestMode() || application.isHeadlessEnvironment()) return;
+
+    final StatisticsManager manager = StatisticsManager.getInstance();
+    if (manager instanceof StatisticsManagerImpl) {
+      application.executeOnPooledThread(new Runnable() {
+        @Override
+        public void run() {
+          ((StatisticsManagerImpl)manager).preloadUnits();
+        }
+      });
+    }
+  }
+}
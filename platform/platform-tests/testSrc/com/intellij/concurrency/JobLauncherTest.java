@@ -0,0 +1,122 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.concurrency;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.testFramework.LightPlatformTestCase;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.Processor;
+import com.intellij.util.ThrowableRunnable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class JobLauncherTest extends LightPlatformTestCase {
+  public void testEachElementIsProcessedOnce() {
+    final int size = 100000;
+    final AtomicIntegerArray counts = new AtomicIntegerArray(size);
+    boolean result = JobLauncher.getInstance().invokeConcurrentlyUnderProgress(createList(size), null, false, new Processor<Integer>() {
+      @Override
+      public boolean process(Integer i) {
+        counts.incrementAndGet(i);
+        return true;
+      }
+    });
+    assertTrue(result);
+    for (int i = 0; i < size; i++) {
+      assertEquals(String.valueOf(i), 1, counts.get(i));
+    }
+  }
+
+  public void testStopWhenProcessorReturnsFalse() {
+    final AtomicInteger processed = new AtomicInteger();
+    boolean result = JobLauncher.getInstance().invokeConcurrentlyUnderProgress(createList(100000), null, false, new Processor<Integer>() {
+      @Override
+      public boolean process(Integer i) {
+        processed.incrementAndGet();
+        return i != 10;
+      }
+    });
+    assertFalse(result);
+    assertTrue(String.valueOf(processed.get()), processed.get() < 100000);
+  }
+
+  public void testStealingIndexRangesCoverAllIndices() throws Exception {
+    final int size = 50000;
+    final StealingIndexRanges ranges = new StealingIndexRanges(size, 4);
+    final AtomicIntegerArray counts = new AtomicIntegerArray(size);
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      final int worker = i;
+      threads[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          int k;
+          while ((k = ranges.next(worker)) != -1) {
+            counts.incrementAndGet(k);
+          }
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (int i = 0; i < size; i++) {
+      assertEquals(String.valueOf(i), 1, counts.get(i));
+    }
+  }
+
+  /**
+   * Imitates search in files of different sizes: a few neighbouring files take much more time to process than the rest of the scope.
+   */
+  public void testSkewedElementsPerformance() throws Exception {
+    if (JobSchedulerImpl.CORES_COUNT < 4) return;
+
+    final List<Integer> files = createList(2000);
+    final Processor<Integer> processor = new Processor<Integer>() {
+      @Override
+      public boolean process(Integer i) {
+        if (i < 8) {
+          try {
+            Thread.sleep(100);
+          }
+          catch (InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+        }
+        return true;
+      }
+    };
+    PlatformTestUtil.startPerformanceTest("Processing of skewed elements is not balanced between threads", 600, new ThrowableRunnable() {
+      @Override
+      public void run() throws Throwable {
+        JobLauncher.getInstance().invokeConcurrentlyUnderProgress(files, ProgressManager.getInstance().getProgressIndicator(), false,
+                                                                  processor);
+      }
+    }).assertTiming();
+  }
+
+  private static List<Integer> createList(int size) {
+    List<Integer> list = new ArrayList<Integer>(size);
+    for (int i = 0; i < size; i++) {
+      list.add(i);
+    }
+    return list;
+  }
+}
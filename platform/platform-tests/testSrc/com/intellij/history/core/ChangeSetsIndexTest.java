@@ -0,0 +1,117 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.history.core;
+
+import com.intellij.history.core.changes.Change;
+import com.intellij.history.core.changes.ChangeSet;
+import com.intellij.history.core.changes.PutLabelChange;
+import com.intellij.history.core.tree.RootEntry;
+import gnu.trove.TIntHashSet;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Arrays;
+
+public class ChangeSetsIndexTest extends LocalHistoryTestCase {
+  private final RootEntry r = new RootEntry();
+  private final ChangeSetsIndex index = new ChangeSetsIndex();
+
+  @Test
+  public void testFindingRecordsAffectingPath() {
+    add(1, createDirectory(r, "dir"));
+    add(2, createFile(r, "dir/file"));
+    add(3, createFile(r, "other"));
+    add(4, changeContent(r, "dir/file", "content"));
+
+    assertRecords(index.getRecordsAffecting("dir/file"), 1, 2, 4);
+    assertRecords(index.getRecordsAffecting("dir"), 1, 2, 4);
+    assertRecords(index.getRecordsAffecting("other"), 3);
+    assertRecords(index.getRecordsAffecting("unknown"));
+  }
+
+  @Test
+  public void testSiblingsWithCommonPrefixDoNotAffectEachOther() {
+    add(1, createDirectory(r, "dir"));
+    add(2, createFile(r, "dir/file"));
+    add(3, createDirectory(r, "dir2"));
+    add(4, createFile(r, "dir2/file"));
+    add(5, createFile(r, "dir/file2"));
+
+    assertRecords(index.getRecordsAffecting("dir"), 1, 2, 5);
+    assertRecords(index.getRecordsAffecting("dir/file"), 1, 2);
+    assertRecords(index.getRecordsAffecting("dir2/file"), 3, 4);
+    assertRecords(index.getRecordsAffecting("dir/file/unknown"), 1, 2);
+  }
+
+  @Test
+  public void testRenamesAffectOldAndNewPaths() {
+    add(1, createDirectory(r, "dir"));
+    add(2, createFile(r, "dir/file"));
+    add(3, rename(r, "dir", "newDir"));
+
+    assertRecords(index.getRecordsAffecting("newDir/file"), 3);
+    assertRecords(index.getRecordsAffecting("dir/file"), 1, 2, 3);
+  }
+
+  @Test
+  public void testLabelsAffectAllPaths() {
+    add(1, createFile(r, "file"));
+    add(2, new PutLabelChange(nextId(), "label", "project"));
+
+    assertRecords(index.getRecordsAffecting("file"), 1, 2);
+    assertRecords(index.getRecordsAffecting("other"), 2);
+  }
+
+  @Test
+  public void testRemovingRecords() {
+    add(1, createFile(r, "file"));
+    add(2, changeContent(r, "file", "content"));
+    assertRecords(index.getRecordsAffecting("file"), 1, 2);
+
+    TIntHashSet removed = new TIntHashSet();
+    removed.add(1);
+    index.removeAll(removed);
+    assertRecords(index.getRecordsAffecting("file"), 2);
+  }
+
+  @Test
+  public void testWritingAndReading() throws IOException {
+    add(1, createDirectory(r, "dir"));
+    add(2, createFile(r, "dir/file"));
+    add(3, new PutLabelChange(nextId(), "label", "project"));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    index.write(out);
+    out.close();
+    ChangeSetsIndex read = ChangeSetsIndex.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    assertRecords(read.getRecordsAffecting("dir/file"), 1, 2, 3);
+    assertRecords(read.getRecordsAffecting("other"), 3);
+  }
+
+  private void add(int recordId, Change change) {
+    ChangeSet changeSet = new ChangeSet(nextId(), -1);
+    changeSet.addChange(change);
+    index.add(recordId, changeSet);
+  }
+
+  private static void assertRecords(TIntHashSet actual, int... expected) {
+    int[] ids = actual.toArray();
+    Arrays.sort(ids);
+    assertArrayEquals(expected, ids);
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.ide.util.gotoByName;
+
+import com.intellij.psi.codeStyle.MinusculeMatcher;
+import com.intellij.psi.codeStyle.NameUtil;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.ThrowableRunnable;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class MatchedNamesCacheTest extends TestCase {
+  private static final String[] WORDS = {"Abstract", "Action", "Base", "Cache", "Class", "Default", "Editor", "File", "Goto", "Http",
+    "Impl", "Java", "Manager", "Name", "Provider", "Psi", "Reference", "Util", "Virtual", "XML"};
+
+  public void testNarrowing() {
+    assertTrue(MatchedNamesCache.isNarrowing("Foo", "FooB"));
+    assertTrue(MatchedNamesCache.isNarrowing("fb", "fba1"));
+    assertTrue(MatchedNamesCache.isNarrowing("F*B", "F*Ba"));
+    assertFalse(MatchedNamesCache.isNarrowing("", "Foo"));
+    assertFalse(MatchedNamesCache.isNarrowing("Foo", "Fo"));
+    assertFalse(MatchedNamesCache.isNarrowing("Foo", "Bar"));
+    assertFalse(MatchedNamesCache.isNarrowing("Foo ", "Foo B"));
+    assertFalse(MatchedNamesCache.isNarrowing("Foo", "Foo*"));
+    assertFalse(MatchedNamesCache.isNarrowing("Foo", "Foo."));
+    assertFalse(MatchedNamesCache.isNarrowing("*Foo", "*FooB"));
+  }
+
+  public void testNamesAreRecomputedForOtherNamesArray() {
+    MatchedNamesCache cache = new MatchedNamesCache();
+    String[] names = {"Foo", "Bar"};
+    cache.cacheMatches(names, "F", NameUtil.MatchingCaseSensitivity.NONE, Arrays.asList("Foo"));
+    assertEquals(1, cache.getCandidates(names, "Fo", NameUtil.MatchingCaseSensitivity.NONE).length);
+    assertSame(names, cache.getCandidates(names, "Fo", NameUtil.MatchingCaseSensitivity.ALL));
+    assertSame(names, cache.getCandidates(names, "B", NameUtil.MatchingCaseSensitivity.NONE));
+
+    String[] newNames = {"Foo", "Bar", "FooBar"};
+    assertSame(newNames, cache.getCandidates(newNames, "Fo", NameUtil.MatchingCaseSensitivity.NONE));
+  }
+
+  public void testTypingGivesSameResultsAsFullScan() {
+    String[] names = generateNames(20000);
+    for (String typed : new String[]{"DefPsiRefImpl", "fbm", "AbstractAction", "goto*util", "XMLHttp", "jmn1"}) {
+      for (NameUtil.MatchingCaseSensitivity sensitivity : NameUtil.MatchingCaseSensitivity.values()) {
+        MatchedNamesCache cache = new MatchedNamesCache();
+        for (int i = 1; i <= typed.length(); i++) {
+          String pattern = typed.substring(0, i);
+          List<String> incremental = match(cache.getCandidates(names, pattern, sensitivity), pattern, sensitivity);
+          cache.cacheMatches(names, pattern, sensitivity, incremental);
+          assertEquals(pattern + " " + sensitivity, match(names, pattern, sensitivity), incremental);
+        }
+      }
+    }
+  }
+
+  public void testTypingPerformance() {
+    final String[] names = generateNames(500000);
+    final String typed = "DefaultPsiReferenceProvider";
+    PlatformTestUtil.startPerformanceTest("Matching names while typing is slow", 3000, new ThrowableRunnable() {
+      @Override
+      public void run() {
+        MatchedNamesCache cache = new MatchedNamesCache();
+        for (int i = 1; i <= typed.length(); i++) {
+          String pattern = typed.substring(0, i);
+          NameUtil.MatchingCaseSensitivity sensitivity = NameUtil.MatchingCaseSensitivity.NONE;
+          cache.cacheMatches(names, pattern, sensitivity, match(cache.getCandidates(names, pattern, sensitivity), pattern, sensitivity));
+        }
+      }
+    }).cpuBound().assertTiming();
+  }
+
+  private static List<String> match(String[] names, String pattern, NameUtil.MatchingCaseSensitivity sensitivity) {
+    MinusculeMatcher matcher = NameUtil.buildMatcher(pattern, sensitivity);
+    List<String> result = new ArrayList<String>();
+    for (String name : names) {
+      if (matcher.matches(name)) {
+        result.add(name);
+      }
+    }
+    return result;
+  }
+
+  private static String[] generateNames(int count) {
+    Random random = new Random(42);
+    String[] names = new String[count];
+    for (int i = 0; i < count; i++) {
+      StringBuilder name = new StringBuilder();
+      int wordsCount = 1 + random.nextInt(4);
+      for (int j = 0; j < wordsCount; j++) {
+        name.append(WORDS[random.nextInt(WORDS.length)]);
+      }
+      names[i] = name.append(i % 10).toString();
+    }
+    return names;
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.progress;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import com.intellij.testFramework.LightPlatformTestCase;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.ThrowableRunnable;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class ProgressManagerTest extends LightPlatformTestCase {
+  public void testCancellationIsNoticedInTightLoop() throws Exception {
+    final ProgressIndicatorBase indicator = new ProgressIndicatorBase();
+    final boolean[] canceled = {false};
+    Future<?> future = ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+      @Override
+      public void run() {
+        ProgressManager.getInstance().runProcess(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              while (true) {
+                ProgressManager.checkCanceled();
+              }
+            }
+            catch (ProcessCanceledException e) {
+              canceled[0] = true;
+            }
+          }
+        }, indicator);
+      }
+    });
+    Thread.sleep(100);
+    indicator.cancel();
+    future.get(10, TimeUnit.SECONDS);
+    assertTrue(canceled[0]);
+  }
+
+  /**
+   * Imitates a PSI visitor which checks for cancellation on each visited element.
+   */
+  public void testCheckCanceledPerformance() {
+    final int[] counter = {0};
+    PlatformTestUtil.startPerformanceTest("checkCanceled() is slow", 1000, new ThrowableRunnable() {
+      @Override
+      public void run() throws Throwable {
+        ProgressManager.getInstance().runProcess(new Runnable() {
+          @Override
+          public void run() {
+            for (int i = 0; i < 100000000; i++) {
+              ProgressManager.checkCanceled();
+              counter[0] += i;
+            }
+          }
+        }, new ProgressIndicatorBase());
+      }
+    }).cpuBound().assertTiming();
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vcs.changes;
+
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.FilePathImpl;
+import com.intellij.openapi.vcs.FileStatus;
+import com.intellij.openapi.vcs.VcsKey;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+public class ChangeListsIndexesTest extends TestCase {
+  // the indexes only pass vcs keys through
+  private static final VcsKey KEY = null;
+  private final File myRoot = new File("root").getAbsoluteFile();
+
+  public void testCopyIsIndependent() throws Exception {
+    final ChangeListsIndexes original = new ChangeListsIndexes();
+    original.add(path("a"), FileStatus.MODIFIED, KEY);
+    original.add(path("b"), FileStatus.ADDED, KEY);
+
+    final ChangeListsIndexes copy = new ChangeListsIndexes(original);
+    copy.remove(path("a"));
+    copy.add(path("b"), FileStatus.MODIFIED, KEY);
+    copy.add(path("c"), FileStatus.ADDED, KEY);
+    original.add(path("d"), FileStatus.ADDED, KEY);
+
+    assertEquals(FileStatus.MODIFIED, original.getStatus(file("a")));
+    assertEquals(FileStatus.ADDED, original.getStatus(file("b")));
+    assertNull(original.getStatus(file("c")));
+    assertNull(copy.getStatus(file("a")));
+    assertEquals(FileStatus.MODIFIED, copy.getStatus(file("b")));
+    assertEquals(FileStatus.ADDED, copy.getStatus(file("c")));
+    assertNull(copy.getStatus(file("d")));
+    assertEquals(Arrays.asList(file("a").getPath(), file("b").getPath(), file("d").getPath()),
+                 Arrays.asList(original.getAffectedPaths().toArray()));
+  }
+
+  public void testDeltaAfterCopy() throws Exception {
+    final ChangeListsIndexes was = new ChangeListsIndexes();
+    for (int i = 0; i < 100; i++) {
+      was.add(path("file" + i), FileStatus.MODIFIED, KEY);
+    }
+    // merges the entries into the shared base
+    new ChangeListsIndexes(was);
+
+    final ChangeListsIndexes became = new ChangeListsIndexes(was);
+    became.remove(path("file1"));
+    became.remove(path("file2"));
+    became.add(path("file2"), FileStatus.MODIFIED, KEY);
+    became.add(path("new"), FileStatus.ADDED, KEY);
+
+    final Set<Pair<String, VcsKey>> toRemove = new HashSet<Pair<String, VcsKey>>();
+    final Set<Pair<String, VcsKey>> toAdd = new HashSet<Pair<String, VcsKey>>();
+    was.getDelta(became, toRemove, toAdd);
+    assertEquals(Collections.singleton(Pair.create(file("file1").getPath(), KEY)), toRemove);
+    assertEquals(Collections.singleton(Pair.create(file("new").getPath(), KEY)), toAdd);
+    assertEquals(100, became.getAffectedFilesUnderVcs().size());
+  }
+
+  public void testCeilingPath() throws Exception {
+    final ChangeListsIndexes original = new ChangeListsIndexes();
+    original.add(path("dir/a"), FileStatus.MODIFIED, KEY);
+    original.add(path("dir/c"), FileStatus.MODIFIED, KEY);
+    final ChangeListsIndexes copy = new ChangeListsIndexes(original);
+    copy.remove(path("dir/a"));
+    copy.add(path("dir/b"), FileStatus.ADDED, KEY);
+
+    assertEquals(file("dir/b").getPath(), copy.getCeilingPath(file("dir").getPath()));
+    copy.remove(path("dir/b"));
+    assertEquals(file("dir/c").getPath(), copy.getCeilingPath(file("dir").getPath()));
+    copy.remove(path("dir/c"));
+    assertNull(copy.getCeilingPath(file("dir").getPath()));
+    assertEquals(file("dir/a").getPath(), original.getCeilingPath(file("dir").getPath()));
+  }
+
+  private File file(String path) {
+    return new File(myRoot, path);
+  }
+
+  private FilePath path(String path) {
+    return new FilePathImpl(file(path), false);
+  }
+}
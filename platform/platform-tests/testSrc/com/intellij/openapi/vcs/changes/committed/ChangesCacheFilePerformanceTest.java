@@ -0,0 +1,238 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vcs.changes.committed;
+
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.vcs.*;
+import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.history.VcsRevisionNumber;
+import com.intellij.openapi.vcs.versionBrowser.ChangeBrowserSettings;
+import com.intellij.openapi.vcs.versionBrowser.ChangesBrowserSettingsEditor;
+import com.intellij.openapi.vcs.versionBrowser.CommittedChangeList;
+import com.intellij.openapi.vcs.versionBrowser.CommittedChangeListImpl;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.PlatformTestCase;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.AsynchConsumer;
+import com.intellij.util.ThrowableRunnable;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Measures filtered reads from a committed changes cache with a long history.
+ */
+public class ChangesCacheFilePerformanceTest extends PlatformTestCase {
+  private static final int COUNT = 500000;
+  private static final int BUNCH_SIZE = 1000;
+  private static final int COMMITTERS = 50;
+  private static final long START_DATE = 1000000000000L;
+  private static final long DATE_STEP = 60000L;
+  private ChangesCacheFile myCacheFile;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    final File dir = createTempDirectory();
+    final MockAbstractVcs vcs = new MockAbstractVcs(myProject);
+    vcs.setCommittedChangesProvider(new MockCachingProvider());
+    final RepositoryLocation location = new DefaultRepositoryLocation("mock://repository");
+    myCacheFile = new ChangesCacheFile(myProject, new File(dir, "changes"), vcs, getVirtualFile(dir), location);
+    for (int i = 0; i < COUNT; i += BUNCH_SIZE) {
+      final List<CommittedChangeList> bunch = new ArrayList<CommittedChangeList>(BUNCH_SIZE);
+      for (int j = i; j < i + BUNCH_SIZE; j++) {
+        bunch.add(new CommittedChangeListImpl("changelist " + j, "comment " + j, "user" + j % COMMITTERS, j,
+                                              new Date(START_DATE + j * DATE_STEP), Collections.<Change>emptyList()));
+      }
+      myCacheFile.writeChanges(bunch);
+    }
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    myCacheFile.delete();
+    super.tearDown();
+  }
+
+  public void testFilteredReads() {
+    // the cache is generated once, so all the filters are measured in a single test
+    final ChangeBrowserSettings byDate = new ChangeBrowserSettings();
+    byDate.USE_DATE_AFTER_FILTER = true;
+    byDate.setDateAfter(new Date(START_DATE + COUNT / 2 * DATE_STEP));
+    byDate.USE_DATE_BEFORE_FILTER = true;
+    byDate.setDateBefore(new Date(START_DATE + (COUNT / 2 + 1000) * DATE_STEP));
+    assertReadTiming("Reading committed changes by date is slow", byDate, 1000);
+
+    final ChangeBrowserSettings byNumber = new ChangeBrowserSettings();
+    byNumber.USE_CHANGE_AFTER_FILTER = true;
+    byNumber.CHANGE_AFTER = String.valueOf(COUNT / 4);
+    byNumber.USE_CHANGE_BEFORE_FILTER = true;
+    byNumber.CHANGE_BEFORE = String.valueOf(COUNT / 4 + 499);
+    assertReadTiming("Reading committed changes by number is slow", byNumber, 500);
+
+    final ChangeBrowserSettings byUser = new ChangeBrowserSettings();
+    byUser.USE_USER_FILTER = true;
+    byUser.USER = "user7";
+    assertReadTiming("Reading committed changes by user is slow", byUser, 500);
+  }
+
+  private void assertReadTiming(final String message, final ChangeBrowserSettings settings, final int expectedMaxSize) {
+    PlatformTestUtil.startPerformanceTest(message, 2000, new ThrowableRunnable() {
+      @Override
+      public void run() throws Exception {
+        for (int i = 0; i < 10; i++) {
+          final List<CommittedChangeList> changes = myCacheFile.readChanges(settings, 500);
+          assertFalse(changes.isEmpty());
+          assertTrue(changes.size() <= expectedMaxSize);
+          final ChangeBrowserSettings.Filter filter = settings.createFilter();
+          for (CommittedChangeList list : changes) {
+            assertTrue(filter.accepts(list));
+          }
+        }
+      }
+    }).attempts(2).ioBound().assertTiming();
+  }
+
+  private static class MockCachingProvider implements CachingCommittedChangesProvider<CommittedChangeListImpl, ChangeBrowserSettings> {
+    @Override
+    public int getFormatVersion() {
+      return 1;
+    }
+
+    @Override
+    public void writeChangeList(DataOutput stream, CommittedChangeListImpl list) throws IOException {
+      // the cache writes directly to a random access file, so the record is written in one call
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final DataOutputStream out = new DataOutputStream(bytes);
+      out.writeLong(list.getNumber());
+      out.writeLong(list.getCommitDate().getTime());
+      out.writeUTF(list.getCommitterName());
+      out.writeUTF(list.getName());
+      out.writeUTF(list.getComment());
+      out.close();
+      stream.write(bytes.toByteArray());
+    }
+
+    @Override
+    public CommittedChangeListImpl readChangeList(RepositoryLocation location, DataInput stream) throws IOException {
+      final long number = stream.readLong();
+      final Date date = new Date(stream.readLong());
+      final String committer = stream.readUTF();
+      final String name = stream.readUTF();
+      final String comment = stream.readUTF();
+      return new CommittedChangeListImpl(name, comment, committer, number, date, Collections.<Change>emptyList());
+    }
+
+    @Override
+    public boolean isMaxCountSupported() {
+      return true;
+    }
+
+    @Override
+    public Collection<FilePath> getIncomingFiles(RepositoryLocation location) {
+      return null;
+    }
+
+    @Override
+    public boolean refreshCacheByNumber() {
+      return true;
+    }
+
+    @Override
+    public String getChangelistTitle() {
+      return null;
+    }
+
+    @Override
+    public boolean isChangeLocallyAvailable(FilePath filePath, VcsRevisionNumber localRevision, VcsRevisionNumber changeRevision,
+                                            CommittedChangeListImpl changeList) {
+      return false;
+    }
+
+    @Override
+    public boolean refreshIncomingWithCommitted() {
+      return false;
+    }
+
+    @NotNull
+    @Override
+    public ChangeBrowserSettings createDefaultSettings() {
+      return new ChangeBrowserSettings();
+    }
+
+    @Override
+    public ChangesBrowserSettingsEditor<ChangeBrowserSettings> createFilterUI(boolean showDateFilter) {
+      return null;
+    }
+
+    @Override
+    public RepositoryLocation getLocationFor(FilePath root) {
+      return null;
+    }
+
+    @Override
+    public RepositoryLocation getLocationFor(FilePath root, String repositoryPath) {
+      return null;
+    }
+
+    @Override
+    public VcsCommittedListsZipper getZipper() {
+      return null;
+    }
+
+    @Override
+    public List<CommittedChangeListImpl> getCommittedChanges(ChangeBrowserSettings settings, RepositoryLocation location, int maxCount) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public void loadCommittedChanges(ChangeBrowserSettings settings, RepositoryLocation location, int maxCount,
+                                     AsynchConsumer<CommittedChangeList> consumer) {
+      consumer.finished();
+    }
+
+    @Override
+    public ChangeListColumn[] getColumns() {
+      return new ChangeListColumn[0];
+    }
+
+    @Override
+    public VcsCommittedViewAuxiliary createActions(DecoratorManager manager, RepositoryLocation location) {
+      return null;
+    }
+
+    @Override
+    public int getUnlimitedCountValue() {
+      return 0;
+    }
+
+    @Override
+    public Pair<CommittedChangeListImpl, FilePath> getOneList(VirtualFile file, VcsRevisionNumber number) {
+      return null;
+    }
+
+    @Override
+    public RepositoryLocation getForNonLocal(VirtualFile file) {
+      return null;
+    }
+
+    @Override
+    public boolean supportsIncomingChanges() {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vcs.changes.committed;
+
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.ThrowableRunnable;
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+public class ChangesCacheIndexTest extends TestCase {
+  private static final int COMMITTERS = 50;
+  private static final long START_DATE = 1000000000000L;
+  private static final long DATE_STEP = 60000L;
+
+  public void testReadWrittenEntries() {
+    ChangesCacheIndex index = ChangesCacheIndex.read(createIndexData(3));
+    assertEquals(3, index.size());
+    assertEquals(2 * 100, index.getOffset(2));
+
+    int[] all = index.filter(new ChangesCacheIndex.Filter(), null, 0);
+    assertEquals(3, all.length);
+    assertEquals(2, all[0]);
+    assertEquals(0, all[2]);
+    assertEquals(2, index.filter(new ChangesCacheIndex.Filter(), null, 2).length);
+  }
+
+  public void testFilters() {
+    ChangesCacheIndex index = createIndex(1000);
+
+    ChangesCacheIndex.Filter filter = new ChangesCacheIndex.Filter();
+    filter.myMinNumber = 100;
+    filter.myMaxNumber = 199;
+    assertEquals(100, index.filter(filter, null, 0).length);
+
+    filter = new ChangesCacheIndex.Filter();
+    filter.myDateAfter = START_DATE + 10 * DATE_STEP;
+    filter.myDateBefore = START_DATE + 20 * DATE_STEP;
+    int[] positions = index.filter(filter, null, 0);
+    assertEquals(9, positions.length);
+    assertEquals(19, positions[0]);
+    assertEquals(11, positions[8]);
+
+    BitSet committers = new BitSet();
+    committers.set(7);
+    positions = index.filter(new ChangesCacheIndex.Filter(), committers, 5);
+    assertEquals(5, positions.length);
+    for (int position : positions) {
+      assertEquals(7, position % COMMITTERS);
+    }
+    assertEquals(0, index.filter(new ChangesCacheIndex.Filter(), new BitSet(), 0).length);
+  }
+
+  public void testFilteringPerformance() {
+    final int count = 500000;
+    final ChangesCacheIndex index = ChangesCacheIndex.read(createIndexData(count));
+    final BitSet committers = new BitSet();
+    committers.set(3);
+    final ChangesCacheIndex.Filter filter = new ChangesCacheIndex.Filter();
+    filter.myDateAfter = START_DATE + count / 2 * DATE_STEP;
+
+    PlatformTestUtil.startPerformanceTest("Filtering committed changes index is slow", 200, new ThrowableRunnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < 10; i++) {
+          assertEquals(count / 2 / COMMITTERS, index.filter(filter, committers, 0).length);
+          assertEquals(100, index.filter(new ChangesCacheIndex.Filter(), committers, 100).length);
+        }
+      }
+    }).cpuBound().assertTiming();
+  }
+
+  private static ChangesCacheIndex createIndex(int count) {
+    ChangesCacheIndex index = new ChangesCacheIndex(0);
+    for (int i = 0; i < count; i++) {
+      index.add(i, START_DATE + i * DATE_STEP, i * 100, i % COMMITTERS);
+    }
+    return index;
+  }
+
+  private static byte[] createIndexData(int count) {
+    ByteBuffer buffer = ByteBuffer.allocate(count * ChangesCacheIndex.ENTRY_SIZE);
+    for (int i = 0; i < count; i++) {
+      buffer.putLong(i);
+      buffer.putLong(START_DATE + i * DATE_STEP);
+      buffer.putLong(i * 100);
+      buffer.putShort((short)0);
+      buffer.putInt(i % COMMITTERS);
+    }
+    return buffer.array();
+  }
+}
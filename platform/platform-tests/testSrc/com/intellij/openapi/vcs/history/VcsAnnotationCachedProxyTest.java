@@ -0,0 +1,117 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vcs.history;
+
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.FilePathImpl;
+import com.intellij.openapi.vcs.annotate.VcsAnnotation;
+import com.intellij.openapi.vcs.annotate.VcsLineAnnotationData;
+import com.intellij.openapi.vcs.annotate.VcsUsualLineAnnotationData;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class VcsAnnotationCachedProxyTest extends TestCase {
+  private static final VcsRevisionNumber NEXT = new VcsRevisionNumber.Int(4);
+
+  public void testInsertedLines() {
+    assertRemapped("a\nb\nc\n", new int[]{1, 2, 3}, "a\nx\nb\nc\ny\n", new int[]{1, 4, 2, 3, 4});
+    assertRemapped("a\nb\n", new int[]{1, 2}, "x\na\nb\n", new int[]{4, 1, 2});
+  }
+
+  public void testChangedAndDeletedLines() {
+    assertRemapped("a\nb\nc\nd\n", new int[]{1, 2, 3, 1}, "a\nB\nd\n", new int[]{1, 4, 1});
+    assertRemapped("a\nb\nc\n", new int[]{1, 2, 3}, "c\n", new int[]{3});
+    assertRemapped("a\nb\nc", new int[]{1, 2, 3}, "a\nb\nc\nd", new int[]{1, 2, 3, 4});
+  }
+
+  public void testWhitespaceChangesKeepRevisions() {
+    assertRemapped("if (a) {\n  foo();\n}\n", new int[]{1, 2, 1}, "if (a) {\r\n    foo( );\r\n}\r\n", new int[]{1, 2, 1});
+  }
+
+  public void testEmptyLinesAreCounted() {
+    assertRemapped("a\n\nb\n", new int[]{1, 2, 3}, "a\n\n\nb\n", new int[]{1, 2, 4, 3});
+  }
+
+  public void testMismatchingAnnotationIsNotRemapped() {
+    assertNull(VcsAnnotationCachedProxy.remapLines(annotation(1, 2), "a\nb\nc\n", "a\nb\n", NEXT));
+    assertNull(VcsAnnotationCachedProxy.remapLines(annotation(1, 2), "a\nb\n", "", NEXT));
+    assertNull(VcsAnnotationCachedProxy.remapLines(annotation(1, 2), "a\nb\n", null, NEXT));
+  }
+
+  public void testLinesWithoutRevisionAreNotRemapped() {
+    VcsUsualLineAnnotationData previous = new VcsUsualLineAnnotationData(2);
+    previous.put(0, new VcsRevisionNumber.Int(1));
+    assertNull(VcsAnnotationCachedProxy.remapLines(previous, "a\nb\n", "a\nb\nc\n", NEXT));
+  }
+
+  public void testRestoreFromHistory() {
+    FilePath filePath = new FilePathImpl(new File("a.txt"), false);
+    VcsAbstractHistorySession history = createHistory(3, 2, 1);
+    VcsAnnotationPersistentCache.Entry entry = new VcsAnnotationPersistentCache.Entry("1", new String[]{"2", "1"}, new int[]{0, 1, 0});
+    VcsAnnotation annotation = VcsAnnotationCachedProxy.restore(filePath, entry, history);
+    assertNotNull(annotation);
+    assertSame(filePath, annotation.getFilePath());
+    assertSame(history.getRevisionList().get(2).getRevisionNumber(), annotation.getFirstRevision());
+    assertRevisions(new int[]{2, 1, 2}, annotation.getBasicAnnotation());
+
+    VcsAnnotationPersistentCache.Entry unknownRevision = new VcsAnnotationPersistentCache.Entry(null, new String[]{"5"}, new int[]{0});
+    assertNull(VcsAnnotationCachedProxy.restore(filePath, unknownRevision, history));
+    VcsAnnotationPersistentCache.Entry unknownFirst = new VcsAnnotationPersistentCache.Entry("0", new String[]{"2"}, new int[]{0});
+    assertNull(VcsAnnotationCachedProxy.restore(filePath, unknownFirst, history));
+  }
+
+  private static void assertRemapped(String previousContent, int[] previousRevisions, String content, int[] expected) {
+    VcsLineAnnotationData data = VcsAnnotationCachedProxy.remapLines(annotation(previousRevisions), previousContent, content, NEXT);
+    assertNotNull(data);
+    assertRevisions(expected, data);
+  }
+
+  private static void assertRevisions(int[] expected, VcsLineAnnotationData data) {
+    assertEquals(expected.length, data.getNumLines());
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals("line " + i, new VcsRevisionNumber.Int(expected[i]), data.getRevision(i));
+    }
+  }
+
+  private static VcsLineAnnotationData annotation(int... revisions) {
+    VcsUsualLineAnnotationData data = new VcsUsualLineAnnotationData(revisions.length);
+    for (int i = 0; i < revisions.length; i++) {
+      data.put(i, new VcsRevisionNumber.Int(revisions[i]));
+    }
+    return data;
+  }
+
+  private static VcsAbstractHistorySession createHistory(int... revisions) {
+    List<VcsFileRevision> list = new ArrayList<VcsFileRevision>();
+    for (int revision : revisions) {
+      list.add(new CurrentRevision(null, new VcsRevisionNumber.Int(revision)));
+    }
+    return new VcsAbstractHistorySession(list) {
+      @Override
+      protected VcsRevisionNumber calcCurrentRevisionNumber() {
+        return null;
+      }
+
+      @Override
+      public VcsHistorySession copy() {
+        return this;
+      }
+    };
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vcs.history;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.FilePathImpl;
+import com.intellij.openapi.vcs.VcsKey;
+import com.intellij.openapi.vcs.annotate.VcsAnnotation;
+import com.intellij.openapi.vcs.annotate.VcsUsualLineAnnotationData;
+import com.intellij.openapi.vcs.changes.committed.MockAbstractVcs;
+import junit.framework.TestCase;
+
+import java.io.File;
+
+public class VcsAnnotationPersistentCacheTest extends TestCase {
+  private static final VcsKey KEY = MockAbstractVcs.getKey();
+
+  private File myDir;
+  private File myFile;
+  private FilePath myFilePath;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("annotations", null);
+    myFile = new File(myDir, "cache/annotations");
+    myFilePath = new FilePathImpl(new File(myDir, "a.txt"), false);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    FileUtil.delete(myDir);
+    super.tearDown();
+  }
+
+  public void testKeptBetweenSessions() throws Exception {
+    VcsAnnotationPersistentCache cache = new VcsAnnotationPersistentCache(myFile);
+    cache.put(myFilePath, KEY, revision(3), createAnnotation(null, 1, 3, 1, 2));
+    cache.put(myFilePath, KEY, revision(2), createAnnotation(revision(1), 1, 2));
+    cache.close();
+
+    cache = new VcsAnnotationPersistentCache(myFile);
+    try {
+      VcsAnnotationPersistentCache.Entry entry = cache.get(myFilePath, KEY, revision(3));
+      assertNotNull(entry);
+      assertNull(entry.getFirstRevision());
+      assertEquals(4, entry.getNumLines());
+      assertEquals("1", entry.getRevision(0));
+      assertEquals("3", entry.getRevision(1));
+      assertEquals("1", entry.getRevision(2));
+      assertEquals("2", entry.getRevision(3));
+
+      entry = cache.get(myFilePath, KEY, revision(2));
+      assertNotNull(entry);
+      assertEquals("1", entry.getFirstRevision());
+
+      assertNull(cache.get(myFilePath, KEY, revision(1)));
+      assertNull(cache.get(new FilePathImpl(new File(myDir, "b.txt"), false), KEY, revision(3)));
+    }
+    finally {
+      cache.close();
+    }
+  }
+
+  public void testOnlyLineRevisionsAreKept() throws Exception {
+    VcsAnnotationPersistentCache cache = new VcsAnnotationPersistentCache(myFile);
+    try {
+      VcsAnnotation withMerges = createAnnotation(null, 1, 2);
+      withMerges.addAnnotation("merge", new VcsUsualLineAnnotationData(2));
+      cache.put(myFilePath, KEY, revision(2), withMerges);
+      assertNull(cache.get(myFilePath, KEY, revision(2)));
+
+      VcsAnnotation incomplete = new VcsAnnotation(myFilePath, new VcsUsualLineAnnotationData(2), null);
+      cache.put(myFilePath, KEY, revision(2), incomplete);
+      assertNull(cache.get(myFilePath, KEY, revision(2)));
+    }
+    finally {
+      cache.close();
+    }
+  }
+
+  public void testHistoryCacheKeepsAnnotationsOnlyWithFile() throws Exception {
+    VcsHistoryCache memoryOnly = new VcsHistoryCache();
+    memoryOnly.put(myFilePath, KEY, revision(2), createAnnotation(null, 1, 2));
+    assertNotNull(memoryOnly.get(myFilePath, KEY, revision(2)));
+    assertNull(memoryOnly.getPersistentAnnotation(myFilePath, KEY, revision(2)));
+    memoryOnly.dispose();
+
+    VcsHistoryCache historyCache = new VcsHistoryCache(myFile);
+    historyCache.put(myFilePath, KEY, revision(2), createAnnotation(null, 1, 2));
+    historyCache.put(myFilePath, KEY, revision(3), createAnnotation(null, 1, 3), false);
+    assertNotNull(historyCache.get(myFilePath, KEY, revision(3)));
+    historyCache.dispose();
+    historyCache = new VcsHistoryCache(myFile);
+    try {
+      assertNull(historyCache.get(myFilePath, KEY, revision(2)));
+      assertNotNull(historyCache.getPersistentAnnotation(myFilePath, KEY, revision(2)));
+      assertNull(historyCache.getPersistentAnnotation(myFilePath, KEY, revision(3)));
+    }
+    finally {
+      historyCache.dispose();
+    }
+  }
+
+  public void testBrokenStorageIsRecreated() throws Exception {
+    VcsAnnotationPersistentCache cache = new VcsAnnotationPersistentCache(myFile);
+    cache.put(myFilePath, KEY, revision(2), createAnnotation(null, 1, 2));
+    cache.close();
+    for (File file : myFile.getParentFile().listFiles()) {
+      FileUtil.writeToFile(file, "broken");
+    }
+
+    cache = new VcsAnnotationPersistentCache(myFile);
+    try {
+      assertNull(cache.get(myFilePath, KEY, revision(2)));
+      cache.put(myFilePath, KEY, revision(2), createAnnotation(null, 1, 2));
+      assertNotNull(cache.get(myFilePath, KEY, revision(2)));
+    }
+    finally {
+      cache.close();
+    }
+  }
+
+  private VcsAnnotation createAnnotation(VcsRevisionNumber firstRevision, int... revisions) {
+    VcsUsualLineAnnotationData data = new VcsUsualLineAnnotationData(revisions.length);
+    for (int i = 0; i < revisions.length; i++) {
+      data.put(i, revision(revisions[i]));
+    }
+    return new VcsAnnotation(myFilePath, data, firstRevision);
+  }
+
+  private static VcsRevisionNumber revision(int revision) {
+    return new VcsRevisionNumber.Int(revision);
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vfs.impl.jar;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+public class JarHandlerTest extends TestCase {
+  private File myTempDir;
+  private String myOldJarsDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myTempDir = FileUtil.createTempDirectory("jarHandler", null);
+    myOldJarsDir = System.getProperty("jars_dir");
+    System.setProperty("jars_dir", new File(myTempDir, "jars").getPath());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    if (myOldJarsDir != null) {
+      System.setProperty("jars_dir", myOldJarsDir);
+    }
+    else {
+      System.clearProperty("jars_dir");
+    }
+    FileUtil.delete(myTempDir);
+    super.tearDown();
+  }
+
+  public void testStoredEntriesAreEqualToRead() throws Exception {
+    File jar = createJar("a.jar", "META-INF/", "META-INF/MANIFEST.MF", "com/foo/Bar.class", "com/foo/Baz.class", "x.txt");
+
+    Map<String, JarHandlerBase.EntryInfo> read = createHandler(jar).initEntries();
+    Map<String, JarHandlerBase.EntryInfo> loaded = createHandler(jar).loadEntries();
+    assertNotNull(loaded);
+    assertEquals(new HashSet<String>(read.keySet()), new HashSet<String>(loaded.keySet()));
+    for (String path : read.keySet()) {
+      JarHandlerBase.EntryInfo expected = read.get(path);
+      JarHandlerBase.EntryInfo actual = loaded.get(path);
+      assertEquals(path, expected.shortName, actual.shortName);
+      assertEquals(path, expected.isDirectory, actual.isDirectory);
+      assertEquals(path, expected.length, actual.length);
+      assertEquals(path, expected.timestamp, actual.timestamp);
+      assertSame(path, expected.parent == null ? null : loaded.get(path.contains("/") ? path.substring(0, path.lastIndexOf('/')) : ""),
+                 actual.parent);
+    }
+    assertEquals(4, read.get("com/foo/Bar.class").length);
+    assertTrue(read.get("com").isDirectory);
+  }
+
+  public void testChangedJarIsReadAgain() throws Exception {
+    File jar = createJar("a.jar", "a.txt");
+    assertNotNull(createHandler(jar).initEntries().get("a.txt"));
+
+    createJar("a.jar", "b.txt");
+    assertTrue(jar.setLastModified(jar.lastModified() + 2000));
+    assertNull(createHandler(jar).loadEntries());
+
+    Map<String, JarHandlerBase.EntryInfo> entries = createHandler(jar).initEntries();
+    assertNull(entries.get("a.txt"));
+    assertNotNull(entries.get("b.txt"));
+  }
+
+  private static JarHandler createHandler(File jar) {
+    return new JarHandler(null, jar.getPath()) {
+      @Override
+      public File getMirrorFile(File originalFile) {
+        return originalFile;
+      }
+    };
+  }
+
+  private File createJar(String name, String... entries) throws IOException {
+    File jar = new File(myTempDir, name);
+    JarOutputStream stream = new JarOutputStream(new FileOutputStream(jar));
+    try {
+      for (String entry : entries) {
+        stream.putNextEntry(new JarEntry(entry));
+        if (!entry.endsWith("/")) {
+          stream.write("text".getBytes());
+        }
+        stream.closeEntry();
+      }
+    }
+    finally {
+      stream.close();
+    }
+    return jar;
+  }
+}
@@ -27,14 +27,20 @@ import com.intellij.openapi.vfs.newvfs.RefreshQueue;
 import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
 import com.intellij.openapi.vfs.newvfs.impl.VirtualDirectoryImpl;
 import com.intellij.openapi.vfs.newvfs.impl.VirtualFileSystemEntry;
+import com.intellij.openapi.vfs.newvfs.persistent.FSRecords;
 import com.intellij.openapi.vfs.newvfs.persistent.PersistentFS;
 import com.intellij.openapi.vfs.newvfs.persistent.PersistentFSImpl;
+import com.intellij.testFramework.LoggedErrorProcessor;
 import com.intellij.testFramework.PlatformLangTestCase;
 import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.ArrayUtil;
+import org.apache.log4j.Logger;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 
 public class LocalFileSystemTest extends PlatformLangTestCase {
@@ -295,6 +301,90 @@ public class LocalFileSystemTest extends PlatformLangTestCase {
     checkChildCount(virtualDir, 2);
   }
 
+  public void testRefreshOfLargeDirectory() throws Exception {
+    File testDir = FileUtil.createTempDirectory("RefreshLargeDirTest." + getName(), null);
+    for (int i = 0; i < 100; i++) {
+      FileUtil.writeToFile(new File(testDir, "f" + i + ".txt"), "text");
+    }
+
+    VirtualFile virtualDir = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(testDir);
+    assertNotNull(virtualDir);
+    virtualDir.getChildren();
+    virtualDir.refresh(false, true);
+    checkChildCount(virtualDir, 100);
+
+    VirtualFile deleted = virtualDir.findChild("f10.txt");
+    assertNotNull(deleted);
+    VirtualFile modifiedFile = virtualDir.findChild("f60.txt");
+    assertNotNull(modifiedFile);
+    long timestamp = modifiedFile.getTimeStamp();
+    for (int i = 0; i < 50; i++) {
+      FileUtil.delete(new File(testDir, "f" + i + ".txt"));
+    }
+    for (int i = 100; i < 120; i++) {
+      FileUtil.writeToFile(new File(testDir, "f" + i + ".txt"), "text");
+    }
+    File modified = new File(testDir, "f60.txt");
+    FileUtil.writeToFile(modified, "modified text");
+    assertTrue(modified.setLastModified(modified.lastModified() + 2000));
+
+    virtualDir.refresh(false, true);
+    checkChildCount(virtualDir, 70);
+    assertFalse(deleted.isValid());
+    assertNotNull(virtualDir.findChild("f119.txt"));
+    assertEquals(modified.length(), modifiedFile.getLength());
+    assertTrue(timestamp != modifiedFile.getTimeStamp());
+  }
+
+  public void testDeleteOfChildrenMissingFromRecords() throws Exception {
+    File testDir = FileUtil.createTempDirectory("DeleteChildrenTest." + getName(), null);
+    for (int i = 0; i < 10; i++) {
+      FileUtil.writeToFile(new File(testDir, "f" + i + ".txt"), "text");
+    }
+
+    VirtualFile virtualDir = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(testDir);
+    assertNotNull(virtualDir);
+    virtualDir.getChildren();
+    virtualDir.refresh(false, true);
+    checkChildCount(virtualDir, 10);
+
+    VirtualFile lost = virtualDir.findChild("f5.txt");
+    VirtualFile deleted = virtualDir.findChild("f0.txt");
+    VirtualFile kept = virtualDir.findChild("f9.txt");
+    assertNotNull(lost);
+    assertNotNull(deleted);
+    assertNotNull(kept);
+    int dirId = ((VirtualFileWithId)virtualDir).getId();
+    int[] childIds = FSRecords.list(dirId);
+    FSRecords.updateList(dirId, ArrayUtil.remove(childIds, ArrayUtil.indexOf(childIds, ((VirtualFileWithId)lost).getId())));
+
+    for (int i = 0; i < 9; i++) {
+      FileUtil.delete(new File(testDir, "f" + i + ".txt"));
+    }
+    final List<String> errors = new ArrayList<String>();
+    LoggedErrorProcessor.setNewInstance(new LoggedErrorProcessor() {
+      @Override
+      public void processError(String message, Throwable t, String[] details, Logger logger) {
+        errors.add(message);
+      }
+    });
+    try {
+      virtualDir.refresh(false, true);
+    }
+    finally {
+      LoggedErrorProcessor.restoreDefaultProcessor();
+    }
+
+    // the deletions are applied as one group, the child which is not in the records is reported and the rest are still deleted
+    assertEquals(1, errors.size());
+    assertTrue(errors.get(0), errors.get(0).contains(lost.getName()));
+    assertFalse(deleted.isValid());
+    assertTrue(kept.isValid());
+    assertNull(virtualDir.findChild("f0.txt"));
+    assertNotNull(virtualDir.findChild("f9.txt"));
+    assertTrue(Arrays.equals(new int[]{((VirtualFileWithId)kept).getId()}, FSRecords.list(dirId)));
+  }
+
   private static void checkChildCount(VirtualFile virtualDir, int expectedCount) {
     VirtualFile[] children = virtualDir.getChildren();
     if (children.length != expectedCount) {
@@ -524,6 +524,38 @@ public class NameUtilTest extends UsefulTestCase {
     }).cpuBound().attempts(20).assertTiming();
   }
 
+  public void testMatchingClassNamesPerformance() {
+    final String[] words = {"Abstract", "Action", "Base", "Builder", "Cache", "Class", "Default", "Editor", "Exception", "Factory", "File",
+      "Handler", "Impl", "Java", "List", "Manager", "Map", "Name", "Psi", "Reference", "Util", "Virtual", "XML"};
+    final String[] names = new String[50000];
+    for (int i = 0; i < names.length; i++) {
+      StringBuilder name = new StringBuilder();
+      for (int j = 0; j < 1 + i % 4; j++) {
+        name.append(words[(i * 7 + j * 13 + i / 23) % words.length]);
+      }
+      names[i] = name.append(i % 10).toString();
+    }
+    final List<MinusculeMatcher> matchers = new ArrayList<MinusculeMatcher>();
+    for (String s : ContainerUtil.ar("a", "AbsAct", "psiref", "DPRI", "*Util", "vfm", "XMLHandlerFa", "JLM1", "qq")) {
+      matchers.add(NameUtil.buildMatcher(s, NameUtil.MatchingCaseSensitivity.NONE));
+    }
+
+    PlatformTestUtil.startPerformanceTest("Matching class names is slow", 3000, new ThrowableRunnable() {
+      @Override
+      public void run() {
+        int count = 0;
+        for (int i = 0; i < 20; i++) {
+          for (MinusculeMatcher matcher : matchers) {
+            for (String name : names) {
+              if (matcher.matches(name)) count++;
+            }
+          }
+        }
+        assertTrue(count > 0);
+      }
+    }).cpuBound().attempts(5).assertTiming();
+  }
+
  public void testSpeedSearchComparator() {
    final SpeedSearchComparator c = new SpeedSearchComparator(false, true);
 
@@ -28,10 +28,17 @@ import org.jetbrains.annotations.Nullable;
 import java.util.Iterator;
 
 /**
-* @author peter
-*/
+ * Case properties of pattern characters are computed once in the constructor. {@link #matches(String)} doesn't allocate anything,
+ * matched fragments are only collected by {@link #matchingFragments(String)}.
+ *
+ * @author peter
+ */
 public class MinusculeMatcher implements Matcher {
   private final char[] myPattern;
+  private final char[] myToUpperCase;
+  private final char[] myToLowerCase;
+  private final boolean[] myIsUpperCase;
+  private final boolean[] myIsWordSeparator;
   private final NameUtil.MatchingCaseSensitivity myOptions;
   private final boolean myHasHumps;
   private final boolean myHasDots;
@@ -39,6 +46,17 @@ public class MinusculeMatcher implements Matcher {
   public MinusculeMatcher(@NotNull String pattern, @NotNull NameUtil.MatchingCaseSensitivity options) {
     myOptions = options;
     myPattern = StringUtil.trimEnd(pattern, "* ").toCharArray();
+    myToUpperCase = new char[myPattern.length];
+    myToLowerCase = new char[myPattern.length];
+    myIsUpperCase = new boolean[myPattern.length];
+    myIsWordSeparator = new boolean[myPattern.length];
+    for (int k = 0; k < myPattern.length; k++) {
+      char c = myPattern[k];
+      myToUpperCase[k] = StringUtil.toUpperCase(c);
+      myToLowerCase[k] = StringUtil.toLowerCase(c);
+      myIsUpperCase[k] = Character.isUpperCase(c);
+      myIsWordSeparator[k] = NameUtil.isWordSeparator(c);
+    }
 
     int i = 0;
     while (isWildcard(i)) i++;
@@ -49,7 +67,7 @@ public class MinusculeMatcher implements Matcher {
   private boolean hasHumps(int start) {
     int i = start;
     while (i < myPattern.length) {
-      if (Character.isUpperCase(myPattern[i])) {
+      if (myIsUpperCase[i]) {
         return true;
       }
       i++;
@@ -68,7 +86,10 @@ public class MinusculeMatcher implements Matcher {
     return false;
   }
 
-  private static FList<TextRange> prependRange(@NotNull FList<TextRange> ranges, int from, int length) {
+  private static FList<TextRange> prependRange(@NotNull FList<TextRange> ranges, int from, int length, boolean collectRanges) {
+    if (!collectRanges) {
+      return ranges;
+    }
     TextRange head = ranges.getHead();
     if (head != null && head.getStartOffset() == from + length) {
       return ranges.getTail().prepend(new TextRange(from, head.getEndOffset()));
@@ -99,7 +120,7 @@ public class MinusculeMatcher implements Matcher {
         if (p < 0) {
           break;
         }
-        if (Character.isUpperCase(myPattern[p]) || i == range.getStartOffset()) {
+        if (myIsUpperCase[p] || i == range.getStartOffset()) {
           matchingCase += c == myPattern[p] ? 1 : 0;
         }
       }
@@ -148,16 +169,20 @@ public class MinusculeMatcher implements Matcher {
 
   @Override
   public boolean matches(@NotNull String name) {
-    return matchingFragments(name) != null;
+    return matchWildcards(name, 0, 0, false) != null;
   }
 
   @Nullable
   public Iterable<TextRange> matchingFragments(@NotNull String name) {
-    return matchWildcards(name, 0, 0);
+    return matchWildcards(name, 0, 0, true);
   }
 
+  /**
+   * When {@code collectRanges} is false, the matching methods return an empty list instead of the matched fragments, so no objects
+   * are created.
+   */
   @Nullable
-  private FList<TextRange> matchWildcards(@NotNull String name, int patternIndex, int nameIndex) {
+  private FList<TextRange> matchWildcards(@NotNull String name, int patternIndex, int nameIndex, boolean collectRanges) {
     if (nameIndex < 0) {
       return null;
     }
@@ -165,7 +190,7 @@ public class MinusculeMatcher implements Matcher {
       if (patternIndex == myPattern.length) {
         return FList.emptyList();
       }
-      return matchFragment(name, patternIndex, nameIndex);
+      return matchFragment(name, patternIndex, nameIndex, collectRanges);
     }
 
     do {
@@ -179,16 +204,20 @@ public class MinusculeMatcher implements Matcher {
       return FList.emptyList();
     }
 
-    FList<TextRange> ranges = matchFragment(name, patternIndex, nameIndex);
+    FList<TextRange> ranges = matchFragment(name, patternIndex, nameIndex, collectRanges);
     if (ranges != null) {
       return ranges;
     }
 
-    return matchSkippingWords(name, patternIndex, nameIndex, true);
+    return matchSkippingWords(name, patternIndex, nameIndex, true, collectRanges);
   }
 
   @Nullable
-  private FList<TextRange> matchSkippingWords(@NotNull String name, int patternIndex, int nameIndex, boolean allowSpecialChars) {
+  private FList<TextRange> matchSkippingWords(@NotNull String name,
+                                              int patternIndex,
+                                              int nameIndex,
+                                              boolean allowSpecialChars,
+                                              boolean collectRanges) {
     boolean star = isPatternChar(patternIndex - 1, '*');
     char p = myPattern[patternIndex];
     while (true) {
@@ -202,8 +231,8 @@ public class MinusculeMatcher implements Matcher {
       if (myHasDots && StringUtil.contains(name, nameIndex, nextOccurrence, '.')) {
         return null;
       }
-      if (!Character.isUpperCase(p) || NameUtil.isWordStart(name, nextOccurrence)) {
-        FList<TextRange> ranges = matchFragment(name, patternIndex, nextOccurrence);
+      if (!myIsUpperCase[patternIndex] || NameUtil.isWordStart(name, nextOccurrence)) {
+        FList<TextRange> ranges = matchFragment(name, patternIndex, nextOccurrence, collectRanges);
         if (ranges != null) {
           return ranges;
         }
@@ -213,8 +242,8 @@ public class MinusculeMatcher implements Matcher {
   }
 
   @Nullable
-  private FList<TextRange> matchFragment(@NotNull String name, int patternIndex, int nameIndex) {
-    if (!isFirstCharMatching(name, nameIndex, myPattern[patternIndex])) {
+  private FList<TextRange> matchFragment(@NotNull String name, int patternIndex, int nameIndex, boolean collectRanges) {
+    if (!isFirstCharMatching(name, nameIndex, patternIndex)) {
       return null;
     }
 
@@ -222,16 +251,16 @@ public class MinusculeMatcher implements Matcher {
     int i = 1;
     while (nameIndex + i < name.length() &&
            patternIndex + i < myPattern.length &&
-           StringUtil.charsEqual(myPattern[patternIndex + i], name.charAt(nameIndex + i), myOptions != NameUtil.MatchingCaseSensitivity.ALL)) {
-      if (Character.isUpperCase(myPattern[patternIndex + i])) {
+           charsEqual(patternIndex + i, name.charAt(nameIndex + i), myOptions != NameUtil.MatchingCaseSensitivity.ALL)) {
+      if (myIsUpperCase[patternIndex + i]) {
         if (i < minFragment) {
           return null;
         }
         if (myPattern[patternIndex + i] != name.charAt(nameIndex + i)) {
           int nextWordStart = indexOfWordStart(name, patternIndex + i, nameIndex + i);
-          FList<TextRange> ranges = matchWildcards(name, patternIndex + i, nextWordStart);
+          FList<TextRange> ranges = matchWildcards(name, patternIndex + i, nextWordStart, collectRanges);
           if (ranges != null) {
-            return prependRange(ranges, nameIndex, i);
+            return prependRange(ranges, nameIndex, i, collectRanges);
           }
         }
       }
@@ -239,24 +268,29 @@ public class MinusculeMatcher implements Matcher {
     }
 
     if (patternIndex + i >= myPattern.length) {
-      return FList.<TextRange>emptyList().prepend(TextRange.from(nameIndex, i));
+      return prependRange(FList.<TextRange>emptyList(), nameIndex, i, collectRanges);
     }
     while (i >= minFragment) {
       FList<TextRange> ranges = isWildcard(patternIndex + i) ?
-                                matchWildcards(name, patternIndex + i, nameIndex + i) :
-                                matchSkippingWords(name, patternIndex + i, nameIndex + i, false);
+                                matchWildcards(name, patternIndex + i, nameIndex + i, collectRanges) :
+                                matchSkippingWords(name, patternIndex + i, nameIndex + i, false, collectRanges);
       if (ranges != null) {
-        return prependRange(ranges, nameIndex, i);
+        return prependRange(ranges, nameIndex, i, collectRanges);
       }
       i--;
     }
     return null;
   }
 
-  private boolean isFirstCharMatching(@NotNull String name, int nameIndex, char p) {
-    return nameIndex < name.length() && StringUtil.charsEqual(p, name.charAt(nameIndex),
-                                                              myOptions == NameUtil.MatchingCaseSensitivity.FIRST_LETTER && nameIndex > 0 ||
-                                                              myOptions == NameUtil.MatchingCaseSensitivity.NONE);
+  private boolean isFirstCharMatching(@NotNull String name, int nameIndex, int patternIndex) {
+    return nameIndex < name.length() && charsEqual(patternIndex, name.charAt(nameIndex),
+                                                   myOptions == NameUtil.MatchingCaseSensitivity.FIRST_LETTER && nameIndex > 0 ||
+                                                   myOptions == NameUtil.MatchingCaseSensitivity.NONE);
+  }
+
+  private boolean charsEqual(int patternIndex, char c, boolean ignoreCase) {
+    if (myPattern[patternIndex] == c) return true;
+    return ignoreCase && (myToUpperCase[patternIndex] == StringUtil.toUpperCase(c) || myToLowerCase[patternIndex] == StringUtil.toLowerCase(c));
   }
 
   private boolean isWildcard(int patternIndex) {
@@ -268,11 +302,11 @@ public class MinusculeMatcher implements Matcher {
 
   private int indexOfWordStart(@NotNull String name, int patternIndex, int startFrom) {
     char p = myPattern[patternIndex];
-    if (p == '.' || NameUtil.isWordSeparator(p)) {
+    if (p == '.' || myIsWordSeparator[patternIndex]) {
       return StringUtil.indexOfIgnoreCase(name, p, startFrom + 1);
     }
     if (startFrom >= name.length() ||
-        myHasHumps && Character.isLowerCase(p) && !(patternIndex > 0 && NameUtil.isWordSeparator(myPattern[patternIndex - 1]))) {
+        myHasHumps && Character.isLowerCase(p) && !(patternIndex > 0 && myIsWordSeparator[patternIndex - 1])) {
       return -1;
     }
     int nextWordStart = startFrom;
@@ -281,7 +315,7 @@ public class MinusculeMatcher implements Matcher {
       if (nextWordStart >= name.length()) {
         return -1;
       }
-      if (StringUtil.charsEqualIgnoreCase(p, name.charAt(nextWordStart))) {
+      if (charsEqual(patternIndex, name.charAt(nextWordStart), true)) {
         return nextWordStart;
       }
     }
@@ -24,6 +24,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 
 /**
  * @author dyoma
@@ -54,10 +55,10 @@ public class Diff {
     int[] ints2 = enumerator.enumerate(objects2, startShift, endCut);
     Reindexer reindexer = new Reindexer();
     int[][] discarded = reindexer.discardUnique(ints1, ints2);
-    IntLCS intLCS = new IntLCS(discarded[0], discarded[1]);
-    intLCS.execute();
+    MyersLCS lcs = new MyersLCS(discarded[0], discarded[1]);
+    lcs.execute();
     ChangeBuilder builder = new ChangeBuilder(startShift);
-    reindexer.reindex(intLCS.getPaths(), builder);
+    reindexer.reindex(new BitSet[]{lcs.getChanges1(), lcs.getChanges2()}, builder);
     return builder.getFirstChange();
   }
 
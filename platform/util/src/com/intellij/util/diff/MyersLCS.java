@@ -0,0 +1,200 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.diff;
+
+import gnu.trove.TIntArrayList;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Linear space variation of the Myers' O((N+M)D) algorithm: searches forward from the start and backward from the end
+ * until the paths meet, and splits the comparison at a point of an optimal path, so only two arrays of N+M ints are used
+ * and inputs of any size can be compared.
+ * On highly divergent inputs the search stops after a number of steps proportional to the square root of the input size
+ * and splits at the furthest point reached instead, so the result is not necessarily minimal then, but is found in reasonable time.
+ */
+class MyersLCS {
+  private static final int MIN_MAX_COST = 256;
+
+  private final int[] myFirst;
+  private final int[] mySecond;
+  private final BitSet myChanges1;
+  private final BitSet myChanges2;
+  private final int myMaxCost;
+
+  private final int[] myForward;
+  private final int[] myBackward;
+  private int mySplitX;
+  private int mySplitY;
+
+  public MyersLCS(int[] first, int[] second) {
+    myFirst = first;
+    mySecond = second;
+    myChanges1 = new BitSet(first.length);
+    myChanges2 = new BitSet(second.length);
+    myChanges1.set(0, first.length);
+    myChanges2.set(0, second.length);
+    myMaxCost = Math.max(MIN_MAX_COST, (int)Math.sqrt(first.length + second.length));
+
+    final int size = Math.min(first.length + second.length, 2 * myMaxCost + 4) + 2;
+    myForward = new int[size];
+    myBackward = new int[size];
+  }
+
+  public void execute() {
+    final TIntArrayList stack = new TIntArrayList();
+    push(stack, 0, myFirst.length, 0, mySecond.length);
+    while (!stack.isEmpty()) {
+      final int size = stack.size();
+      int end2 = stack.remove(size - 1);
+      int start2 = stack.remove(size - 2);
+      int end1 = stack.remove(size - 3);
+      int start1 = stack.remove(size - 4);
+
+      while (start1 < end1 && start2 < end2 && myFirst[start1] == mySecond[start2]) {
+        myChanges1.clear(start1++);
+        myChanges2.clear(start2++);
+      }
+      while (start1 < end1 && start2 < end2 && myFirst[end1 - 1] == mySecond[end2 - 1]) {
+        myChanges1.clear(--end1);
+        myChanges2.clear(--end2);
+      }
+      if (start1 == end1 || start2 == end2) continue;
+
+      if (findSplit(start1, end1, start2, end2)) {
+        push(stack, start1, mySplitX, start2, mySplitY);
+        push(stack, mySplitX, end1, mySplitY, end2);
+      }
+    }
+  }
+
+  /**
+   * @return bit set for the first sequence, the bit is set if the element is not in the common subsequence
+   */
+  public BitSet getChanges1() {
+    return myChanges1;
+  }
+
+  public BitSet getChanges2() {
+    return myChanges2;
+  }
+
+  private static void push(TIntArrayList stack, int start1, int end1, int start2, int end2) {
+    stack.add(start1);
+    stack.add(end1);
+    stack.add(start2);
+    stack.add(end2);
+  }
+
+  /**
+   * Looks for a point where the comparison can be split into two smaller ones.
+   * @return false if there is no such point, i.e. all the elements are different
+   */
+  private boolean findSplit(int start1, int end1, int start2, int end2) {
+    final int length1 = end1 - start1;
+    final int length2 = end2 - start2;
+    // the search stops after myMaxCost steps, so only the diagonals reachable till then are used
+    final int maxD = Math.min((length1 + length2 + 1) / 2, myMaxCost + 2);
+    final int offset = maxD;
+    Arrays.fill(myForward, 0, 2 * maxD + 1, -1);
+    Arrays.fill(myBackward, 0, 2 * maxD + 1, -1);
+    myForward[offset + 1] = 0;
+    myBackward[offset + 1] = 0;
+
+    final int delta = length1 - length2;
+    // if the difference is odd, the paths can meet only on the forward step
+    final boolean front = (delta & 1) != 0;
+    // diagonals which went out of the bounds are not iterated over again
+    int forwardStart = 0;
+    int forwardEnd = 0;
+    int backwardStart = 0;
+    int backwardEnd = 0;
+
+    for (int d = 0; d < maxD; d++) {
+      int bestX = -1;
+      int bestY = -1;
+      for (int k = -d + forwardStart; k <= d - forwardEnd; k += 2) {
+        final int kOffset = offset + k;
+        int x = (k == -d || k != d && myForward[kOffset - 1] < myForward[kOffset + 1]) ? myForward[kOffset + 1] : myForward[kOffset - 1] + 1;
+        int y = x - k;
+        while (x < length1 && y < length2 && myFirst[start1 + x] == mySecond[start2 + y]) {
+          x++;
+          y++;
+        }
+        myForward[kOffset] = x;
+        if (x > length1) {
+          forwardEnd += 2;
+        }
+        else if (y > length2) {
+          forwardStart += 2;
+        }
+        else {
+          if (front) {
+            final int backwardOffset = offset + delta - k;
+            if (backwardOffset >= 0 && backwardOffset <= 2 * maxD && myBackward[backwardOffset] != -1 &&
+                x >= length1 - myBackward[backwardOffset]) {
+              return split(start1, end1, start2, end2, x, y);
+            }
+          }
+          if (x + y > bestX + bestY && (x < length1 || y < length2)) {
+            bestX = x;
+            bestY = y;
+          }
+        }
+      }
+
+      if (d > myMaxCost && bestX >= 0) {
+        return split(start1, end1, start2, end2, bestX, bestY);
+      }
+
+      for (int k = -d + backwardStart; k <= d - backwardEnd; k += 2) {
+        final int kOffset = offset + k;
+        int x = (k == -d || k != d && myBackward[kOffset - 1] < myBackward[kOffset + 1]) ? myBackward[kOffset + 1] : myBackward[kOffset - 1] + 1;
+        int y = x - k;
+        while (x < length1 && y < length2 && myFirst[end1 - x - 1] == mySecond[end2 - y - 1]) {
+          x++;
+          y++;
+        }
+        myBackward[kOffset] = x;
+        if (x > length1) {
+          backwardEnd += 2;
+        }
+        else if (y > length2) {
+          backwardStart += 2;
+        }
+        else if (!front) {
+          final int forwardOffset = offset + delta - k;
+          if (forwardOffset >= 0 && forwardOffset <= 2 * maxD && myForward[forwardOffset] != -1) {
+            final int forwardX = myForward[forwardOffset];
+            if (forwardX >= length1 - x) {
+              return split(start1, end1, start2, end2, forwardX, forwardX - (forwardOffset - offset));
+            }
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private boolean split(int start1, int end1, int start2, int end2, int x, int y) {
+    // the split must make both comparisons smaller, otherwise the elements are considered different
+    if (x + y == 0 || start1 + x == end1 && start2 + y == end2) return false;
+    mySplitX = start1 + x;
+    mySplitY = start2 + y;
+    return true;
+  }
+}
@@ -18,6 +18,7 @@ package com.intellij.util.diff;
 import gnu.trove.TIntArrayList;
 
 import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * @author dyoma
@@ -100,6 +101,27 @@ class Reindexer {
         }
       }
     });
+    buildDiff(changes1, changes2, builder);
+  }
+
+  /**
+   * @param discardedChanges elements changed in the sequences returned by {@link #discardUnique(int[], int[])}
+   */
+  public void reindex(BitSet[] discardedChanges, LCSBuilder builder) {
+    final boolean[] changes1 = new boolean[myOriginalLengths[0]];
+    final boolean[] changes2 = new boolean[myOriginalLengths[1]];
+    Arrays.fill(changes1, true);
+    Arrays.fill(changes2, true);
+    for (int i = 0; i < myOldIndecies[0].length; i++) {
+      if (!discardedChanges[0].get(i)) changes1[myOldIndecies[0][i]] = false;
+    }
+    for (int i = 0; i < myOldIndecies[1].length; i++) {
+      if (!discardedChanges[1].get(i)) changes2[myOldIndecies[1][i]] = false;
+    }
+    buildDiff(changes1, changes2, builder);
+  }
+
+  private static void buildDiff(boolean[] changes1, boolean[] changes2, LCSBuilder builder) {
     int x = 0;
     int y = 0;
     while (x < changes1.length && y < changes2.length) {
@@ -371,7 +371,7 @@ public class JBZipEntry implements Cloneable {
   private InputStream getInputStream() throws IOException {
     long start = calcDataOffset();
 
-    BoundedInputStream bis = new BoundedInputStream(start, getCompressedSize());
+    BoundedInputStream bis = new BoundedInputStream(myFile, start, getCompressedSize());
     switch (getMethod()) {
       case ZipEntry.STORED:
         return bis;
@@ -449,6 +449,33 @@ public class JBZipEntry implements Cloneable {
     setData(bytes, time);
   }
 
+  /**
+   * Sets data of this entry to the data read from the stream without loading it in memory.
+   */
+  public void setDataFromStream(InputStream stream, long timestamp) throws IOException {
+    time = timestamp;
+    myFile.getOutputStream().putNextEntryStream(this, stream);
+  }
+
+  /**
+   * Sets data of this entry to the data of {@code source} entry which may belong to another archive. The data is copied in compressed
+   * form, so it isn't inflated and deflated again.
+   */
+  public void setRawDataFrom(JBZipEntry source, long timestamp) throws IOException {
+    time = timestamp;
+    method = source.getMethod();
+    crc = source.getCrc();
+    size = source.getSize();
+    csize = source.getCompressedSize();
+    final InputStream stream = new BoundedInputStream(source.myFile, source.calcDataOffset(), csize);
+    try {
+      myFile.getOutputStream().putNextEntryContent(this, stream);
+    }
+    finally {
+      stream.close();
+    }
+  }
+
   public byte[] getData() throws IOException {
     if (size == -1) throw new IOException("no data");
 
@@ -476,12 +503,14 @@ public class JBZipEntry implements Cloneable {
    * RandomAccessFile, making sure that only bytes from a certain
    * range can be read.
    */
-  private class BoundedInputStream extends InputStream {
+  private static class BoundedInputStream extends InputStream {
+    private final JBZipFile myFile;
     private long remaining;
     private long loc;
     private boolean addDummyByte = false;
 
-    BoundedInputStream(long start, long remaining) {
+    BoundedInputStream(JBZipFile file, long start, long remaining) {
+      myFile = file;
       this.remaining = remaining;
       loc = start;
     }
@@ -23,6 +23,8 @@ package com.intellij.util.io.zip;
 import com.intellij.openapi.util.io.BufferExposingByteArrayOutputStream;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.util.List;
@@ -401,6 +403,7 @@ class JBZipOutputStream {
     final byte[] outputBytes;
     final int outputBytesLength;
     if (entry.getMethod() == ZipEntry.DEFLATED) {
+      def.reset();
       def.setLevel(level);
       final BufferExposingByteArrayOutputStream compressedBytesStream = new BufferExposingByteArrayOutputStream();
       final DeflaterOutputStream stream = new DeflaterOutputStream(compressedBytesStream, def);
@@ -422,4 +425,75 @@ class JBZipOutputStream {
     writeLocalFileHeader(entry);
     writeOut(outputBytes, 0, outputBytesLength);
   }
+
+  /**
+   * Writes the entry data read from the stream, the data isn't loaded in memory. CRC and sizes are written to the local file header
+   * when the stream is read through.
+   */
+  void putNextEntryStream(JBZipEntry entry, InputStream content) throws IOException {
+    if (entry.getMethod() == -1) {
+      entry.setMethod(method);
+    }
+    if (entry.getTime() == -1) {
+      entry.setTime(System.currentTimeMillis());
+    }
+    entry.setCrc(0);
+    entry.setCompressedSize(0);
+    entry.setSize(0);
+    writeLocalFileHeader(entry);
+
+    crc.reset();
+    final long dataStart = written;
+    final OutputStream output = new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        write(new byte[]{(byte)b}, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        writeOut(b, off, len);
+      }
+    };
+    final OutputStream stream;
+    if (entry.getMethod() == ZipEntry.DEFLATED) {
+      def.reset();
+      def.setLevel(level);
+      stream = new DeflaterOutputStream(output, def);
+    }
+    else {
+      stream = output;
+    }
+    final byte[] buffer = new byte[8192];
+    long size = 0;
+    int count;
+    while ((count = content.read(buffer)) > 0) {
+      crc.update(buffer, 0, count);
+      stream.write(buffer, 0, count);
+      size += count;
+    }
+    stream.close();
+
+    entry.setCrc(crc.getValue());
+    entry.setSize(size);
+    entry.setCompressedSize(written - dataStart);
+
+    flushBuffer();
+    final long position = raf.getFilePointer();
+    // crc-32, compressed size and uncompressed size follow the signature, versions, flag, method and time of the local file header
+    raf.seek(entry.getHeaderOffset() + 14);
+    raf.write(ZipLong.getBytes(entry.getCrc()));
+    raf.write(ZipLong.getBytes(entry.getCompressedSize()));
+    raf.write(ZipLong.getBytes(entry.getSize()));
+    raf.seek(position);
+  }
+
+  void putNextEntryContent(JBZipEntry entry, InputStream content) throws IOException {
+    writeLocalFileHeader(entry);
+    final byte[] buffer = new byte[8192];
+    int count;
+    while ((count = content.read(buffer)) > 0) {
+      writeOut(buffer, 0, count);
+    }
+  }
 }
@@ -113,7 +113,8 @@ public interface MessageBus {
    * </pre>
    * <p/>
    * <b>Thread-safety.</b>
-   * All subscribers are notified sequentially from the calling thread.
+   * All subscribers are notified sequentially from the calling thread. Subscribers of {@link Topic#isAsynchronous() asynchronous}
+   * topics are the exception: they are notified on a dedicated thread after the call returns.
    * <p/>
    * <b>Memory management.</b>
    * Returned objects are very light-weight and stateless, so, they are cached by the message bus in <code>'per-topic'</code> manner.
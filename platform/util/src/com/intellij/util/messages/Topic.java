@@ -34,15 +34,22 @@ public class Topic<L> {
   private final String myDisplayName;
   private final Class<L> myListenerClass;
   private final BroadcastDirection myBroadcastDirection;
+  private final boolean myAsynchronous;
 
   public Topic(@NonNls @NotNull String displayName, @NotNull Class<L> listenerClass) {
     this(displayName, listenerClass, BroadcastDirection.TO_CHILDREN);
   }
 
   public Topic(@NonNls @NotNull String displayName, @NotNull Class<L> listenerClass, final BroadcastDirection broadcastDirection) {
+    this(displayName, listenerClass, broadcastDirection, false);
+  }
+
+  public Topic(@NonNls @NotNull String displayName, @NotNull Class<L> listenerClass, final BroadcastDirection broadcastDirection,
+               boolean asynchronous) {
     myDisplayName = displayName;
     myListenerClass = listenerClass;
     myBroadcastDirection = broadcastDirection;
+    myAsynchronous = asynchronous;
   }
 
   /**
@@ -86,6 +93,21 @@ public class Topic<L> {
     return new Topic<L>(displayName, listenerClass, direction);
   }
 
+  public static <L> Topic<L> createAsynchronous(@NonNls @NotNull String displayName, @NotNull Class<L> listenerClass) {
+    return new Topic<L>(displayName, listenerClass, BroadcastDirection.TO_CHILDREN, true);
+  }
+
+  /**
+   * Messages sent to an asynchronous topic are queued and the publisher returns immediately. Queued messages are delivered in batches
+   * on a dedicated thread in the order they were sent, so subscribers of such topics must be thread-safe and mustn't rely on the state
+   * of the publisher at the moment the message was sent.
+   *
+   * @return    <code>true</code> if subscribers of the current topic are notified asynchronously. Default value is <code>false</code>
+   */
+  public boolean isAsynchronous() {
+    return myAsynchronous;
+  }
+
   /**
    * @return    broadcasting strategy configured for the current topic. Default value is {@link BroadcastDirection#TO_CHILDREN}
    * @see BroadcastDirection
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.messages.impl;
+
+import com.intellij.util.ConcurrencyUtil;
+import com.intellij.util.messages.Topic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Messages sent to an {@link Topic#isAsynchronous() asynchronous} topic. The first message added to an empty queue schedules delivery
+ * on the dedicated thread, and all messages sent before the delivery starts are delivered in one batch.
+ */
+class AsyncTopicQueue implements Runnable {
+  private static final ExecutorService ourExecutor = ConcurrencyUtil.newSingleThreadExecutor("MessageBus asynchronous delivery");
+  private final MessageBusImpl myBus;
+  private final Topic myTopic;
+  private final Queue<QueuedMessage> myMessages = new ConcurrentLinkedQueue<QueuedMessage>();
+  private final AtomicBoolean myDeliveryScheduled = new AtomicBoolean();
+  private final TopicStatistics myStatistics;
+
+  AsyncTopicQueue(MessageBusImpl bus, Topic topic) {
+    myBus = bus;
+    myTopic = topic;
+    myStatistics = new TopicStatistics(topic);
+  }
+
+  void post(Message message) {
+    myMessages.offer(new QueuedMessage(message, System.nanoTime()));
+    myStatistics.messagePosted();
+    if (myDeliveryScheduled.compareAndSet(false, true)) {
+      ourExecutor.execute(this);
+    }
+  }
+
+  @Override
+  public void run() {
+    // reset the flag before taking the batch, so a message sent during the delivery schedules the next one
+    myDeliveryScheduled.set(false);
+    List<QueuedMessage> batch = new ArrayList<QueuedMessage>();
+    QueuedMessage queued;
+    while ((queued = myMessages.poll()) != null) {
+      batch.add(queued);
+    }
+    if (batch.isEmpty()) return;
+
+    if (myBus.isDisposed()) {
+      for (int i = 0; i < batch.size(); i++) {
+        myStatistics.messageDropped();
+      }
+      return;
+    }
+
+    myStatistics.batchStarted();
+    List<MessageBusConnectionImpl> subscribers = new ArrayList<MessageBusConnectionImpl>();
+    myBus.collectSubscribers(myTopic, subscribers);
+    for (QueuedMessage message : batch) {
+      for (MessageBusConnectionImpl subscriber : subscribers) {
+        long start = System.nanoTime();
+        subscriber.invokeListener(message.myMessage);
+        myStatistics.listenerInvoked(subscriber.getSubscriber(myTopic), System.nanoTime() - start);
+      }
+      myStatistics.messageDelivered(System.nanoTime() - message.myPostTime);
+    }
+  }
+
+  void clear() {
+    while (myMessages.poll() != null) {
+      myStatistics.messageDropped();
+    }
+  }
+
+  TopicStatistics getStatistics() {
+    return myStatistics;
+  }
+
+  private static class QueuedMessage {
+    private final Message myMessage;
+    private final long myPostTime;
+
+    private QueuedMessage(Message message, long postTime) {
+      myMessage = message;
+      myPostTime = postTime;
+    }
+  }
+}
@@ -96,8 +96,16 @@ public class MessageBusConnectionImpl implements MessageBusConnection {
     final Message messageOnLocalQueue = myPendingMessages.get().poll();
     assert messageOnLocalQueue == message;
 
+    invokeListener(message);
+  }
+
+  void invokeListener(Message message) {
     final Topic topic = message.getTopic();
     final Object handler = mySubscriptions.get(topic);
+    if (handler == null) {
+      // the connection was terminated while an asynchronous message was waiting for delivery
+      return;
+    }
 
     try {
       Method listenerMethod = message.getListenerMethod();
@@ -117,6 +125,10 @@ public class MessageBusConnectionImpl implements MessageBusConnection {
     }
   }
 
+  Object getSubscriber(Topic topic) {
+    return mySubscriptions.get(topic);
+  }
+
   void scheduleMessageDelivery(Message message) {
     myPendingMessages.get().offer(message);
   }
@@ -29,6 +29,7 @@ import com.intellij.util.messages.MessageBusConnection;
 import com.intellij.util.messages.Topic;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
@@ -51,6 +52,7 @@ public class MessageBusImpl implements MessageBus {
   private final ConcurrentMap<Topic, Object> mySyncPublishers = new ConcurrentHashMap<Topic, Object>();
   private final ConcurrentMap<Topic, Object> myAsyncPublishers = new ConcurrentHashMap<Topic, Object>();
   private final ConcurrentMap<Topic, List<MessageBusConnectionImpl>> mySubscribers = new ConcurrentHashMap<Topic, List<MessageBusConnectionImpl>>();
+  private final ConcurrentMap<Topic, AsyncTopicQueue> myAsyncTopicQueues = new ConcurrentHashMap<Topic, AsyncTopicQueue>();
   private final List<MessageBusImpl> myChildBuses = ContainerUtil.createEmptyCOWList();
 
   private static final Object NA = new Object();
@@ -59,7 +61,7 @@ public class MessageBusImpl implements MessageBus {
   //is used for debugging purposes
   @SuppressWarnings({"UnusedDeclaration", "FieldCanBeLocal"})
   private final Object myOwner;
-  private boolean myDisposed;
+  private volatile boolean myDisposed;
 
   @SuppressWarnings("UnusedDeclaration")
   public MessageBusImpl() {
@@ -132,7 +134,12 @@ public class MessageBusImpl implements MessageBus {
       InvocationHandler handler = new InvocationHandler() {
         @Override
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-          sendMessage(new Message(topic, method, args));
+          if (topic.isAsynchronous()) {
+            postAsyncMessage(new Message(topic, method, args));
+          }
+          else {
+            sendMessage(new Message(topic, method, args));
+          }
           return NA;
         }
       };
@@ -153,7 +160,12 @@ public class MessageBusImpl implements MessageBus {
       InvocationHandler handler = new InvocationHandler() {
         @Override
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-          postMessage(new Message(topic, method, args));
+          if (topic.isAsynchronous()) {
+            postAsyncMessage(new Message(topic, method, args));
+          }
+          else {
+            postMessage(new Message(topic, method, args));
+          }
           return NA;
         }
       };
@@ -171,6 +183,9 @@ public class MessageBusImpl implements MessageBus {
       LOG.error("Not delivered events in the queue: "+jobs);
     }
     myMessageQueue.remove();
+    for (AsyncTopicQueue queue : myAsyncTopicQueues.values()) {
+      queue.clear();
+    }
     if (myParentBus != null) {
       myParentBus.notifyChildBusDisposed(this);
       myParentBus = null;
@@ -182,6 +197,50 @@ public class MessageBusImpl implements MessageBus {
     LOG.assertTrue(!myDisposed, "Already disposed");
   }
 
+  boolean isDisposed() {
+    return myDisposed;
+  }
+
+  private void postAsyncMessage(Message message) {
+    checkNotDisposed();
+    final Topic topic = message.getTopic();
+    AsyncTopicQueue queue = myAsyncTopicQueues.get(topic);
+    if (queue == null) {
+      queue = ConcurrencyUtil.cacheOrGet(myAsyncTopicQueues, topic, new AsyncTopicQueue(this, topic));
+    }
+    queue.post(message);
+  }
+
+  /**
+   * Collects connections subscribed to the topic within this bus and the buses the topic is broadcast to.
+   */
+  void collectSubscribers(Topic topic, List<MessageBusConnectionImpl> result) {
+    final List<MessageBusConnectionImpl> topicSubscribers = mySubscribers.get(topic);
+    if (topicSubscribers != null) {
+      result.addAll(topicSubscribers);
+    }
+
+    Topic.BroadcastDirection direction = topic.getBroadcastDirection();
+    if (direction == Topic.BroadcastDirection.TO_CHILDREN) {
+      for (MessageBusImpl childBus : myChildBuses) {
+        childBus.collectSubscribers(topic, result);
+      }
+    }
+    if (direction == Topic.BroadcastDirection.TO_PARENT && myParentBus != null) {
+      myParentBus.collectSubscribers(topic, result);
+    }
+  }
+
+  /**
+   * @return delivery counters of the {@link Topic#isAsynchronous() asynchronous} topic or <code>null</code> if no messages have been
+   * sent to it within this bus yet
+   */
+  @Nullable
+  public TopicStatistics getStatistics(@NotNull Topic topic) {
+    AsyncTopicQueue queue = myAsyncTopicQueues.get(topic);
+    return queue != null ? queue.getStatistics() : null;
+  }
+
   private void postMessage(Message message) {
     checkNotDisposed();
     final Topic topic = message.getTopic();
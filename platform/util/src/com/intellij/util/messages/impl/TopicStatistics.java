@@ -0,0 +1,127 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.messages.impl;
+
+import com.intellij.util.messages.Topic;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivery counters of an {@link Topic#isAsynchronous() asynchronous} topic within a message bus. Latency of a message is the time
+ * between sending it and the moment all subscribers have been notified.
+ */
+public final class TopicStatistics {
+  private final Topic myTopic;
+  private final AtomicInteger myQueueSize = new AtomicInteger();
+  private volatile int myMaxQueueSize;
+  private volatile long myPostedCount;
+  private volatile long myDeliveredCount;
+  private volatile long myBatchesCount;
+  private volatile long myTotalLatency;
+  private volatile long myMaxLatency;
+  private volatile long mySlowestListenerTime;
+  private volatile String mySlowestListener;
+
+  TopicStatistics(Topic topic) {
+    myTopic = topic;
+  }
+
+  synchronized void messagePosted() {
+    myPostedCount++;
+    myMaxQueueSize = Math.max(myMaxQueueSize, myQueueSize.incrementAndGet());
+  }
+
+  void batchStarted() {
+    myBatchesCount++;
+  }
+
+  void messageDelivered(long latencyNanos) {
+    myQueueSize.decrementAndGet();
+    myDeliveredCount++;
+    myTotalLatency += latencyNanos;
+    myMaxLatency = Math.max(myMaxLatency, latencyNanos);
+  }
+
+  void messageDropped() {
+    myQueueSize.decrementAndGet();
+  }
+
+  void listenerInvoked(@Nullable Object listener, long timeNanos) {
+    if (listener != null && timeNanos > mySlowestListenerTime) {
+      mySlowestListenerTime = timeNanos;
+      mySlowestListener = listener.getClass().getName();
+    }
+  }
+
+  public Topic getTopic() {
+    return myTopic;
+  }
+
+  /**
+   * @return number of messages sent but not yet delivered
+   */
+  public int getQueueSize() {
+    return myQueueSize.get();
+  }
+
+  public int getMaxQueueSize() {
+    return myMaxQueueSize;
+  }
+
+  public long getPostedCount() {
+    return myPostedCount;
+  }
+
+  public long getDeliveredCount() {
+    return myDeliveredCount;
+  }
+
+  public long getBatchesCount() {
+    return myBatchesCount;
+  }
+
+  public long getAverageLatency() {
+    long delivered = myDeliveredCount;
+    return delivered == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(myTotalLatency / delivered);
+  }
+
+  public long getMaxLatency() {
+    return TimeUnit.NANOSECONDS.toMillis(myMaxLatency);
+  }
+
+  /**
+   * @return class name of the subscriber which spent the most time processing a single message
+   */
+  @Nullable
+  public String getSlowestListener() {
+    return mySlowestListener;
+  }
+
+  public long getSlowestListenerTime() {
+    return TimeUnit.NANOSECONDS.toMillis(mySlowestListenerTime);
+  }
+
+  @NonNls
+  @Override
+  public String toString() {
+    return myTopic + ": queue=" + getQueueSize() + " (max " + myMaxQueueSize + "), posted=" + myPostedCount +
+           ", delivered=" + myDeliveredCount + " in " + myBatchesCount + " batches, latency=" + getAverageLatency() +
+           "ms (max " + getMaxLatency() + "ms), slowest listener=" + mySlowestListener + " (" + getSlowestListenerTime() + "ms)";
+  }
+}
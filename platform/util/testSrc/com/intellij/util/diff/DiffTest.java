@@ -19,6 +19,7 @@ import com.intellij.util.ArrayUtil;
 import junit.framework.TestCase;
 
 import java.util.ArrayList;
+import java.util.Random;
 
 /**
  * @author dyoma
@@ -85,4 +86,28 @@ public class DiffTest extends TestCase {
     System.out.println("Duration: " +(System.currentTimeMillis() - start));
   }
 
+  public void testLargeDivergentPerformance() throws FilesTooBigForDiffException {
+    // lines repeat, so they are not discarded as unique ones, and almost every second line differs
+    Random random = new Random(42);
+    int max = 100000;
+    String[] first = new String[max];
+    String[] second = new String[max];
+    for (int i = 0; i < max; i++) {
+      first[i] = "line " + random.nextInt(50);
+      second[i] = random.nextBoolean() ? first[i] : "line " + random.nextInt(50);
+    }
+    long start = System.currentTimeMillis();
+    Diff.Change change = Diff.buildChanges(first, second);
+    System.out.println("Duration: " +(System.currentTimeMillis() - start));
+
+    int deleted = 0;
+    int inserted = 0;
+    for (Diff.Change current = change; current != null; current = current.link) {
+      assertEquals(current.line0 - deleted, current.line1 - inserted);
+      deleted += current.deleted;
+      inserted += current.inserted;
+    }
+    assertEquals(0, deleted - inserted);
+  }
+
 }
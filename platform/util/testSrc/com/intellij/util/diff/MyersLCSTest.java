@@ -0,0 +1,88 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.diff;
+
+import junit.framework.TestCase;
+
+import java.util.BitSet;
+import java.util.Random;
+
+public class MyersLCSTest extends TestCase {
+  public void testSingleMiddle() {
+    Diff.Change change = buildChange(new int[]{1, 2, 3}, new int[]{4, 2, 5});
+    IntLCSTest.checkChange(change, 0, 0, 1, 1);
+    IntLCSTest.checkLastChange(change.link, 2, 2, 1, 1);
+  }
+
+  public void testAbsolutelyDifferent() {
+    Diff.Change change = buildChange(new int[]{1, 2, 3}, new int[]{4, 5});
+    IntLCSTest.checkLastChange(change, 0, 0, 2, 3);
+  }
+
+  public void testSameDistanceAsIntLCS() throws FilesTooBigForDiffException {
+    Random random = new Random(42);
+    for (int i = 0; i < 1000; i++) {
+      int[] first = randomInts(random, random.nextInt(30), 1 + random.nextInt(5));
+      int[] second = randomInts(random, random.nextInt(30), 1 + random.nextInt(5));
+      MyersLCS lcs = new MyersLCS(first, second);
+      lcs.execute();
+      assertCommonSubsequence(first, second, lcs);
+      int distance = lcs.getChanges1().cardinality() + lcs.getChanges2().cardinality();
+      assertEquals(new IntLCS(first, second).execute(), distance);
+    }
+  }
+
+  public void testDivergentInputsGiveCommonSubsequence() {
+    Random random = new Random(42);
+    int[] first = randomInts(random, 20000, 3);
+    int[] second = randomInts(random, 20000, 3);
+    MyersLCS lcs = new MyersLCS(first, second);
+    lcs.execute();
+    assertCommonSubsequence(first, second, lcs);
+  }
+
+  private static void assertCommonSubsequence(int[] first, int[] second, MyersLCS lcs) {
+    BitSet changes1 = lcs.getChanges1();
+    BitSet changes2 = lcs.getChanges2();
+    int x = changes1.nextClearBit(0);
+    int y = changes2.nextClearBit(0);
+    while (x < first.length && y < second.length) {
+      assertEquals(first[x], second[y]);
+      x = changes1.nextClearBit(x + 1);
+      y = changes2.nextClearBit(y + 1);
+    }
+    assertEquals(first.length, x);
+    assertEquals(second.length, y);
+  }
+
+  private static int[] randomInts(Random random, int length, int range) {
+    int[] result = new int[length];
+    for (int i = 0; i < length; i++) {
+      result[i] = random.nextInt(range);
+    }
+    return result;
+  }
+
+  private static Diff.Change buildChange(int[] first, int[] second) {
+    MyersLCS lcs = new MyersLCS(first, second);
+    lcs.execute();
+    Reindexer reindexer = new Reindexer();
+    reindexer.idInit(first.length, second.length);
+    Diff.ChangeBuilder builder = new Diff.ChangeBuilder(0);
+    reindexer.reindex(new BitSet[]{lcs.getChanges1(), lcs.getChanges2()}, builder);
+    return builder.getFirstChange();
+  }
+}
@@ -26,6 +26,7 @@ import java.io.*;
 import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 public class UpdateableZipTest extends TestCase {
@@ -71,6 +72,48 @@ public class UpdateableZipTest extends TestCase {
     utilZip.close();
   }
 
+  public void testAppendStreamedEntries() throws Exception {
+    File zipFile = createTestUtilZip();
+
+    JBZipFile jbZip = new JBZipFile(zipFile);
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      text.append("line ").append(i).append('\n');
+    }
+    JBZipEntry deflated = jbZip.getOrCreateEntry("/deflated");
+    deflated.setMethod(ZipEntry.DEFLATED);
+    deflated.setDataFromStream(new ByteArrayInputStream(text.toString().getBytes()), 0);
+    JBZipEntry stored = jbZip.getOrCreateEntry("/stored");
+    stored.setMethod(ZipEntry.STORED);
+    stored.setDataFromStream(new ByteArrayInputStream("stored".getBytes()), 0);
+    jbZip.close();
+
+    ZipFile utilZip = new ZipFile(zipFile);
+    ZipEntry deflatedEntry = utilZip.getEntry("/deflated");
+    assertEquals(text.length(), deflatedEntry.getSize());
+    assertTrue(deflatedEntry.getCompressedSize() < deflatedEntry.getSize());
+    assertEquals(text.toString(), FileUtil.loadTextAndClose(new InputStreamReader(utilZip.getInputStream(deflatedEntry))));
+    assertEquals("stored", FileUtil.loadTextAndClose(new InputStreamReader(utilZip.getInputStream(utilZip.getEntry("/stored")))));
+    assertEquals("first", FileUtil.loadTextAndClose(new InputStreamReader(utilZip.getInputStream(utilZip.getEntry("/first")))));
+    utilZip.close();
+
+    // local file headers are read by the stream reader
+    ZipInputStream input = new ZipInputStream(new FileInputStream(zipFile));
+    try {
+      ZipEntry entry;
+      while ((entry = input.getNextEntry()) != null) {
+        if (entry.getName().equals("/deflated")) {
+          assertEquals(text.toString(), FileUtil.loadTextAndClose(new InputStreamReader(input)));
+          return;
+        }
+      }
+      fail("no streamed entry");
+    }
+    finally {
+      input.close();
+    }
+  }
+
   public void testReplaceEntryContent() throws Exception {
     File zipFile = createTestUtilZip();
 
@@ -20,10 +20,13 @@
 package com.intellij.util.messages;
 
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.messages.impl.MessageBusImpl;
+import com.intellij.util.messages.impl.TopicStatistics;
 import junit.framework.TestCase;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 public class MessageBusTest extends TestCase {
   private MessageBus myBus;
@@ -41,6 +44,7 @@ public class MessageBusTest extends TestCase {
 
   private static final Topic<T1Listener> TOPIC1 = new Topic<T1Listener>("T1", T1Listener.class);
   private static final Topic<T2Listener> TOPIC2 = new Topic<T2Listener>("T2", T2Listener.class);
+  private static final Topic<T1Listener> ASYNC_TOPIC = Topic.createAsynchronous("Async", T1Listener.class);
 
   private class T1Handler implements T1Listener {
     private final String id;
@@ -196,7 +200,71 @@ public class MessageBusTest extends TestCase {
                  "inside:t11:done",
                  "C2T1Handler:t12");
   }
-  
+
+  public void testAsyncTopic() throws InterruptedException {
+    myBus.connect().subscribe(ASYNC_TOPIC, new T1Handler("c"));
+    myBus.syncPublisher(ASYNC_TOPIC).t11();
+    myBus.syncPublisher(ASYNC_TOPIC).t12();
+    waitForAsyncDelivery(2);
+    assertEvents("c:t11", "c:t12");
+
+    TopicStatistics statistics = ((MessageBusImpl)myBus).getStatistics(ASYNC_TOPIC);
+    assertNotNull(statistics);
+    assertEquals(2, statistics.getPostedCount());
+    assertEquals(0, statistics.getQueueSize());
+    assertEquals(T1Handler.class.getName(), statistics.getSlowestListener());
+  }
+
+  public void testAsyncMessagesSentDuringDeliveryAreBatched() throws InterruptedException {
+    final CountDownLatch deliveryStarted = new CountDownLatch(1);
+    final CountDownLatch proceed = new CountDownLatch(1);
+    myBus.connect().subscribe(ASYNC_TOPIC, new T1Handler("c") {
+      @Override
+      public void t11() {
+        deliveryStarted.countDown();
+        try {
+          proceed.await();
+        }
+        catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        super.t11();
+      }
+    });
+    myBus.syncPublisher(ASYNC_TOPIC).t11();
+    deliveryStarted.await();
+    for (int i = 0; i < 10; i++) {
+      myBus.syncPublisher(ASYNC_TOPIC).t12();
+    }
+    TopicStatistics statistics = ((MessageBusImpl)myBus).getStatistics(ASYNC_TOPIC);
+    assertNotNull(statistics);
+    assertEquals(11, statistics.getQueueSize());
+    proceed.countDown();
+
+    waitForAsyncDelivery(11);
+    assertEquals(11, myLog.size());
+    assertEquals(2, statistics.getBatchesCount());
+    assertEquals(11, statistics.getMaxQueueSize());
+  }
+
+  public void testAsyncTopicIsBroadcastToChildBuses() throws InterruptedException {
+    MessageBus childBus = MessageBusFactory.newMessageBus(this, myBus);
+    childBus.connect().subscribe(ASYNC_TOPIC, new T1Handler("child"));
+    myBus.syncPublisher(ASYNC_TOPIC).t11();
+    waitForAsyncDelivery(1);
+    assertEvents("child:t11");
+  }
+
+  private void waitForAsyncDelivery(int messagesCount) throws InterruptedException {
+    TopicStatistics statistics = ((MessageBusImpl)myBus).getStatistics(ASYNC_TOPIC);
+    assertNotNull(statistics);
+    long deadline = System.currentTimeMillis() + 10000;
+    while (statistics.getDeliveredCount() < messagesCount) {
+      assertTrue("Messages weren't delivered: " + statistics, System.currentTimeMillis() < deadline);
+      Thread.sleep(1);
+    }
+  }
+
   private void assertEvents(String... expected) {
     String joinExpected = StringUtil.join(expected, "\n");
     String joinActual = StringUtil.join(myLog, "\n");
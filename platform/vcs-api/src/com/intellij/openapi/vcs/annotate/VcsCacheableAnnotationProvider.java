@@ -16,6 +16,7 @@
 package com.intellij.openapi.vcs.annotate;
 
 import com.intellij.openapi.vcs.history.VcsAbstractHistorySession;
+import com.intellij.openapi.vcs.history.VcsFileRevision;
 import com.intellij.openapi.vcs.history.VcsRevisionNumber;
 import org.jetbrains.annotations.Nullable;
 
@@ -31,4 +32,10 @@ public interface VcsCacheableAnnotationProvider {
                          VcsAbstractHistorySession session,
                          String annotatedContent,
                          boolean forCurrentRevision, VcsRevisionNumber revisionNumber);
+
+  /**
+   * @return true if the annotation of the revision can be got from the annotation of the previous revision in the file history
+   * by attributing the lines changed between them (compared ignoring whitespace) to the revision, i.e. the revision is not a merge
+   */
+  boolean canAnnotateByPrevious(VcsFileRevision revision, VcsFileRevision previous);
 }
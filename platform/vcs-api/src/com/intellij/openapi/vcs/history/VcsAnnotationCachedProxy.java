@@ -19,20 +19,24 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.util.ThrowableComputable;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.AbstractVcs;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.actions.VcsContextFactory;
-import com.intellij.openapi.vcs.annotate.AnnotationProvider;
-import com.intellij.openapi.vcs.annotate.FileAnnotation;
-import com.intellij.openapi.vcs.annotate.VcsAnnotation;
-import com.intellij.openapi.vcs.annotate.VcsCacheableAnnotationProvider;
+import com.intellij.openapi.vcs.annotate.*;
 import com.intellij.openapi.vcs.changes.ContentRevision;
 import com.intellij.openapi.vcs.diff.DiffProvider;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.diff.Diff;
+import com.intellij.util.diff.FilesTooBigForDiffException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * @author irengrig
  *         Date: 3/17/11
@@ -86,13 +90,31 @@ public class VcsAnnotationCachedProxy implements AnnotationProvider {
     final VcsCacheableAnnotationProvider cacheableAnnotationProvider = (VcsCacheableAnnotationProvider)annotationProvider;
 
     VcsAnnotation vcsAnnotation = null;
+    VcsAbstractHistorySession history = null;
     if (revisionNumber != null) {
-      vcsAnnotation = myCache.get(VcsContextFactory.SERVICE.getInstance().createFilePathOn(file), myVcs.getKeyInstanceMethod(), revisionNumber);
+      vcsAnnotation = myCache.get(filePath, myVcs.getKeyInstanceMethod(), revisionNumber);
+      if (vcsAnnotation == null) {
+        final VcsAnnotationPersistentCache.Entry entry =
+          myCache.getPersistentAnnotation(filePath, myVcs.getKeyInstanceMethod(), revisionNumber);
+        if (entry != null) {
+          // the history is needed to restore the annotation anyway
+          history = getHistory(revisionNumber, filePath, myVcs.getVcsHistoryProvider(), entry.getFirstRevision());
+          vcsAnnotation = history == null ? null : restore(filePath, entry, history);
+        }
+        else {
+          vcsAnnotation = annotateByPrevious(file, filePath, revisionNumber);
+          if (vcsAnnotation != null) {
+            // the remapped annotation may differ from the one the vcs would give, so it is not kept between sessions
+            myCache.put(filePath, myVcs.getKeyInstanceMethod(), revisionNumber, vcsAnnotation, false);
+          }
+        }
+      }
     }
 
     if (vcsAnnotation != null) {
-      final VcsHistoryProvider historyProvider = myVcs.getVcsHistoryProvider();
-      final VcsAbstractHistorySession history = getHistory(revisionNumber, filePath, historyProvider, vcsAnnotation.getFirstRevision());
+      if (history == null) {
+        history = getHistory(revisionNumber, filePath, myVcs.getVcsHistoryProvider(), getFirstRevision(vcsAnnotation));
+      }
       if (history == null) return null;
       // question is whether we need "not moved" path here?
       final ContentRevision fileContent = myVcs.getDiffProvider().createFileContent(revisionNumber, file);
@@ -117,6 +139,152 @@ public class VcsAnnotationCachedProxy implements AnnotationProvider {
     return fileAnnotation;
   }
 
+  /**
+   * Gets the annotation of the revision from the cached annotation of the previous revision of the file: the lines changed between
+   * them are attributed to the revision, so only the contents of the revisions are loaded instead of annotating the file again
+   * after a commit or an update changed it.
+   * Only the history which is cached already is used: loading it may take as long as annotating the file.
+   *
+   * @return null if the annotation can't be got this way, e.g. contents of the revisions can't be loaded; the file is annotated then
+   */
+  @Nullable
+  private VcsAnnotation annotateByPrevious(final VirtualFile file, final FilePath filePath, final VcsRevisionNumber revisionNumber) {
+    final VcsHistoryProvider historyProvider = myVcs.getVcsHistoryProvider();
+    if (! (historyProvider instanceof VcsCacheableHistorySessionFactory)) return null;
+    final VcsAbstractHistorySession history =
+      myCache.getMaybePartial(filePath, myVcs.getKeyInstanceMethod(), (VcsCacheableHistorySessionFactory)historyProvider);
+    if (history == null) return null;
+    final List<VcsFileRevision> revisions = history.getRevisionList();
+    int index = 0;
+    while (index < revisions.size() && ! revisionNumber.equals(revisions.get(index).getRevisionNumber())) {
+      ++ index;
+    }
+    if (index + 1 >= revisions.size()) return null;
+    final VcsFileRevision revision = revisions.get(index);
+    final VcsFileRevision previous = revisions.get(index + 1);
+    if (! ((VcsCacheableAnnotationProvider)myAnnotationProvider).canAnnotateByPrevious(revision, previous)) return null;
+
+    VcsAnnotation previousAnnotation = myCache.get(filePath, myVcs.getKeyInstanceMethod(), previous.getRevisionNumber());
+    if (previousAnnotation == null) {
+      final VcsAnnotationPersistentCache.Entry entry =
+        myCache.getPersistentAnnotation(filePath, myVcs.getKeyInstanceMethod(), previous.getRevisionNumber());
+      previousAnnotation = entry == null ? null : restore(filePath, entry, history);
+    }
+    if (previousAnnotation == null || ! previousAnnotation.getAdditionalAnnotations().isEmpty()) return null;
+
+    final DiffProvider diffProvider = myVcs.getDiffProvider();
+    final ContentRevision previousContent = diffProvider.createFileContent(previous.getRevisionNumber(), file);
+    final ContentRevision content = diffProvider.createFileContent(revisionNumber, file);
+    if (previousContent == null || content == null) return null;
+    final VcsLineAnnotationData data;
+    try {
+      data = remapLines(previousAnnotation.getBasicAnnotation(), previousContent.getContent(), content.getContent(),
+                        revision.getRevisionNumber());
+    }
+    catch (VcsException e) {
+      // e.g. the previous revision of the file is at another path
+      LOG.debug(e);
+      return null;
+    }
+    return data == null ? null : new VcsAnnotation(previousAnnotation.getFilePath(), data, previousAnnotation.getFirstRevision());
+  }
+
+  /**
+   * Maps the annotation of the previous revision to the lines of the next one: the lines which were changed or inserted
+   * (compared ignoring whitespace) are attributed to the next revision, the others keep their revisions.
+   *
+   * @return null if the annotation does not match the previous content, or the contents are too big to compare
+   */
+  @Nullable
+  static VcsLineAnnotationData remapLines(@NotNull final VcsLineAnnotationData previousData, @Nullable final String previousContent,
+                                          @Nullable final String content, @NotNull final VcsRevisionNumber revision) {
+    final String[] previousLines = splitLines(previousContent);
+    final String[] lines = splitLines(content);
+    if (previousLines == null || lines == null || previousLines.length != previousData.getNumLines()) return null;
+
+    Diff.Change change;
+    try {
+      change = Diff.buildChanges(previousLines, lines);
+    }
+    catch (FilesTooBigForDiffException e) {
+      return null;
+    }
+    final VcsUsualLineAnnotationData data = new VcsUsualLineAnnotationData(lines.length);
+    int previousLine = 0;
+    int line = 0;
+    while (true) {
+      final int unchangedEnd = change == null ? lines.length : change.line1;
+      while (line < unchangedEnd) {
+        final VcsRevisionNumber lineRevision = previousData.getRevision(previousLine++);
+        if (lineRevision == null) return null;
+        data.put(line++, lineRevision);
+      }
+      if (change == null) break;
+      for (int i = 0; i < change.inserted; i++) {
+        data.put(line++, revision);
+      }
+      previousLine += change.deleted;
+      change = change.link;
+    }
+    return data;
+  }
+
+  /**
+   * @return lines as they are numbered by annotations, with whitespaces removed, or null if there are no lines
+   */
+  @Nullable
+  private static String[] splitLines(@Nullable final String content) {
+    if (content == null || content.length() == 0) return null;
+    final String text = StringUtil.convertLineSeparators(content);
+    final List<String> lines = StringUtil.split(text.endsWith("\n") ? text.substring(0, text.length() - 1) : text, "\n", true, false);
+    final String[] result = new String[lines.size()];
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < result.length; i++) {
+      final String line = lines.get(i);
+      sb.setLength(0);
+      for (int j = 0; j < line.length(); j++) {
+        final char c = line.charAt(j);
+        if (! Character.isWhitespace(c)) {
+          sb.append(c);
+        }
+      }
+      result[i] = sb.toString();
+    }
+    return result;
+  }
+
+  /**
+   * Restores the annotation kept since one of the previous sessions: the revision strings of the lines are mapped to the revisions
+   * of the file history.
+   *
+   * @return null if some of the revisions is not in the history
+   */
+  @Nullable
+  static VcsAnnotation restore(@NotNull final FilePath filePath, @NotNull final VcsAnnotationPersistentCache.Entry entry,
+                               @NotNull final VcsAbstractHistorySession history) {
+    if (entry.getNumLines() == 0) return null;
+    final Map<String, VcsRevisionNumber> revisions = new HashMap<String, VcsRevisionNumber>();
+    for (VcsFileRevision revision : history.getRevisionList()) {
+      revisions.put(revision.getRevisionNumber().asString(), revision.getRevisionNumber());
+    }
+    final VcsRevisionNumber firstRevision = entry.getFirstRevision() == null ? null : revisions.get(entry.getFirstRevision());
+    if (entry.getFirstRevision() != null && firstRevision == null) return null;
+
+    final VcsUsualLineAnnotationData data = new VcsUsualLineAnnotationData(entry.getNumLines());
+    for (int i = 0; i < entry.getNumLines(); i++) {
+      final VcsRevisionNumber revision = revisions.get(entry.getRevision(i));
+      if (revision == null) return null;
+      data.put(i, revision);
+    }
+    return new VcsAnnotation(filePath, data, firstRevision);
+  }
+
+  @Nullable
+  private static String getFirstRevision(@NotNull final VcsAnnotation vcsAnnotation) {
+    final VcsRevisionNumber firstRevision = vcsAnnotation.getFirstRevision();
+    return firstRevision == null ? null : firstRevision.asString();
+  }
+
   // todo will be removed - when annotation will be presented together with history
   private void loadHistoryInBackgroundToCache(final VcsRevisionNumber revisionNumber,
                                               final FilePath filePath,
@@ -125,7 +293,7 @@ public class VcsAnnotationCachedProxy implements AnnotationProvider {
       @Override
       public void run() {
         try {
-          getHistory(revisionNumber, filePath, myVcs.getVcsHistoryProvider(), vcsAnnotation.getFirstRevision());
+          getHistory(revisionNumber, filePath, myVcs.getVcsHistoryProvider(), getFirstRevision(vcsAnnotation));
         }
         catch (VcsException e) {
           LOG.info(e);
@@ -135,7 +303,7 @@ public class VcsAnnotationCachedProxy implements AnnotationProvider {
   }
 
   private VcsAbstractHistorySession getHistory(VcsRevisionNumber revision, FilePath filePath, VcsHistoryProvider historyProvider,
-                                               @Nullable final VcsRevisionNumber firstRevision) throws VcsException {
+                                               @Nullable final String firstRevision) throws VcsException {
     final boolean historyCacheSupported = historyProvider instanceof VcsCacheableHistorySessionFactory;
     if (historyCacheSupported) {
       final VcsCacheableHistorySessionFactory cacheableHistorySessionFactory = (VcsCacheableHistorySessionFactory)historyProvider;
@@ -143,7 +311,7 @@ public class VcsAnnotationCachedProxy implements AnnotationProvider {
         myCache.getMaybePartial(filePath, myVcs.getKeyInstanceMethod(), cacheableHistorySessionFactory);
       if (cachedSession != null && ! cachedSession.getRevisionList().isEmpty()) {
         final VcsFileRevision recentRevision = cachedSession.getRevisionList().get(0);
-        if (recentRevision.getRevisionNumber().compareTo(revision) >= 0 && (firstRevision == null || cachedSession.getHistoryAsMap().containsKey(firstRevision))) {
+        if (recentRevision.getRevisionNumber().compareTo(revision) >= 0 && (firstRevision == null || containsRevision(cachedSession, firstRevision))) {
           return cachedSession;
         }
       }
@@ -168,7 +336,14 @@ public class VcsAnnotationCachedProxy implements AnnotationProvider {
     return myAnnotationProvider.isAnnotationValid(rev);
   }
 
-  private VcsAbstractHistorySession limitedHistory(final FilePath filePath, @NotNull final VcsRevisionNumber firstNumber) throws VcsException {
+  private static boolean containsRevision(@NotNull final VcsAbstractHistorySession session, @NotNull final String revision) {
+    for (VcsFileRevision fileRevision : session.getRevisionList()) {
+      if (revision.equals(fileRevision.getRevisionNumber().asString())) return true;
+    }
+    return false;
+  }
+
+  private VcsAbstractHistorySession limitedHistory(final FilePath filePath, @NotNull final String firstNumber) throws VcsException {
     final VcsAbstractHistorySession[] result = new VcsAbstractHistorySession[1];
     final VcsException[] exc = new VcsException[1];
 
@@ -182,7 +357,7 @@ public class VcsAnnotationCachedProxy implements AnnotationProvider {
         @Override
         public void acceptRevision(VcsFileRevision revision) {
           result[0].appendRevision(revision);
-          if (firstNumber.equals(revision.getRevisionNumber())) throw new ProcessCanceledException();
+          if (firstNumber.equals(revision.getRevisionNumber().asString())) throw new ProcessCanceledException();
         }
 
         @Override
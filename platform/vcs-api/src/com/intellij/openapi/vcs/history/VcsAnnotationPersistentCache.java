@@ -0,0 +1,236 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vcs.history;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.VcsKey;
+import com.intellij.openapi.vcs.annotate.VcsAnnotation;
+import com.intellij.openapi.vcs.annotate.VcsLineAnnotationData;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.PersistentHashMap;
+import gnu.trove.TObjectIntHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Annotations of file revisions kept between IDE sessions, as revision strings of the lines.
+ * Revision numbers can't be stored themselves, so the strings are mapped back to the revisions of the file history when the annotation
+ * is restored. Annotations of a revision never change, so entries are not invalidated; the storage is dropped when it grows too big.
+ *
+ * Only annotations which are described by the line revisions alone are stored: merge sources and other additional data are kept in memory.
+ */
+class VcsAnnotationPersistentCache {
+  private static final Logger LOG = Logger.getInstance("#com.intellij.openapi.vcs.history.VcsAnnotationPersistentCache");
+  private static final int VERSION = 1;
+  private static final long MAX_SIZE = 50 * 1024 * 1024;
+
+  private final File myFile;
+  private PersistentHashMap<String, Entry> myMap;
+  private boolean myBroken;
+
+  VcsAnnotationPersistentCache(@NotNull File file) {
+    myFile = file;
+  }
+
+  synchronized void put(@NotNull FilePath filePath, @NotNull VcsKey vcsKey, @NotNull VcsRevisionNumber number,
+                        @NotNull VcsAnnotation annotation) {
+    if (!annotation.getAdditionalAnnotations().isEmpty() || !annotation.getCachedOtherRevisions().isEmpty()) return;
+    final Entry entry = Entry.create(annotation);
+    if (entry == null) return;
+    final PersistentHashMap<String, Entry> map = getMap();
+    if (map == null) return;
+    try {
+      map.put(getKey(filePath, vcsKey, number), entry);
+    }
+    catch (IOException e) {
+      wipe(e);
+    }
+  }
+
+  @Nullable
+  synchronized Entry get(@NotNull FilePath filePath, @NotNull VcsKey vcsKey, @NotNull VcsRevisionNumber number) {
+    final PersistentHashMap<String, Entry> map = getMap();
+    if (map == null) return null;
+    try {
+      return map.get(getKey(filePath, vcsKey, number));
+    }
+    catch (IOException e) {
+      wipe(e);
+      return null;
+    }
+  }
+
+  synchronized void close() {
+    if (myMap == null) return;
+    try {
+      myMap.close();
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+    myMap = null;
+  }
+
+  @Nullable
+  private PersistentHashMap<String, Entry> getMap() {
+    if (myMap == null && !myBroken) {
+      final File dir = myFile.getParentFile();
+      if (getStorageSize() > MAX_SIZE) {
+        PersistentHashMap.deleteFilesStartingWith(myFile);
+      }
+      try {
+        dir.mkdirs();
+        myMap = createMap();
+      }
+      catch (IOException e) {
+        LOG.info("Can not open annotations cache " + myFile.getPath(), e);
+        PersistentHashMap.deleteFilesStartingWith(myFile);
+        try {
+          myMap = createMap();
+        }
+        catch (IOException e1) {
+          LOG.info(e1);
+          myBroken = true;
+        }
+      }
+    }
+    return myMap;
+  }
+
+  private PersistentHashMap<String, Entry> createMap() throws IOException {
+    return new PersistentHashMap<String, Entry>(myFile, new EnumeratorStringDescriptor(), new DataExternalizer<Entry>() {
+      @Override
+      public void save(DataOutput out, Entry value) throws IOException {
+        value.write(out);
+      }
+
+      @Override
+      public Entry read(DataInput in) throws IOException {
+        return Entry.read(in);
+      }
+    });
+  }
+
+  private long getStorageSize() {
+    final File[] files = myFile.getParentFile().listFiles();
+    if (files == null) return 0;
+    long size = 0;
+    for (File file : files) {
+      if (file.getName().startsWith(myFile.getName())) {
+        size += file.length();
+      }
+    }
+    return size;
+  }
+
+  private void wipe(IOException e) {
+    LOG.info("Annotations cache " + myFile.getPath() + " is broken, it will be recreated", e);
+    close();
+    PersistentHashMap.deleteFilesStartingWith(myFile);
+  }
+
+  private static String getKey(FilePath filePath, VcsKey vcsKey, VcsRevisionNumber number) {
+    return VERSION + ":" + vcsKey.getName() + ":" + number.asString() + ":" + filePath.getPath();
+  }
+
+  /**
+   * Revision strings of the annotated lines and of the first revision of the history the annotation needs.
+   */
+  static class Entry {
+    @Nullable private final String myFirstRevision;
+    @NotNull private final String[] myRevisions;
+    @NotNull private final int[] myLines;
+
+    Entry(@Nullable String firstRevision, @NotNull String[] revisions, @NotNull int[] lines) {
+      myFirstRevision = firstRevision;
+      myRevisions = revisions;
+      myLines = lines;
+    }
+
+    @Nullable
+    static Entry create(@NotNull VcsAnnotation annotation) {
+      final VcsLineAnnotationData data = annotation.getBasicAnnotation();
+      final List<String> revisions = new ArrayList<String>();
+      final TObjectIntHashMap<String> ids = new TObjectIntHashMap<String>();
+      final int[] lines = new int[data.getNumLines()];
+      for (int i = 0; i < lines.length; i++) {
+        final VcsRevisionNumber revision = data.getRevision(i);
+        if (revision == null) return null;
+        final String string = revision.asString();
+        if (!ids.containsKey(string)) {
+          ids.put(string, revisions.size());
+          revisions.add(string);
+        }
+        lines[i] = ids.get(string);
+      }
+      final VcsRevisionNumber firstRevision = annotation.getFirstRevision();
+      return new Entry(firstRevision == null ? null : firstRevision.asString(), revisions.toArray(new String[revisions.size()]), lines);
+    }
+
+    @Nullable
+    String getFirstRevision() {
+      return myFirstRevision;
+    }
+
+    int getNumLines() {
+      return myLines.length;
+    }
+
+    @NotNull
+    String getRevision(int line) {
+      return myRevisions[myLines[line]];
+    }
+
+    private void write(DataOutput out) throws IOException {
+      out.writeBoolean(myFirstRevision != null);
+      if (myFirstRevision != null) {
+        out.writeUTF(myFirstRevision);
+      }
+      DataInputOutputUtil.writeINT(out, myRevisions.length);
+      for (String revision : myRevisions) {
+        out.writeUTF(revision);
+      }
+      DataInputOutputUtil.writeINT(out, myLines.length);
+      for (int line : myLines) {
+        DataInputOutputUtil.writeINT(out, line);
+      }
+    }
+
+    private static Entry read(DataInput in) throws IOException {
+      final String firstRevision = in.readBoolean() ? in.readUTF() : null;
+      final String[] revisions = new String[DataInputOutputUtil.readINT(in)];
+      for (int i = 0; i < revisions.length; i++) {
+        revisions[i] = in.readUTF();
+      }
+      final int[] lines = new int[DataInputOutputUtil.readINT(in)];
+      for (int i = 0; i < lines.length; i++) {
+        lines[i] = DataInputOutputUtil.readINT(in);
+        if (lines[i] < 0 || lines[i] >= revisions.length) throw new IOException("Broken annotation entry");
+      }
+      return new Entry(firstRevision, revisions, lines);
+    }
+  }
+}
@@ -23,6 +23,7 @@ import com.intellij.util.containers.SLRUMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
 import java.io.Serializable;
 import java.util.Iterator;
 import java.util.List;
@@ -37,12 +38,22 @@ public class VcsHistoryCache {
   private final Object myLock;
   private final SLRUMap<HistoryCacheBaseKey, CachedHistory> myHistoryCache;
   private final SLRUMap<HistoryCacheWithRevisionKey, VcsAnnotation> myAnnotationCache;
+  @Nullable private final VcsAnnotationPersistentCache myPersistentAnnotationCache;
   //private final SLRUMap<HistoryCacheWithRevisionKey, String> myContentCache;
 
   public VcsHistoryCache() {
+    this(null);
+  }
+
+  /**
+   * @param annotationsFile where annotations are kept between sessions, null to keep them only in memory
+   */
+  public VcsHistoryCache(@Nullable final File annotationsFile) {
+    myPersistentAnnotationCache = annotationsFile == null ? null : new VcsAnnotationPersistentCache(annotationsFile);
     myLock = new Object();
     myHistoryCache = new SLRUMap<HistoryCacheBaseKey, CachedHistory>(10, 10);
-    myAnnotationCache = new SLRUMap<HistoryCacheWithRevisionKey, VcsAnnotation>(10, 5);
+    // annotations of the recently opened files may be preloaded, and a few of them are kept for annotating the next revisions
+    myAnnotationCache = new SLRUMap<HistoryCacheWithRevisionKey, VcsAnnotation>(20, 20);
     //myContentCache = new SLRUMap<HistoryCacheWithRevisionKey, String>(20, 20);
   }
 
@@ -108,9 +119,20 @@ public class VcsHistoryCache {
 
   public void put(@NotNull final FilePath filePath, @NotNull final VcsKey vcsKey, @NotNull final VcsRevisionNumber number,
                   @NotNull final VcsAnnotation vcsAnnotation) {
+    put(filePath, vcsKey, number, vcsAnnotation, true);
+  }
+
+  /**
+   * @param keepBetweenSessions false to keep the annotation only in memory
+   */
+  public void put(@NotNull final FilePath filePath, @NotNull final VcsKey vcsKey, @NotNull final VcsRevisionNumber number,
+                  @NotNull final VcsAnnotation vcsAnnotation, boolean keepBetweenSessions) {
     synchronized (myLock) {
       myAnnotationCache.put(new HistoryCacheWithRevisionKey(filePath, vcsKey, number), vcsAnnotation);
     }
+    if (keepBetweenSessions && myPersistentAnnotationCache != null) {
+      myPersistentAnnotationCache.put(filePath, vcsKey, number, vcsAnnotation);
+    }
   }
 
   public VcsAnnotation get(@NotNull final FilePath filePath, @NotNull final VcsKey vcsKey, @NotNull final VcsRevisionNumber number) {
@@ -119,6 +141,21 @@ public class VcsHistoryCache {
     }
   }
 
+  /**
+   * @return the annotation kept since one of the previous sessions, to be restored against the file history
+   */
+  @Nullable
+  VcsAnnotationPersistentCache.Entry getPersistentAnnotation(@NotNull final FilePath filePath, @NotNull final VcsKey vcsKey,
+                                                             @NotNull final VcsRevisionNumber number) {
+    return myPersistentAnnotationCache == null ? null : myPersistentAnnotationCache.get(filePath, vcsKey, number);
+  }
+
+  public void dispose() {
+    if (myPersistentAnnotationCache != null) {
+      myPersistentAnnotationCache.close();
+    }
+  }
+
   public static class CachedHistory {
     private final FilePath myPath;
     private final List<VcsFileRevision> myRevisions;
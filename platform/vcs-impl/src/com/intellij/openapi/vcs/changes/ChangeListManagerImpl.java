@@ -70,6 +70,8 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 public class ChangeListManagerImpl extends ChangeListManagerEx implements ProjectComponent, ChangeListOwner, JDOMExternalizable {
   public static final Logger LOG = Logger.getInstance("#com.intellij.openapi.vcs.changes.ChangeListManagerImpl");
+  // updates taking longer are logged with the time of every phase even if debug is off
+  private static final long LONG_UPDATE_TIME = 3000;
 
   private final Project myProject;
   private final ChangesViewI myChangesViewManager;
@@ -404,7 +406,9 @@ public class ChangeListManagerImpl extends ChangeListManagerEx implements Projec
       // mark for "modifier" that update started (it would create duplicates of modification commands done by user during update;
       // after update of copies of objects is complete, it would apply the same modifications to copies.)
       synchronized (myDataLock) {
+        final long copyStart = System.nanoTime();
         dataHolder = new DataHolder((FileHolderComposite) myComposite.copy(), myWorker.copy(), wasEverythingDirty);
+        dataHolder.myCopyTime = System.nanoTime() - copyStart;
         myModifier.enterUpdate();
         if (wasEverythingDirty) {
           myUpdateException = null;
@@ -428,7 +432,9 @@ public class ChangeListManagerImpl extends ChangeListManagerEx implements Projec
       final boolean takeChanges = (myUpdateException == null);
       if (takeChanges) {
         // update IDEA-level ignored files
+        final long ignoredStart = System.nanoTime();
         updateIgnoredFiles(dataHolder.getComposite());
+        dataHolder.myIgnoredTime = System.nanoTime() - ignoredStart;
       }
 
       clearCurrentRevisionsCache(invalidated);
@@ -439,6 +445,7 @@ public class ChangeListManagerImpl extends ChangeListManagerEx implements Projec
             return;
           }
           synchronized (myDataLock) {
+            final long switchStart = System.nanoTime();
             // do same modifications to change lists as was done during update + do delayed notifications
             dataHolder.notifyEnd();
             // should be applied for notifications to be delivered (they were delayed) - anyway whether we take changes or not
@@ -458,9 +465,11 @@ public class ChangeListManagerImpl extends ChangeListManagerEx implements Projec
               }
             }
             myShowLocalChangesInvalidated = false;
+            dataHolder.mySwitchTime = System.nanoTime() - switchStart;
           }
         }
       });
+      dataHolder.logTimings(scopes.size());
 
       for (VcsDirtyScope scope : scopes) {
         AbstractVcs vcs = scope.getVcs();
@@ -551,6 +560,7 @@ public class ChangeListManagerImpl extends ChangeListManagerEx implements Projec
         myAdditionalInfo = builder.getAdditionalInfo();
       }
     }
+    dataHolder.myBuilderTime = builder.getProcessingTime();
   }
 
   private void clearCurrentRevisionsCache(final VcsInvalidated invalidated) {
@@ -579,6 +589,14 @@ public class ChangeListManagerImpl extends ChangeListManagerEx implements Projec
     private final boolean myWasEverythingDirty;
     final FileHolderComposite myComposite;
     final ChangeListWorker myChangeListWorker;
+    // nanoseconds spent in the phases of the update
+    private long myCopyTime;
+    private long myCleanTime;
+    private long myProvidersTime;
+    private long myBuilderTime;
+    private long myDoneTime;
+    private long myIgnoredTime;
+    private long mySwitchTime;
 
     private DataHolder(FileHolderComposite composite, ChangeListWorker changeListWorker, boolean wasEverythingDirty) {
       myComposite = composite;
@@ -588,12 +606,15 @@ public class ChangeListManagerImpl extends ChangeListManagerEx implements Projec
 
     public void notifyStart() {
       if (myWasEverythingDirty) {
+        final long start = System.nanoTime();
         myComposite.cleanAll();
         myChangeListWorker.notifyStartProcessingChanges(null);
+        myCleanTime += System.nanoTime() - start;
       }
     }
 
     public void notifyStartProcessingChanges(@NotNull final VcsModifiableDirtyScope scope) {
+      final long start = System.nanoTime();
       if (! myWasEverythingDirty) {
         myComposite.cleanAndAdjustScope(scope);
         myChangeListWorker.notifyStartProcessingChanges(scope);
@@ -601,17 +622,38 @@ public class ChangeListManagerImpl extends ChangeListManagerEx implements Projec
 
       myComposite.notifyVcsStarted(scope.getVcs());
       myChangeListWorker.notifyVcsStarted(scope.getVcs());
+      myCleanTime += System.nanoTime() - start;
     }
 
     public void notifyDoneProcessingChanges() {
       if (! myWasEverythingDirty) {
+        final long start = System.nanoTime();
         myChangeListWorker.notifyDoneProcessingChanges(myDelayedNotificator.getProxyDispatcher());
+        myDoneTime += System.nanoTime() - start;
       }
     }
 
     public void notifyEnd() {
       if (myWasEverythingDirty) {
+        final long start = System.nanoTime();
         myChangeListWorker.notifyDoneProcessingChanges(myDelayedNotificator.getProxyDispatcher());
+        myDoneTime += System.nanoTime() - start;
+      }
+    }
+
+    public void logTimings(final int scopesCount) {
+      final long total = myCopyTime + myCleanTime + myProvidersTime + myDoneTime + myIgnoredTime + mySwitchTime;
+      if (! LOG.isDebugEnabled() && total < LONG_UPDATE_TIME * 1000000) return;
+      final String message = String.format("Change lists update of %d scope(s), everything dirty = %s, took %d ms: copy %d ms, " +
+                                           "clean scopes %d ms, change providers %d ms (of them adding changes to lists %d ms), " +
+                                           "done processing %d ms, ignored files %d ms, switch %d ms",
+                                           scopesCount, myWasEverythingDirty, total / 1000000, myCopyTime / 1000000,
+                                           myCleanTime / 1000000, myProvidersTime / 1000000, myBuilderTime / 1000000,
+                                           myDoneTime / 1000000, myIgnoredTime / 1000000, mySwitchTime / 1000000);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(message);
+      } else {
+        LOG.info(message);
       }
     }
 
@@ -630,6 +672,7 @@ public class ChangeListManagerImpl extends ChangeListManagerEx implements Projec
       final ChangeProvider changeProvider = vcs.getChangeProvider();
       if (changeProvider != null) {
         final FoldersCutDownWorker foldersCutDownWorker = new FoldersCutDownWorker();
+        final long start = System.nanoTime();
         try {
           builder.setCurrent(scope, foldersCutDownWorker);
           changeProvider.getChanges(scope, builder, myUpdateChangesProgressIndicator, gate);
@@ -637,6 +680,9 @@ public class ChangeListManagerImpl extends ChangeListManagerEx implements Projec
         catch (final VcsException e) {
           handleUpdateException(e);
         }
+        finally {
+          dataHolder.myProvidersTime += System.nanoTime() - start;
+        }
       }
     } catch (ProcessCanceledException ignore) {
     } catch (Throwable t) {
@@ -695,11 +695,8 @@ public class ChangeListWorker implements ChangeListsWriteOperations {
 
   public ThreeState haveChangesUnder(final VirtualFile vf) {
     final String absolutePath = new File(vf.getPath()).getAbsolutePath();
-    final SortedSet<String> tailSet = myIdx.getAffectedPaths().tailSet(absolutePath);
-    for (String path : tailSet) {
-      return FileUtil.isAncestorThreeState(absolutePath, path, false);
-    }
-    return ThreeState.NO;
+    final String path = myIdx.getCeilingPath(absolutePath);
+    return path == null ? ThreeState.NO : FileUtil.isAncestorThreeState(absolutePath, path, false);
   }
 
   @NotNull
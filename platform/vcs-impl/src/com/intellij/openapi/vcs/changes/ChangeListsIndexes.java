@@ -26,38 +26,79 @@ import org.jetbrains.annotations.Nullable;
 import java.io.File;
 import java.util.*;
 
+/**
+ * Statuses and vcses of files having changes.
+ * A copy shares the entries with the original and keeps only the entries changed since it was made, so copying the indexes
+ * for every change list update and comparing the copy with the original take time proportional to the number of updated files.
+ */
 public class ChangeListsIndexes {
-  private final TreeMap<String, FileStatus> myFileToStatus;
-  private final Map<String, VcsKey> myFileToVcs;
+  // marks paths removed since the base was taken
+  private static final Pair<FileStatus, VcsKey> REMOVED = new Pair<FileStatus, VcsKey>(null, null);
+
+  // never modified after creation, shared between copies
+  private TreeMap<String, Pair<FileStatus, VcsKey>> myBase;
+  // entries which differ from the base
+  private final TreeMap<String, Pair<FileStatus, VcsKey>> myChanged;
 
   ChangeListsIndexes() {
-    myFileToStatus = new TreeMap<String, FileStatus>();
-    myFileToVcs = new HashMap<String, VcsKey>();
+    myBase = new TreeMap<String, Pair<FileStatus, VcsKey>>();
+    myChanged = new TreeMap<String, Pair<FileStatus, VcsKey>>();
   }
 
   ChangeListsIndexes(final ChangeListsIndexes idx) {
-    myFileToStatus = new TreeMap<String, FileStatus>(idx.myFileToStatus);
-    myFileToVcs = new HashMap<String, VcsKey>(idx.myFileToVcs);
+    // merge the entries into a new base once they're too many to copy for every update
+    if (idx.myChanged.size() > idx.myBase.size() / 4 + 16) {
+      idx.myBase = idx.getEntries();
+      idx.myChanged.clear();
+    }
+    myBase = idx.myBase;
+    myChanged = new TreeMap<String, Pair<FileStatus, VcsKey>>(idx.myChanged);
   }
 
   void add(final FilePath file, final FileStatus status, final VcsKey key) {
     final String fileKey = file.getIOFile().getAbsolutePath();
-    myFileToStatus.put(fileKey, status);
-    myFileToVcs.put(fileKey, key);
+    final Pair<FileStatus, VcsKey> value = new Pair<FileStatus, VcsKey>(status, key);
+    if (value.equals(myBase.get(fileKey))) {
+      myChanged.remove(fileKey);
+    } else {
+      myChanged.put(fileKey, value);
+    }
   }
 
   void remove(final FilePath file) {
     final String fileKey = file.getIOFile().getAbsolutePath();
-    myFileToStatus.remove(fileKey);
-    myFileToVcs.remove(fileKey);
+    if (myBase.containsKey(fileKey)) {
+      myChanged.put(fileKey, REMOVED);
+    } else {
+      myChanged.remove(fileKey);
+    }
+  }
+
+  @Nullable
+  private Pair<FileStatus, VcsKey> get(final String fileKey) {
+    final Pair<FileStatus, VcsKey> value = myChanged.get(fileKey);
+    if (value == REMOVED) return null;
+    return value != null ? value : myBase.get(fileKey);
+  }
+
+  private TreeMap<String, Pair<FileStatus, VcsKey>> getEntries() {
+    final TreeMap<String, Pair<FileStatus, VcsKey>> result = new TreeMap<String, Pair<FileStatus, VcsKey>>(myBase);
+    for (Map.Entry<String, Pair<FileStatus, VcsKey>> entry : myChanged.entrySet()) {
+      if (entry.getValue() == REMOVED) {
+        result.remove(entry.getKey());
+      } else {
+        result.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return result;
   }
 
   public FileStatus getStatus(final VirtualFile file) {
-    return myFileToStatus.get(new File(file.getPath()).getAbsolutePath());
+    return Pair.getFirst(get(new File(file.getPath()).getAbsolutePath()));
   }
   
   public FileStatus getStatus(final File file) {
-    return myFileToStatus.get(file.getAbsolutePath());
+    return Pair.getFirst(get(file.getAbsolutePath()));
   }
 
   public void changeAdded(final Change change, final VcsKey key) {
@@ -86,7 +127,7 @@ public class ChangeListsIndexes {
   private VcsKey getVcsForRevision(final ContentRevision revision) {
     if (revision != null) {
       final String fileKey = revision.getFile().getIOFile().getAbsolutePath();
-      return myFileToVcs.get(fileKey);
+      return Pair.getSecond(get(fileKey));
     }
     return null;
   }
@@ -110,29 +151,59 @@ public class ChangeListsIndexes {
 
   public void getDelta(final ChangeListsIndexes newIndexes, final Set<Pair<String,VcsKey>> toRemove, Set<Pair<String,VcsKey>> toAdd) {
     // this is old
-    final Set<String> oldKeySet = myFileToVcs.keySet();
-    final Set<String> toRemoveSet = new HashSet<String>(oldKeySet);
-    final Set<String> newKeySet = newIndexes.myFileToVcs.keySet();
-    final Set<String> toAddSet = new HashSet<String>(newKeySet);
-    toRemoveSet.removeAll(newKeySet);
-    toAddSet.removeAll(oldKeySet);
-    for (String s : toRemoveSet) {
-      toRemove.add(new Pair<String, VcsKey>(s, myFileToVcs.get(s)));
+    final Set<String> paths;
+    if (myBase == newIndexes.myBase) {
+      paths = new HashSet<String>(myChanged.keySet());
+      paths.addAll(newIndexes.myChanged.keySet());
+    } else {
+      paths = new HashSet<String>(getEntries().keySet());
+      paths.addAll(newIndexes.getEntries().keySet());
     }
-    for (String s : toAddSet) {
-      toAdd.add(new Pair<String, VcsKey>(s, newIndexes.myFileToVcs.get(s)));
+    for (String path : paths) {
+      final Pair<FileStatus, VcsKey> oldValue = get(path);
+      final Pair<FileStatus, VcsKey> newValue = newIndexes.get(path);
+      if (oldValue != null && newValue == null) {
+        toRemove.add(new Pair<String, VcsKey>(path, oldValue.getSecond()));
+      } else if (oldValue == null && newValue != null) {
+        toAdd.add(new Pair<String, VcsKey>(path, newValue.getSecond()));
+      }
     }
   }
 
   public List<Pair<String, VcsKey>> getAffectedFilesUnderVcs() {
-    final ArrayList<Pair<String, VcsKey>> result = new ArrayList<Pair<String, VcsKey>>();
-    for (Map.Entry<String, VcsKey> entry : myFileToVcs.entrySet()) {
-      result.add(new Pair<String, VcsKey>(entry.getKey(), entry.getValue()));
+    final TreeMap<String, Pair<FileStatus, VcsKey>> entries = getEntries();
+    final ArrayList<Pair<String, VcsKey>> result = new ArrayList<Pair<String, VcsKey>>(entries.size());
+    for (Map.Entry<String, Pair<FileStatus, VcsKey>> entry : entries.entrySet()) {
+      result.add(new Pair<String, VcsKey>(entry.getKey(), entry.getValue().getSecond()));
     }
     return result;
   }
 
   public SortedSet<String> getAffectedPaths() {
-    return Collections.unmodifiableSortedSet((SortedSet<String>)myFileToStatus.keySet());
+    final SortedMap<String, Pair<FileStatus, VcsKey>> entries = myChanged.isEmpty() ? myBase : getEntries();
+    return Collections.unmodifiableSortedSet((SortedSet<String>)entries.keySet());
+  }
+
+  /**
+   * @return the least affected path greater than or equal to the given one, or null if there's no such path
+   */
+  @Nullable
+  public String getCeilingPath(final String path) {
+    String changed = null;
+    for (Map.Entry<String, Pair<FileStatus, VcsKey>> entry : myChanged.tailMap(path, true).entrySet()) {
+      if (entry.getValue() != REMOVED) {
+        changed = entry.getKey();
+        break;
+      }
+    }
+    String base = null;
+    for (String basePath : myBase.tailMap(path, true).keySet()) {
+      if (changed != null && basePath.compareTo(changed) >= 0) break;
+      if (myChanged.get(basePath) != REMOVED) {
+        base = basePath;
+        break;
+      }
+    }
+    return base != null ? base : changed;
   }
 }
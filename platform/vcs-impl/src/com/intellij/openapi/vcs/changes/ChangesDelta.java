@@ -24,7 +24,6 @@ import com.intellij.util.PlusMinus;
 
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 public class ChangesDelta {
@@ -39,9 +38,8 @@ public class ChangesDelta {
 
   // true -> something changed
   public boolean step(final ChangeListsIndexes was, final ChangeListsIndexes became) {
-    List<Pair<String, VcsKey>> wasAffected = was.getAffectedFilesUnderVcs();
     if (! myInitialized) {
-      sendPlus(wasAffected);
+      sendPlus(was.getAffectedFilesUnderVcs());
       myInitialized = true;
       return true;  //+-
     }
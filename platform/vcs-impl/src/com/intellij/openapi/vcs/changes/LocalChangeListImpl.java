@@ -24,7 +24,9 @@ public class LocalChangeListImpl extends LocalChangeList {
   private static final Logger LOG = Logger.getInstance("#com.intellij.openapi.vcs.changes.ChangeList");
 
   private final Project myProject;
-  private Collection<Change> myChanges = new HashSet<Change>();
+  private OpenTHashSet<Change> myChanges = new OpenTHashSet<Change>();
+  // myChanges is also referenced by a copy, by the read cache or as myChangesBeforeUpdate, and is copied before it is modified
+  private boolean myChangesShared = false;
   private Collection<Change> myReadChangesCache = null;
   private String myId;
   @NotNull private String myName;
@@ -57,10 +59,19 @@ public class LocalChangeListImpl extends LocalChangeList {
 
   private void createReadChangesCache() {
     if (myReadChangesCache == null) {
-      myReadChangesCache = Collections.unmodifiableCollection(new HashSet<Change>(myChanges));
+      myReadChangesCache = Collections.unmodifiableCollection(myChanges);
+      myChangesShared = true;
     }
   }
 
+  private void beforeChangesModified() {
+    if (myChangesShared) {
+      myChanges = new OpenTHashSet<Change>((Collection<Change>)myChanges);
+      myChangesShared = false;
+    }
+    myReadChangesCache = null;
+  }
+
   @NotNull
   @Override
   public String getId() {
@@ -120,7 +131,7 @@ public class LocalChangeListImpl extends LocalChangeList {
     if (ChangeListManagerImpl.DEBUG) {
       ChangeListManagerImpl.log("LocalChangeListImpl.addChange: this = " + this + ", change = " + change);
     }
-    myReadChangesCache = null;
+    beforeChangesModified();
     myChanges.add(change);
   }
 
@@ -129,20 +140,19 @@ public class LocalChangeListImpl extends LocalChangeList {
       ChangeListManagerImpl.log("LocalChangeListImpl.removeChange: this = " + this + ", change = " + change);
       ChangeListManagerImpl.log("myChanges.size() = " + myChanges.size());
     }
-    for (Change localChange : myChanges) {
-      if (localChange.equals(change)) {
-        myChanges.remove(localChange);
-        myReadChangesCache = null;
-        return localChange;
-      }
+    final Change localChange = myChanges.get(change);
+    if (localChange != null) {
+      beforeChangesModified();
+      myChanges.remove(localChange);
     }
-    return null;
+    return localChange;
   }
 
   Collection<Change> startProcessingChanges(final Project project, @Nullable final VcsDirtyScope scope) {
-    createReadChangesCache();
     final Collection<Change> result = new ArrayList<Change>();
-    myChangesBeforeUpdate = new OpenTHashSet<Change>(myChanges);
+    // the changes are copied only if some of them are removed
+    myChangesBeforeUpdate = myChanges;
+    myChangesShared = true;
     final FileIndexFacade fileIndex = PeriodicalTasksCloser.getInstance().safeGetService(project, FileIndexFacade.class);
     for (Change oldBoy : myChangesBeforeUpdate) {
       final ContentRevision before = oldBoy.getBeforeRevision();
@@ -153,8 +163,8 @@ public class LocalChangeListImpl extends LocalChangeList {
         if (ChangeListManagerImpl.DEBUG) {
           ChangeListManagerImpl.log("LocalChangeListImpl.startProcessingChanges, remove old change: this = " + this + ", change = " + oldBoy);
         }
+        beforeChangesModified();
         myChanges.remove(oldBoy);
-        myReadChangesCache = null;
       }
     }
     return result;
@@ -185,12 +195,11 @@ public class LocalChangeListImpl extends LocalChangeList {
       return true;
     }
 
-    for (Change oldChange : myChangesBeforeUpdate) {
-      if (Comparing.equal(oldChange, change)) {
-        LOG.debug("[process change] adding bacuae equal to old: " + ChangesUtil.getFilePath(oldChange).getPath());
-        addChange(change);
-        return true;
-      }
+    final Change oldChange = myChangesBeforeUpdate.get(change);
+    if (oldChange != null) {
+      LOG.debug("[process change] adding bacuae equal to old: " + ChangesUtil.getFilePath(oldChange).getPath());
+      addChange(change);
+      return true;
     }
     LOG.debug("[process change] not found");
     return false;
@@ -261,17 +270,12 @@ public class LocalChangeListImpl extends LocalChangeList {
     copy.myIsDefault = myIsDefault;
     copy.myIsReadOnly = myIsReadOnly;
 
-    if (myChanges != null) {
-      copy.myChanges = new HashSet<Change>(myChanges);
-    }
-
-    if (myChangesBeforeUpdate != null) {
-      copy.myChangesBeforeUpdate = new OpenTHashSet<Change>((Collection<Change>)myChangesBeforeUpdate);
-    }
-
-    if (myReadChangesCache != null) {
-      copy.myReadChangesCache = new HashSet<Change>(myReadChangesCache);
-    }
+    // the sets are shared until either list modifies its changes; myChangesBeforeUpdate and the read cache are never modified
+    copy.myChanges = myChanges;
+    copy.myChangesShared = true;
+    myChangesShared = true;
+    copy.myChangesBeforeUpdate = myChangesBeforeUpdate;
+    copy.myReadChangesCache = myReadChangesCache;
 
     return copy;
   }
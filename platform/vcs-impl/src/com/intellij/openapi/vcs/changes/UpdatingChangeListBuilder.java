@@ -43,6 +43,8 @@ class UpdatingChangeListBuilder implements ChangelistBuilder {
   private final FileIndexFacade myIndex;
   private final ChangeListManagerGate myGate;
   private Factory<JComponent> myAdditionalInfo;
+  // nanoseconds spent adding reported changes to change lists
+  private long myProcessingTime;
 
   UpdatingChangeListBuilder(final ChangeListWorker changeListWorker,
                             final FileHolderComposite composite,
@@ -84,6 +86,7 @@ class UpdatingChangeListBuilder implements ChangelistBuilder {
       return;
     }
 
+    final long start = System.nanoTime();
     ApplicationManager.getApplication().runReadAction(new Runnable() {
       public void run() {
         if (ChangeListManagerImpl.isUnder(change, myScope)) {
@@ -99,6 +102,7 @@ class UpdatingChangeListBuilder implements ChangelistBuilder {
         }
       }
     });
+    myProcessingTime += System.nanoTime() - start;
   }
 
   public void processChangeInList(final Change change, final String changeListName, VcsKey vcsKey) {
@@ -240,4 +244,8 @@ class UpdatingChangeListBuilder implements ChangelistBuilder {
   public Factory<JComponent> getAdditionalInfo() {
     return myAdditionalInfo;
   }
+
+  public long getProcessingTime() {
+    return myProcessingTime;
+  }
 }
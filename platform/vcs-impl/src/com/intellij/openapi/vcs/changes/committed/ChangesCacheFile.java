@@ -30,10 +30,12 @@ import com.intellij.openapi.vcs.versionBrowser.ChangeBrowserSettings;
 import com.intellij.openapi.vcs.versionBrowser.CommittedChangeList;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.containers.FactoryMap;
+import gnu.trove.TObjectIntHashMap;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
+import java.lang.ref.SoftReference;
 import java.util.*;
 
 /**
@@ -41,10 +43,11 @@ import java.util.*;
  */
 public class ChangesCacheFile {
   private static final Logger LOG = Logger.getInstance("#com.intellij.openapi.vcs.changes.committed.ChangesCacheFile");
-  private static final int VERSION = 7;
+  private static final int VERSION = 8;
 
   private final File myPath;
   private final File myIndexPath;
+  private final File myCommittersPath;
   private RandomAccessFile myStream;
   private RandomAccessFile myIndexStream;
   private boolean myStreamsOpen;
@@ -61,8 +64,12 @@ public class ChangesCacheFile {
   private int myIncomingCount;
   private boolean myHaveCompleteHistory;
   private boolean myHeaderLoaded;
+  private SoftReference<ChangesCacheIndex> myIndex;
+  private List<String> myCommitters;
+  private TObjectIntHashMap<String> myCommitterIds;
   @NonNls private static final String INDEX_EXTENSION = ".index";
-  private static final int INDEX_ENTRY_SIZE = 3*8+2;
+  @NonNls private static final String COMMITTERS_EXTENSION = ".committers";
+  private static final int INDEX_ENTRY_SIZE = ChangesCacheIndex.ENTRY_SIZE;
   private static final int HEADER_SIZE = 46;
 
   public ChangesCacheFile(Project project, File path, AbstractVcs vcs, VirtualFile root, RepositoryLocation location) {
@@ -71,6 +78,7 @@ public class ChangesCacheFile {
     myProject = project;
     myPath = path;
     myIndexPath = new File(myPath.toString() + INDEX_EXTENSION);
+    myCommittersPath = new File(myPath.toString() + COMMITTERS_EXTENSION);
     myVcs = vcs;
     myChangesProvider = (CachingCommittedChangesProvider) vcs.getCommittedChangesProvider();
     myVcsManager = ProjectLevelVcsManager.getInstance(project);
@@ -107,13 +115,11 @@ public class ChangesCacheFile {
       loadHeader();
     }
     catch(VersionMismatchException ex) {
-      myPath.delete();
-      myIndexPath.delete();
+      deleteFiles();
       return true;
     }
     catch(EOFException ex) {
-      myPath.delete();
-      myIndexPath.delete();
+      deleteFiles();
       return true;
     }
 
@@ -123,6 +129,8 @@ public class ChangesCacheFile {
   public void delete() {
     FileUtil.delete(myPath);
     FileUtil.delete(myIndexPath);
+    FileUtil.delete(myCommittersPath);
+    resetIndex();
     try {
       closeStreams();
     }
@@ -131,6 +139,19 @@ public class ChangesCacheFile {
     }
   }
 
+  private void deleteFiles() {
+    myPath.delete();
+    myIndexPath.delete();
+    myCommittersPath.delete();
+    resetIndex();
+  }
+
+  private void resetIndex() {
+    myIndex = null;
+    myCommitters = null;
+    myCommitterIds = null;
+  }
+
   public List<CommittedChangeList> writeChanges(final List<CommittedChangeList> changes) throws IOException {
     // the list and index are sorted in direct chronological order
     Collections.sort(changes, new Comparator<CommittedChangeList>() {
@@ -174,7 +195,12 @@ public class ChangesCacheFile {
         //noinspection unchecked
         myChangesProvider.writeChangeList(myStream, list);
         updateCachedRange(list);
-        writeIndexEntry(list.getNumber(), list.getCommitDate().getTime(), position, present == null ? false : iterator.next());
+        final int committer = getCommitterId(list.getCommitterName());
+        writeIndexEntry(list.getNumber(), list.getCommitDate().getTime(), position, present == null ? false : iterator.next(), committer);
+        final ChangesCacheIndex index = myIndex == null ? null : myIndex.get();
+        if (index != null) {
+          index.add(list.getNumber(), list.getCommitDate().getTime(), position, committer);
+        }
         myIncomingCount++;
       }
       writeHeader();
@@ -205,11 +231,71 @@ public class ChangesCacheFile {
     }
   }
 
-  private void writeIndexEntry(long number, long date, long offset, boolean completelyDownloaded) throws IOException {
+  private void writeIndexEntry(long number, long date, long offset, boolean completelyDownloaded, int committer) throws IOException {
     myIndexStream.writeLong(number);
     myIndexStream.writeLong(date);
     myIndexStream.writeLong(offset);
     myIndexStream.writeShort(completelyDownloaded ? 1 : 0);
+    myIndexStream.writeInt(committer);
+  }
+
+  /**
+   * Committer names are stored once in a separate file, and index entries refer to them by position in that file.
+   * @return id of the committer, or -1 for changelists without committer
+   */
+  private int getCommitterId(@Nullable String name) throws IOException {
+    if (name == null) {
+      return -1;
+    }
+    loadCommitters();
+    if (myCommitterIds.containsKey(name)) {
+      return myCommitterIds.get(name);
+    }
+    final DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(myCommittersPath, true)));
+    try {
+      stream.writeUTF(name);
+    }
+    finally {
+      stream.close();
+    }
+    final int id = myCommitters.size();
+    myCommitters.add(name);
+    myCommitterIds.put(name, id);
+    return id;
+  }
+
+  private void loadCommitters() throws IOException {
+    if (myCommitters != null) return;
+    final List<String> committers = new ArrayList<String>();
+    final TObjectIntHashMap<String> ids = new TObjectIntHashMap<String>();
+    if (myCommittersPath.exists()) {
+      final DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(myCommittersPath)));
+      try {
+        while (stream.available() > 0) {
+          final String name = stream.readUTF();
+          ids.put(name, committers.size());
+          committers.add(name);
+        }
+      }
+      finally {
+        stream.close();
+      }
+    }
+    myCommitters = committers;
+    myCommitterIds = ids;
+  }
+
+  private ChangesCacheIndex getIndex() throws IOException {
+    assert myStreamsOpen;
+    ChangesCacheIndex index = myIndex == null ? null : myIndex.get();
+    if (index == null) {
+      final byte[] data = new byte[(int)myIndexStream.length()];
+      myIndexStream.seek(0);
+      myIndexStream.readFully(data);
+      index = ChangesCacheIndex.read(data);
+      myIndex = new SoftReference<ChangesCacheIndex>(index);
+    }
+    return index;
   }
 
   private void openStreams() throws FileNotFoundException {
@@ -293,6 +379,7 @@ public class ChangesCacheFile {
     result.date = myIndexStream.readLong();
     result.offset = myIndexStream.readLong();
     result.completelyDownloaded = (myIndexStream.readShort() != 0);
+    result.committer = myIndexStream.readInt();
   }
 
   public Date getLastCachedDate() throws IOException {
@@ -456,36 +543,20 @@ public class ChangesCacheFile {
     final ChangeBrowserSettings.Filter filter = settings.createFilter();
     openStreams();
     try {
-      if (maxCount == 0) {
-        myStream.seek(HEADER_SIZE);  // skip header
-        while(myStream.getFilePointer() < myStream.length()) {
-          CommittedChangeList changeList = myChangesProvider.readChangeList(myLocation, myStream);
-          if (filter.accepts(changeList)) {
-            result.add(changeList);
-          }
-        }
-      }
-      else if (!settings.isAnyFilterSpecified()) {
-        IndexEntry[] entries = readLastIndexEntries(0, maxCount);
-        for(IndexEntry entry: entries) {
-          myStream.seek(entry.offset);
-          result.add(myChangesProvider.readChangeList(myLocation, myStream));
-        }
-      }
-      else {
-        int offset = 0;
-        while(result.size() < maxCount) {
-          IndexEntry[] entries = readLastIndexEntries(offset, 1);
-          if (entries.length == 0) {
-            break;
-          }
-          CommittedChangeList changeList = loadChangeListAt(entries [0].offset);
-          if (filter.accepts(changeList)) {
-            result.add(0, changeList);
-          }
-          offset++;
+      // the filters known to the index are checked on its columns; the settings filter is still applied to the loaded changelists
+      // since it may be extended with conditions the index knows nothing about
+      final ChangesCacheIndex index = getIndex();
+      final int[] positions = settings.isAnyFilterSpecified()
+                              ? index.filter(createIndexFilter(settings), getAcceptedCommitters(settings), 0)
+                              : index.filter(new ChangesCacheIndex.Filter(), null, maxCount);
+      for (int position : positions) {
+        CommittedChangeList changeList = loadChangeListAt(index.getOffset(position));
+        if (filter.accepts(changeList)) {
+          result.add(changeList);
+          if (result.size() == maxCount) break;
         }
       }
+      Collections.reverse(result);
       return result;
     }
     finally {
@@ -493,6 +564,54 @@ public class ChangesCacheFile {
     }
   }
 
+  private static ChangesCacheIndex.Filter createIndexFilter(final ChangeBrowserSettings settings) {
+    final ChangesCacheIndex.Filter result = new ChangesCacheIndex.Filter();
+    if (settings.USE_DATE_BEFORE_FILTER) {
+      final Date date = settings.getDateBefore();
+      if (date != null) {
+        result.myDateBefore = date.getTime();
+      }
+    }
+    if (settings.USE_DATE_AFTER_FILTER) {
+      final Date date = settings.getDateAfter();
+      if (date != null) {
+        result.myDateAfter = date.getTime();
+      }
+    }
+    if (settings.USE_CHANGE_BEFORE_FILTER) {
+      try {
+        result.myMaxNumber = Long.parseLong(settings.CHANGE_BEFORE);
+      }
+      catch (NumberFormatException e) {
+        //ignore
+      }
+    }
+    if (settings.USE_CHANGE_AFTER_FILTER) {
+      try {
+        result.myMinNumber = Long.parseLong(settings.CHANGE_AFTER);
+      }
+      catch (NumberFormatException e) {
+        //ignore
+      }
+    }
+    return result;
+  }
+
+  @Nullable
+  private BitSet getAcceptedCommitters(final ChangeBrowserSettings settings) throws IOException {
+    if (!settings.USE_USER_FILTER || settings.USER == null) {
+      return null;
+    }
+    loadCommitters();
+    final BitSet result = new BitSet();
+    for (int i = 0; i < myCommitters.size(); i++) {
+      if (Comparing.equal(myCommitters.get(i), settings.USER, false)) {
+        result.set(i);
+      }
+    }
+    return result;
+  }
+
   public boolean hasCompleteHistory() {
     return myHaveCompleteHistory;
   }
@@ -585,7 +704,7 @@ public class ChangesCacheFile {
     if (data.accountedChanges.size() == data.changeList.getChanges().size() || haveNoMoreIncoming) {
       debug("Removing changelist " + data.changeList.getNumber() + " from incoming changelists");
       myIndexStream.seek(data.indexOffset);
-      writeIndexEntry(data.indexEntry.number, data.indexEntry.date, data.indexEntry.offset, true);
+      writeIndexEntry(data.indexEntry.number, data.indexEntry.date, data.indexEntry.offset, true, data.indexEntry.committer);
       myIncomingCount--;
     }
   }
@@ -1080,6 +1199,7 @@ public class ChangesCacheFile {
     long date;
     long offset;
     boolean completelyDownloaded;
+    int committer;
   }
 
   private static class IncomingChangeListData {
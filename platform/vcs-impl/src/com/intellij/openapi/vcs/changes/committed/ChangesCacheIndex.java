@@ -0,0 +1,116 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vcs.changes.committed;
+
+import com.intellij.util.ArrayUtil;
+import gnu.trove.TIntArrayList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Columns of the index of {@link ChangesCacheFile}: numbers, commit dates, committers and offsets in the data file of the cached change
+ * lists, in the order they were written. Filtering by number, date and committer is done on the columns, so only the matching change lists
+ * have to be read from the data file.
+ */
+class ChangesCacheIndex {
+  // number, date, offset, completely downloaded flag, committer id
+  static final int ENTRY_SIZE = 3 * 8 + 2 + 4;
+
+  private long[] myNumbers;
+  private long[] myDates;
+  private long[] myOffsets;
+  private int[] myCommitters;
+  private int mySize;
+
+  ChangesCacheIndex(int capacity) {
+    myNumbers = new long[capacity];
+    myDates = new long[capacity];
+    myOffsets = new long[capacity];
+    myCommitters = new int[capacity];
+  }
+
+  @NotNull
+  static ChangesCacheIndex read(@NotNull byte[] data) {
+    final int count = data.length / ENTRY_SIZE;
+    final ChangesCacheIndex index = new ChangesCacheIndex(count);
+    final ByteBuffer buffer = ByteBuffer.wrap(data);
+    for (int i = 0; i < count; i++) {
+      final long number = buffer.getLong();
+      final long date = buffer.getLong();
+      final long offset = buffer.getLong();
+      buffer.getShort();
+      index.add(number, date, offset, buffer.getInt());
+    }
+    return index;
+  }
+
+  void add(long number, long date, long offset, int committer) {
+    if (mySize == myNumbers.length) {
+      final int capacity = Math.max(16, mySize * 3 / 2);
+      myNumbers = Arrays.copyOf(myNumbers, capacity);
+      myDates = Arrays.copyOf(myDates, capacity);
+      myOffsets = Arrays.copyOf(myOffsets, capacity);
+      myCommitters = Arrays.copyOf(myCommitters, capacity);
+    }
+    myNumbers[mySize] = number;
+    myDates[mySize] = date;
+    myOffsets[mySize] = offset;
+    myCommitters[mySize] = committer;
+    mySize++;
+  }
+
+  int size() {
+    return mySize;
+  }
+
+  long getOffset(int position) {
+    return myOffsets[position];
+  }
+
+  /**
+   * @param committers ids of accepted committers, or {@code null} if all committers are accepted
+   * @param maxCount   maximum number of positions to return, 0 for no limit
+   * @return positions of entries which match the filter, from the latest written to the earliest one
+   */
+  @NotNull
+  int[] filter(@NotNull Filter filter, @Nullable BitSet committers, int maxCount) {
+    final TIntArrayList result = new TIntArrayList();
+    for (int i = mySize - 1; i >= 0; i--) {
+      if (myNumbers[i] < filter.myMinNumber || myNumbers[i] > filter.myMaxNumber) continue;
+      if (myDates[i] <= filter.myDateAfter || myDates[i] >= filter.myDateBefore) continue;
+      if (committers != null && (myCommitters[i] < 0 || !committers.get(myCommitters[i]))) continue;
+
+      result.add(i);
+      if (result.size() == maxCount) break;
+    }
+    return result.isEmpty() ? ArrayUtil.EMPTY_INT_ARRAY : result.toNativeArray();
+  }
+
+  /**
+   * Bounds of change list numbers (inclusive) and commit dates (exclusive) accepted by
+   * {@link com.intellij.openapi.vcs.versionBrowser.ChangeBrowserSettings}.
+   */
+  static class Filter {
+    long myMinNumber = Long.MIN_VALUE;
+    long myMaxNumber = Long.MAX_VALUE;
+    long myDateAfter = Long.MIN_VALUE;
+    long myDateBefore = Long.MAX_VALUE;
+  }
+}
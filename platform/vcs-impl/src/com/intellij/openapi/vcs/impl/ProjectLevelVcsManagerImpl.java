@@ -18,6 +18,7 @@ package com.intellij.openapi.vcs.impl;
 import com.intellij.icons.AllIcons;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.components.ProjectComponent;
 import com.intellij.openapi.components.StorageScheme;
 import com.intellij.openapi.diagnostic.Logger;
@@ -26,6 +27,7 @@ import com.intellij.openapi.editor.EditorFactory;
 import com.intellij.openapi.editor.EditorSettings;
 import com.intellij.openapi.editor.impl.EditorImpl;
 import com.intellij.openapi.editor.markup.TextAttributes;
+import com.intellij.openapi.fileEditor.FileEditorManagerListener;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.project.DumbAwareRunnable;
 import com.intellij.openapi.project.Project;
@@ -71,6 +73,7 @@ import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.File;
 import java.util.*;
 import java.util.List;
 
@@ -134,7 +137,7 @@ public class ProjectLevelVcsManagerImpl extends ProjectLevelVcsManagerEx impleme
       myVcsEventListenerManager = new VcsEventsListenerManagerImpl();
     }
 
-    myVcsHistoryCache = new VcsHistoryCache();
+    myVcsHistoryCache = myProject.isDefault() ? new VcsHistoryCache() : new VcsHistoryCache(getAnnotationsCacheFile(myProject));
     myContentRevisionCache = new ContentRevisionCache();
     myConnect = myMessageBus.connect();
     myVcsFileListenerContextHelper = VcsFileListenerContextHelper.getInstance(myProject);
@@ -152,9 +155,16 @@ public class ProjectLevelVcsManagerImpl extends ProjectLevelVcsManagerEx impleme
         myContentRevisionCache.clearCurrent(strings);
       }
     });
+    if (! myProject.isDefault()) {
+      myConnect.subscribe(FileEditorManagerListener.FILE_EDITOR_MANAGER, new VcsAnnotationPreloader(myProject));
+    }
     myExcludedIndex = excludedFileIndex;
   }
 
+  private static File getAnnotationsCacheFile(final Project project) {
+    return new File(PathManager.getSystemPath(), "vcs/annotations/" + project.getLocationHash() + "/annotations");
+  }
+
   public void initComponent() {
     myOptionsAndConfirmations.init(new Convertor<String, VcsShowConfirmationOption.Value>() {
       public VcsShowConfirmationOption.Value convert(String o) {
@@ -203,6 +213,7 @@ public class ProjectLevelVcsManagerImpl extends ProjectLevelVcsManagerEx impleme
     }
     myMappings.disposeMe();
     myConnect.disconnect();
+    myVcsHistoryCache.dispose();
     myContentManager = null;
 
     ToolWindowManager toolWindowManager = ToolWindowManager.getInstance(myProject);
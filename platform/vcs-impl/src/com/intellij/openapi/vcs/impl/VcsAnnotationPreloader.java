@@ -0,0 +1,79 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vcs.impl;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.FileEditorManagerAdapter;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.vcs.AbstractVcs;
+import com.intellij.openapi.vcs.FileStatus;
+import com.intellij.openapi.vcs.FileStatusManager;
+import com.intellij.openapi.vcs.ProjectLevelVcsManager;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vcs.annotate.AnnotationProvider;
+import com.intellij.openapi.vcs.history.VcsAnnotationCachedProxy;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.ui.update.MergingUpdateQueue;
+import com.intellij.util.ui.update.Update;
+
+/**
+ * Annotates the files opened in editors in background, so the annotations are in the history cache when they are asked for.
+ */
+public class VcsAnnotationPreloader extends FileEditorManagerAdapter {
+  private static final Logger LOG = Logger.getInstance("#com.intellij.openapi.vcs.impl.VcsAnnotationPreloader");
+  private static final int DELAY = 1000;
+
+  private final Project myProject;
+  private final MergingUpdateQueue myUpdateQueue;
+
+  public VcsAnnotationPreloader(final Project project) {
+    myProject = project;
+    // the files are annotated one by one in the own thread of the queue
+    myUpdateQueue = new MergingUpdateQueue("Annotations preloader queue", DELAY, true, null, project, null, false);
+  }
+
+  private static boolean isEnabled() {
+    return Registry.is("vcs.annotations.preload");
+  }
+
+  @Override
+  public void fileOpened(FileEditorManager source, final VirtualFile file) {
+    if (! isEnabled()) return;
+    final FileStatus status = FileStatusManager.getInstance(myProject).getStatus(file);
+    if (FileStatus.UNKNOWN.equals(status) || FileStatus.ADDED.equals(status) || FileStatus.IGNORED.equals(status)) return;
+
+    myUpdateQueue.queue(new Update(file) {
+      @Override
+      public void run() {
+        // the file could be opened only for a moment
+        if (myProject.isDisposed() || ! file.isValid() || ! FileEditorManager.getInstance(myProject).isFileOpen(file)) return;
+        final AbstractVcs vcs = ProjectLevelVcsManager.getInstance(myProject).getVcsFor(file);
+        if (vcs == null) return;
+        final AnnotationProvider annotationProvider = vcs.getCachingAnnotationProvider();
+        // only the caching proxy keeps the result
+        if (! (annotationProvider instanceof VcsAnnotationCachedProxy)) return;
+        try {
+          annotationProvider.annotate(file);
+        }
+        catch (VcsException e) {
+          LOG.info(e);
+        }
+      }
+    });
+  }
+}
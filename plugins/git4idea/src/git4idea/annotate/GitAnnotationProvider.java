@@ -41,6 +41,7 @@ import git4idea.i18n.GitBundle;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -251,6 +252,14 @@ public class GitAnnotationProvider implements AnnotationProvider, VcsCacheableAn
     return gitFileAnnotation;
   }
 
+  @Override
+  public boolean canAnnotateByPrevious(VcsFileRevision revision, VcsFileRevision previous) {
+    // blame of a commit with a single parent is the blame of the parent plus the lines changed by the commit, whitespace is ignored by "-w"
+    if (!(revision instanceof GitFileRevision)) return false;
+    final Collection<String> parents = ((GitFileRevision)revision).getParents();
+    return parents.size() == 1 && parents.contains(previous.getRevisionNumber().asString());
+  }
+
   /**
    * {@inheritDoc}
    */
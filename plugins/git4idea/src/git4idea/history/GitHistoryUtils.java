@@ -49,7 +49,7 @@ import git4idea.history.browser.SymbolicRefs;
 import git4idea.history.browser.SymbolicRefsI;
 import git4idea.history.wholeTree.AbstractHash;
 import git4idea.history.wholeTree.CommitHashPlusParents;
-import git4idea.history.wholeTree.GitCommitsSequentialIndex;
+import git4idea.history.wholeTree.GitCommitGraph;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -57,6 +57,7 @@ import java.io.*;
 import java.nio.charset.Charset;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static git4idea.history.GitLogParser.GitLogOption.*;
@@ -200,74 +201,90 @@ public class GitHistoryUtils {
     return new ItemLatestState(new GitRevisionNumber(record.getHash(), record.getDate()), exists, false);
   }
 
-  public static void dumpFullHistory(final Project project, VirtualFile root, final String outFilePath) throws VcsException {
+  /**
+   * Adds commits of all refs which are not in the graph yet to its end, parents first.
+   * Commits reachable from the latest heads of the graph are excluded from the log, so only new commits are usually listed.
+   *
+   * @return false if the log has commits with parents missing in the graph, or it can't be listed with the heads of the graph excluded
+   *         (e.g. they were pruned after the history had been rewritten), i.e. the graph should be cleared and loaded from scratch
+   * @throws VcsException if the log of the whole repository can't be listed
+   */
+  public static boolean appendToCommitGraph(final Project project, VirtualFile root, final GitCommitGraph graph) throws VcsException {
     if (! GitUtil.isGitRoot(new File(root.getPath()))) throw new VcsException("Path " + root.getPath() + " is not git repository root");
 
     final GitLineHandler h = new GitLineHandler(project, root, GitCommand.LOG);
+    final GitLogParser parser = new GitLogParser(project, HASH, COMMIT_TIME, PARENTS);
     h.setNoSSH(true);
     h.setSilent(true);
-    h.addParameters("--all", "--pretty=format:%H%x20%ct%x0A", "--date-order", "--reverse", "--encoding=UTF-8", "--full-history",
-                    "--sparse");
+    h.setStdoutSuppressed(true);
+    h.addParameters("--all", parser.getPretty(), "--date-order", "--reverse", "--encoding=UTF-8", "--full-history", "--sparse");
+    final List<String> heads = graph.getHeads(100);
+    for (String head : heads) {
+      h.addParameters("^" + head);
+    }
     h.endOptions();
 
-    final OutputStream[] stream = new OutputStream[1];
-    try {
-      stream[0] = new BufferedOutputStream(new FileOutputStream(outFilePath, false));
-      final Semaphore semaphore = new Semaphore();
-      final VcsException[] ioExceptions = new VcsException[1];
-      h.addLineListener(new GitLineHandlerListener() {
-        @Override
-        public void onLineAvailable(String line, Key outputType) {
-          if (line.length() == 0) return;
-          try {
-            GitCommitsSequentialIndex.parseRecord(line);
-            stream[0].write((line + '\n').getBytes("UTF-8"));
-          }
-          catch (IOException e) {
-            ioExceptions[0] = new VcsException(e);
-            h.cancel();
-            semaphore.up();
-          } catch (ProcessCanceledException e) {
-            h.cancel();
-            semaphore.up();
+    final Semaphore semaphore = new Semaphore();
+    final AtomicBoolean consistent = new AtomicBoolean(true);
+    final AtomicBoolean canceled = new AtomicBoolean();
+    final AtomicInteger exitCode = new AtomicInteger();
+    final StringBuilder errors = new StringBuilder();
+    final Throwable[] startFailure = new Throwable[1];
+    h.addLineListener(new GitLineHandlerListener() {
+      @Override
+      public void onLineAvailable(String line, Key outputType) {
+        if (ProcessOutputTypes.STDERR.equals(outputType)) {
+          synchronized (errors) {
+            errors.append(line).append("\n");
           }
-          catch (VcsException e) {
-            ioExceptions[0] = e;
+          return;
+        }
+        if (! ProcessOutputTypes.STDOUT.equals(outputType) || line.length() == 0 || ! consistent.get()) return;
+        try {
+          GitLogRecord record = parser.parseOneRecord(line);
+          if (! graph.add(record.getHash(), record.getParentsHashes(), record.getLongTimeStamp() * 1000)) {
+            consistent.set(false);
             h.cancel();
             semaphore.up();
           }
         }
-        @Override
-        public void processTerminated(int exitCode) {
-          semaphore.up();
-        }
-        @Override
-        public void startFailed(Throwable exception) {
+        catch (ProcessCanceledException e) {
+          canceled.set(true);
+          h.cancel();
           semaphore.up();
         }
-      });
-      semaphore.down();
-      h.start();
-      semaphore.waitFor();
-      if (ioExceptions[0] != null) {
-        throw ioExceptions[0];
       }
-    }
-    catch (FileNotFoundException e) {
-      throw new VcsException(e);
-    }
-    finally {
-      try {
-        if (stream[0] != null) {
-          stream[0].close();
-        }
+      @Override
+      public void processTerminated(int code) {
+        exitCode.set(code);
+        semaphore.up();
       }
-      catch (IOException e) {
-        throw new VcsException(e);
+      @Override
+      public void startFailed(Throwable exception) {
+        startFailure[0] = exception;
+        semaphore.up();
       }
-    }
-    File file = new File(outFilePath);
-    if (! file.exists() || file.length() == 0) throw new VcsException("Short repository history not loaded");
+    });
+    semaphore.down();
+    h.start();
+    semaphore.waitFor();
+
+    if (canceled.get()) throw new ProcessCanceledException();
+    if (! consistent.get()) return false;
+    if (startFailure[0] != null) throw new VcsException(startFailure[0]);
+    if (exitCode.get() != 0 || ! h.errors().isEmpty()) {
+      final String message;
+      synchronized (errors) {
+        message = errors.toString().trim();
+      }
+      LOG.info("Can not list commits of " + root.getPath() + ": " + message + " " + h.errors());
+      // the heads may be gone, the full log is listed without them then
+      if (! heads.isEmpty()) return false;
+      if (! h.errors().isEmpty()) throw h.errors().get(0);
+      throw new VcsException("Short repository history not loaded: " + message);
+    }
+    if (graph.size() == 0) throw new VcsException("Short repository history not loaded");
+    return true;
   }
 
   /*
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package git4idea.history.wholeTree;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.io.DataInputOutputUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Commits of one repository root in the order 'git log --date-order --reverse' lists them, so parents always precede their children.
+ * Commits are addressed by index: hashes are kept in one byte array, parents and commit times in int arrays,
+ * which takes several times less memory than objects per commit on repositories with a long history.
+ * Commits added since the graph was loaded are appended to the end of its file by {@link #save()}.
+ *
+ * Not thread-safe, access is guarded by {@link GitCommitsSequentialIndex}.
+ */
+public class GitCommitGraph {
+  private static final Logger LOG = Logger.getInstance("#git4idea.history.wholeTree.GitCommitGraph");
+  private static final int VERSION = 2;
+  private static final int HASH_SIZE = 20;
+
+  private final File myFile;
+  private byte[] myHashes;
+  // commit time in seconds
+  private int[] myTimes;
+  // parents of commit i are myParents[myParentsStart[i]] .. myParents[myParentsStart[i + 1] - 1]
+  private int[] myParentsStart;
+  private int[] myParents;
+  private int mySize;
+  // open addressing table of (commit index + 1) by hash, built only when commits are added
+  private int[] myLookup;
+  private int mySavedSize;
+
+  private GitCommitGraph(@NotNull File file) {
+    myFile = file;
+    clear();
+  }
+
+  /**
+   * @return the graph stored in the file, or an empty graph if there is no file or it can't be read
+   */
+  @NotNull
+  public static GitCommitGraph load(@NotNull File file) {
+    final GitCommitGraph graph = new GitCommitGraph(file);
+    if (file.length() == 0) return graph;
+
+    try {
+      final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      try {
+        if (in.readInt() != VERSION) {
+          return new GitCommitGraph(file);
+        }
+        while (in.available() > 0) {
+          graph.readCommit(in);
+        }
+      }
+      finally {
+        in.close();
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Can not read commit graph from " + file.getPath() + ", it will be reloaded", e);
+      return new GitCommitGraph(file);
+    }
+    graph.mySavedSize = graph.mySize;
+    return graph;
+  }
+
+  /**
+   * Removes all the commits; the file is rewritten on the next {@link #save()}.
+   */
+  public void clear() {
+    myHashes = new byte[16 * HASH_SIZE];
+    myTimes = new int[16];
+    myParentsStart = new int[17];
+    myParents = new int[16];
+    mySize = 0;
+    myLookup = null;
+    mySavedSize = 0;
+  }
+
+  public int size() {
+    return mySize;
+  }
+
+  @NotNull
+  public String getHash(int index) {
+    final char[] result = new char[HASH_SIZE * 2];
+    for (int i = 0; i < HASH_SIZE; i++) {
+      final int b = myHashes[index * HASH_SIZE + i] & 0xFF;
+      result[2 * i] = Character.forDigit(b >> 4, 16);
+      result[2 * i + 1] = Character.forDigit(b & 0xF, 16);
+    }
+    return new String(result);
+  }
+
+  /**
+   * @return commit time in milliseconds
+   */
+  public long getTime(int index) {
+    return myTimes[index] * 1000L;
+  }
+
+  @NotNull
+  int[] getParents(int index) {
+    return Arrays.copyOfRange(myParents, myParentsStart[index], myParentsStart[index + 1]);
+  }
+
+  /**
+   * @return index of the commit, or -1 if the commit is not in the graph
+   */
+  int indexOf(@NotNull String hash) {
+    final byte[] bytes = parseHash(hash);
+    return bytes == null ? -1 : find(bytes);
+  }
+
+  /**
+   * @return hashes of commits which have no children in the graph, latest first
+   */
+  @NotNull
+  public List<String> getHeads(int maxCount) {
+    final BitSet hasChildren = new BitSet(mySize);
+    for (int i = 0; i < myParentsStart[mySize]; i++) {
+      hasChildren.set(myParents[i]);
+    }
+    final List<String> result = new ArrayList<String>();
+    for (int i = mySize - 1; i >= 0 && result.size() < maxCount; i--) {
+      if (!hasChildren.get(i)) {
+        result.add(getHash(i));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Adds the commit after the ones already in the graph; the commit is skipped if it is in the graph already.
+   * @return false if some of the parents is not in the graph, the commit is not added then
+   */
+  public boolean add(@NotNull String hash, @NotNull String[] parents, long time) {
+    final byte[] bytes = parseHash(hash);
+    if (bytes == null) {
+      throw new IllegalArgumentException("Not a commit hash: " + hash);
+    }
+    if (find(bytes) >= 0) return true;
+
+    final int[] parentIndices = new int[parents.length];
+    for (int i = 0; i < parents.length; i++) {
+      parentIndices[i] = indexOf(parents[i]);
+      if (parentIndices[i] < 0) return false;
+    }
+
+    ensureCapacity(mySize + 1, myParentsStart[mySize] + parentIndices.length);
+    System.arraycopy(bytes, 0, myHashes, mySize * HASH_SIZE, HASH_SIZE);
+    myTimes[mySize] = (int)(time / 1000);
+    System.arraycopy(parentIndices, 0, myParents, myParentsStart[mySize], parentIndices.length);
+    myParentsStart[mySize + 1] = myParentsStart[mySize] + parentIndices.length;
+    mySize++;
+    addToLookup(mySize - 1);
+    return true;
+  }
+
+  /**
+   * Appends commits added since the graph was loaded or saved to its file, or writes the whole file if the graph was cleared.
+   */
+  public void save() throws IOException {
+    if (mySavedSize == mySize && mySavedSize > 0) return;
+
+    final boolean append = mySavedSize > 0;
+    final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(myFile, append)));
+    try {
+      if (!append) {
+        out.writeInt(VERSION);
+      }
+      for (int i = mySavedSize; i < mySize; i++) {
+        writeCommit(out, i);
+      }
+    }
+    finally {
+      out.close();
+    }
+    mySavedSize = mySize;
+  }
+
+  private void readCommit(DataInput in) throws IOException {
+    ensureCapacity(mySize + 1, myParentsStart[mySize]);
+    in.readFully(myHashes, mySize * HASH_SIZE, HASH_SIZE);
+    myTimes[mySize] = in.readInt();
+    final int parentsCount = DataInputOutputUtil.readINT(in);
+    ensureCapacity(mySize + 1, myParentsStart[mySize] + parentsCount);
+    for (int i = 0; i < parentsCount; i++) {
+      myParents[myParentsStart[mySize] + i] = DataInputOutputUtil.readINT(in);
+    }
+    myParentsStart[mySize + 1] = myParentsStart[mySize] + parentsCount;
+    mySize++;
+  }
+
+  private void writeCommit(DataOutput out, int index) throws IOException {
+    out.write(myHashes, index * HASH_SIZE, HASH_SIZE);
+    out.writeInt(myTimes[index]);
+    DataInputOutputUtil.writeINT(out, myParentsStart[index + 1] - myParentsStart[index]);
+    for (int i = myParentsStart[index]; i < myParentsStart[index + 1]; i++) {
+      DataInputOutputUtil.writeINT(out, myParents[i]);
+    }
+  }
+
+  private void ensureCapacity(int size, int parentsSize) {
+    if (size > myTimes.length) {
+      final int capacity = Math.max(size, myTimes.length * 3 / 2);
+      myHashes = Arrays.copyOf(myHashes, capacity * HASH_SIZE);
+      myTimes = Arrays.copyOf(myTimes, capacity);
+      myParentsStart = Arrays.copyOf(myParentsStart, capacity + 1);
+    }
+    if (parentsSize > myParents.length) {
+      myParents = Arrays.copyOf(myParents, Math.max(parentsSize, myParents.length * 3 / 2));
+    }
+  }
+
+  private int find(byte[] hash) {
+    if (myLookup == null) {
+      rebuildLookup();
+    }
+    final int mask = myLookup.length - 1;
+    for (int slot = hashCode(hash, 0) & mask; myLookup[slot] != 0; slot = (slot + 1) & mask) {
+      final int index = myLookup[slot] - 1;
+      if (sameHash(hash, index)) return index;
+    }
+    return -1;
+  }
+
+  private void addToLookup(int index) {
+    if (myLookup == null || mySize * 2 > myLookup.length) {
+      rebuildLookup();
+      return;
+    }
+    insert(index);
+  }
+
+  private void rebuildLookup() {
+    int capacity = 32;
+    while (capacity < mySize * 3) capacity <<= 1;
+    myLookup = new int[capacity];
+    for (int i = 0; i < mySize; i++) {
+      insert(i);
+    }
+  }
+
+  private void insert(int index) {
+    final int mask = myLookup.length - 1;
+    int slot = hashCode(myHashes, index * HASH_SIZE) & mask;
+    while (myLookup[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    myLookup[slot] = index + 1;
+  }
+
+  private boolean sameHash(byte[] hash, int index) {
+    final int offset = index * HASH_SIZE;
+    for (int i = 0; i < HASH_SIZE; i++) {
+      if (hash[i] != myHashes[offset + i]) return false;
+    }
+    return true;
+  }
+
+  // hashes are uniformly distributed, so the first bytes are as good as any hash function
+  private static int hashCode(byte[] bytes, int offset) {
+    return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16 | (bytes[offset + 2] & 0xFF) << 8 | (bytes[offset + 3] & 0xFF);
+  }
+
+  @Nullable
+  private static byte[] parseHash(@NotNull String hash) {
+    if (hash.length() != HASH_SIZE * 2) return null;
+    final byte[] result = new byte[HASH_SIZE];
+    for (int i = 0; i < HASH_SIZE; i++) {
+      final int high = Character.digit(hash.charAt(2 * i), 16);
+      final int low = Character.digit(hash.charAt(2 * i + 1), 16);
+      if (high < 0 || low < 0) return null;
+      result[i] = (byte)(high << 4 | low);
+    }
+    return result;
+  }
+}
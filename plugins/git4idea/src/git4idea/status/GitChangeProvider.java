@@ -35,7 +35,9 @@ import git4idea.commands.Git;
 import git4idea.config.GitVersion;
 import git4idea.config.GitVersionSpecialty;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
 import java.util.*;
 
 /**
@@ -50,6 +52,7 @@ public class GitChangeProvider implements ChangeProvider {
   @NotNull private final ChangeListManager myChangeListManager;
   @NotNull private final FileDocumentManager myFileDocumentManager;
   @NotNull private final ProjectLevelVcsManager myVcsManager;
+  private final Map<VirtualFile, GitIndexStatusCache> myIndexCaches = new HashMap<VirtualFile, GitIndexStatusCache>();
 
   public GitChangeProvider(@NotNull Project project, @NotNull Git git, ChangeListManager changeListManager,
                            @NotNull FileDocumentManager fileDocumentManager, @NotNull ProjectLevelVcsManager vcsManager) {
@@ -83,7 +86,7 @@ public class GitChangeProvider implements ChangeProvider {
         debug("checking root: " + root.getPath());
         GitChangesCollector collector = isNewGitChangeProviderAvailable()
                                         ? GitNewChangesCollector.collect(myProject, myGit, myChangeListManager, myVcsManager,
-                                                                         vcs, dirtyScope, root)
+                                                                         vcs, dirtyScope, root, getIndexCache(root))
                                         : GitOldChangesCollector.collect(myProject, myChangeListManager, myVcsManager,
                                                                          vcs, dirtyScope, root);
         final Collection<Change> changes = collector.getChanges();
@@ -106,6 +109,22 @@ public class GitChangeProvider implements ChangeProvider {
     }
   }
 
+  @Nullable
+  private GitIndexStatusCache getIndexCache(@NotNull VirtualFile root) {
+    synchronized (myIndexCaches) {
+      GitIndexStatusCache cache = myIndexCaches.get(root);
+      if (cache == null) {
+        VirtualFile gitDir = GitUtil.findGitDir(root);
+        if (gitDir == null) {
+          return null;
+        }
+        cache = new GitIndexStatusCache(new File(root.getPath()), new File(gitDir.getPath()));
+        myIndexCaches.put(root, cache);
+      }
+      return cache;
+    }
+  }
+
   public static void appendNestedVcsRootsToDirt(final VcsDirtyScope dirtyScope, GitVcs vcs, final ProjectLevelVcsManager vcsManager) {
     final Set<FilePath> recursivelyDirtyDirectories = dirtyScope.getRecursivelyDirtyDirectories();
     if (recursivelyDirtyDirectories.isEmpty()) {
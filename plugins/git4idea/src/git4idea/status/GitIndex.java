@@ -0,0 +1,321 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package git4idea.status;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.CharsetToolkit;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * <p>
+ *   Entries of the Git index file ({@code .git/index}): paths of the tracked files with the object ids, modes, sizes and modification times
+ *   they had when they were staged or last refreshed by Git.
+ * </p>
+ * <p>
+ *   Comparing the sizes and times with the files on disk tells which files may be modified in the working tree,
+ *   the same way Git does it before comparing the contents.
+ *   Versions 2, 3 and 4 of the index format are supported;
+ *   see <a href="https://github.com/git/git/blob/master/Documentation/technical/index-format.txt">index-format.txt</a>.
+ * </p>
+ */
+class GitIndex {
+
+  private static final int SIGNATURE = 0x44495243; // "DIRC"
+  private static final int SHA_SIZE = 20;
+  private static final int ASSUME_VALID_FLAG = 0x8000;
+  private static final int EXTENDED_FLAG = 0x4000;
+  private static final int STAGE_MASK = 0x3000;
+  private static final int NAME_MASK = 0xFFF;
+  private static final int SKIP_WORKTREE_FLAG = 0x4000;
+
+  // paths are UTF-8 encoded and sorted by bytes, as Git keeps them
+  private byte[] myPaths;
+  private final int[] myPathOffsets;
+  private final byte[] myShas;
+  private final int[] myModes;
+  private final int[] myMTimes;
+  private final int[] mySizes;
+  private final int[] myFlags;
+  private final int mySize;
+  private final long myTimestamp;
+  private final long myFileLength;
+
+  private GitIndex(int size, int fileLength, long timestamp) {
+    mySize = size;
+    myTimestamp = timestamp;
+    myFileLength = fileLength;
+    myPaths = new byte[fileLength];
+    myPathOffsets = new int[size + 1];
+    myShas = new byte[size * SHA_SIZE];
+    myModes = new int[size];
+    myMTimes = new int[size];
+    mySizes = new int[size];
+    myFlags = new int[size];
+  }
+
+  @NotNull
+  static GitIndex read(@NotNull File indexFile) throws IOException {
+    final long timestamp = indexFile.lastModified();
+    return parse(FileUtil.loadFileBytes(indexFile), timestamp);
+  }
+
+  @NotNull
+  static GitIndex parse(@NotNull byte[] data, long timestamp) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.wrap(data);
+    if (data.length < 12 || buffer.getInt() != SIGNATURE) {
+      throw new IOException("Not a Git index file");
+    }
+    final int version = buffer.getInt();
+    if (version < 2 || version > 4) {
+      throw new IOException("Unsupported Git index version: " + version);
+    }
+    final int count = buffer.getInt();
+    final GitIndex index = new GitIndex(count, data.length, timestamp);
+    int pathsLength = 0;
+    try {
+      for (int i = 0; i < count; i++) {
+        final int entryStart = buffer.position();
+        buffer.position(entryStart + 8);  // ctime
+        index.myMTimes[i] = buffer.getInt();
+        buffer.position(buffer.position() + 12);  // mtime nanoseconds, dev, ino
+        index.myModes[i] = buffer.getInt();
+        buffer.position(buffer.position() + 8);  // uid, gid
+        index.mySizes[i] = buffer.getInt();
+        buffer.get(index.myShas, i * SHA_SIZE, SHA_SIZE);
+        int flags = buffer.getShort() & 0xFFFF;
+        if (version >= 3 && (flags & EXTENDED_FLAG) != 0) {
+          if ((buffer.getShort() & SKIP_WORKTREE_FLAG) != 0) {
+            // skip-worktree entries are reported as unchanged by Git, same as assume-valid ones
+            flags |= ASSUME_VALID_FLAG;
+          }
+        }
+        index.myFlags[i] = flags;
+
+        final int pathStart = pathsLength;
+        if (version == 4) {
+          // the path is stored as the number of bytes to remove from the previous path and the suffix to append to the rest
+          final int previousLength = i == 0 ? 0 : pathStart - index.myPathOffsets[i - 1];
+          final int prefixLength = previousLength - readOffset(buffer);
+          index.ensurePathsCapacity(pathStart + prefixLength);
+          System.arraycopy(index.myPaths, pathStart - previousLength, index.myPaths, pathStart, prefixLength);
+          pathsLength = index.readZeroTerminated(buffer, pathStart + prefixLength);
+        }
+        else {
+          final int nameLength = flags & NAME_MASK;
+          if (nameLength < NAME_MASK) {
+            buffer.get(index.myPaths, pathsLength, nameLength);
+            pathsLength += nameLength;
+          }
+          else {
+            pathsLength = index.readZeroTerminated(buffer, pathsLength);
+            buffer.position(buffer.position() - 1);
+          }
+          // entries are padded with 1-8 zeros to a multiple of 8 bytes
+          final int length = buffer.position() - entryStart;
+          buffer.position(entryStart + (length + 8) / 8 * 8);
+        }
+        index.myPathOffsets[i] = pathStart;
+      }
+    }
+    catch (RuntimeException e) {
+      throw new IOException("Broken Git index file: " + e.getMessage());
+    }
+    index.myPathOffsets[count] = pathsLength;
+    return index;
+  }
+
+  private int readZeroTerminated(ByteBuffer buffer, int offset) {
+    byte b;
+    while ((b = buffer.get()) != 0) {
+      ensurePathsCapacity(offset + 1);
+      myPaths[offset++] = b;
+    }
+    return offset;
+  }
+
+  // prefix compressed paths of the version 4 may take more space than the file
+  private void ensurePathsCapacity(int capacity) {
+    if (capacity > myPaths.length) {
+      myPaths = Arrays.copyOf(myPaths, Math.max(capacity, myPaths.length * 3 / 2));
+    }
+  }
+
+  // the variable length offset encoding used in Git packs
+  private static int readOffset(ByteBuffer buffer) {
+    int b = buffer.get() & 0xFF;
+    int value = b & 0x7F;
+    while ((b & 0x80) != 0) {
+      b = buffer.get() & 0xFF;
+      value = ((value + 1) << 7) | (b & 0x7F);
+    }
+    return value;
+  }
+
+  int size() {
+    return mySize;
+  }
+
+  /**
+   * @return true if the index file wasn't changed since it was read
+   */
+  boolean isUpToDate(@NotNull File indexFile) {
+    return indexFile.lastModified() == myTimestamp && indexFile.length() == myFileLength;
+  }
+
+  @NotNull
+  String getPath(int i) {
+    return new String(myPaths, myPathOffsets[i], myPathOffsets[i + 1] - myPathOffsets[i], CharsetToolkit.UTF8_CHARSET);
+  }
+
+  /**
+   * Collects paths of entries for the given file, or under the given directory, which may differ from the files in the working tree:
+   * the file is missing, its size or modification time differs from the ones stored in the index, the file was modified after
+   * the index had been written in the same second, so the time can't tell, or the entry is unmerged.
+   *
+   * Paths are matched by their UTF-8 bytes exactly, as Git stores them.
+   *
+   * @param relativePath path relative to the repository root, "" for the root itself
+   * @return false if there are no entries for the path: it is not tracked, or it is spelled differently in the index,
+   *         e.g. in another case or Unicode normalization form, so the index can't tell whether it is modified
+   */
+  boolean collectModified(@NotNull File root, @NotNull String relativePath, @NotNull Collection<String> result) {
+    if (relativePath.length() == 0) {
+      collectModified(root, 0, mySize, result);
+      return true;
+    }
+    // "dir.txt" or "dir-1/file" go between "dir" and "dir/file" in the byte order, so the file and the directory are looked up separately
+    final byte[] path = relativePath.getBytes(CharsetToolkit.UTF8_CHARSET);
+    final int start = lowerBound(path);
+    int end = start;
+    while (end < mySize && compare(myPaths, myPathOffsets[end], myPathOffsets[end + 1], path, 0, path.length) == 0) {
+      end++;
+    }
+    collectModified(root, start, end, result);
+
+    final byte[] prefix = Arrays.copyOf(path, path.length + 1);
+    prefix[path.length] = '/';
+    final int dirStart = lowerBound(prefix);
+    int dirEnd = dirStart;
+    while (dirEnd < mySize && startsWith(dirEnd, prefix)) {
+      dirEnd++;
+    }
+    collectModified(root, dirStart, dirEnd, result);
+    return end > start || dirEnd > dirStart;
+  }
+
+  private void collectModified(@NotNull File root, int start, int end, @NotNull Collection<String> result) {
+    for (int i = start; i < end; i++) {
+      if (isModified(root, i)) {
+        result.add(getPath(i));
+      }
+    }
+  }
+
+  /**
+   * Collects paths which entries were added, removed or changed (object id, mode or stage) in the {@code newIndex},
+   * that is paths which status against HEAD may have changed. Stat data refreshed by Git doesn't count as a change.
+   */
+  static void collectChanged(@NotNull GitIndex oldIndex, @NotNull GitIndex newIndex, @NotNull Collection<String> result) {
+    int i = 0;
+    int j = 0;
+    while (i < oldIndex.mySize || j < newIndex.mySize) {
+      final int compare = i == oldIndex.mySize ? 1 : j == newIndex.mySize ? -1 : comparePaths(oldIndex, i, newIndex, j);
+      if (compare < 0) {
+        result.add(oldIndex.getPath(i++));
+      }
+      else if (compare > 0) {
+        result.add(newIndex.getPath(j++));
+      }
+      else {
+        if (!sameEntry(oldIndex, i, newIndex, j)) {
+          result.add(newIndex.getPath(j));
+        }
+        i++;
+        j++;
+      }
+    }
+  }
+
+  private boolean isModified(@NotNull File root, int i) {
+    if ((myFlags[i] & ASSUME_VALID_FLAG) != 0) return false;
+    if ((myFlags[i] & STAGE_MASK) != 0) return true;
+
+    final File file = new File(root, getPath(i));
+    final long lastModified = file.lastModified();
+    if (lastModified == 0) return true;
+    // the index keeps only 32 bits of the size
+    if ((int)file.length() != mySizes[i]) return true;
+    if (lastModified / 1000 != (myMTimes[i] & 0xFFFFFFFFL)) return true;
+    // "racily clean": the file could be modified after it was staged, in the same second the index file was written
+    return (myMTimes[i] & 0xFFFFFFFFL) >= myTimestamp / 1000;
+  }
+
+  private static boolean sameEntry(GitIndex oldIndex, int i, GitIndex newIndex, int j) {
+    if (oldIndex.myModes[i] != newIndex.myModes[j]) return false;
+    if ((oldIndex.myFlags[i] & (STAGE_MASK | ASSUME_VALID_FLAG)) != (newIndex.myFlags[j] & (STAGE_MASK | ASSUME_VALID_FLAG))) return false;
+    for (int k = 0; k < SHA_SIZE; k++) {
+      if (oldIndex.myShas[i * SHA_SIZE + k] != newIndex.myShas[j * SHA_SIZE + k]) return false;
+    }
+    return true;
+  }
+
+  private boolean startsWith(int i, byte[] prefix) {
+    final int offset = myPathOffsets[i];
+    if (myPathOffsets[i + 1] - offset < prefix.length) return false;
+    for (int k = 0; k < prefix.length; k++) {
+      if (myPaths[offset + k] != prefix[k]) return false;
+    }
+    return true;
+  }
+
+  // the first entry which path is not less than the given one
+  private int lowerBound(byte[] path) {
+    int low = 0;
+    int high = mySize;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (compare(myPaths, myPathOffsets[mid], myPathOffsets[mid + 1], path, 0, path.length) < 0) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static int comparePaths(GitIndex index1, int i, GitIndex index2, int j) {
+    final int result = compare(index1.myPaths, index1.myPathOffsets[i], index1.myPathOffsets[i + 1],
+                               index2.myPaths, index2.myPathOffsets[j], index2.myPathOffsets[j + 1]);
+    // unmerged entries have the same path and differ by stage
+    return result != 0 ? result : (index1.myFlags[i] & STAGE_MASK) - (index2.myFlags[j] & STAGE_MASK);
+  }
+
+  private static int compare(byte[] bytes1, int start1, int end1, byte[] bytes2, int start2, int end2) {
+    final int length = Math.min(end1 - start1, end2 - start2);
+    for (int k = 0; k < length; k++) {
+      final int result = (bytes1[start1 + k] & 0xFF) - (bytes2[start2 + k] & 0xFF);
+      if (result != 0) return result;
+    }
+    return (end1 - start1) - (end2 - start2);
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package git4idea.status;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.FilePathImpl;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * <p>
+ *   Remembers which files of a Git root had changes at the last {@code 'git status'}, and the {@link GitIndex} the status was taken
+ *   against, so that next time {@code 'git status'} is called only for dirty paths which may have changed since:
+ *   <ul>
+ *     <li>files which size or modification time differ from the ones stored in the index,</li>
+ *     <li>files which entries were changed in the index (e.g. staged or unstaged),</li>
+ *     <li>files which had changes.</li>
+ *   </ul>
+ *   Other dirty files are known to be unchanged without calling Git.
+ *   Dirty paths which have no entries in the index are always checked: the index can't tell anything about them.
+ * </p>
+ * <p>
+ *   Nothing is known until the status of the whole root is collected, and after HEAD moves: all the dirty paths are checked then.
+ * </p>
+ */
+class GitIndexStatusCache {
+
+  private static final Logger LOG = Logger.getInstance(GitIndexStatusCache.class);
+
+  @NotNull private final File myRoot;
+  @NotNull private final File myIndexFile;
+
+  @Nullable private GitIndex myIndex;
+  @Nullable private String myHead;
+  // paths relative to the root which had changes at the last status, or may have got them since; null if not known
+  @Nullable private Set<String> myChangedPaths;
+  // the index read before the status of the whole root, to be used if the status succeeds
+  @Nullable private GitIndex myPendingIndex;
+
+  GitIndexStatusCache(@NotNull File root, @NotNull File gitDir) {
+    myRoot = root;
+    myIndexFile = new File(gitDir, "index");
+  }
+
+  /**
+   * @return dirty paths which should be checked by {@code 'git status'}, or null if all of them should be.
+   */
+  @Nullable
+  synchronized Collection<FilePath> getPathsToCheck(@NotNull Collection<FilePath> dirtyPaths, @NotNull String head) {
+    myPendingIndex = null;
+    if (myChangedPaths == null || myIndex == null || !head.equals(myHead)) {
+      myChangedPaths = null;
+      myPendingIndex = readIndex();
+      return null;
+    }
+
+    if (!myIndex.isUpToDate(myIndexFile)) {
+      final GitIndex index = readIndex();
+      if (index == null) {
+        myChangedPaths = null;
+        return null;
+      }
+      GitIndex.collectChanged(myIndex, index, myChangedPaths);
+      myIndex = index;
+    }
+
+    final Set<String> result = new HashSet<String>();
+    final Set<String> unknownPaths = new HashSet<String>();
+    final List<FilePath> paths = new ArrayList<FilePath>();
+    for (FilePath dirtyPath : dirtyPaths) {
+      final String relativePath = getRelativePath(dirtyPath);
+      if (relativePath == null) continue;
+      if (!myIndex.collectModified(myRoot, relativePath, result)) {
+        // e.g. the path differs in case from the tracked one, or the file is not tracked at all: let Git decide
+        paths.add(dirtyPath);
+        unknownPaths.add(relativePath);
+      }
+      for (String path : myChangedPaths) {
+        if (relativePath.length() == 0 || FileUtil.startsWith(path, relativePath)) {
+          result.add(path);
+        }
+      }
+    }
+
+    result.removeAll(unknownPaths);
+    for (String path : result) {
+      paths.add(new FilePathImpl(new File(myRoot, path), false));
+    }
+    return paths;
+  }
+
+  /**
+   * Remembers the result of {@code 'git status'}.
+   *
+   * @param checkedPaths  paths the status was collected for, null if it was collected for the whole root
+   * @param reportedPaths paths relative to the root reported by the status
+   */
+  synchronized void statusCollected(@Nullable Collection<FilePath> checkedPaths, @NotNull Set<String> reportedPaths, @NotNull String head) {
+    if (myChangedPaths == null) {
+      if (checkedPaths == null && myPendingIndex != null) {
+        myIndex = myPendingIndex;
+        myHead = head;
+        myChangedPaths = new HashSet<String>(reportedPaths);
+      }
+      myPendingIndex = null;
+      return;
+    }
+
+    if (checkedPaths == null) {
+      myChangedPaths = new HashSet<String>(reportedPaths);
+      return;
+    }
+    for (FilePath path : checkedPaths) {
+      final String relativePath = getRelativePath(path);
+      if (relativePath != null) {
+        myChangedPaths.remove(relativePath);
+      }
+    }
+    myChangedPaths.addAll(reportedPaths);
+  }
+
+  @Nullable
+  private GitIndex readIndex() {
+    if (!myIndexFile.exists()) {
+      return null;
+    }
+    try {
+      return GitIndex.read(myIndexFile);
+    }
+    catch (IOException e) {
+      LOG.info("Couldn't read " + myIndexFile, e);
+      return null;
+    }
+  }
+
+  @Nullable
+  private String getRelativePath(@NotNull FilePath path) {
+    final String relativePath = FileUtil.getRelativePath(myRoot.getPath(), path.getPath(), '/');
+    if (relativePath == null || relativePath.startsWith("..")) return null;
+    return ".".equals(relativePath) ? "" : relativePath;
+  }
+}
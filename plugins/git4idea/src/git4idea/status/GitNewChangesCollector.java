@@ -17,6 +17,7 @@ package git4idea.status;
 
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.*;
 import com.intellij.openapi.vcs.changes.Change;
@@ -37,6 +38,7 @@ import git4idea.commands.GitSimpleHandler;
 import git4idea.repo.GitRepository;
 import git4idea.repo.GitUntrackedFilesHolder;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
 import java.util.HashSet;
@@ -49,6 +51,9 @@ import java.util.Set;
  *   Works only on Git 1.7.0 and later.
  * </p>
  * <p>
+ *   If the {@link GitIndexStatusCache} is given, the status is asked only for paths which may have changed since the previous call.
+ * </p>
+ * <p>
  *   The class is immutable: collect changes and get the instance from where they can be retrieved by {@link #collect}.
  * </p>
  *
@@ -61,6 +66,7 @@ class GitNewChangesCollector extends GitChangesCollector {
   private final Collection<Change> myChanges = new HashSet<Change>();
   private final Set<VirtualFile> myUnversionedFiles = new HashSet<VirtualFile>();
   @NotNull private final Git myGit;
+  @Nullable private final GitIndexStatusCache myIndexCache;
 
   /**
    * Collects the changes from git command line and returns the instance of GitNewChangesCollector from which these changes can be retrieved.
@@ -69,8 +75,9 @@ class GitNewChangesCollector extends GitChangesCollector {
   @NotNull
   static GitNewChangesCollector collect(@NotNull Project project, @NotNull Git git, @NotNull ChangeListManager changeListManager,
                                         @NotNull ProjectLevelVcsManager vcsManager, @NotNull AbstractVcs vcs,
-                                        @NotNull VcsDirtyScope dirtyScope, @NotNull VirtualFile vcsRoot) throws VcsException {
-    return new GitNewChangesCollector(project, git, changeListManager, vcsManager, vcs, dirtyScope, vcsRoot);
+                                        @NotNull VcsDirtyScope dirtyScope, @NotNull VirtualFile vcsRoot,
+                                        @Nullable GitIndexStatusCache indexCache) throws VcsException {
+    return new GitNewChangesCollector(project, git, changeListManager, vcsManager, vcs, dirtyScope, vcsRoot, indexCache);
   }
 
   @Override
@@ -87,10 +94,12 @@ class GitNewChangesCollector extends GitChangesCollector {
 
   private GitNewChangesCollector(@NotNull Project project, @NotNull Git git, @NotNull ChangeListManager changeListManager,
                                  @NotNull ProjectLevelVcsManager vcsManager, @NotNull AbstractVcs vcs,
-                                 @NotNull VcsDirtyScope dirtyScope, @NotNull VirtualFile vcsRoot) throws VcsException
+                                 @NotNull VcsDirtyScope dirtyScope, @NotNull VirtualFile vcsRoot,
+                                 @Nullable GitIndexStatusCache indexCache) throws VcsException
   {
     super(project, changeListManager, vcsManager, vcs, dirtyScope, vcsRoot);
     myGit = git;
+    myIndexCache = indexCache;
     myRepository = GitUtil.getRepositoryManager(myProject).getRepositoryForRoot(vcsRoot);
 
     Collection<FilePath> dirtyPaths = dirtyPaths(true);
@@ -102,9 +111,38 @@ class GitNewChangesCollector extends GitChangesCollector {
 
   // calls 'git status' and parses the output, feeding myChanges.
   private void collectChanges(Collection<FilePath> dirtyPaths) throws VcsException {
-    GitSimpleHandler handler = statusHandler(dirtyPaths);
+    VcsRevisionNumber head = getHead();
+    Collection<FilePath> paths = myIndexCache == null ? null : myIndexCache.getPathsToCheck(dirtyPaths, head.asString());
+    if (paths == null) {
+      paths = dirtyPaths;
+    }
+    else if (paths.isEmpty()) {
+      LOG.debug("Nothing changed in the working tree and in the index since the previous status");
+      return;
+    }
+
+    boolean wholeRoot = containsRoot(paths);
+    GitSimpleHandler handler = statusHandler(wholeRoot ? null : paths);
+    if (handler.isLargeCommandLine()) {
+      // if there are too much files, just get all changes for the project
+      wholeRoot = true;
+      handler = statusHandler(null);
+    }
     String output = handler.run();
-    parseOutput(output, handler);
+    Set<String> reportedPaths = new HashSet<String>();
+    parseOutput(output, handler, head, reportedPaths);
+    if (myIndexCache != null) {
+      myIndexCache.statusCollected(wholeRoot ? null : paths, reportedPaths, head.asString());
+    }
+  }
+
+  private boolean containsRoot(@NotNull Collection<FilePath> paths) {
+    for (FilePath path : paths) {
+      if (FileUtil.pathsEqual(path.getPath(), myVcsRoot.getPath())) {
+        return true;
+      }
+    }
+    return false;
   }
 
   private void collectUnversionedFiles() throws VcsException {
@@ -117,23 +155,16 @@ class GitNewChangesCollector extends GitChangesCollector {
     }
   }
 
-  private GitSimpleHandler statusHandler(Collection<FilePath> dirtyPaths) {
+  // null paths stand for the whole root
+  private GitSimpleHandler statusHandler(@Nullable Collection<FilePath> paths) {
     GitSimpleHandler handler = new GitSimpleHandler(myProject, myVcsRoot, GitCommand.STATUS);
-    final String[] params = {"--porcelain", "-z", "--untracked-files=no"};   // untracked files are stored separately
-    handler.addParameters(params);
+    handler.addParameters("--porcelain", "-z", "--untracked-files=no");   // untracked files are stored separately
     handler.setNoSSH(true);
     handler.setSilent(true);
     handler.setStdoutSuppressed(true);
     handler.endOptions();
-    handler.addRelativePaths(dirtyPaths);
-    if (handler.isLargeCommandLine()) {
-      // if there are too much files, just get all changes for the project
-      handler = new GitSimpleHandler(myProject, myVcsRoot, GitCommand.STATUS);
-      handler.addParameters(params);
-      handler.setNoSSH(true);
-      handler.setSilent(true);
-      handler.setStdoutSuppressed(true);
-      handler.endOptions();
+    if (paths != null) {
+      handler.addRelativePaths(paths);
     }
     return handler;
   }
@@ -143,9 +174,8 @@ class GitNewChangesCollector extends GitChangesCollector {
    * See <a href=http://www.kernel.org/pub/software/scm/git/docs/git-status.html#_output">Git man</a> for details.
    */
   // handler is here for debugging purposes in the case of parse error
-  private void parseOutput(@NotNull String output, @NotNull GitHandler handler) throws VcsException {
-    VcsRevisionNumber head = getHead();
-
+  private void parseOutput(@NotNull String output, @NotNull GitHandler handler, @NotNull VcsRevisionNumber head,
+                           @NotNull Set<String> reportedPaths) throws VcsException {
     final String[] split = output.split("\u0000");
 
     for (int pos = 0; pos < split.length; pos++) {
@@ -162,6 +192,7 @@ class GitNewChangesCollector extends GitChangesCollector {
       final String filepath = line.substring(3); // skipping the space
       final char xStatus = xyStatus.charAt(0);
       final char yStatus = xyStatus.charAt(1);
+      reportedPaths.add(filepath);
 
       switch (xStatus) {
         case ' ':
@@ -191,6 +222,7 @@ class GitNewChangesCollector extends GitChangesCollector {
         case 'C':
           //noinspection AssignmentToForLoopParameter
           pos += 1;  // read the "from" filepath which is separated also by NUL character.
+          reportedPaths.add(split[pos]);
           // NB: no "break" here!
           // we treat "Copy" as "Added", but we still have to read the old path not to break the format parsing.
         case 'A':
@@ -232,6 +264,7 @@ class GitNewChangesCollector extends GitChangesCollector {
           //noinspection AssignmentToForLoopParameter
           pos += 1;  // read the "from" filepath which is separated also by NUL character.
           String oldFilename = split[pos];
+          reportedPaths.add(oldFilename);
 
           if (yStatus == 'D') {
             reportDeleted(filepath, head);
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package git4idea.history.wholeTree;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.ArrayUtil;
+import junit.framework.TestCase;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+public class GitCommitGraphTest extends TestCase {
+  private File myDir;
+  private File myFile;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("gitCommitGraph", null);
+    myFile = new File(myDir, "graph");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    FileUtil.delete(myDir);
+    super.tearDown();
+  }
+
+  public void testRoundTrip() throws Exception {
+    GitCommitGraph graph = GitCommitGraph.load(myFile);
+    assertEquals(0, graph.size());
+    addHistory(graph, 0, 50);
+    graph.save();
+
+    GitCommitGraph loaded = GitCommitGraph.load(myFile);
+    assertSameCommits(graph, loaded);
+    assertEquals(Arrays.asList(hash(49)), loaded.getHeads(10));
+  }
+
+  public void testAppendAfterLoad() throws Exception {
+    GitCommitGraph graph = GitCommitGraph.load(myFile);
+    addHistory(graph, 0, 20);
+    graph.save();
+    final long length = myFile.length();
+
+    GitCommitGraph loaded = GitCommitGraph.load(myFile);
+    addHistory(loaded, 20, 40);
+    // commits already in the graph are skipped
+    assertTrue(loaded.add(hash(5), parents(5), time(5)));
+    assertEquals(40, loaded.size());
+    loaded.save();
+    assertTrue(myFile.length() > length);
+
+    GitCommitGraph expected = GitCommitGraph.load(new File(myDir, "other"));
+    addHistory(expected, 0, 40);
+    assertSameCommits(expected, GitCommitGraph.load(myFile));
+  }
+
+  public void testSaveAfterClearRewritesFile() throws Exception {
+    GitCommitGraph graph = GitCommitGraph.load(myFile);
+    addHistory(graph, 0, 30);
+    graph.save();
+
+    graph.clear();
+    addHistory(graph, 0, 10);
+    graph.save();
+    assertSameCommits(graph, GitCommitGraph.load(myFile));
+  }
+
+  public void testCommitWithUnknownParentIsNotAdded() throws Exception {
+    GitCommitGraph graph = GitCommitGraph.load(myFile);
+    addHistory(graph, 0, 3);
+    assertFalse(graph.add(hash(10), new String[]{hash(9)}, time(10)));
+    assertEquals(3, graph.size());
+    assertEquals(-1, graph.indexOf(hash(10)));
+  }
+
+  public void testHashLookup() throws Exception {
+    GitCommitGraph graph = GitCommitGraph.load(myFile);
+    // enough commits to rehash the lookup table several times
+    addHistory(graph, 0, 1000);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i, graph.indexOf(hash(i)));
+      assertEquals(hash(i), graph.getHash(i));
+    }
+    assertEquals(-1, graph.indexOf(hash(1000)));
+    assertEquals(-1, graph.indexOf("not a hash"));
+    assertEquals(-1, graph.indexOf(hash(1).substring(1) + "x"));
+    graph.save();
+
+    // the table is built lazily after loading
+    GitCommitGraph loaded = GitCommitGraph.load(myFile);
+    assertEquals(999, loaded.indexOf(hash(999)));
+    assertEquals(0, loaded.indexOf(hash(0)));
+    assertEquals(-1, loaded.indexOf(hash(1000)));
+  }
+
+  public void testOldVersionIsIgnored() throws Exception {
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(myFile));
+    try {
+      out.writeInt(1);
+      out.write(new byte[100]);
+    }
+    finally {
+      out.close();
+    }
+    GitCommitGraph graph = GitCommitGraph.load(myFile);
+    assertEquals(0, graph.size());
+
+    // the file is rewritten in the current format
+    addHistory(graph, 0, 5);
+    graph.save();
+    assertSameCommits(graph, GitCommitGraph.load(myFile));
+  }
+
+  public void testTruncatedFileIsIgnored() throws Exception {
+    GitCommitGraph graph = GitCommitGraph.load(myFile);
+    addHistory(graph, 0, 10);
+    graph.save();
+    RandomAccessFile file = new RandomAccessFile(myFile, "rw");
+    try {
+      file.setLength(file.length() - 3);
+    }
+    finally {
+      file.close();
+    }
+
+    GitCommitGraph loaded = GitCommitGraph.load(myFile);
+    assertEquals(0, loaded.size());
+    addHistory(loaded, 0, 10);
+    loaded.save();
+    assertSameCommits(graph, GitCommitGraph.load(myFile));
+  }
+
+  // commit i has parent i - 1, every fifth commit merges i - 3 as well
+  private static void addHistory(GitCommitGraph graph, int from, int to) {
+    for (int i = from; i < to; i++) {
+      assertTrue(graph.add(hash(i), parents(i), time(i)));
+    }
+  }
+
+  private static String[] parents(int i) {
+    if (i == 0) return ArrayUtil.EMPTY_STRING_ARRAY;
+    if (i % 5 == 0 && i >= 3) return new String[]{hash(i - 1), hash(i - 3)};
+    return new String[]{hash(i - 1)};
+  }
+
+  private static long time(int i) {
+    return 1300000000000L + i * 60000L;
+  }
+
+  private static String hash(int i) {
+    final String hex = Integer.toHexString(i * 0x9E3779B1);
+    final StringBuilder sb = new StringBuilder();
+    while (sb.length() < 40) {
+      sb.append(hex);
+    }
+    return sb.substring(0, 32) + String.format("%08x", i);
+  }
+
+  private static void assertSameCommits(GitCommitGraph expected, GitCommitGraph actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.getHash(i), actual.getHash(i));
+      assertEquals(expected.getTime(i), actual.getTime(i));
+      assertTrue(Arrays.equals(expected.getParents(i), actual.getParents(i)));
+    }
+  }
+}
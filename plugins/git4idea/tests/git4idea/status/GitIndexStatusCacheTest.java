@@ -0,0 +1,133 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package git4idea.status;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.FilePathImpl;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.*;
+
+import static git4idea.status.GitIndexTest.git;
+
+public class GitIndexStatusCacheTest extends TestCase {
+  private File myRoot;
+  private String myHead;
+  private GitIndexStatusCache myCache;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myRoot = FileUtil.createTempDirectory("gitIndexStatusCache", null);
+    for (String path : Arrays.asList("a.txt", "b.txt", "dir/c.txt")) {
+      createFile(path);
+    }
+    git(myRoot, "init");
+    git(myRoot, "add", ".");
+    git(myRoot, "commit", "-m", "initial");
+    myHead = git(myRoot, "rev-parse", "HEAD").trim();
+    myCache = new GitIndexStatusCache(myRoot, new File(myRoot, ".git"));
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    FileUtil.delete(myRoot);
+    super.tearDown();
+  }
+
+  public void testAllPathsAreCheckedUntilWholeRootStatus() throws Exception {
+    assertNull(getPathsToCheck("a.txt"));
+    // the status of a part of the root tells nothing about the rest
+    myCache.statusCollected(toFilePaths("a.txt"), Collections.<String>emptySet(), myHead);
+    assertNull(getPathsToCheck("a.txt"));
+
+    myCache.statusCollected(null, Collections.<String>emptySet(), myHead);
+    assertEquals(Collections.<String>emptySet(), getPathsToCheck("a.txt", "dir"));
+    assertEquals(Collections.<String>emptySet(), getPathsToCheck(""));
+  }
+
+  public void testModifiedFileIsChecked() throws Exception {
+    collectWholeStatus();
+    FileUtil.writeToFile(new File(myRoot, "dir/c.txt"), "modified");
+    assertEquals(Collections.singleton("dir/c.txt"), getPathsToCheck("dir"));
+    assertEquals(Collections.singleton("dir/c.txt"), getPathsToCheck(""));
+    assertEquals(Collections.<String>emptySet(), getPathsToCheck("a.txt"));
+  }
+
+  public void testChangedFileIsCheckedUntilReportedUnchanged() throws Exception {
+    collectWholeStatus("b.txt");
+    assertEquals(Collections.singleton("b.txt"), getPathsToCheck("b.txt"));
+    assertEquals(Collections.singleton("b.txt"), getPathsToCheck(""));
+
+    myCache.statusCollected(toFilePaths("b.txt"), Collections.<String>emptySet(), myHead);
+    assertEquals(Collections.<String>emptySet(), getPathsToCheck("b.txt"));
+  }
+
+  public void testStagedFileIsChecked() throws Exception {
+    collectWholeStatus();
+    createFile("d.txt");
+    git(myRoot, "add", "d.txt");
+    assertEquals(Collections.singleton("d.txt"), getPathsToCheck("d.txt"));
+    assertEquals(Collections.<String>emptySet(), getPathsToCheck("a.txt"));
+  }
+
+  public void testAllPathsAreCheckedAfterHeadMoves() throws Exception {
+    collectWholeStatus();
+    assertNull(myCache.getPathsToCheck(toFilePaths("a.txt"), "0000000000000000000000000000000000000000"));
+  }
+
+  public void testPathsWithoutIndexEntriesAreChecked() throws Exception {
+    collectWholeStatus();
+    // e.g. the file is renamed in another case on a case-insensitive file system
+    assertEquals(new HashSet<String>(Arrays.asList("A.txt", "dir/C.txt")), getPathsToCheck("A.txt", "dir/C.txt", "b.txt"));
+    createFile("untracked.txt");
+    assertEquals(Collections.singleton("untracked.txt"), getPathsToCheck("untracked.txt"));
+  }
+
+  private void collectWholeStatus(String... reportedPaths) {
+    assertNull(getPathsToCheck(""));
+    myCache.statusCollected(null, new HashSet<String>(Arrays.asList(reportedPaths)), myHead);
+  }
+
+  private Set<String> getPathsToCheck(String... paths) {
+    Collection<FilePath> result = myCache.getPathsToCheck(toFilePaths(paths), myHead);
+    if (result == null) return null;
+    Set<String> relativePaths = new HashSet<String>();
+    for (FilePath path : result) {
+      relativePaths.add(FileUtil.getRelativePath(myRoot.getPath(), path.getPath(), '/'));
+    }
+    assertEquals("duplicate paths: " + result, result.size(), relativePaths.size());
+    return relativePaths;
+  }
+
+  private List<FilePath> toFilePaths(String... paths) {
+    List<FilePath> result = new ArrayList<FilePath>();
+    for (String path : paths) {
+      File file = new File(myRoot, path);
+      result.add(new FilePathImpl(file, path.length() == 0 || file.isDirectory()));
+    }
+    return result;
+  }
+
+  // not racily clean in the index written after it
+  private void createFile(String path) throws Exception {
+    File file = new File(myRoot, path);
+    FileUtil.writeToFile(file, path);
+    assertTrue(file.setLastModified(System.currentTimeMillis() - 10000));
+  }
+}
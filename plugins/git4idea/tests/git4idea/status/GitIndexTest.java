@@ -0,0 +1,237 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package git4idea.status;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.CharsetToolkit;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.ThrowableRunnable;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+public class GitIndexTest extends TestCase {
+  private File myRoot;
+  private long myIndexTimestamp;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myRoot = FileUtil.createTempDirectory("gitIndex", null);
+    myIndexTimestamp = System.currentTimeMillis() + 10000;
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    FileUtil.delete(myRoot);
+    super.tearDown();
+  }
+
+  public void testModifiedFiles() throws Exception {
+    List<String> paths = Arrays.asList("a.txt", "dir-1/c.txt", "dir.txt", "dir/b.txt", "dir/sub/d.txt");
+    for (String path : paths) {
+      FileUtil.writeToFile(new File(myRoot, path), path);
+    }
+    GitIndex index = GitIndex.parse(createIndex(2, paths), myIndexTimestamp);
+    assertEquals(5, index.size());
+    assertEquals("dir/sub/d.txt", index.getPath(4));
+    assertEquals(Collections.<String>emptySet(), collectModified(index, ""));
+
+    FileUtil.writeToFile(new File(myRoot, "dir/b.txt"), "modified");
+    FileUtil.delete(new File(myRoot, "dir/sub/d.txt"));
+    assertEquals(new HashSet<String>(Arrays.asList("dir/b.txt", "dir/sub/d.txt")), collectModified(index, ""));
+    assertEquals(new HashSet<String>(Arrays.asList("dir/b.txt", "dir/sub/d.txt")), collectModified(index, "dir"));
+    assertEquals(Collections.singleton("dir/sub/d.txt"), collectModified(index, "dir/sub"));
+    assertEquals(Collections.<String>emptySet(), collectModified(index, "dir-1"));
+    assertEquals(Collections.<String>emptySet(), collectModified(index, "a.txt"));
+  }
+
+  public void testPathsWithoutEntries() throws Exception {
+    List<String> paths = Arrays.asList("a.txt", "dir/b.txt", "\u00e9.txt");
+    FileUtil.writeToFile(new File(myRoot, "a.txt"), "a");
+    FileUtil.writeToFile(new File(myRoot, "dir/b.txt"), "b");
+    GitIndex index = GitIndex.parse(createIndex(2, paths), myIndexTimestamp);
+    Set<String> result = new HashSet<String>();
+    assertTrue(index.collectModified(myRoot, "a.txt", result));
+    assertTrue(index.collectModified(myRoot, "dir", result));
+    assertTrue(index.collectModified(myRoot, "", result));
+    // paths are compared by bytes: other case, decomposed form of a composed character, untracked files have no entries
+    assertFalse(index.collectModified(myRoot, "A.txt", result));
+    assertFalse(index.collectModified(myRoot, "dir/B.txt", result));
+    assertFalse(index.collectModified(myRoot, "e\u0301.txt", result));
+    assertFalse(index.collectModified(myRoot, "dir/c.txt", result));
+    assertFalse(index.collectModified(myRoot, "di", result));
+  }
+
+  public void testIndexWrittenByGit() throws Exception {
+    List<String> paths = Arrays.asList("a.txt", "dir-1/c.txt", "dir.txt", "dir/b.txt", "dir/sub/" + StringUtil.repeat("long", 50) + ".txt");
+    for (String path : paths) {
+      File file = new File(myRoot, path);
+      FileUtil.writeToFile(file, path);
+      // not racily clean in the index written now
+      assertTrue(file.setLastModified(System.currentTimeMillis() - 10000));
+    }
+    git(myRoot, "init");
+    git(myRoot, "add", ".");
+    File indexFile = new File(myRoot, ".git/index");
+
+    GitIndex index = GitIndex.read(indexFile);
+    assertEquals(paths, getPaths(index));
+    assertEquals(Collections.<String>emptySet(), collectModified(index, ""));
+
+    git(myRoot, "update-index", "--index-version", "4");
+    GitIndex index4 = GitIndex.read(indexFile);
+    assertEquals(paths, getPaths(index4));
+    assertEquals(Collections.<String>emptySet(), collectModified(index4, ""));
+
+    FileUtil.writeToFile(new File(myRoot, "dir/b.txt"), "modified");
+    assertEquals(Collections.singleton("dir/b.txt"), collectModified(index, "dir"));
+    assertEquals(Collections.singleton("dir/b.txt"), collectModified(index4, "dir"));
+  }
+
+  public void testRacilyCleanFileIsModified() throws Exception {
+    FileUtil.writeToFile(new File(myRoot, "a.txt"), "a");
+    GitIndex index = GitIndex.parse(createIndex(2, Collections.singletonList("a.txt")), new File(myRoot, "a.txt").lastModified());
+    assertEquals(Collections.singleton("a.txt"), collectModified(index, ""));
+  }
+
+  public void testPrefixCompressedPaths() throws Exception {
+    List<String> paths = Arrays.asList("dir/a/file.txt", "dir/a/file2.txt", "dir/b.txt", "e.txt");
+    for (String path : paths) {
+      FileUtil.writeToFile(new File(myRoot, path), path);
+    }
+    GitIndex index = GitIndex.parse(createIndex(4, paths), myIndexTimestamp);
+    for (int i = 0; i < paths.size(); i++) {
+      assertEquals(paths.get(i), index.getPath(i));
+    }
+    assertEquals(Collections.<String>emptySet(), collectModified(index, "dir"));
+  }
+
+  public void testChangedEntries() throws Exception {
+    List<String> paths = Arrays.asList("a.txt", "b.txt", "c.txt");
+    for (String path : paths) {
+      FileUtil.writeToFile(new File(myRoot, path), path);
+    }
+    GitIndex oldIndex = GitIndex.parse(createIndex(2, paths), myIndexTimestamp);
+
+    FileUtil.writeToFile(new File(myRoot, "b.txt"), "staged");
+    FileUtil.writeToFile(new File(myRoot, "d.txt"), "added");
+    GitIndex newIndex = GitIndex.parse(createIndex(2, Arrays.asList("b.txt", "c.txt", "d.txt")), myIndexTimestamp);
+
+    Set<String> changed = new HashSet<String>();
+    GitIndex.collectChanged(oldIndex, newIndex, changed);
+    assertEquals(new HashSet<String>(Arrays.asList("a.txt", "b.txt", "d.txt")), changed);
+  }
+
+  public void testWholeTreePerformance() throws Exception {
+    final List<String> paths = new ArrayList<String>();
+    for (int i = 0; i < 1000; i++) {
+      File dir = new File(myRoot, "dir" + i);
+      assertTrue(dir.mkdir());
+      for (int j = 0; j < 200; j++) {
+        String path = "dir" + i + "/file" + j + ".txt";
+        assertTrue(new File(myRoot, path).createNewFile());
+        paths.add(path);
+      }
+    }
+    Collections.sort(paths);
+    final byte[] data = createIndex(2, paths);
+    final long indexTimestamp = System.currentTimeMillis() + 10000;
+    FileUtil.writeToFile(new File(myRoot, paths.get(100)), "modified");
+
+    PlatformTestUtil.startPerformanceTest("Checking 200000 files against the git index is slow", 3000, new ThrowableRunnable() {
+      @Override
+      public void run() throws Exception {
+        GitIndex index = GitIndex.parse(data, indexTimestamp);
+        assertEquals(Collections.singleton(paths.get(100)), collectModified(index, ""));
+      }
+    }).ioBound().assertTiming();
+  }
+
+  private static List<String> getPaths(GitIndex index) {
+    List<String> result = new ArrayList<String>();
+    for (int i = 0; i < index.size(); i++) {
+      result.add(index.getPath(i));
+    }
+    return result;
+  }
+
+  static String git(File root, String... parameters) throws IOException, InterruptedException {
+    List<String> command = new ArrayList<String>(Arrays.asList("git", "-c", "user.name=test", "-c", "user.email=test@example.com"));
+    command.addAll(Arrays.asList(parameters));
+    Process process = new ProcessBuilder(command).directory(root).redirectErrorStream(true).start();
+    String output = FileUtil.loadTextAndClose(process.getInputStream());
+    assertEquals(command + ": " + output, 0, process.waitFor());
+    return output;
+  }
+
+  private Set<String> collectModified(GitIndex index, String path) {
+    Set<String> result = new HashSet<String>();
+    index.collectModified(myRoot, path, result);
+    return result;
+  }
+
+  // entries reflect the files as they are on disk now
+  private byte[] createIndex(int version, List<String> paths) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0x44495243);
+    out.writeInt(version);
+    out.writeInt(paths.size());
+    byte[] previous = new byte[0];
+    for (String path : paths) {
+      File file = new File(myRoot, path);
+      byte[] name = path.getBytes(CharsetToolkit.UTF8_CHARSET);
+      out.writeInt(0);
+      out.writeInt(0);
+      out.writeInt((int)(file.lastModified() / 1000));
+      out.writeInt(0);
+      out.writeLong(0);
+      out.writeInt(0100644);
+      out.writeLong(0);
+      out.writeInt((int)file.length());
+      byte[] sha = new byte[20];
+      sha[0] = (byte)file.length();
+      System.arraycopy(name, 0, sha, 1, Math.min(name.length, 19));
+      out.write(sha);
+      out.writeShort(Math.min(name.length, 0xFFF));
+      if (version == 4) {
+        int common = 0;
+        while (common < previous.length && common < name.length && previous[common] == name[common]) {
+          common++;
+        }
+        out.writeByte(previous.length - common);
+        out.write(name, common, name.length - common);
+        out.writeByte(0);
+        previous = name;
+      }
+      else {
+        out.write(name);
+        int length = 62 + name.length;
+        for (int i = length; i < (length + 8) / 8 * 8; i++) {
+          out.writeByte(0);
+        }
+      }
+    }
+    out.close();
+    return bytes.toByteArray();
+  }
+}
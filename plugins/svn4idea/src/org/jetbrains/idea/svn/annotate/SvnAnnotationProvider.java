@@ -360,6 +360,12 @@ public class SvnAnnotationProvider implements AnnotationProvider, VcsCacheableAn
     return annotation;
   }
 
+  @Override
+  public boolean canAnnotateByPrevious(VcsFileRevision revision, VcsFileRevision previous) {
+    // svn annotate does not ignore whitespace, and merged revisions are shown for lines coming from merges
+    return false;
+  }
+
   private static class MySteppedLogGetter {
     private final LinkedList<SVNRevision> myRevisionPoints;
     private final SvnVcs myVcs;